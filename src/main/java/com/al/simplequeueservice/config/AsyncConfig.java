@@ -1,17 +1,35 @@
 package com.al.simplequeueservice.config;
 
 import com.al.simplequeueservice.util.SQSConstants;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 @Configuration
 @EnableAsync
+@EnableScheduling
 public class AsyncConfig {
 
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    /**
+     * Executor for background database tasks. In virtual-thread mode each task runs on its own virtual thread,
+     * with at most {@link SQSConstants#MAX_POOL_SIZE} running at once so MongoDB sees the same load as with the pool.
+     */
     @Bean(name = "taskExecutor")
-    public ThreadPoolTaskExecutor taskExecutor() {
+    public AsyncTaskExecutor taskExecutor() {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(SQSConstants.THREAD_NAME_PREFIX);
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(SQSConstants.MAX_POOL_SIZE);
+            return executor;
+        }
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(SQSConstants.CORE_POOL_SIZE);
         executor.setMaxPoolSize(SQSConstants.MAX_POOL_SIZE);
@@ -20,4 +38,15 @@ public class AsyncConfig {
         executor.initialize();
         return executor;
     }
+
+    /**
+     * Executor for waking up long-polling pop requests. Each task runs on its own virtual thread,
+     * so waiting consumers never hold a platform thread.
+     */
+    @Bean(name = "longPollExecutor")
+    public SimpleAsyncTaskExecutor longPollExecutor() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(SQSConstants.LONG_POLL_THREAD_NAME_PREFIX);
+        executor.setVirtualThreads(true);
+        return executor;
+    }
 }
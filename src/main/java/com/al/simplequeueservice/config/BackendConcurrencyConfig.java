@@ -0,0 +1,53 @@
+package com.al.simplequeueservice.config;
+
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.TimeoutOptions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.data.redis.LettuceClientConfigurationBuilderCustomizer;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps the concurrency each backend sees, independently of how many request threads are running.
+ * With virtual threads the servlet container no longer limits concurrency with its thread pool, so
+ * thousands of requests can reach MongoDB and Redis at once; these limits keep them from overwhelming
+ * the connection pools.
+ */
+@Configuration
+public class BackendConcurrencyConfig {
+
+    @Value("${mongo.max.connections}")
+    private int mongoMaxConnections;
+
+    @Value("${mongo.max.wait.ms}")
+    private long mongoMaxWaitMillis;
+
+    @Value("${redis.max.pending.commands}")
+    private int redisMaxPendingCommands;
+
+    /**
+     * Bounds the MongoDB connection pool. Requests beyond the pool size wait for a connection
+     * for at most {@code mongo.max.wait.ms} and then fail, instead of queueing without limit.
+     */
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoConnectionPoolCustomizer() {
+        return builder -> builder.applyToConnectionPoolSettings(pool -> pool
+                .maxSize(mongoMaxConnections)
+                .maxWaitTime(mongoMaxWaitMillis, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Bounds the commands queued on the shared Redis connection. Commands beyond
+     * {@code redis.max.pending.commands} are rejected right away instead of piling up in memory.
+     */
+    @Bean
+    public LettuceClientConfigurationBuilderCustomizer redisRequestQueueCustomizer() {
+        return builder -> builder.clientOptions(ClientOptions.builder()
+                .timeoutOptions(TimeoutOptions.enabled())
+                .requestQueueSize(redisMaxPendingCommands)
+                .build());
+    }
+}
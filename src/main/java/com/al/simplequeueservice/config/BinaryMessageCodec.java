@@ -0,0 +1,156 @@
+package com.al.simplequeueservice.config;
+
+import com.al.simplequeueservice.model.Message;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Compact binary layout for a {@link Message} in Redis, about half the size of its JSON form.
+ * <pre>
+ * byte     format version, currently 1 (never the first byte of a JSON document)
+ * byte     flags: 0x01 UUID ID, 0x02 consumed, 0x04 creation time present, 0x08 priority present
+ * 16 bytes ID as a UUID, or a 2-byte length and UTF-8 bytes for any other ID
+ * 8 bytes  creation time in epoch millis, if present
+ * byte     priority, if present; absent means 0
+ * 2 bytes  consumer group length, then UTF-8 bytes
+ * 4 bytes  content length, then UTF-8 bytes
+ * </pre>
+ * The delivery time of a delayed message is not stored: in Redis it is the score of the message in its schedule.
+ * Lengths are big-endian; a length of all ones stands for {@code null}. The Lua scripts read the ID and
+ * priority of a payload in this layout with {@code scripts/message_fields.lua}, which must change along with it.
+ */
+public final class BinaryMessageCodec {
+
+    public static final byte VERSION_1 = 1;
+
+    private static final byte FLAG_UUID_ID = 0x01;
+    private static final byte FLAG_CONSUMED = 0x02;
+    private static final byte FLAG_CREATED_AT = 0x04;
+    private static final byte FLAG_PRIORITY = 0x08;
+    private static final int NULL_SHORT_LENGTH = 0xFFFF;
+    private static final int NULL_INT_LENGTH = -1;
+
+    private BinaryMessageCodec() {
+    }
+
+    public static byte[] encode(Message message) {
+        UUID uuid = canonicalUuid(message.getId());
+        byte[] id = uuid == null ? utf8(message.getId()) : null;
+        byte[] consumerGroup = utf8(message.getConsumerGroup());
+        byte[] content = utf8(message.getContent());
+        byte flags = 0;
+        if (uuid != null) {
+            flags |= FLAG_UUID_ID;
+        }
+        if (message.isConsumed()) {
+            flags |= FLAG_CONSUMED;
+        }
+        if (message.getCreatedAt() != null) {
+            flags |= FLAG_CREATED_AT;
+        }
+        if (message.getPriority() != 0) {
+            flags |= FLAG_PRIORITY;
+        }
+
+        int size = 2 + (uuid != null ? 16 : 2 + length(id)) + (message.getCreatedAt() != null ? 8 : 0)
+                + (message.getPriority() != 0 ? 1 : 0) + 2 + length(consumerGroup) + 4 + length(content);
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(VERSION_1).put(flags);
+        if (uuid != null) {
+            buffer.putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+        } else {
+            putShortString(buffer, id);
+        }
+        if (message.getCreatedAt() != null) {
+            buffer.putLong(message.getCreatedAt().getTime());
+        }
+        if (message.getPriority() != 0) {
+            buffer.put((byte) message.getPriority());
+        }
+        putShortString(buffer, consumerGroup);
+        buffer.putInt(content == null ? NULL_INT_LENGTH : content.length);
+        if (content != null) {
+            buffer.put(content);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the bytes are not a message in a supported version of this layout.
+     */
+    public static Message decode(byte[] bytes) {
+        if (!isEncoded(bytes)) {
+            throw new IllegalArgumentException("Unsupported message format version");
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, 1, bytes.length - 1);
+            byte flags = buffer.get();
+            String id = (flags & FLAG_UUID_ID) != 0
+                    ? new UUID(buffer.getLong(), buffer.getLong()).toString()
+                    : getShortString(buffer);
+            Date createdAt = (flags & FLAG_CREATED_AT) != 0 ? new Date(buffer.getLong()) : null;
+            int priority = (flags & FLAG_PRIORITY) != 0 ? Byte.toUnsignedInt(buffer.get()) : 0;
+            String consumerGroup = getShortString(buffer);
+            int contentLength = buffer.getInt();
+            String content = null;
+            if (contentLength != NULL_INT_LENGTH) {
+                content = new String(bytes, buffer.position(), contentLength, StandardCharsets.UTF_8);
+            }
+            return new Message(id, content, consumerGroup, createdAt, (flags & FLAG_CONSUMED) != 0, priority);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated message payload", e);
+        }
+    }
+
+    public static boolean isEncoded(byte[] bytes) {
+        return bytes != null && bytes.length > 1 && bytes[0] == VERSION_1;
+    }
+
+    /**
+     * Returns the UUID only if printing it gives back the same ID, so the ID survives the round trip unchanged.
+     */
+    private static UUID canonicalUuid(String id) {
+        if (id == null || id.length() != 36) {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(id);
+            return uuid.toString().equals(id) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] value) {
+        return value == null ? 0 : value.length;
+    }
+
+    private static void putShortString(ByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.putShort((short) NULL_SHORT_LENGTH);
+            return;
+        }
+        if (value.length >= NULL_SHORT_LENGTH) {
+            throw new IllegalArgumentException("Message ID or consumer group longer than " + (NULL_SHORT_LENGTH - 1) + " bytes");
+        }
+        buffer.putShort((short) value.length).put(value);
+    }
+
+    private static String getShortString(ByteBuffer buffer) {
+        int length = Short.toUnsignedInt(buffer.getShort());
+        if (length == NULL_SHORT_LENGTH) {
+            return null;
+        }
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
@@ -0,0 +1,97 @@
+package com.al.simplequeueservice.config;
+
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers successful username and password authentications for a short time, so repeated HTTP Basic
+ * requests with the same credentials skip the BCrypt check of the delegate provider.
+ * <p>
+ * Entries are keyed by a SHA-256 digest of the credentials, so the cache never holds a password.
+ * Failed attempts are never cached and always pay the full BCrypt cost.
+ */
+public class CachingAuthenticationProvider implements AuthenticationProvider {
+
+    private final AuthenticationProvider delegate;
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final Map<String, CachedAuthentication> cache = new ConcurrentHashMap<>();
+
+    public CachingAuthenticationProvider(AuthenticationProvider delegate, Duration ttl, int maxEntries) {
+        this.delegate = delegate;
+        this.ttlNanos = ttl.toNanos();
+        this.maxEntries = maxEntries;
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        if (ttlNanos <= 0 || !(authentication.getCredentials() instanceof String password)) {
+            return delegate.authenticate(authentication);
+        }
+        String key = cacheKey(authentication.getName(), password);
+        long now = System.nanoTime();
+        CachedAuthentication cached = cache.get(key);
+        if (cached != null && now - cached.expiresAtNanos() < 0) {
+            return authenticated(cached.authentication(), authentication);
+        }
+
+        Authentication result = delegate.authenticate(authentication);
+        if (result != null && result.isAuthenticated()) {
+            if (cache.size() >= maxEntries) {
+                evictExpired(now);
+            }
+            if (cache.size() < maxEntries) {
+                cache.put(key, new CachedAuthentication(result, now + ttlNanos));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return delegate.supports(authentication);
+    }
+
+    int size() {
+        return cache.size();
+    }
+
+    private void evictExpired(long now) {
+        cache.values().removeIf(cached -> now - cached.expiresAtNanos() >= 0);
+    }
+
+    /**
+     * Returns a fresh token for the cached principal, so callers never share a mutable authentication.
+     */
+    private static Authentication authenticated(Authentication cached, Authentication request) {
+        UsernamePasswordAuthenticationToken token = UsernamePasswordAuthenticationToken.authenticated(
+                cached.getPrincipal(), null, cached.getAuthorities());
+        token.setDetails(request.getDetails());
+        return token;
+    }
+
+    private static String cacheKey(String username, String password) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(username.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(password.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private record CachedAuthentication(Authentication authentication, long expiresAtNanos) {
+    }
+}
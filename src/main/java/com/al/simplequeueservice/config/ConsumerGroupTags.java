@@ -0,0 +1,44 @@
+package com.al.simplequeueservice.config;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Turns consumer group names into metric tag values with bounded cardinality. The first
+ * {@code metrics.consumer.group.max.tags} consumer groups seen keep their own tag value; any group after that is
+ * reported as {@value #OTHER}, so clients inventing consumer groups cannot grow the number of time series without limit.
+ */
+@Component
+public class ConsumerGroupTags {
+
+    public static final String TAG = "consumerGroup";
+    static final String NONE = "none";
+    static final String OTHER = "other";
+
+    private final Set<String> taggedGroups = ConcurrentHashMap.newKeySet();
+
+    @Value("${metrics.consumer.group.max.tags}")
+    private int maxTags;
+
+    /**
+     * Returns the tag value for a consumer group: its name while the limit allows, {@value #OTHER} once it is reached.
+     */
+    public String valueOf(String consumerGroup) {
+        if (StringUtils.isBlank(consumerGroup)) {
+            return NONE;
+        }
+        if (taggedGroups.contains(consumerGroup)) {
+            return consumerGroup;
+        }
+        // Concurrent first sightings may overshoot the limit by a few groups, which is harmless
+        if (taggedGroups.size() < maxTags) {
+            taggedGroups.add(consumerGroup);
+            return consumerGroup;
+        }
+        return OTHER;
+    }
+}
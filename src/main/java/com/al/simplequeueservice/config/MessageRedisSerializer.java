@@ -0,0 +1,39 @@
+package com.al.simplequeueservice.config;
+
+import com.al.simplequeueservice.model.Message;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * Redis value serializer that writes {@link Message}s with {@link BinaryMessageCodec} and everything else,
+ * such as message IDs and consumer group names passed to scripts, with a fallback serializer.
+ * Reads either format, so messages written before switching codecs can still be popped.
+ */
+public class MessageRedisSerializer implements RedisSerializer<Object> {
+
+    private final RedisSerializer<Object> fallback;
+
+    public MessageRedisSerializer(RedisSerializer<Object> fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value instanceof Message message) {
+            return BinaryMessageCodec.encode(message);
+        }
+        return fallback.serialize(value);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (BinaryMessageCodec.isEncoded(bytes)) {
+            try {
+                return BinaryMessageCodec.decode(bytes);
+            } catch (IllegalArgumentException e) {
+                throw new SerializationException("Could not read binary message", e);
+            }
+        }
+        return fallback.deserialize(bytes);
+    }
+}
@@ -0,0 +1,75 @@
+package com.al.simplequeueservice.config;
+
+import com.al.simplequeueservice.util.SQSConstants;
+import com.mongodb.event.CommandEvent;
+import io.micrometer.common.KeyValue;
+import io.micrometer.common.KeyValues;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.mongodb.DefaultMongoCommandTagsProvider;
+import io.micrometer.core.instrument.binder.mongodb.MongoCommandTagsProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.server.observation.DefaultServerRequestObservationConvention;
+import org.springframework.http.server.observation.ServerRequestObservationContext;
+
+import java.util.stream.StreamSupport;
+
+/**
+ * Adds the consumer group to the metrics Spring Boot records for HTTP requests and MongoDB commands, through
+ * {@link ConsumerGroupTags} so the number of time series stays bounded. Redis operations are timed by
+ * {@link com.al.simplequeueservice.service.CacheService} and executor saturation by {@link AsyncConfig}.
+ */
+@Configuration
+public class MetricsConfig {
+
+    private static final String COLLECTION_TAG = "collection";
+    private static final String UNKNOWN_COLLECTION = "unknown";
+
+    /**
+     * Tags {@code http.server.requests} on the servlet stack with the {@code consumerGroup} header of the request.
+     */
+    @Bean
+    @Profile("!" + SQSConstants.REACTIVE_PROFILE)
+    public DefaultServerRequestObservationConvention consumerGroupServerRequestObservationConvention(ConsumerGroupTags consumerGroupTags) {
+        return new DefaultServerRequestObservationConvention() {
+            @Override
+            public KeyValues getLowCardinalityKeyValues(ServerRequestObservationContext context) {
+                String consumerGroup = context.getCarrier().getHeader(SQSConstants.CONSUMER_GROUP_HEADER);
+                return super.getLowCardinalityKeyValues(context).and(KeyValue.of(ConsumerGroupTags.TAG, consumerGroupTags.valueOf(consumerGroup)));
+            }
+        };
+    }
+
+    /**
+     * Tags {@code http.server.requests} on the reactive stack with the {@code consumerGroup} header of the request.
+     */
+    @Bean
+    @Profile(SQSConstants.REACTIVE_PROFILE)
+    public org.springframework.http.server.reactive.observation.DefaultServerRequestObservationConvention consumerGroupReactiveServerRequestObservationConvention(ConsumerGroupTags consumerGroupTags) {
+        return new org.springframework.http.server.reactive.observation.DefaultServerRequestObservationConvention() {
+            @Override
+            public KeyValues getLowCardinalityKeyValues(org.springframework.http.server.reactive.observation.ServerRequestObservationContext context) {
+                String consumerGroup = context.getCarrier().getHeaders().getFirst(SQSConstants.CONSUMER_GROUP_HEADER);
+                return super.getLowCardinalityKeyValues(context).and(KeyValue.of(ConsumerGroupTags.TAG, consumerGroupTags.valueOf(consumerGroup)));
+            }
+        };
+    }
+
+    /**
+     * Bounds the {@code collection} tag of {@code mongodb.driver.commands}. Each consumer group has its own collection,
+     * so the default tag would create time series for every consumer group ever used.
+     */
+    @Bean
+    public MongoCommandTagsProvider consumerGroupMongoCommandTagsProvider(ConsumerGroupTags consumerGroupTags) {
+        return new DefaultMongoCommandTagsProvider() {
+            @Override
+            public Iterable<Tag> commandTags(CommandEvent event) {
+                return Tags.of(StreamSupport.stream(super.commandTags(event).spliterator(), false)
+                        .map(tag -> COLLECTION_TAG.equals(tag.getKey()) && !UNKNOWN_COLLECTION.equals(tag.getValue()) ? Tag.of(COLLECTION_TAG, consumerGroupTags.valueOf(tag.getValue())) : tag)
+                        .toList());
+            }
+        };
+    }
+}
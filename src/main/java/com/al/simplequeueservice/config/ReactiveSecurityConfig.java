@@ -0,0 +1,92 @@
+package com.al.simplequeueservice.config;
+
+import com.al.simplequeueservice.util.SQSConstants;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.ReactiveAuthenticationManagerAdapter;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+
+import java.time.Duration;
+
+/**
+ * Counterpart of {@link SecurityConfig} for the reactive API, with the same users, roles and credential cache.
+ * Credentials are checked off the event loop, because BCrypt takes tens of milliseconds of CPU.
+ */
+@Configuration
+@EnableWebFluxSecurity
+@Profile(SQSConstants.REACTIVE_PROFILE)
+public class ReactiveSecurityConfig {
+
+    @Value("${security.user.username}")
+    private String userUsername;
+
+    @Value("${security.user.password}")
+    private String userPassword;
+
+    @Value("${security.admin.username}")
+    private String adminUsername;
+
+    @Value("${security.admin.password}")
+    private String adminPassword;
+
+    @Value("${security.auth.cache.ttl.seconds}")
+    private long authCacheTtlSeconds;
+
+    @Value("${security.auth.cache.max.entries}")
+    private int authCacheMaxEntries;
+
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http, ReactiveAuthenticationManager reactiveAuthenticationManager) {
+        return http
+                .authorizeExchange(exchanges -> exchanges
+                        .pathMatchers(SQSConstants.QUEUE_BASE_URL + SQSConstants.PUSH_URL, SQSConstants.QUEUE_BASE_URL + SQSConstants.POP_URL, SQSConstants.QUEUE_BASE_URL + SQSConstants.ACK_URL, SQSConstants.QUEUE_BASE_URL + SQSConstants.STATS_URL).hasAnyRole(SQSConstants.USER_ROLE, SQSConstants.ADMIN_ROLE)
+                        .pathMatchers(SQSConstants.QUEUE_BASE_URL + SQSConstants.VIEW_URL).hasRole(SQSConstants.ADMIN_ROLE)
+                        .anyExchange().authenticated()
+                )
+                .authenticationManager(reactiveAuthenticationManager)
+                .httpBasic(httpBasic -> httpBasic.authenticationManager(reactiveAuthenticationManager))
+                .csrf(ServerHttpSecurity.CsrfSpec::disable)
+                .build();
+    }
+
+    @Bean
+    public ReactiveAuthenticationManager reactiveAuthenticationManager(PasswordEncoder passwordEncoder) {
+        UserDetails user =
+                User.builder()
+                        .username(userUsername)
+                        .password(passwordEncoder.encode(userPassword))
+                        .roles(SQSConstants.USER_ROLE)
+                        .build();
+
+        UserDetails admin =
+                User.builder()
+                        .username(adminUsername)
+                        .password(passwordEncoder.encode(adminPassword))
+                        .roles(SQSConstants.ADMIN_ROLE, SQSConstants.USER_ROLE)
+                        .build();
+
+        DaoAuthenticationProvider daoAuthenticationProvider = new DaoAuthenticationProvider();
+        daoAuthenticationProvider.setUserDetailsService(new InMemoryUserDetailsManager(user, admin));
+        daoAuthenticationProvider.setPasswordEncoder(passwordEncoder);
+        CachingAuthenticationProvider cachingAuthenticationProvider = new CachingAuthenticationProvider(daoAuthenticationProvider, Duration.ofSeconds(authCacheTtlSeconds), authCacheMaxEntries);
+        // The adapter runs the blocking provider on a bounded elastic scheduler
+        return new ReactiveAuthenticationManagerAdapter(new ProviderManager(cachingAuthenticationProvider));
+    }
+
+    @Bean
+    public PasswordEncoder passwordEncoder() {
+        return new BCryptPasswordEncoder();
+    }
+}
@@ -0,0 +1,21 @@
+package com.al.simplequeueservice.config;
+
+import com.al.simplequeueservice.util.SQSConstants;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Serves the reactive API with Netty. Tomcat is on the classpath for the servlet API and would otherwise be
+ * chosen, running the reactive handlers on top of its request thread pool instead of a few event loop threads.
+ */
+@Configuration
+@Profile(SQSConstants.REACTIVE_PROFILE)
+public class ReactiveWebConfig {
+
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+}
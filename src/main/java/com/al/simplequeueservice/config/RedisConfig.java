@@ -1,15 +1,21 @@
 package com.al.simplequeueservice.config;
 
+import com.al.simplequeueservice.util.SQSConstants;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 import java.time.Duration;
@@ -22,6 +28,20 @@ public class RedisConfig {
     @Value("${cache.ttl.minutes}")
     private long redisCacheTtlMinutes;
 
+    @Value("${cache.message.codec:JSON}")
+    private MessageCodec messageCodec;
+
+    /**
+     * How messages are written to Redis. Both formats are always read, so the codec can be switched
+     * while messages written with the other one are still queued.
+     */
+    public enum MessageCodec {
+        /** Jackson JSON with type metadata. */
+        JSON,
+        /** {@link BinaryMessageCodec}. */
+        BINARY
+    }
+
     @Bean
     public CacheManager cacheManager(RedisConnectionFactory redisConnectionFactory) {
         RedisCacheConfiguration cacheConfiguration = RedisCacheConfiguration.defaultCacheConfig()
@@ -37,11 +57,43 @@ public class RedisConfig {
     public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory) {
         RedisTemplate<String, Object> template = new RedisTemplate<>();
         template.setConnectionFactory(connectionFactory);
+        RedisSerializer<Object> valueSerializer = valueSerializer();
         template.setKeySerializer(new StringRedisSerializer());
-        template.setValueSerializer(new GenericJackson2JsonRedisSerializer());
+        template.setValueSerializer(valueSerializer);
         template.setHashKeySerializer(new StringRedisSerializer());
-        template.setHashValueSerializer(new GenericJackson2JsonRedisSerializer());
+        template.setHashValueSerializer(valueSerializer);
         return template;
     }
 
+    /**
+     * Non-blocking counterpart of {@link #redisTemplate} for the reactive API, writing and reading
+     * values in the same format so both stacks can share the same keys and scripts.
+     */
+    @Bean
+    @Profile(SQSConstants.REACTIVE_PROFILE)
+    public ReactiveRedisTemplate<String, Object> reactiveRedisTemplate(ReactiveRedisConnectionFactory connectionFactory) {
+        RedisSerializer<Object> valueSerializer = valueSerializer();
+        RedisSerializationContext<String, Object> serializationContext = RedisSerializationContext.<String, Object>newSerializationContext(new StringRedisSerializer())
+                .value(valueSerializer)
+                .hashKey(new StringRedisSerializer())
+                .hashValue(valueSerializer)
+                .build();
+        return new ReactiveRedisTemplate<>(connectionFactory, serializationContext);
+    }
+
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+
+    private RedisSerializer<Object> valueSerializer() {
+        RedisSerializer<Object> valueSerializer = new GenericJackson2JsonRedisSerializer();
+        if (messageCodec == MessageCodec.BINARY) {
+            valueSerializer = new MessageRedisSerializer(valueSerializer);
+        }
+        return valueSerializer;
+    }
+
 }
@@ -4,6 +4,9 @@ import com.al.simplequeueservice.util.SQSConstants;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
@@ -16,10 +19,13 @@ import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.access.expression.WebExpressionAuthorizationManager;
 
+import java.time.Duration;
+
 import static org.springframework.security.config.Customizer.withDefaults;
 
 @Configuration
 @EnableWebSecurity
+@Profile("!" + SQSConstants.REACTIVE_PROFILE)
 public class SecurityConfig {
 
     @Value("${security.user.username}")
@@ -34,12 +40,18 @@ public class SecurityConfig {
     @Value("${security.admin.password}")
     private String adminPassword;
 
+    @Value("${security.auth.cache.ttl.seconds}")
+    private long authCacheTtlSeconds;
+
+    @Value("${security.auth.cache.max.entries}")
+    private int authCacheMaxEntries;
+
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http
                 .authorizeHttpRequests((requests) -> requests
-                        .requestMatchers(SQSConstants.QUEUE_BASE_URL + SQSConstants.PUSH_URL, SQSConstants.QUEUE_BASE_URL + SQSConstants.POP_URL).hasAnyRole(SQSConstants.USER_ROLE, SQSConstants.ADMIN_ROLE)
-                        .requestMatchers(SQSConstants.QUEUE_BASE_URL + SQSConstants.VIEW_URL).access(new WebExpressionAuthorizationManager(SQSConstants.HAS_ADMIN_ROLE))
+                        .requestMatchers(SQSConstants.QUEUE_BASE_URL + SQSConstants.PUSH_URL, SQSConstants.QUEUE_BASE_URL + SQSConstants.PUSH_BATCH_URL, SQSConstants.QUEUE_BASE_URL + SQSConstants.POP_URL, SQSConstants.QUEUE_BASE_URL + SQSConstants.POP_BATCH_URL, SQSConstants.QUEUE_BASE_URL + SQSConstants.ACK_URL, SQSConstants.QUEUE_BASE_URL + SQSConstants.PUSH_RAW_URL, SQSConstants.QUEUE_BASE_URL + SQSConstants.POP_RAW_URL, SQSConstants.QUEUE_BASE_URL + SQSConstants.STATS_URL).hasAnyRole(SQSConstants.USER_ROLE, SQSConstants.ADMIN_ROLE)
+                        .requestMatchers(SQSConstants.QUEUE_BASE_URL + SQSConstants.VIEW_URL, SQSConstants.QUEUE_BASE_URL + SQSConstants.INDEXES_URL).access(new WebExpressionAuthorizationManager(SQSConstants.HAS_ADMIN_ROLE))
                         .anyRequest().authenticated()
                 )
                 .httpBasic(withDefaults())
@@ -66,6 +78,18 @@ public class SecurityConfig {
         return new InMemoryUserDetailsManager(user, admin);
     }
 
+    /**
+     * Checks credentials with BCrypt once and then serves repeated requests with the same credentials from
+     * a short-lived cache, since HTTP Basic sends them with every request.
+     */
+    @Bean
+    public AuthenticationProvider authenticationProvider(UserDetailsService userDetailsService, PasswordEncoder passwordEncoder) {
+        DaoAuthenticationProvider daoAuthenticationProvider = new DaoAuthenticationProvider();
+        daoAuthenticationProvider.setUserDetailsService(userDetailsService);
+        daoAuthenticationProvider.setPasswordEncoder(passwordEncoder);
+        return new CachingAuthenticationProvider(daoAuthenticationProvider, Duration.ofSeconds(authCacheTtlSeconds), authCacheMaxEntries);
+    }
+
     @Bean
     public PasswordEncoder passwordEncoder() {
         return new BCryptPasswordEncoder();
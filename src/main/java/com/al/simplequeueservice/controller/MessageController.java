@@ -2,22 +2,41 @@ package com.al.simplequeueservice.controller;
 
 import com.al.simplequeueservice.exception.ErrorResponse;
 import com.al.simplequeueservice.model.Message;
+import com.al.simplequeueservice.model.MessagePage;
+import com.al.simplequeueservice.model.MessageReceipt;
 import com.al.simplequeueservice.model.MessageResponse;
+import com.al.simplequeueservice.model.QueueStats;
+import com.al.simplequeueservice.service.LongPollService;
+import com.al.simplequeueservice.service.MongoIndexService;
 import com.al.simplequeueservice.service.PopMessageService;
 import com.al.simplequeueservice.service.PushMessageService;
+import com.al.simplequeueservice.service.QueueStatsService;
 import com.al.simplequeueservice.service.ViewMessageService;
+import com.al.simplequeueservice.util.PushHeaderValidator;
+import com.al.simplequeueservice.util.RawPayloadReader;
 import com.al.simplequeueservice.util.SQSConstants;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * REST controller for handling message-related operations in the Simple Queue Service.
@@ -25,6 +44,7 @@ import java.util.UUID;
  */
 @RestController
 @RequestMapping(SQSConstants.QUEUE_BASE_URL)
+@Profile("!" + SQSConstants.REACTIVE_PROFILE)
 public class MessageController {
 
     private static final Logger logger = LoggerFactory.getLogger(MessageController.class);
@@ -38,28 +58,124 @@ public class MessageController {
     @Autowired
     private ViewMessageService viewMessageService;
 
+    @Autowired
+    private LongPollService longPollService;
+
+    @Autowired
+    private MongoIndexService mongoIndexService;
+
+    @Autowired
+    private QueueStatsService queueStatsService;
+
+    @Autowired
+    private RawPayloadReader rawPayloadReader;
+
+    @Autowired
+    private PushHeaderValidator pushHeaderValidator;
+
     @Value("${no.of.message.allowed.to.fetch}")
     private long messageAllowedCount;
 
+    @Value("${no.of.message.allowed.to.push}")
+    private long batchAllowedCount;
+
+    @Value("${no.of.message.allowed.to.pop}")
+    private long popAllowedCount;
+
+    @Value("${pop.max.wait.seconds}")
+    private int maxWaitSeconds;
+
     /**
      * Pushes a new message to the queue for a specific consumer group.
      *
      * @param consumerGroup The header indicating the consumer group for the message.
+     * @param priority Optional header with the priority of the message, 0 (default) to 9. Higher priorities are popped first.
+     * @param delaySeconds Optional header with the number of seconds before the message can be popped, 0 (default) to {@code push.max.delay.seconds}.
      * @param content The content of the message to be pushed.
-     * @return A {@link MessageResponse} containing details of the pushed message.
+     * @return A {@link ResponseEntity} containing a {@link MessageResponse} with details of the pushed message,
+     *         or a bad request response if the priority or the delay is out of range.
      */
     @PostMapping(SQSConstants.PUSH_URL)
-    public MessageResponse push(@RequestHeader(SQSConstants.CONSUMER_GROUP_HEADER) String consumerGroup, @RequestBody String content) {
-        logger.debug("Received push request for consumer group: {} with content: {}", consumerGroup, content);
+    public ResponseEntity<?> push(@RequestHeader(SQSConstants.CONSUMER_GROUP_HEADER) String consumerGroup,
+                                @RequestHeader(value = SQSConstants.PRIORITY_HEADER, defaultValue = "0") int priority,
+                                @RequestHeader(value = SQSConstants.DELAY_SECONDS_HEADER, defaultValue = "0") int delaySeconds, @RequestBody String content) {
+        logger.debug("Received push request for consumer group: {} with priority: {}, delay seconds: {} and content: {}", consumerGroup, priority, delaySeconds, content);
+        Optional<ErrorResponse> invalidHeader = pushHeaderValidator.validate(priority, delaySeconds, SQSConstants.PUSH_URL);
+        if (invalidHeader.isPresent()) {
+            return ResponseEntity.badRequest().body(invalidHeader.get());
+        }
         String messageId = UUID.randomUUID().toString();
-        Message message = new Message(messageId, consumerGroup, content);
+        Message message = new Message(messageId, consumerGroup, content, priority).delayedBy(Duration.ofSeconds(delaySeconds));
         Message pushedMessage = pushMessageService.push(message);
         logger.info("Message with ID {} pushed to consumer group {}", pushedMessage.getId(), consumerGroup);
-        return new MessageResponse(pushedMessage);
+        return ResponseEntity.ok(new MessageResponse(pushedMessage));
+    }
+
+    /**
+     * Pushes a new message whose content is the raw request body, read once from the request stream.
+     * The response carries only the message ID and creation time, not the content.
+     *
+     * @param consumerGroup The header indicating the consumer group for the message.
+     * @param priority Optional header with the priority of the message, 0 (default) to 9.
+     * @param delaySeconds Optional header with the number of seconds before the message can be popped, 0 (default) to {@code push.max.delay.seconds}.
+     * @param request The request whose body is the message content, as UTF-8 text.
+     * @return A {@link ResponseEntity} containing a {@link MessageReceipt} for the pushed message,
+     *         or a bad request response if the priority or the delay is out of range.
+     * @throws IOException if the request body cannot be read.
+     */
+    @PostMapping(SQSConstants.PUSH_RAW_URL)
+    public ResponseEntity<?> pushRaw(@RequestHeader(SQSConstants.CONSUMER_GROUP_HEADER) String consumerGroup,
+                                  @RequestHeader(value = SQSConstants.PRIORITY_HEADER, defaultValue = "0") int priority,
+                                  @RequestHeader(value = SQSConstants.DELAY_SECONDS_HEADER, defaultValue = "0") int delaySeconds, HttpServletRequest request) throws IOException {
+        logger.debug("Received raw push request for consumer group: {} with priority: {}, delay seconds: {} and {} bytes", consumerGroup, priority, delaySeconds, request.getContentLengthLong());
+        Optional<ErrorResponse> invalidHeader = pushHeaderValidator.validate(priority, delaySeconds, SQSConstants.PUSH_RAW_URL);
+        if (invalidHeader.isPresent()) {
+            return ResponseEntity.badRequest().body(invalidHeader.get());
+        }
+        String content = rawPayloadReader.readUtf8(request.getInputStream());
+        Message pushedMessage = pushMessageService.push(new Message(UUID.randomUUID().toString(), consumerGroup, content, priority).delayedBy(Duration.ofSeconds(delaySeconds)));
+        logger.info("Message with ID {} pushed to consumer group {}", pushedMessage.getId(), consumerGroup);
+        return ResponseEntity.ok(new MessageReceipt(pushedMessage));
+    }
+
+    /**
+     * Pushes a batch of messages to the queue for a specific consumer group in a single request.
+     * Messages are consumed in the order they appear in the request body.
+     *
+     * @param consumerGroup The header indicating the consumer group for the messages.
+     * @param priority Optional header with the priority of all messages in the batch, 0 (default) to 9.
+     * @param delaySeconds Optional header with the number of seconds before the messages can be popped, 0 (default) to {@code push.max.delay.seconds}.
+     * @param contents The contents of the messages to be pushed.
+     * @return A {@link ResponseEntity} containing a list of {@link MessageResponse} objects for the pushed messages,
+     *         or a bad request response if the batch size, the priority or the delay is out of range.
+     */
+    @PostMapping(SQSConstants.PUSH_BATCH_URL)
+    public ResponseEntity<?> pushBatch(@RequestHeader(SQSConstants.CONSUMER_GROUP_HEADER) String consumerGroup,
+                                       @RequestHeader(value = SQSConstants.PRIORITY_HEADER, defaultValue = "0") int priority,
+                                       @RequestHeader(value = SQSConstants.DELAY_SECONDS_HEADER, defaultValue = "0") int delaySeconds, @RequestBody List<String> contents) {
+        logger.debug("Received batch push request for consumer group: {} with {} messages of priority: {} and delay seconds: {}", consumerGroup, contents.size(), priority, delaySeconds);
+
+        if (contents.isEmpty() || contents.size() > batchAllowedCount) {
+            logger.warn("Invalid batch size requested: {}. Allowed range: 1 to {}", contents.size(), batchAllowedCount);
+            return ResponseEntity.badRequest().body(new ErrorResponse(400, "Bad Request", String.format(SQSConstants.BATCH_SIZE_VALIDATION_ERROR_MESSAGE, batchAllowedCount), SQSConstants.QUEUE_BASE_URL + SQSConstants.PUSH_BATCH_URL));
+        }
+
+        Optional<ErrorResponse> invalidHeader = pushHeaderValidator.validate(priority, delaySeconds, SQSConstants.PUSH_BATCH_URL);
+        if (invalidHeader.isPresent()) {
+            return ResponseEntity.badRequest().body(invalidHeader.get());
+        }
+
+        Duration delay = Duration.ofSeconds(delaySeconds);
+        List<Message> messages = contents.stream()
+                .map(content -> new Message(UUID.randomUUID().toString(), consumerGroup, content, priority).delayedBy(delay))
+                .toList();
+        List<Message> pushedMessages = pushMessageService.pushBatch(consumerGroup, messages);
+        logger.info("Batch of {} messages pushed to consumer group {}", pushedMessages.size(), consumerGroup);
+        return ResponseEntity.ok(pushedMessages.stream().map(MessageResponse::new).toList());
     }
 
     /**
-     * Pops the oldest available message from the queue for a specific consumer group.
+     * Pops the oldest available message of the highest priority from the queue for a specific consumer group.
      *
      * @param consumerGroup The header indicating the consumer group from which to pop the message.
      * @return A {@link ResponseEntity} containing a {@link MessageResponse} if a message is found,
@@ -78,17 +194,129 @@ public class MessageController {
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    /**
+     * Pops the next available message for a specific consumer group and writes its content as the raw
+     * response body, encoded straight into the response stream. The message ID and creation time are sent
+     * in the {@code messageId} and {@code createdAt} headers. Responds with 404 if the queue is empty.
+     *
+     * @param consumerGroup The header indicating the consumer group from which to pop the message.
+     * @param response The response the content is written to.
+     * @throws IOException if the response cannot be written.
+     */
+    @GetMapping(SQSConstants.POP_RAW_URL)
+    public void popRaw(@RequestHeader(SQSConstants.CONSUMER_GROUP_HEADER) String consumerGroup, HttpServletResponse response) throws IOException {
+        logger.debug("Received raw pop request for consumer group: {}", consumerGroup);
+        Optional<Message> message = popMessageService.pop(consumerGroup);
+        if (message.isEmpty()) {
+            logger.info("No message found to pop for consumer group {}", consumerGroup);
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        logger.info("Message with ID {} popped from consumer group {}", message.get().getId(), consumerGroup);
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(SQSConstants.MESSAGE_ID_HEADER, message.get().getId());
+        response.setHeader(SQSConstants.CREATED_AT_HEADER, message.get().getCreatedAt().toInstant().toString());
+        Writer writer = new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8);
+        writer.write(message.get().getContent());
+        writer.flush();
+    }
+
+    /**
+     * Pops the next available message from the queue for a specific consumer group, holding the request open
+     * until a message arrives or the wait time expires. The request is handled asynchronously, so a parked
+     * consumer does not occupy a servlet thread.
+     *
+     * @param consumerGroup The header indicating the consumer group from which to pop the message.
+     * @param waitSeconds The maximum number of seconds to wait for a message when the queue is empty.
+     * @return A {@link CompletableFuture} of a {@link ResponseEntity} containing a {@link MessageResponse} if a message is found,
+     *         a bad request response if the wait time is out of range, or a not found response if none arrived in time.
+     */
+    @GetMapping(value = SQSConstants.POP_URL, headers = SQSConstants.WAIT_SECONDS_HEADER)
+    public CompletableFuture<ResponseEntity<?>> popWithWait(@RequestHeader(SQSConstants.CONSUMER_GROUP_HEADER) String consumerGroup, @RequestHeader(SQSConstants.WAIT_SECONDS_HEADER) int waitSeconds) {
+        logger.debug("Received long-poll pop request for consumer group: {}, wait seconds: {}", consumerGroup, waitSeconds);
+
+        if (waitSeconds < 0 || waitSeconds > maxWaitSeconds) {
+            logger.warn("Invalid wait seconds requested: {}. Allowed range: 0 to {}", waitSeconds, maxWaitSeconds);
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(new ErrorResponse(400, "Bad Request", String.format(SQSConstants.WAIT_SECONDS_VALIDATION_ERROR_MESSAGE, maxWaitSeconds), SQSConstants.QUEUE_BASE_URL + SQSConstants.POP_URL)));
+        }
+
+        return longPollService.popOrWait(consumerGroup, waitSeconds).thenApply(message -> {
+            if (message.isPresent()) {
+                logger.info("Message with ID {} popped from consumer group {}", message.get().getId(), consumerGroup);
+                return ResponseEntity.ok(new MessageResponse(message.get()));
+            }
+            logger.info("No message arrived within {} seconds for consumer group {}", waitSeconds, consumerGroup);
+            return ResponseEntity.notFound().build();
+        });
+    }
+
+    /**
+     * Pops up to the requested number of available messages from the queue for a specific consumer group,
+     * highest priority first and oldest first within a priority.
+     *
+     * @param consumerGroup The header indicating the consumer group from which to pop the messages.
+     * @param messageCount The maximum number of messages to pop.
+     * @return A {@link ResponseEntity} containing a list of {@link MessageResponse} objects if any message is found,
+     *         a bad request response if the message count is out of range, or a not found response if the queue is empty.
+     */
+    @GetMapping(SQSConstants.POP_BATCH_URL)
+    public ResponseEntity<?> popBatch(@RequestHeader(SQSConstants.CONSUMER_GROUP_HEADER) String consumerGroup, @RequestHeader(SQSConstants.MESSAGE_COUNT_HEADER) int messageCount) {
+        logger.debug("Received batch pop request for consumer group: {}, message count: {}", consumerGroup, messageCount);
+
+        if (messageCount < 1 || messageCount > popAllowedCount) {
+            logger.warn("Invalid message count requested: {}. Allowed range: 1 to {}", messageCount, popAllowedCount);
+            return ResponseEntity.badRequest().body(new ErrorResponse(400, "Bad Request", String.format(SQSConstants.MESSAGE_COUNT_VALIDATION_ERROR_MESSAGE, popAllowedCount), SQSConstants.QUEUE_BASE_URL + SQSConstants.POP_BATCH_URL));
+        }
+
+        List<Message> messages = popMessageService.popBatch(consumerGroup, messageCount);
+        if (messages.isEmpty()) {
+            logger.info("No message found to pop for consumer group {}", consumerGroup);
+            return ResponseEntity.notFound().build();
+        }
+        logger.info("{} messages popped from consumer group {}", messages.size(), consumerGroup);
+        return ResponseEntity.ok(messages.stream().map(MessageResponse::new).toList());
+    }
+
+    /**
+     * Acknowledges popped messages of a specific consumer group, so they are not delivered again when their
+     * visibility timeout expires.
+     *
+     * @param consumerGroup The header indicating the consumer group the messages were popped from.
+     * @param messageIds The IDs of the messages to acknowledge.
+     * @return A {@link ResponseEntity} containing the IDs that were acknowledged, or a bad request response if the
+     *         number of IDs is out of range. IDs that are no longer in flight are left out of the response.
+     */
+    @PostMapping(SQSConstants.ACK_URL)
+    public ResponseEntity<?> acknowledge(@RequestHeader(SQSConstants.CONSUMER_GROUP_HEADER) String consumerGroup, @RequestBody List<String> messageIds) {
+        logger.debug("Received acknowledge request for consumer group: {} with {} message IDs", consumerGroup, messageIds.size());
+
+        if (messageIds.isEmpty() || messageIds.size() > popAllowedCount) {
+            logger.warn("Invalid number of message IDs to acknowledge: {}. Allowed range: 1 to {}", messageIds.size(), popAllowedCount);
+            return ResponseEntity.badRequest().body(new ErrorResponse(400, "Bad Request", String.format(SQSConstants.ACK_SIZE_VALIDATION_ERROR_MESSAGE, popAllowedCount), SQSConstants.QUEUE_BASE_URL + SQSConstants.ACK_URL));
+        }
+
+        List<String> acknowledgedIds = popMessageService.acknowledge(consumerGroup, messageIds);
+        logger.info("{} of {} messages acknowledged for consumer group {}", acknowledgedIds.size(), messageIds.size(), consumerGroup);
+        return ResponseEntity.ok(acknowledgedIds);
+    }
+
     /**
      * Views messages in the queue for a specific consumer group, with optional filtering by consumption status.
+     * Messages are returned oldest first, one page at a time; when more messages follow, the response carries
+     * a {@code nextPageToken} header to send back as {@code pageToken} for the next page.
      *
      * @param consumerGroup The header indicating the consumer group to view messages from.
      * @param messageCount The maximum number of messages to retrieve.
      * @param consumed Optional header to filter messages by consumption status ("yes" for consumed, "no" for unconsumed).
+     * @param pageToken Optional header with the continuation token of the previous page.
      * @return A {@link ResponseEntity} containing a list of {@link Message} objects.
      */
     @GetMapping(SQSConstants.VIEW_URL)
     public ResponseEntity<?> view(@RequestHeader(SQSConstants.CONSUMER_GROUP_HEADER) String consumerGroup, @RequestHeader(value = SQSConstants.MESSAGE_COUNT_HEADER) int messageCount,
-                                  @RequestHeader(value = SQSConstants.CONSUMED, required = false) String consumed) {
+                                  @RequestHeader(value = SQSConstants.CONSUMED, required = false) String consumed,
+                                  @RequestHeader(value = SQSConstants.PAGE_TOKEN_HEADER, required = false) String pageToken) {
         logger.debug("Received view request for consumer group: {}, message count: {}, consumed status: {}", consumerGroup, messageCount, StringUtils.isEmpty(consumed) ? "N/A" : consumed);
 
         if (messageCount < 1 || messageCount > messageAllowedCount) {
@@ -96,8 +324,42 @@ public class MessageController {
             return ResponseEntity.badRequest().body(new ErrorResponse(400, "Bad Request", String.format(SQSConstants.MESSAGE_COUNT_VALIDATION_ERROR_MESSAGE, messageAllowedCount), SQSConstants.QUEUE_BASE_URL + SQSConstants.VIEW_URL));
         }
 
-        List<Message> messages = viewMessageService.view(consumerGroup, messageCount, consumed);
-        logger.info("Returning {} messages for consumer group: {}, filtered by consumed status: {}", messages.size(), consumerGroup, StringUtils.isEmpty(consumed) ? "N/A" : consumed);
-        return ResponseEntity.ok(messages);
+        MessagePage page = viewMessageService.view(consumerGroup, messageCount, consumed, pageToken);
+        logger.info("Returning {} messages for consumer group: {}, filtered by consumed status: {}", page.messages().size(), consumerGroup, StringUtils.isEmpty(consumed) ? "N/A" : consumed);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextPageToken() != null) {
+            response.header(SQSConstants.NEXT_PAGE_TOKEN_HEADER, page.nextPageToken());
+        }
+        return response.body(page.messages());
+    }
+
+    /**
+     * Reports the depth and throughput of a consumer group: messages pending, cached and in flight, the age of
+     * the oldest message, push, pop and acknowledgement rates and the cache hit ratio. Served from counters,
+     * so the cost does not depend on the size of the queue. The pending count is approximate: messages removed by
+     * the MongoDB TTL before their acknowledgement stay counted until the counters are next reconciled with MongoDB,
+     * every {@code stats.reconcile.interval.ms}.
+     *
+     * @param consumerGroup The header indicating the consumer group to report on.
+     * @return A {@link ResponseEntity} containing the {@link QueueStats} of the consumer group.
+     */
+    @GetMapping(SQSConstants.STATS_URL)
+    public ResponseEntity<QueueStats> stats(@RequestHeader(SQSConstants.CONSUMER_GROUP_HEADER) String consumerGroup) {
+        logger.debug("Received stats request for consumer group: {}", consumerGroup);
+        return ResponseEntity.ok(queueStatsService.stats(consumerGroup));
+    }
+
+    /**
+     * Verifies and, where missing, creates the indexes of every known consumer group collection.
+     * Also resets the index registry, so changes made directly in MongoDB are picked up.
+     *
+     * @return A {@link ResponseEntity} containing the consumer groups whose indexes were verified.
+     */
+    @PostMapping(SQSConstants.INDEXES_URL)
+    public ResponseEntity<List<String>> refreshIndexes() {
+        logger.debug("Received request to refresh indexes for known consumer groups");
+        List<String> consumerGroups = mongoIndexService.refreshIndexes();
+        logger.info("Indexes refreshed for {} consumer groups", consumerGroups.size());
+        return ResponseEntity.ok(consumerGroups);
     }
 }
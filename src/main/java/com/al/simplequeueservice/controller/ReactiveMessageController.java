@@ -0,0 +1,154 @@
+package com.al.simplequeueservice.controller;
+
+import com.al.simplequeueservice.exception.ErrorResponse;
+import com.al.simplequeueservice.model.Message;
+import com.al.simplequeueservice.model.MessageResponse;
+import com.al.simplequeueservice.model.QueueStats;
+import com.al.simplequeueservice.service.QueueStatsService;
+import com.al.simplequeueservice.service.ReactivePopMessageService;
+import com.al.simplequeueservice.service.ReactivePushMessageService;
+import com.al.simplequeueservice.service.ReactiveViewMessageService;
+import com.al.simplequeueservice.util.PushHeaderValidator;
+import com.al.simplequeueservice.util.SQSConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Non-blocking REST controller serving the push, pop, acknowledge and view endpoints of {@link MessageController}
+ * on an event loop, active with the {@code reactive} profile. Requests waiting on Redis or MongoDB hold no thread.
+ */
+@RestController
+@RequestMapping(SQSConstants.QUEUE_BASE_URL)
+@Profile(SQSConstants.REACTIVE_PROFILE)
+public class ReactiveMessageController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveMessageController.class);
+
+    @Autowired
+    private ReactivePushMessageService reactivePushMessageService;
+
+    @Autowired
+    private ReactivePopMessageService reactivePopMessageService;
+
+    @Autowired
+    private ReactiveViewMessageService reactiveViewMessageService;
+
+    @Autowired
+    private QueueStatsService queueStatsService;
+
+    @Autowired
+    private PushHeaderValidator pushHeaderValidator;
+
+    @Value("${no.of.message.allowed.to.fetch}")
+    private long messageAllowedCount;
+
+    @Value("${no.of.message.allowed.to.pop}")
+    private long popAllowedCount;
+
+    /**
+     * Pushes a new message to the queue for a specific consumer group.
+     *
+     * @param consumerGroup The header indicating the consumer group for the message.
+     * @param priority Optional header with the priority of the message, 0 (default) to 9. Higher priorities are popped first.
+     * @param delaySeconds Optional header with the number of seconds before the message can be popped, 0 (default) to {@code push.max.delay.seconds}.
+     * @param content The content of the message to be pushed.
+     * @return A {@link Mono} emitting a {@link MessageResponse} with details of the pushed message,
+     *         or a bad request response if the priority or the delay is out of range.
+     */
+    @PostMapping(SQSConstants.PUSH_URL)
+    public Mono<ResponseEntity<?>> push(@RequestHeader(SQSConstants.CONSUMER_GROUP_HEADER) String consumerGroup,
+                                      @RequestHeader(value = SQSConstants.PRIORITY_HEADER, defaultValue = "0") int priority,
+                                      @RequestHeader(value = SQSConstants.DELAY_SECONDS_HEADER, defaultValue = "0") int delaySeconds, @RequestBody String content) {
+        Optional<ErrorResponse> invalidHeader = pushHeaderValidator.validate(priority, delaySeconds, SQSConstants.PUSH_URL);
+        if (invalidHeader.isPresent()) {
+            return Mono.just(ResponseEntity.badRequest().body(invalidHeader.get()));
+        }
+        Message message = new Message(UUID.randomUUID().toString(), consumerGroup, content, priority).delayedBy(Duration.ofSeconds(delaySeconds));
+        return reactivePushMessageService.push(message)
+                .doOnNext(pushedMessage -> logger.info("Message with ID {} pushed to consumer group {}", pushedMessage.getId(), consumerGroup))
+                .map(pushedMessage -> ResponseEntity.ok(new MessageResponse(pushedMessage)));
+    }
+
+    /**
+     * Pops the oldest available message of the highest priority from the queue for a specific consumer group.
+     *
+     * @param consumerGroup The header indicating the consumer group from which to pop the message.
+     * @return A {@link Mono} emitting a {@link MessageResponse} if a message is found, or a not found response if the queue is empty.
+     */
+    @GetMapping(SQSConstants.POP_URL)
+    public Mono<ResponseEntity<MessageResponse>> pop(@RequestHeader(SQSConstants.CONSUMER_GROUP_HEADER) String consumerGroup) {
+        return reactivePopMessageService.pop(consumerGroup)
+                .doOnNext(message -> logger.info("Message with ID {} popped from consumer group {}", message.getId(), consumerGroup))
+                .map(message -> ResponseEntity.ok(new MessageResponse(message)))
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Acknowledges popped messages of a specific consumer group.
+     *
+     * @param consumerGroup The header indicating the consumer group the messages were popped from.
+     * @param messageIds The IDs of the messages to acknowledge.
+     * @return A {@link Mono} emitting the IDs that were acknowledged, or a bad request response if the number of IDs is out of range.
+     */
+    @PostMapping(SQSConstants.ACK_URL)
+    public Mono<ResponseEntity<?>> acknowledge(@RequestHeader(SQSConstants.CONSUMER_GROUP_HEADER) String consumerGroup, @RequestBody List<String> messageIds) {
+        if (messageIds.isEmpty() || messageIds.size() > popAllowedCount) {
+            logger.warn("Invalid number of message IDs to acknowledge: {}. Allowed range: 1 to {}", messageIds.size(), popAllowedCount);
+            return Mono.just(ResponseEntity.badRequest().body(new ErrorResponse(400, "Bad Request", String.format(SQSConstants.ACK_SIZE_VALIDATION_ERROR_MESSAGE, popAllowedCount), SQSConstants.QUEUE_BASE_URL + SQSConstants.ACK_URL)));
+        }
+        return reactivePopMessageService.acknowledge(consumerGroup, messageIds).map(ResponseEntity::ok);
+    }
+
+    /**
+     * Reports the depth and throughput of a consumer group, as {@link MessageController#stats} does.
+     * The statistics are read off the event loop, as the reads block.
+     *
+     * @param consumerGroup The header indicating the consumer group to report on.
+     * @return A {@link Mono} emitting the {@link QueueStats} of the consumer group.
+     */
+    @GetMapping(SQSConstants.STATS_URL)
+    public Mono<ResponseEntity<QueueStats>> stats(@RequestHeader(SQSConstants.CONSUMER_GROUP_HEADER) String consumerGroup) {
+        return Mono.fromCallable(() -> queueStatsService.stats(consumerGroup))
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(ResponseEntity::ok);
+    }
+
+    /**
+     * Views messages in the queue for a specific consumer group, with optional filtering by consumption status.
+     * Pages work as in {@link MessageController#view}: a {@code nextPageToken} response header leads to the next page.
+     *
+     * @param consumerGroup The header indicating the consumer group to view messages from.
+     * @param messageCount The maximum number of messages to retrieve.
+     * @param consumed Optional header to filter messages by consumption status ("yes" for consumed, "no" for unconsumed).
+     * @param pageToken Optional header with the continuation token of the previous page.
+     * @return A {@link Mono} emitting a list of {@link Message} objects, or a bad request response if the count is out of range.
+     */
+    @GetMapping(SQSConstants.VIEW_URL)
+    public Mono<ResponseEntity<?>> view(@RequestHeader(SQSConstants.CONSUMER_GROUP_HEADER) String consumerGroup, @RequestHeader(value = SQSConstants.MESSAGE_COUNT_HEADER) int messageCount,
+                                        @RequestHeader(value = SQSConstants.CONSUMED, required = false) String consumed,
+                                        @RequestHeader(value = SQSConstants.PAGE_TOKEN_HEADER, required = false) String pageToken) {
+        if (messageCount < 1 || messageCount > messageAllowedCount) {
+            logger.warn("Invalid message count requested: {}. Allowed range: 1 to {}", messageCount, messageAllowedCount);
+            return Mono.just(ResponseEntity.badRequest().body(new ErrorResponse(400, "Bad Request", String.format(SQSConstants.MESSAGE_COUNT_VALIDATION_ERROR_MESSAGE, messageAllowedCount), SQSConstants.QUEUE_BASE_URL + SQSConstants.VIEW_URL)));
+        }
+        return reactiveViewMessageService.view(consumerGroup, messageCount, consumed, pageToken).map(page -> {
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (page.nextPageToken() != null) {
+                response.header(SQSConstants.NEXT_PAGE_TOKEN_HEADER, page.nextPageToken());
+            }
+            return response.body(page.messages());
+        });
+    }
+}
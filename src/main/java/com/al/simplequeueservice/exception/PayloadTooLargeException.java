@@ -0,0 +1,11 @@
+package com.al.simplequeueservice.exception;
+
+/**
+ * Thrown when a streamed request body is larger than the configured maximum.
+ */
+public class PayloadTooLargeException extends RuntimeException {
+
+    public PayloadTooLargeException(String message) {
+        super(message);
+    }
+}
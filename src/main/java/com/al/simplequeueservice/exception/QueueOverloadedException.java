@@ -0,0 +1,11 @@
+package com.al.simplequeueservice.exception;
+
+/**
+ * Thrown when the persistence pipeline is full and the overflow policy is to shed new messages.
+ */
+public class QueueOverloadedException extends RuntimeException {
+
+    public QueueOverloadedException(String message) {
+        super(message);
+    }
+}
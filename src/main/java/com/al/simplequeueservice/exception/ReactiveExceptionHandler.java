@@ -0,0 +1,42 @@
+package com.al.simplequeueservice.exception;
+
+import com.al.simplequeueservice.util.SQSConstants;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+/**
+ * Counterpart of {@link GlobalExceptionHandler} for the reactive API, which has no servlet request.
+ */
+@ControllerAdvice
+@Profile(SQSConstants.REACTIVE_PROFILE)
+public class ReactiveExceptionHandler {
+
+    @ExceptionHandler(Exception.class)
+    public ResponseEntity<ErrorResponse> handleException(Exception ex, ServerHttpRequest request) {
+        return errorResponse(HttpStatus.INTERNAL_SERVER_ERROR, ex, request);
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<ErrorResponse> handleIllegalArgumentException(IllegalArgumentException ex, ServerHttpRequest request) {
+        return errorResponse(HttpStatus.BAD_REQUEST, ex, request);
+    }
+
+    @ExceptionHandler(QueueOverloadedException.class)
+    public ResponseEntity<ErrorResponse> handleQueueOverloadedException(QueueOverloadedException ex, ServerHttpRequest request) {
+        return errorResponse(HttpStatus.TOO_MANY_REQUESTS, ex, request);
+    }
+
+    private ResponseEntity<ErrorResponse> errorResponse(HttpStatus status, Exception ex, ServerHttpRequest request) {
+        ErrorResponse errorResponse = new ErrorResponse(
+                status.value(),
+                status.getReasonPhrase(),
+                ex.getMessage(),
+                request.getPath().value()
+        );
+        return new ResponseEntity<>(errorResponse, status);
+    }
+}
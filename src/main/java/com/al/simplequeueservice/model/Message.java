@@ -1,12 +1,16 @@
 package com.al.simplequeueservice.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
+import com.al.simplequeueservice.util.SQSConstants;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 import jakarta.validation.constraints.NotBlank;
 import java.io.Serializable;
+import java.time.Duration;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.Objects;
 
@@ -16,6 +20,12 @@ import java.util.Objects;
 @Document(collection = "messages-queue")
 public class Message implements Serializable {
 
+    /**
+     * The order messages are popped in: highest priority first, oldest first within a priority.
+     */
+    public static final Comparator<Message> POP_ORDER = Comparator.comparingInt(Message::getPriority).reversed()
+            .thenComparing(Message::getCreatedAt);
+
     @Id
     private String id;
     @NotBlank(message = "Message Content is mandatory")
@@ -24,15 +34,50 @@ public class Message implements Serializable {
     private String consumerGroup;
     private Date createdAt;
     private boolean consumed; // This flag is updated, so it cannot be final in this context
+    private int priority; // 0 to SQSConstants.MAX_PRIORITY, higher is popped first
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Date visibleAt; // Set on delayed messages, which cannot be popped before it
+
+    public Message(String id, String content, String consumerGroup, Date createdAt, boolean consumed) {
+        this(id, content, consumerGroup, createdAt, consumed, 0);
+    }
+
+    public Message(String id, String content, String consumerGroup, Date createdAt, boolean consumed, int priority) {
+        this(id, content, consumerGroup, createdAt, consumed, priority, null);
+    }
 
     // Constructor for new messages
     public Message(String messageId, String consumerGroup, String content) {
-        this(messageId, content, consumerGroup, new Date(), false);
+        this(messageId, consumerGroup, content, 0);
+    }
+
+    /**
+     * Constructor for new messages with a priority.
+     *
+     * @throws IllegalArgumentException if the priority is not between 0 and {@link SQSConstants#MAX_PRIORITY}.
+     */
+    public Message(String messageId, String consumerGroup, String content, int priority) {
+        this(messageId, content, consumerGroup, new Date(), false, priority);
+        if (priority < 0 || priority > SQSConstants.MAX_PRIORITY) {
+            throw new IllegalArgumentException(String.format(SQSConstants.PRIORITY_VALIDATION_ERROR_MESSAGE, SQSConstants.MAX_PRIORITY));
+        }
+    }
+
+    /**
+     * Returns a copy of a new message that cannot be popped until {@code delay} after its creation,
+     * or the message itself if there is no delay.
+     */
+    public Message delayedBy(Duration delay) {
+        if (delay.isZero()) {
+            return this;
+        }
+        return new Message(this.id, this.content, this.consumerGroup, this.createdAt, this.consumed, this.priority,
+                new Date(this.createdAt.getTime() + delay.toMillis()));
     }
 
     // Method to create a new Message instance with updated consumed status
     public Message markConsumed() {
-        return new Message(this.id, this.content, this.consumerGroup, this.createdAt, true);
+        return new Message(this.id, this.content, this.consumerGroup, this.createdAt, true, this.priority, this.visibleAt);
     }
 
     @Override
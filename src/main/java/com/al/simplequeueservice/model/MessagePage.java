@@ -0,0 +1,10 @@
+package com.al.simplequeueservice.model;
+
+import java.util.List;
+
+/**
+ * One page of a consumer group view: the messages in (createdAt, id) order, and the token to request the
+ * next page with, or {@code null} when there are no more messages.
+ */
+public record MessagePage(List<Message> messages, String nextPageToken) {
+}
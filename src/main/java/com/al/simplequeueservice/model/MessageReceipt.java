@@ -0,0 +1,24 @@
+package com.al.simplequeueservice.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Response to a streamed push: the message without its content, which the client already has.
+ */
+@Data
+@NoArgsConstructor
+public class MessageReceipt {
+    private String id;
+    private LocalDateTime createdAt;
+
+    public MessageReceipt(Message message) {
+        this.id = message.getId();
+        this.createdAt = message.getCreatedAt().toInstant()
+                .atZone(ZoneId.systemDefault())
+                .toLocalDateTime();
+    }
+}
@@ -12,10 +12,12 @@ public class MessageResponse {
     private String id;
     private String content;
     private LocalDateTime createdAt;
+    private int priority;
 
     public MessageResponse(Message message) {
         this.id = message.getId();
         this.content = message.getContent();
+        this.priority = message.getPriority();
         this.createdAt = message.getCreatedAt().toInstant()
                 .atZone(ZoneId.systemDefault())
                 .toLocalDateTime();
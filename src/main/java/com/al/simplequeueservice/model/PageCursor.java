@@ -0,0 +1,55 @@
+package com.al.simplequeueservice.model;
+
+import com.al.simplequeueservice.util.SQSConstants;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Date;
+
+/**
+ * Position in a paged view: the (createdAt, id) key of the last message returned. It travels to clients as an
+ * opaque continuation token, so the next page resumes right after that key instead of skipping over an offset.
+ */
+public record PageCursor(Date createdAt, String id) {
+
+    /**
+     * The order pages are returned in. Message IDs break ties between messages created in the same millisecond.
+     */
+    public static final Comparator<Message> PAGE_ORDER = Comparator.comparing(Message::getCreatedAt).thenComparing(Message::getId);
+
+    public static PageCursor of(Message message) {
+        return new PageCursor(message.getCreatedAt(), message.getId());
+    }
+
+    /**
+     * Parses a continuation token.
+     *
+     * @throws IllegalArgumentException If the token was not issued by {@link #encode()}.
+     */
+    public static PageCursor decode(String token) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf(':');
+            if (separator < 1 || separator == decoded.length() - 1) {
+                throw new IllegalArgumentException(SQSConstants.PAGE_TOKEN_VALIDATION_ERROR_MESSAGE);
+            }
+            return new PageCursor(new Date(Long.parseLong(decoded.substring(0, separator))), decoded.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            // Also covers malformed Base64 and NumberFormatException
+            throw new IllegalArgumentException(SQSConstants.PAGE_TOKEN_VALIDATION_ERROR_MESSAGE, e);
+        }
+    }
+
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString((createdAt.getTime() + ":" + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Whether a message comes after this position in {@link #PAGE_ORDER}.
+     */
+    public boolean precedes(Message message) {
+        int byCreatedAt = message.getCreatedAt().compareTo(createdAt);
+        return byCreatedAt > 0 || (byCreatedAt == 0 && message.getId().compareTo(id) > 0);
+    }
+}
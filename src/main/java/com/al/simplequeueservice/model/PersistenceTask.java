@@ -0,0 +1,26 @@
+package com.al.simplequeueservice.model;
+
+/**
+ * A pending MongoDB write queued in the persistence pipeline: the insert of a new message,
+ * hiding a delivered message until its visibility deadline, or marking an acknowledged message as consumed.
+ */
+public record PersistenceTask(Type type, String consumerGroup, Message message, String messageId, long visibleAtMillis, long enqueuedAtMillis) {
+
+    public enum Type {
+        INSERT,
+        MARK_IN_FLIGHT,
+        MARK_CONSUMED
+    }
+
+    public static PersistenceTask insert(Message message) {
+        return new PersistenceTask(Type.INSERT, message.getConsumerGroup(), message, message.getId(), 0, System.currentTimeMillis());
+    }
+
+    public static PersistenceTask markInFlight(String consumerGroup, String messageId, long visibleAtMillis) {
+        return new PersistenceTask(Type.MARK_IN_FLIGHT, consumerGroup, null, messageId, visibleAtMillis, System.currentTimeMillis());
+    }
+
+    public static PersistenceTask markConsumed(String consumerGroup, String messageId) {
+        return new PersistenceTask(Type.MARK_CONSUMED, consumerGroup, null, messageId, 0, System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,22 @@
+package com.al.simplequeueservice.model;
+
+/**
+ * Depth and throughput of one consumer group, as reported by the stats endpoint.
+ *
+ * @param consumerGroup The consumer group.
+ * @param pending Messages waiting to be popped. Derived from the counters, so it is approximate.
+ * @param cached Messages waiting in the Redis list.
+ * @param inFlight Messages popped and not yet acknowledged or returned to the queue.
+ * @param consumed Messages acknowledged since the counters were created.
+ * @param pushed Messages pushed since the counters were created.
+ * @param popped Messages popped since the counters were created, redeliveries included.
+ * @param oldestMessageAgeSeconds Age of the oldest message not yet acknowledged, 0 when there is none.
+ * @param pushRatePerSecond Pushes per second over the last complete minute.
+ * @param popRatePerSecond Pops per second over the last complete minute.
+ * @param ackRatePerSecond Acknowledgements per second over the last complete minute.
+ * @param cacheHitRatio Share of popped messages served by the cache rather than the database, 0 before the first pop.
+ */
+public record QueueStats(String consumerGroup, long pending, long cached, long inFlight, long consumed, long pushed, long popped,
+                         long oldestMessageAgeSeconds, double pushRatePerSecond, double popRatePerSecond, double ackRatePerSecond,
+                         double cacheHitRatio) {
+}
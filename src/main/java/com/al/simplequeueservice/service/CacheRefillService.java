@@ -0,0 +1,165 @@
+package com.al.simplequeueservice.service;
+
+import com.al.simplequeueservice.model.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.al.simplequeueservice.util.SQSConstants.*;
+
+/**
+ * Refills the Redis list of a consumer group from MongoDB when it has gone cold, for example after a Redis
+ * restart or after the list expired, so the group is served from memory again instead of one
+ * {@code findAndModify} per pop.
+ * <p>
+ * A refill reserves a page of the visible messages that would be popped first by hiding them in MongoDB for the lifetime of the list,
+ * then pushes them to Redis. If the list is lost before they are popped, they become visible in MongoDB again.
+ * Redis records every message it enqueues, so a message is pushed at most once whether its own push or the refill
+ * reaches Redis first. Reserved messages the refill skips are released again right away.
+ * Concurrent misses on one instance share a single refill, a Redis lock keeps other instances out, and a refill
+ * that finds nothing suppresses further refills of the group for a cooldown period.
+ */
+@Service
+public class CacheRefillService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheRefillService.class);
+    // Messages this young are most likely still on their way into the Redis list through a normal push
+    private static final long MIN_MESSAGE_AGE_MILLIS = 1000;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private CacheService cacheService;
+
+    @Value("${cache.refill.page.size}")
+    private int pageSize;
+
+    @Value("${cache.refill.cooldown.ms}")
+    private long cooldownMillis;
+
+    @Value("${cache.refill.lock.seconds}")
+    private long lockSeconds;
+
+    @Value("${cache.ttl.minutes}")
+    private long redisCacheTtlMinutes;
+
+    private final Map<String, CompletableFuture<Long>> runningRefills = new ConcurrentHashMap<>();
+    private final Map<String, Long> cooldownUntil = new ConcurrentHashMap<>();
+
+    /**
+     * Refills the list of a consumer group whose cache pop came back empty. Callers that miss while a refill
+     * of the same group is running wait for that refill instead of starting another one.
+     *
+     * @param consumerGroup The consumer group to refill.
+     * @return The number of messages pushed to Redis, 0 if nothing was refilled.
+     */
+    public long refill(String consumerGroup) {
+        Long until = cooldownUntil.get(consumerGroup);
+        if (until != null && until > System.currentTimeMillis()) {
+            return 0;
+        }
+        CompletableFuture<Long> refill = new CompletableFuture<>();
+        CompletableFuture<Long> running = runningRefills.putIfAbsent(consumerGroup, refill);
+        if (running != null) {
+            logger.debug("Joining running refill for Consumer Group: {}", consumerGroup);
+            return running.join();
+        }
+        try {
+            long refilled = refillIfUnlocked(consumerGroup);
+            if (refilled == 0) {
+                cooldownUntil.put(consumerGroup, System.currentTimeMillis() + cooldownMillis);
+            } else {
+                cooldownUntil.remove(consumerGroup);
+            }
+            refill.complete(refilled);
+            return refilled;
+        } finally {
+            refill.complete(0L);
+            runningRefills.remove(consumerGroup, refill);
+        }
+    }
+
+    private long refillIfUnlocked(String consumerGroup) {
+        try {
+            if (!cacheService.tryLockRefill(consumerGroup, Duration.ofSeconds(lockSeconds))) {
+                logger.debug("Consumer Group: {} is being refilled by another instance", consumerGroup);
+                return 0;
+            }
+            try {
+                String claimId = UUID.randomUUID().toString();
+                List<Message> reserved = reservePage(consumerGroup, claimId);
+                if (reserved.isEmpty()) {
+                    return 0;
+                }
+                List<String> pushedIds = cacheService.refill(consumerGroup, reserved);
+                if (pushedIds.size() < reserved.size()) {
+                    release(consumerGroup, claimId, reserved, pushedIds);
+                }
+                logger.info("Refilled cache with {} of {} reserved messages for Consumer Group: {}", pushedIds.size(), reserved.size(), consumerGroup);
+                return pushedIds.size();
+            } finally {
+                cacheService.unlockRefill(consumerGroup);
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to refill cache for Consumer Group: {}: {}", consumerGroup, e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Reserves up to a page of visible messages, highest priority and oldest first, in a fixed number of round trips: candidate IDs are
+     * selected, hidden for the lifetime of the list with one conditional update stamping a claim token, and
+     * read back by that token.
+     */
+    private List<Message> reservePage(String consumerGroup, String claimId) {
+        Date now = new Date();
+        Query candidateQuery = new Query(Criteria.where(CONSUMED).is(false)
+                .and(CREATED_AT).lte(new Date(now.getTime() - MIN_MESSAGE_AGE_MILLIS))
+                .orOperator(Criteria.where(VISIBLE_AT).exists(false), Criteria.where(VISIBLE_AT).lte(now)))
+                .with(PopMessageService.POP_SORT)
+                .limit(pageSize);
+        candidateQuery.fields().include(ID);
+        List<String> candidateIds = mongoTemplate.find(candidateQuery, Message.class, consumerGroup).stream()
+                .map(Message::getId)
+                .toList();
+        if (candidateIds.isEmpty()) {
+            return List.of();
+        }
+
+        Query reserveQuery = new Query(Criteria.where(ID).in(candidateIds).and(CONSUMED).is(false)
+                .orOperator(Criteria.where(VISIBLE_AT).exists(false), Criteria.where(VISIBLE_AT).lte(now)));
+        Date reservedUntil = new Date(now.getTime() + Duration.ofMinutes(redisCacheTtlMinutes).toMillis());
+        mongoTemplate.updateMulti(reserveQuery, new Update().set(VISIBLE_AT, reservedUntil).set(CLAIM_ID, claimId), Message.class, consumerGroup);
+
+        List<Message> reserved = mongoTemplate.find(new Query(Criteria.where(CLAIM_ID).is(claimId)), Message.class, consumerGroup);
+        return reserved.stream().sorted(Comparator.comparing(Message::getCreatedAt)).toList();
+    }
+
+    /**
+     * Makes the reserved messages the refill did not push visible in MongoDB again. They are in flight, acknowledged
+     * or enqueued already, or were enqueued in a list that has since expired, which the database fallback then serves.
+     */
+    private void release(String consumerGroup, String claimId, List<Message> reserved, List<String> pushedIds) {
+        Set<String> pushed = Set.copyOf(pushedIds);
+        List<String> skippedIds = reserved.stream().map(Message::getId).filter(id -> !pushed.contains(id)).toList();
+        mongoTemplate.updateMulti(new Query(Criteria.where(ID).in(skippedIds).and(CLAIM_ID).is(claimId)),
+                new Update().unset(VISIBLE_AT).unset(CLAIM_ID), Message.class, consumerGroup);
+    }
+}
@@ -2,45 +2,623 @@ package com.al.simplequeueservice.service;
 
 import com.al.simplequeueservice.model.Message;
 import com.al.simplequeueservice.util.SQSConstants;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+/**
+ * Redis access for the queue. Each consumer group has a list of waiting messages per priority, and pops take
+ * the oldest message of the highest priority with a waiting message. Popped messages move in flight: a sorted
+ * set of message IDs scored by visibility deadline plus a hash of their payloads, both updated together with
+ * the pop by Lua scripts.
+ * <p>
+ * The in-flight set is also the single claim registry for both tiers: a message is handed out only by the
+ * caller whose {@code ZADD NX} adds it, whether it came from the list or from the database fallback.
+ * Acknowledged IDs and IDs claimed from the database are kept in two more sorted sets, scored by expiry,
+ * so stale copies are discarded until the database has caught up.
+ * <p>
+ * With {@code cache.local.enabled}, a {@link LocalMessageBuffer} in front of the lists keeps the messages of
+ * drained consumer groups in the JVM, so pushes skip Redis and pops only record the message in flight.
+ * When such a group is backlogged again, its buffered messages are handed back to the pop end of the lists,
+ * so pops never prefer a buffered message to a higher priority one waiting in Redis.
+ * It assumes a single instance: messages it holds are invisible to other instances until they are handed back
+ * to Redis on shutdown or recovered from the database by {@link CacheRefillService}.
+ * <p>
+ * Delayed messages wait in a sorted set of IDs scored by delivery time plus a hash of their payloads, until
+ * {@link DelayedDeliveryService} moves the due ones to the back of their lists.
+ */
 @Service
 public class CacheService {
 
+    private static final Logger logger = LoggerFactory.getLogger(CacheService.class);
+    static final String REDIS_TIMER = "sqs.redis.operations";
+
+    @SuppressWarnings("rawtypes")
+    static final RedisScript<List> POP_IN_FLIGHT_SCRIPT = messageScript("scripts/pop_in_flight.lua", List.class);
+    @SuppressWarnings("rawtypes")
+    static final RedisScript<List> CLAIM_FROM_DB_SCRIPT = messageScript("scripts/claim_from_db.lua", List.class);
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> CLAIM_LOCAL_SCRIPT = messageScript("scripts/claim_local.lua", List.class);
+    @SuppressWarnings("rawtypes")
+    static final RedisScript<List> ACK_IN_FLIGHT_SCRIPT = RedisScript.of(new ClassPathResource("scripts/ack_in_flight.lua"), List.class);
+    private static final RedisScript<Long> FORGET_ACKNOWLEDGED_SCRIPT = RedisScript.of(new ClassPathResource("scripts/forget_acknowledged.lua"), Long.class);
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> REFILL_SCRIPT = messageScript("scripts/refill.lua", List.class);
+    static final RedisScript<Long> PUSH_SCRIPT = RedisScript.of(new ClassPathResource("scripts/push.lua"), Long.class);
+    private static final RedisScript<Long> REQUEUE_EXPIRED_SCRIPT = messageScript("scripts/requeue_expired.lua", Long.class);
+    static final RedisScript<Long> SCHEDULE_SCRIPT = messageScript("scripts/schedule.lua", Long.class);
+    private static final RedisScript<Long> PROMOTE_SCHEDULED_SCRIPT = messageScript("scripts/promote_scheduled.lua", Long.class);
+
     private final RedisTemplate<String, Object> redisTemplate;
 
+    private final MeterRegistry meterRegistry;
+
     @Value("${cache.ttl.minutes}")
     private long redisCacheTtlMinutes;
 
-    public CacheService(RedisTemplate<String, Object> redisTemplate) {
+    @Value("${claim.retention.minutes}")
+    private long claimRetentionMinutes;
+
+    @Value("${claim.acknowledged.grace.seconds}")
+    private long acknowledgedGraceSeconds;
+
+    @Value("${cache.max.list.length:0}")
+    private long maxListLength;
+
+    @Value("${cache.local.enabled:false}")
+    private boolean localBufferEnabled;
+
+    @Value("${cache.local.max.messages:10000}")
+    private int localBufferMaxMessages;
+
+    private LocalMessageBuffer localBuffer;
+
+    private volatile Consumer<String> localArrivalListener;
+
+    public CacheService(RedisTemplate<String, Object> redisTemplate, MeterRegistry meterRegistry) {
         this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void initLocalBuffer() {
+        if (localBufferEnabled) {
+            localBuffer = new LocalMessageBuffer(localBufferMaxMessages);
+            logger.info("In-process message buffer enabled for up to {} messages", localBufferMaxMessages);
+        }
+    }
+
+    /**
+     * Hands the messages still held in the in-process buffer over to Redis, so they survive the shutdown.
+     */
+    @PreDestroy
+    void handOffLocalBuffer() {
+        if (localBuffer == null) {
+            return;
+        }
+        for (Map.Entry<String, List<Message>> entry : localBuffer.drainAll().entrySet()) {
+            try {
+                // Buffered messages are older than the ones in Redis
+                refill(entry.getKey(), entry.getValue(), true);
+            } catch (Exception e) {
+                // Still in the database, where CacheRefillService finds them once their group is popped again
+                logger.warn("Failed to hand {} buffered messages of Consumer Group: {} over to Redis: {}", entry.getValue().size(), entry.getKey(), e.getMessage());
+            }
+        }
     }
 
+    /**
+     * Registers the callback invoked with the consumer group when a message is kept in the in-process buffer,
+     * which publishes no arrival notification on Redis.
+     */
+    public void onLocalArrival(Consumer<String> listener) {
+        this.localArrivalListener = listener;
+    }
+
+    /**
+     * Adds a message to the list of its priority, or schedules it if it is delayed.
+     */
     public void addMessage(Message message) {
-        String key = SQSConstants.CACHE_PREFIX + message.getConsumerGroup();
-        redisTemplate.opsForList().leftPush(key, message);
-        redisTemplate.expire(key, Duration.ofMinutes(redisCacheTtlMinutes));
+        if (message.getVisibleAt() != null) {
+            schedule(message.getConsumerGroup(), List.of(message));
+            return;
+        }
+        if (offerLocal(message.getConsumerGroup(), List.of(message))) {
+            return;
+        }
+        push(message.getConsumerGroup(), List.of(message));
+    }
+
+    /**
+     * Adds a batch of messages for one consumer group in a single round trip. Delayed messages are scheduled instead.
+     */
+    public void addMessages(String consumerGroup, List<Message> messages) {
+        Map<Boolean, List<Message>> messagesByDelay = messages.stream()
+                .collect(Collectors.partitioningBy(message -> message.getVisibleAt() != null));
+        List<Message> delayedMessages = messagesByDelay.get(true);
+        if (!delayedMessages.isEmpty()) {
+            schedule(consumerGroup, delayedMessages);
+        }
+        List<Message> readyMessages = messagesByDelay.get(false);
+        if (readyMessages.isEmpty() || offerLocal(consumerGroup, readyMessages)) {
+            return;
+        }
+        push(consumerGroup, readyMessages);
+    }
+
+    /**
+     * Holds delayed messages in Redis until their {@code visibleAt} time in one round trip.
+     */
+    private void schedule(String consumerGroup, List<Message> messages) {
+        timed("schedule", () -> redisTemplate.execute(SCHEDULE_SCRIPT,
+                List.of(SQSConstants.SCHEDULED_PREFIX + consumerGroup, SQSConstants.SCHEDULED_MESSAGES_PREFIX + consumerGroup,
+                        SQSConstants.SCHEDULED_GROUPS_KEY),
+                scheduleArgs(consumerGroup, messages).toArray()));
+    }
+
+    /**
+     * Builds the arguments of the schedule script: the consumer group, then the delivery time and payload of each message.
+     */
+    static List<Object> scheduleArgs(String consumerGroup, List<Message> messages) {
+        List<Object> args = new ArrayList<>(messages.size() * 2 + 1);
+        args.add(consumerGroup);
+        for (Message message : messages) {
+            args.add(message.getVisibleAt().getTime());
+            args.add(message);
+        }
+        return args;
+    }
+
+    /**
+     * Pushes messages onto the list of their priority, maintains its TTL and notifies waiting consumers with one
+     * script call per priority. Messages beyond {@code cache.max.list.length} in their list are left to the database,
+     * and messages a refill already enqueued are not pushed again.
+     */
+    @SuppressWarnings("unchecked")
+    private void push(String consumerGroup, List<Message> messages) {
+        RedisSerializer<Object> valueSerializer = (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+        // Batches are pushed with one priority, so this is a single call unless a batch mixes them
+        Map<Integer, List<Message>> messagesByPriority = messages.stream()
+                .collect(Collectors.groupingBy(Message::getPriority, TreeMap::new, Collectors.toList()));
+        messagesByPriority.forEach((priority, prioritizedMessages) -> {
+            Long pushed = writeLists(consumerGroup, () -> timed("push", () -> redisTemplate.execute(PUSH_SCRIPT, RedisSerializer.byteArray(), new GenericToStringSerializer<>(Long.class),
+                    List.of(messageListKey(consumerGroup, priority), SQSConstants.ENQUEUED_PREFIX + consumerGroup),
+                    pushArgs(consumerGroup, prioritizedMessages, Duration.ofMinutes(redisCacheTtlMinutes).toSeconds(), maxListLength,
+                            System.currentTimeMillis(), valueSerializer::serialize).toArray())));
+            if (pushed != null && pushed < prioritizedMessages.size()) {
+                logger.debug("{} of {} messages of priority {} of Consumer Group: {} were not pushed, because the list is full or a refill already enqueued them.", prioritizedMessages.size() - pushed, prioritizedMessages.size(), priority, consumerGroup);
+            }
+        });
+    }
+
+    /**
+     * Returns the key of the message list of one priority. Priority 0 uses the list that predates priorities.
+     */
+    static String messageListKey(String consumerGroup, int priority) {
+        return priority == 0 ? SQSConstants.CACHE_PREFIX + consumerGroup : SQSConstants.PRIORITY_CACHE_PREFIX + priority + ":" + consumerGroup;
+    }
+
+    /**
+     * Returns the keys of the message lists of a consumer group, highest priority first.
+     */
+    static List<String> messageListKeys(String consumerGroup) {
+        List<String> keys = new ArrayList<>(SQSConstants.MAX_PRIORITY + 1);
+        for (int priority = SQSConstants.MAX_PRIORITY; priority >= 0; priority--) {
+            keys.add(messageListKey(consumerGroup, priority));
+        }
+        return keys;
+    }
+
+    /**
+     * Returns the given keys followed by the message lists of a consumer group, as the scripts that move
+     * messages between lists expect them.
+     */
+    static List<String> withMessageListKeys(String consumerGroup, String... keys) {
+        List<String> allKeys = new ArrayList<>(List.of(keys));
+        allKeys.addAll(messageListKeys(consumerGroup));
+        return allKeys;
+    }
+
+    /**
+     * Builds the arguments of the push script. The notification is written in the Redis value format, so
+     * subscribers read it the same way as a {@code convertAndSend}. Each message is preceded by its ID.
+     */
+    static List<byte[]> pushArgs(String consumerGroup, List<Message> messages, long ttlSeconds, long maxListLength, long nowMillis,
+                                 Function<Object, byte[]> valueWriter) {
+        List<byte[]> args = new ArrayList<>(messages.size() * 2 + 5);
+        args.add(String.valueOf(ttlSeconds).getBytes(StandardCharsets.UTF_8));
+        args.add(String.valueOf(maxListLength).getBytes(StandardCharsets.UTF_8));
+        args.add(SQSConstants.NOTIFICATION_CHANNEL.getBytes(StandardCharsets.UTF_8));
+        args.add(valueWriter.apply(consumerGroup));
+        args.add(String.valueOf(nowMillis).getBytes(StandardCharsets.UTF_8));
+        for (Message message : messages) {
+            args.add(message.getId().getBytes(StandardCharsets.UTF_8));
+            args.add(valueWriter.apply(message));
+        }
+        return args;
+    }
+
+    /**
+     * Pops the oldest message of the highest priority and moves it in flight until {@code visibleAtMillis} in one atomic step.
+     */
+    public Message popMessage(String consumerGroup, long visibleAtMillis) {
+        List<Message> poppedMessages = popMessages(consumerGroup, 1, visibleAtMillis);
+        return poppedMessages.isEmpty() ? null : poppedMessages.get(0);
+    }
+
+    /**
+     * Atomically pops up to {@code count} messages, highest priority first and oldest first within a priority, and
+     * moves them in flight until {@code visibleAtMillis}. Copies of messages already claimed elsewhere are discarded,
+     * so each message is handed out once.
+     */
+    @SuppressWarnings("unchecked")
+    public List<Message> popMessages(String consumerGroup, int count, long visibleAtMillis) {
+        List<Message> localMessages = popLocal(consumerGroup, count, visibleAtMillis);
+        if (localMessages.size() == count) {
+            return localMessages;
+        }
+        int remaining = count - localMessages.size();
+        long writeSequence = localBuffer == null ? 0 : localBuffer.writeSequence(consumerGroup);
+        List<Object> poppedObjects = timed("pop", () -> redisTemplate.execute(POP_IN_FLIGHT_SCRIPT,
+                withMessageListKeys(consumerGroup, SQSConstants.IN_FLIGHT_PREFIX + consumerGroup,
+                        SQSConstants.IN_FLIGHT_MESSAGES_PREFIX + consumerGroup, SQSConstants.IN_FLIGHT_GROUPS_KEY,
+                        SQSConstants.ACKNOWLEDGED_PREFIX + consumerGroup, SQSConstants.DB_CLAIMS_PREFIX + consumerGroup),
+                remaining, visibleAtMillis, consumerGroup));
+        List<Message> poppedMessages = toMessages(poppedObjects);
+        if (localBuffer != null && (poppedObjects == null || poppedObjects.size() < remaining)) {
+            localBuffer.markDrained(consumerGroup, writeSequence);
+        }
+        if (localMessages.isEmpty()) {
+            return poppedMessages;
+        }
+        List<Message> allMessages = new ArrayList<>(localMessages);
+        allMessages.addAll(poppedMessages);
+        return allMessages;
+    }
+
+    /**
+     * Keeps messages in the in-process buffer if it is enabled and the group's Redis lists are drained, and wakes
+     * local waiters. Otherwise the group is marked backlogged, because the messages are about to go to Redis.
+     *
+     * @return {@code true} if the messages were kept in the buffer.
+     */
+    private boolean offerLocal(String consumerGroup, List<Message> messages) {
+        if (localBuffer == null) {
+            return false;
+        }
+        if (!localBuffer.offer(consumerGroup, messages)) {
+            markBacklogged(consumerGroup);
+            return false;
+        }
+        Consumer<String> listener = localArrivalListener;
+        if (listener != null) {
+            listener.accept(consumerGroup);
+        }
+        return true;
+    }
+
+    /**
+     * Pops up to {@code count} messages, highest priority first, from the in-process buffer and records them in
+     * flight in Redis in one round trip. Messages already handed out by the database fallback, acknowledged or
+     * enqueued in Redis by a refill are dropped.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private List<Message> popLocal(String consumerGroup, int count, long visibleAtMillis) {
+        if (localBuffer == null) {
+            return Collections.emptyList();
+        }
+        List<Message> messages = localBuffer.poll(consumerGroup, count);
+        if (messages.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Object> args = new ArrayList<>(messages.size() + 2);
+        args.add(visibleAtMillis);
+        args.add(consumerGroup);
+        args.addAll(messages);
+        List<String> claimedIds = timed("claimLocal", () -> redisTemplate.execute(CLAIM_LOCAL_SCRIPT, redisTemplate.getValueSerializer(), (RedisSerializer) RedisSerializer.string(),
+                List.of(SQSConstants.IN_FLIGHT_PREFIX + consumerGroup, SQSConstants.IN_FLIGHT_MESSAGES_PREFIX + consumerGroup,
+                        SQSConstants.IN_FLIGHT_GROUPS_KEY, SQSConstants.ACKNOWLEDGED_PREFIX + consumerGroup,
+                        SQSConstants.DB_CLAIMS_PREFIX + consumerGroup, SQSConstants.ENQUEUED_PREFIX + consumerGroup),
+                args.toArray()));
+        if (claimedIds == null || claimedIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Set<String> claimed = Set.copyOf(claimedIds);
+        return messages.stream().filter(message -> claimed.contains(message.getId())).toList();
+    }
+
+    /**
+     * Claims messages handed out from the database and records them in flight until {@code visibleAtMillis},
+     * so the reaper and acknowledgements treat them the same as messages popped from the cache. The claim of a
+     * message is lost if it was already handed out from the cache or acknowledged.
+     *
+     * @return The messages whose claim succeeded.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public List<Message> claimInFlight(String consumerGroup, List<Message> messages, long visibleAtMillis) {
+        List<Object> args = new ArrayList<>(messages.size() + 3);
+        args.add(visibleAtMillis);
+        args.add(consumerGroup);
+        args.add(claimExpiryMillis());
+        args.addAll(messages);
+        List<String> claimedIds = timed("claimFromDb", () -> redisTemplate.execute(CLAIM_FROM_DB_SCRIPT, redisTemplate.getValueSerializer(), (RedisSerializer) RedisSerializer.string(),
+                List.of(SQSConstants.IN_FLIGHT_PREFIX + consumerGroup, SQSConstants.IN_FLIGHT_MESSAGES_PREFIX + consumerGroup,
+                        SQSConstants.IN_FLIGHT_GROUPS_KEY, SQSConstants.ACKNOWLEDGED_PREFIX + consumerGroup,
+                        SQSConstants.DB_CLAIMS_PREFIX + consumerGroup),
+                args.toArray()));
+        if (claimedIds == null || claimedIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Set<String> claimed = Set.copyOf(claimedIds);
+        return messages.stream().filter(message -> claimed.contains(message.getId())).toList();
+    }
+
+    /**
+     * Removes acknowledged messages from flight. Their IDs are remembered until a grace period after
+     * {@link #forgetAcknowledged} is called once the database has marked them consumed.
+     *
+     * @return The IDs that were still in flight. Messages whose visibility timeout has already expired are not included.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public List<String> acknowledge(String consumerGroup, List<String> messageIds) {
+        List<Object> args = new ArrayList<>(messageIds.size() + 1);
+        args.add(claimExpiryMillis());
+        args.addAll(messageIds);
+        List<String> acknowledgedIds = timed("acknowledge", () -> redisTemplate.execute(ACK_IN_FLIGHT_SCRIPT, redisTemplate.getValueSerializer(), (RedisSerializer) RedisSerializer.string(),
+                List.of(SQSConstants.IN_FLIGHT_PREFIX + consumerGroup, SQSConstants.IN_FLIGHT_MESSAGES_PREFIX + consumerGroup,
+                        SQSConstants.ACKNOWLEDGED_PREFIX + consumerGroup),
+                args.toArray()));
+        return acknowledgedIds == null ? Collections.emptyList() : acknowledgedIds;
+    }
+
+    /**
+     * Lets remembered acknowledgements expire once the database has marked the messages consumed. They are kept
+     * for {@code claim.acknowledged.grace.seconds} more, so a database fallback that read a message before the
+     * mark still loses its claim.
+     */
+    public void forgetAcknowledged(String consumerGroup, List<String> messageIds) {
+        List<Object> args = new ArrayList<>(messageIds.size() + 1);
+        args.add(System.currentTimeMillis() + Duration.ofSeconds(acknowledgedGraceSeconds).toMillis());
+        args.addAll(messageIds);
+        timed("forgetAcknowledged", () -> redisTemplate.execute(FORGET_ACKNOWLEDGED_SCRIPT, List.of(SQSConstants.ACKNOWLEDGED_PREFIX + consumerGroup), args.toArray()));
+    }
+
+    /**
+     * Moves up to {@code limit} messages whose visibility timeout expired before {@code nowMillis} back to the
+     * front of the list of their priority and notifies waiting consumers. Messages claimed from the database are left to the
+     * database fallback instead. Expired claim records are pruned in the same step.
+     *
+     * @return The number of expired messages taken out of flight.
+     */
+    public long requeueExpired(String consumerGroup, long nowMillis, int limit) {
+        Long requeued = writeLists(consumerGroup, () -> timed("requeueExpired", () -> redisTemplate.execute(REQUEUE_EXPIRED_SCRIPT,
+                withMessageListKeys(consumerGroup, SQSConstants.IN_FLIGHT_PREFIX + consumerGroup,
+                        SQSConstants.IN_FLIGHT_MESSAGES_PREFIX + consumerGroup, SQSConstants.IN_FLIGHT_GROUPS_KEY,
+                        SQSConstants.ACKNOWLEDGED_PREFIX + consumerGroup, SQSConstants.DB_CLAIMS_PREFIX + consumerGroup),
+                nowMillis, limit, Duration.ofMinutes(redisCacheTtlMinutes).toSeconds(), consumerGroup)));
+        if (requeued != null && requeued > 0) {
+            markBacklogged(consumerGroup);
+            redisTemplate.convertAndSend(SQSConstants.NOTIFICATION_CHANNEL, consumerGroup);
+            return requeued;
+        }
+        return 0;
+    }
+
+    /**
+     * Moves up to {@code limit} delayed messages due at or before {@code nowMillis} to the back of the list of
+     * their priority and notifies waiting consumers. Messages the database fallback already handed out or a refill
+     * already enqueued are dropped.
+     *
+     * @return The number of due messages taken off the schedule.
+     */
+    public long promoteScheduled(String consumerGroup, long nowMillis, int limit) {
+        Long promoted = writeLists(consumerGroup, () -> timed("promoteScheduled", () -> redisTemplate.execute(PROMOTE_SCHEDULED_SCRIPT,
+                withMessageListKeys(consumerGroup, SQSConstants.SCHEDULED_PREFIX + consumerGroup,
+                        SQSConstants.SCHEDULED_MESSAGES_PREFIX + consumerGroup, SQSConstants.SCHEDULED_GROUPS_KEY,
+                        SQSConstants.IN_FLIGHT_PREFIX + consumerGroup, SQSConstants.ACKNOWLEDGED_PREFIX + consumerGroup,
+                        SQSConstants.DB_CLAIMS_PREFIX + consumerGroup, SQSConstants.ENQUEUED_PREFIX + consumerGroup),
+                nowMillis, limit, Duration.ofMinutes(redisCacheTtlMinutes).toSeconds(), consumerGroup)));
+        if (promoted != null && promoted > 0) {
+            markBacklogged(consumerGroup);
+            redisTemplate.convertAndSend(SQSConstants.NOTIFICATION_CHANNEL, consumerGroup);
+            return promoted;
+        }
+        return 0;
+    }
+
+    /**
+     * Pushes a page of messages reserved in the database onto the lists of their priorities in a cold consumer
+     * group, oldest first, and notifies waiting consumers. Messages already in flight, acknowledged or enqueued
+     * by a push, an earlier refill or the mover are skipped.
+     *
+     * @return The IDs of the messages pushed.
+     */
+    public List<String> refill(String consumerGroup, List<Message> messages) {
+        return refill(consumerGroup, messages, false);
+    }
+
+    /**
+     * @param front Whether the messages go to the pop end of their lists, ahead of the messages waiting there.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private List<String> refill(String consumerGroup, List<Message> messages, boolean front) {
+        List<Object> args = new ArrayList<>(messages.size() + 3);
+        args.add(Duration.ofMinutes(redisCacheTtlMinutes).toSeconds());
+        args.add(front ? 1 : 0);
+        args.add(System.currentTimeMillis());
+        args.addAll(messages);
+        List<String> pushedIds = writeLists(consumerGroup, () -> timed("refill", () -> redisTemplate.execute(REFILL_SCRIPT, redisTemplate.getValueSerializer(), (RedisSerializer) RedisSerializer.string(),
+                withMessageListKeys(consumerGroup, SQSConstants.IN_FLIGHT_PREFIX + consumerGroup,
+                        SQSConstants.ACKNOWLEDGED_PREFIX + consumerGroup, SQSConstants.DB_CLAIMS_PREFIX + consumerGroup,
+                        SQSConstants.ENQUEUED_PREFIX + consumerGroup),
+                args.toArray())));
+        if (pushedIds == null || pushedIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        markBacklogged(consumerGroup);
+        redisTemplate.convertAndSend(SQSConstants.NOTIFICATION_CHANNEL, consumerGroup);
+        return pushedIds;
+    }
+
+    /**
+     * Takes the refill lock of a consumer group, so only one instance refills it at a time.
+     *
+     * @return {@code true} if the lock was taken.
+     */
+    public boolean tryLockRefill(String consumerGroup, Duration timeout) {
+        return Boolean.TRUE.equals(timed("lockRefill", () -> redisTemplate.opsForValue().setIfAbsent(SQSConstants.REFILL_LOCK_PREFIX + consumerGroup, true, timeout)));
+    }
+
+    public void unlockRefill(String consumerGroup) {
+        timed("unlockRefill", () -> redisTemplate.delete(SQSConstants.REFILL_LOCK_PREFIX + consumerGroup));
+    }
+
+    /**
+     * Marks a group backlogged, so new messages go to Redis. Messages the in-process buffer still holds for the
+     * group are handed back to the pop end of their lists, as they are older than the ones in Redis and may have
+     * a lower priority than messages about to arrive there.
+     */
+    private void markBacklogged(String consumerGroup) {
+        if (localBuffer == null) {
+            return;
+        }
+        localBuffer.markBacklogged(consumerGroup);
+        List<Message> buffered = localBuffer.poll(consumerGroup, Integer.MAX_VALUE);
+        if (buffered.isEmpty()) {
+            return;
+        }
+        try {
+            List<String> handedBack = refill(consumerGroup, buffered, true);
+            logger.debug("Handed {} of {} buffered messages of Consumer Group: {} back to Redis", handedBack.size(), buffered.size(), consumerGroup);
+        } catch (Exception e) {
+            // Still in the database, where the database fallback and CacheRefillService find them
+            logger.warn("Failed to hand {} buffered messages of Consumer Group: {} back to Redis: {}", buffered.size(), consumerGroup, e.getMessage());
+        }
+    }
+
+    /**
+     * Loads a script that reads message payloads, prefixed with the {@code message_id} and {@code message_list}
+     * functions that read the ID and priority of a payload in either Redis codec.
+     */
+    private static <T> RedisScript<T> messageScript(String path, Class<T> resultType) {
+        try {
+            String messageFields = new ResourceScriptSource(new ClassPathResource("scripts/message_fields.lua")).getScriptAsString();
+            String script = new ResourceScriptSource(new ClassPathResource(path)).getScriptAsString();
+            return RedisScript.of(messageFields + script, resultType);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load Redis script " + path, e);
+        }
+    }
+
+    private long claimExpiryMillis() {
+        return System.currentTimeMillis() + Duration.ofMinutes(claimRetentionMinutes).toMillis();
+    }
+
+    /**
+     * Returns the consumer groups that currently have messages in flight.
+     */
+    public Set<String> getInFlightConsumerGroups() {
+        return members(SQSConstants.IN_FLIGHT_GROUPS_KEY);
+    }
+
+    /**
+     * Returns the consumer groups that currently have delayed messages scheduled.
+     */
+    public Set<String> getScheduledConsumerGroups() {
+        return members(SQSConstants.SCHEDULED_GROUPS_KEY);
+    }
+
+    private Set<String> members(String key) {
+        Set<Object> members = timed("members", () -> redisTemplate.opsForSet().members(key));
+        if (members == null) {
+            return Collections.emptySet();
+        }
+        return members.stream().map(String::valueOf).collect(Collectors.toSet());
+    }
+
+    /**
+     * Returns up to {@code count} of the oldest messages waiting for a consumer group, oldest first, whatever their
+     * priority. Only that many entries are read from the tail of each Redis list, in one pipelined round trip,
+     * however long the lists are.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public List<Message> viewMessages(String consumerGroup, int count) {
+        List<Message> messages = new ArrayList<>();
+        if (localBuffer != null) {
+            messages.addAll(localBuffer.snapshot(consumerGroup));
+        }
+        List<Object> ranges = timed("view", () -> redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public Object execute(RedisOperations operations) {
+                // Each list is newest first, so its oldest entries are at the tail
+                for (String key : messageListKeys(consumerGroup)) {
+                    operations.opsForList().range(key, -count, -1);
+                }
+                return null;
+            }
+        }));
+        if (ranges != null) {
+            ranges.forEach(range -> messages.addAll(toMessages((List<Object>) range)));
+        }
+        return messages.stream().sorted(Comparator.comparing(Message::getCreatedAt)).limit(count).toList();
+    }
+
+    /**
+     * Runs a write to the message lists of a consumer group, so a pop that came back short while it was in
+     * progress does not mark the group drained in the in-process buffer.
+     */
+    private <T> T writeLists(String consumerGroup, Supplier<T> write) {
+        if (localBuffer == null) {
+            return write.get();
+        }
+        localBuffer.beginWrite(consumerGroup);
+        try {
+            return write.get();
+        } finally {
+            localBuffer.endWrite(consumerGroup);
+        }
     }
 
-    public Message popMessage(String consumerGroup) {
-        String key = SQSConstants.CACHE_PREFIX + consumerGroup;
-        return (Message) redisTemplate.opsForList().rightPop(key);
+    /**
+     * Runs a Redis call and records its latency under {@value #REDIS_TIMER}, tagged with the operation.
+     */
+    private <T> T timed(String operation, Supplier<T> call) {
+        return meterRegistry.timer(REDIS_TIMER, "operation", operation).record(call);
     }
 
-    public List<Message> viewMessages(String consumerGroup) {
-        String key = SQSConstants.CACHE_PREFIX + consumerGroup;
-        List<Object> cachedObjects = redisTemplate.opsForList().range(key, 0, -1);
-        if (cachedObjects == null || cachedObjects.isEmpty()) {
+    private List<Message> toMessages(List<Object> objects) {
+        if (objects == null || objects.isEmpty()) {
             return Collections.emptyList();
         }
-        return cachedObjects.stream()
+        return objects.stream()
                 .filter(obj -> obj instanceof Message)
                 .map(obj -> (Message) obj)
                 .collect(Collectors.toList());
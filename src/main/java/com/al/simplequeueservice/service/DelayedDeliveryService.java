@@ -0,0 +1,55 @@
+package com.al.simplequeueservice.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Moves delayed messages whose delivery time has passed from the schedule of their consumer group to its
+ * message lists, where they can be popped. Each run reads only the due range of each group's schedule,
+ * in bounded batches, so its cost depends on the number of due messages and not on the number scheduled.
+ */
+@Service
+public class DelayedDeliveryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DelayedDeliveryService.class);
+
+    @Autowired
+    private CacheService cacheService;
+
+    @Value("${delayed.delivery.batch.size}")
+    private int batchSize;
+
+    @Scheduled(fixedDelayString = "${delayed.delivery.interval.ms}")
+    public void promoteDueMessages() {
+        try {
+            long now = System.currentTimeMillis();
+            for (String consumerGroup : cacheService.getScheduledConsumerGroups()) {
+                promoteDueMessages(consumerGroup, now);
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to promote due delayed messages: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Promotes the delayed messages of one consumer group whose delivery time is at or before {@code now}.
+     *
+     * @return The number of messages taken off the schedule.
+     */
+    long promoteDueMessages(String consumerGroup, long now) {
+        long total = 0;
+        long promoted;
+        do {
+            promoted = cacheService.promoteScheduled(consumerGroup, now, batchSize);
+            total += promoted;
+        } while (promoted == batchSize);
+        if (total > 0) {
+            logger.debug("{} due delayed messages promoted for Consumer Group: {}", total, consumerGroup);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,190 @@
+package com.al.simplequeueservice.service;
+
+import com.al.simplequeueservice.model.Message;
+import com.al.simplequeueservice.util.SQSConstants;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process tier in front of the Redis list of each consumer group, for single-instance deployments.
+ * Messages wait in a lock-free queue per consumer group and priority, bounded by a total budget shared by all groups.
+ * <p>
+ * A group takes messages only while it is drained, that is while its Redis lists are known to be empty.
+ * Once a message overflows to Redis the group stays backlogged until a Redis pop comes back short, and
+ * {@link CacheService} hands the messages still held here back to Redis, so popping here first keeps pop order.
+ * <p>
+ * A short pop only proves the lists were empty when it ran, so {@link CacheService} brackets every write to the
+ * lists with {@link #beginWrite} and {@link #endWrite}, and the group is marked drained only if no write was in
+ * progress or ended since the pop read {@link #writeSequence}. The drained flag, the write count and the offer of
+ * a group change under the group's monitor, so a message is never offered after its group was marked backlogged.
+ */
+class LocalMessageBuffer {
+
+    private final int maxMessages;
+    private final AtomicInteger size = new AtomicInteger();
+    private final Map<String, GroupState> groups = new ConcurrentHashMap<>();
+
+    LocalMessageBuffer(int maxMessages) {
+        this.maxMessages = maxMessages;
+    }
+
+    /**
+     * Takes all of the messages, in order, or none of them if the group is backlogged or the budget would be exceeded.
+     */
+    boolean offer(String consumerGroup, List<Message> messages) {
+        GroupState group = group(consumerGroup);
+        synchronized (group) {
+            if (!group.drained) {
+                return false;
+            }
+            if (size.addAndGet(messages.size()) > maxMessages) {
+                size.addAndGet(-messages.size());
+                return false;
+            }
+            for (Message message : messages) {
+                group.queues.get(message.getPriority()).add(message);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Removes up to {@code count} messages of a group, highest priority first and oldest first within a priority.
+     */
+    List<Message> poll(String consumerGroup, int count) {
+        GroupState group = groups.get(consumerGroup);
+        if (group == null) {
+            return List.of();
+        }
+        List<Message> polled = new ArrayList<>(Math.min(count, 16));
+        for (int priority = SQSConstants.MAX_PRIORITY; priority >= 0 && polled.size() < count; priority--) {
+            Queue<Message> queue = group.queues.get(priority);
+            Message message;
+            while (polled.size() < count && (message = queue.poll()) != null) {
+                polled.add(message);
+            }
+        }
+        size.addAndGet(-polled.size());
+        return polled;
+    }
+
+    /**
+     * Returns the number of writes to the Redis lists of a group that ended so far, to be read before a Redis pop
+     * and passed to {@link #markDrained} after it.
+     */
+    long writeSequence(String consumerGroup) {
+        GroupState group = group(consumerGroup);
+        synchronized (group) {
+            return group.writeSequence;
+        }
+    }
+
+    /**
+     * Records that a write to the Redis lists of a group is about to start, so no pop marks the group drained until it ends.
+     */
+    void beginWrite(String consumerGroup) {
+        GroupState group = group(consumerGroup);
+        synchronized (group) {
+            group.writesInProgress++;
+        }
+    }
+
+    /**
+     * Records that a write to the Redis lists of a group ended, so pops that started before it cannot mark the group drained.
+     */
+    void endWrite(String consumerGroup) {
+        GroupState group = group(consumerGroup);
+        synchronized (group) {
+            group.writesInProgress--;
+            group.writeSequence++;
+        }
+    }
+
+    /**
+     * Records that the Redis list of a group came back short, so new messages of the group may be kept here.
+     * Ignored if a write to the lists is in progress or ended after the pop read {@code writeSequence}, as
+     * it may have landed after the pop.
+     *
+     * @return {@code true} if the group is marked drained.
+     */
+    boolean markDrained(String consumerGroup, long writeSequence) {
+        GroupState group = group(consumerGroup);
+        synchronized (group) {
+            if (group.writesInProgress > 0 || group.writeSequence != writeSequence) {
+                return false;
+            }
+            group.drained = true;
+            return true;
+        }
+    }
+
+    /**
+     * Records that messages of a group were put in its Redis list, so new messages must follow them there.
+     */
+    void markBacklogged(String consumerGroup) {
+        GroupState group = group(consumerGroup);
+        synchronized (group) {
+            group.drained = false;
+        }
+    }
+
+    /**
+     * Returns the messages of a group without removing them, in the order they would be polled.
+     */
+    List<Message> snapshot(String consumerGroup) {
+        GroupState group = groups.get(consumerGroup);
+        if (group == null) {
+            return List.of();
+        }
+        List<Message> messages = new ArrayList<>();
+        for (int priority = SQSConstants.MAX_PRIORITY; priority >= 0; priority--) {
+            messages.addAll(group.queues.get(priority));
+        }
+        return messages;
+    }
+
+    /**
+     * Removes every message, grouped by consumer group in the order they would be polled, and marks all groups backlogged.
+     */
+    Map<String, List<Message>> drainAll() {
+        Map<String, List<Message>> drained = new HashMap<>();
+        for (String consumerGroup : groups.keySet()) {
+            markBacklogged(consumerGroup);
+            List<Message> messages = poll(consumerGroup, Integer.MAX_VALUE);
+            if (!messages.isEmpty()) {
+                drained.put(consumerGroup, messages);
+            }
+        }
+        return drained;
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    private GroupState group(String consumerGroup) {
+        return groups.computeIfAbsent(consumerGroup, group -> new GroupState());
+    }
+
+    private static final class GroupState {
+
+        // One queue per priority, indexed by priority
+        private final List<Queue<Message>> queues = new ArrayList<>(SQSConstants.MAX_PRIORITY + 1);
+        private boolean drained;
+        private int writesInProgress;
+        private long writeSequence;
+
+        private GroupState() {
+            for (int priority = 0; priority <= SQSConstants.MAX_PRIORITY; priority++) {
+                queues.add(new ConcurrentLinkedQueue<>());
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.al.simplequeueservice.service;
+
+import com.al.simplequeueservice.model.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.al.simplequeueservice.util.SQSConstants.NOTIFICATION_CHANNEL;
+
+/**
+ * Service for long-polling pops. When a consumer group is empty, the request is parked as a waiter
+ * instead of returning immediately. Pushes publish an arrival notification on a Redis channel, which
+ * wakes the waiters of that consumer group on every instance. Messages kept in the in-process buffer of
+ * {@link CacheService} wake the local waiters directly. Parked requests hold no thread.
+ */
+@Service
+public class LongPollService implements MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(LongPollService.class);
+
+    @Autowired
+    private PopMessageService popMessageService;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private CacheService cacheService;
+
+    @Autowired
+    @Qualifier("longPollExecutor")
+    private Executor longPollExecutor;
+
+    private final Map<String, GroupWaiters> waiters = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean subscribed = new AtomicBoolean(false);
+
+    /**
+     * Pops the oldest available message for a given consumer group, waiting up to {@code waitSeconds}
+     * for one to arrive if the queue is currently empty.
+     *
+     * @param consumerGroup The consumer group from which to pop the message.
+     * @param waitSeconds The maximum number of seconds to wait for a message.
+     * @return A {@link CompletableFuture} completed with the message, or with an empty {@link Optional} on timeout.
+     */
+    public CompletableFuture<Optional<Message>> popOrWait(String consumerGroup, int waitSeconds) {
+        Optional<Message> message = popMessageService.pop(consumerGroup);
+        if (message.isPresent() || waitSeconds <= 0) {
+            return CompletableFuture.completedFuture(message);
+        }
+
+        subscribeIfNeeded();
+        CompletableFuture<Optional<Message>> waiter = new CompletableFuture<>();
+        GroupWaiters groupWaiters = waiters.computeIfAbsent(consumerGroup, group -> new GroupWaiters());
+        groupWaiters.add(waiter);
+        logger.debug("Parked pop request for Consumer Group: {} for up to {} seconds", consumerGroup, waitSeconds);
+
+        CompletableFuture.delayedExecutor(waitSeconds, TimeUnit.SECONDS, longPollExecutor)
+                .execute(() -> groupWaiters.expire(waiter));
+        // A message may have been pushed between the first pop and parking the waiter
+        longPollExecutor.execute(() -> drain(consumerGroup));
+        return waiter;
+    }
+
+    /**
+     * Handles an arrival notification published by {@link CacheService} and wakes the waiters of that consumer group.
+     */
+    @Override
+    public void onMessage(org.springframework.data.redis.connection.Message message, byte[] pattern) {
+        Object consumerGroup = redisTemplate.getValueSerializer().deserialize(message.getBody());
+        if (consumerGroup instanceof String group) {
+            wake(group);
+        }
+    }
+
+    private void wake(String consumerGroup) {
+        if (waiters.containsKey(consumerGroup)) {
+            longPollExecutor.execute(() -> drain(consumerGroup));
+        }
+    }
+
+    /**
+     * Hands messages to the parked waiters of a consumer group, oldest waiter first, until either runs out.
+     */
+    void drain(String consumerGroup) {
+        GroupWaiters groupWaiters = waiters.get(consumerGroup);
+        if (groupWaiters == null) {
+            return;
+        }
+        groupWaiters.lock.lock();
+        try {
+            while (!groupWaiters.queue.isEmpty()) {
+                Optional<Message> message = popMessageService.pop(consumerGroup);
+                if (message.isEmpty()) {
+                    break;
+                }
+                groupWaiters.queue.poll().complete(message);
+                logger.debug("Woke parked pop request for Consumer Group: {} with message ID {}", consumerGroup, message.get().getId());
+            }
+        } finally {
+            groupWaiters.lock.unlock();
+        }
+    }
+
+    /**
+     * Subscribes to arrival notifications on first use, so the application starts without a Redis connection.
+     */
+    private void subscribeIfNeeded() {
+        if (subscribed.compareAndSet(false, true)) {
+            listenerContainer.addMessageListener(this, new ChannelTopic(NOTIFICATION_CHANNEL));
+            cacheService.onLocalArrival(this::wake);
+            logger.info("Subscribed to message arrival notifications on channel: {}", NOTIFICATION_CHANNEL);
+        }
+    }
+
+    /**
+     * Waiters parked on one consumer group. The lock serialises handing out messages with timeouts,
+     * so a popped message is never given to a waiter that has already expired.
+     */
+    private static class GroupWaiters {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Deque<CompletableFuture<Optional<Message>>> queue = new ArrayDeque<>();
+
+        void add(CompletableFuture<Optional<Message>> waiter) {
+            lock.lock();
+            try {
+                queue.add(waiter);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void expire(CompletableFuture<Optional<Message>> waiter) {
+            lock.lock();
+            try {
+                if (queue.remove(waiter)) {
+                    waiter.complete(Optional.empty());
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
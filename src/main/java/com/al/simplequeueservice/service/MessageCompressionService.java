@@ -0,0 +1,119 @@
+package com.al.simplequeueservice.service;
+
+import com.al.simplequeueservice.model.Message;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses large message contents before they are stored in Redis and MongoDB, and restores them when
+ * messages are handed out. A compressed content is Base64 Deflate data behind a tag naming the algorithm,
+ * so other algorithms can be added without breaking stored messages.
+ * <p>
+ * A content that happens to start with the tag is always compressed, so every stored content with the
+ * tag is an envelope and contents are restored exactly.
+ */
+@Service
+public class MessageCompressionService {
+
+    // Never the start of content pushed through the API in practice; see the class comment for when it is
+    static final String DEFLATE_TAG = "\u0000deflate:";
+
+    @Value("${compression.enabled:false}")
+    private boolean enabled;
+
+    @Value("${compression.min.length:4096}")
+    private int minLength;
+
+    /**
+     * Returns the message with its content compressed if compression is enabled, the content is at least
+     * {@code compression.min.length} characters long and compressing it saves space.
+     */
+    public Message compress(Message message) {
+        String content = message.getContent();
+        if (content == null) {
+            return message;
+        }
+        boolean tagged = content.startsWith(DEFLATE_TAG);
+        if (!tagged && (!enabled || content.length() < minLength)) {
+            return message;
+        }
+        String compressed = DEFLATE_TAG + Base64.getEncoder().encodeToString(deflate(content.getBytes(StandardCharsets.UTF_8)));
+        if (!tagged && compressed.length() >= content.length()) {
+            return message;
+        }
+        return withContent(message, compressed);
+    }
+
+    public List<Message> compressAll(List<Message> messages) {
+        return messages.stream().map(this::compress).toList();
+    }
+
+    /**
+     * Returns the message with its original content, whether or not it was stored compressed.
+     *
+     * @throws IllegalStateException if a tagged content cannot be decompressed.
+     */
+    public Message decompress(Message message) {
+        String content = message.getContent();
+        if (content == null || !content.startsWith(DEFLATE_TAG)) {
+            return message;
+        }
+        try {
+            byte[] compressed = Base64.getDecoder().decode(content.substring(DEFLATE_TAG.length()));
+            return withContent(message, new String(inflate(compressed), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException | DataFormatException e) {
+            throw new IllegalStateException("Could not decompress content of message with ID " + message.getId(), e);
+        }
+    }
+
+    public List<Message> decompressAll(List<Message> messages) {
+        return messages.stream().map(this::decompress).toList();
+    }
+
+    private static Message withContent(Message message, String content) {
+        return new Message(message.getId(), content, message.getConsumerGroup(), message.getCreatedAt(), message.isConsumed(), message.getPriority(), message.getVisibleAt());
+    }
+
+    private static byte[] deflate(byte[] input) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(64, input.length / 4));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                output.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] input) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input);
+            ByteArrayOutputStream output = new ByteArrayOutputStream(input.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int inflated = inflater.inflate(buffer);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("Truncated compressed content");
+                }
+                output.write(buffer, 0, inflated);
+            }
+            return output.toByteArray();
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,564 @@
+package com.al.simplequeueservice.service;
+
+import com.al.simplequeueservice.exception.QueueOverloadedException;
+import com.al.simplequeueservice.model.Message;
+import com.al.simplequeueservice.model.PersistenceTask;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.al.simplequeueservice.util.SQSConstants.*;
+
+/**
+ * Bounded write-behind pipeline that persists messages and consumption status to MongoDB.
+ * Tasks are partitioned by consumer group onto worker queues, so the writes of one consumer group
+ * are applied in order. Each worker collects up to a batch of tasks over a short linger window and coalesces
+ * them per consumer group: inserts into one unordered bulk write and consumption updates into one
+ * {@code updateMany} by ID. The total number of queued tasks is bounded; when
+ * the pipeline is full the configured {@link OverflowPolicy} decides what happens to new work.
+ * Consumption marks whose message is not in the database yet, for example because its insert is still in a
+ * spill file, are kept and retried by an idle worker until the acknowledgement is no longer remembered in Redis.
+ * Tasks whose write fails are kept under every policy, holding their share of the capacity, and retried with an
+ * exponential backoff for as long as deferred consumption marks are.
+ */
+@Service
+public class MessagePersistenceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessagePersistenceService.class);
+    private static final long POLL_TIMEOUT_MILLIS = 200;
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 10_000;
+    private static final int DUPLICATE_KEY_ERROR_CODE = 11000;
+    private static final long RETRY_MIN_DELAY_MILLIS = 500;
+    private static final long RETRY_MAX_DELAY_MILLIS = 30_000;
+
+    /**
+     * What to do with new tasks when the pipeline is full.
+     */
+    public enum OverflowPolicy {
+        /** Wait for space; the request thread is held back until workers catch up. */
+        BLOCK,
+        /** Reject new messages with a 429. Updates of already delivered messages wait for space instead. */
+        SHED,
+        /** Write overflowing tasks to local spill files, replayed when the pipeline has room again. */
+        SPILL
+    }
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MongoIndexService mongoIndexService;
+
+    @Autowired
+    private CacheService cacheService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${persistence.pipeline.capacity}")
+    private int capacity;
+
+    @Value("${persistence.pipeline.batch.size}")
+    private int batchSize;
+
+    @Value("${persistence.pipeline.linger.ms}")
+    private long lingerMillis;
+
+    @Value("${persistence.pipeline.workers}")
+    private int workers;
+
+    @Value("${persistence.pipeline.overflow.policy}")
+    private OverflowPolicy overflowPolicy;
+
+    @Value("${persistence.pipeline.spill.dir}")
+    private Path spillDirectory;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${claim.retention.minutes}")
+    private long claimRetentionMinutes;
+
+    private final List<LinkedBlockingQueue<PersistenceTask>> queues = new ArrayList<>();
+    private final List<Thread> workerThreads = new ArrayList<>();
+    private final AtomicBoolean replaying = new AtomicBoolean(false);
+    private final Queue<PersistenceTask> deferredConsumedMarks = new ConcurrentLinkedQueue<>();
+    private final Queue<PersistenceTask> failedTasks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long retryFailedAtMillis;
+    private Semaphore capacityPermits;
+    private volatile boolean running;
+
+    private Counter flushedCounter;
+    private Counter shedCounter;
+    private Counter spilledCounter;
+    private Counter retriedCounter;
+    private Counter failedCounter;
+
+    @PostConstruct
+    public void start() {
+        capacityPermits = new Semaphore(capacity);
+        flushedCounter = meterRegistry.counter("sqs.persistence.flushed");
+        shedCounter = meterRegistry.counter("sqs.persistence.shed");
+        spilledCounter = meterRegistry.counter("sqs.persistence.spilled");
+        retriedCounter = meterRegistry.counter("sqs.persistence.retried");
+        failedCounter = meterRegistry.counter("sqs.persistence.failed");
+        Gauge.builder("sqs.persistence.queue.depth", this, MessagePersistenceService::getQueueDepth)
+                .description("Tasks waiting to be written to MongoDB, including the batches being written")
+                .register(meterRegistry);
+        TimeGauge.builder("sqs.persistence.queue.lag", this, TimeUnit.MILLISECONDS, MessagePersistenceService::getLagMillis)
+                .description("Age of the oldest task waiting to be written to MongoDB")
+                .register(meterRegistry);
+
+        running = true;
+        for (int i = 0; i < workers; i++) {
+            LinkedBlockingQueue<PersistenceTask> queue = new LinkedBlockingQueue<>();
+            queues.add(queue);
+            // Virtual threads are always daemon threads
+            Thread.Builder builder = virtualThreads ? Thread.ofVirtual() : Thread.ofPlatform().daemon(true);
+            Thread worker = builder.name(PERSISTENCE_THREAD_NAME_PREFIX + (i + 1)).unstarted(() -> runWorker(queue));
+            workerThreads.add(worker);
+            worker.start();
+        }
+        logger.info("Persistence pipeline started with {} {} workers, capacity {}, batch size {} and overflow policy {}", workers, virtualThreads ? "virtual" : "platform", capacity, batchSize, overflowPolicy);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        long deadline = System.currentTimeMillis() + SHUTDOWN_TIMEOUT_MILLIS;
+        for (Thread worker : workerThreads) {
+            worker.join(Math.max(1, deadline - System.currentTimeMillis()));
+        }
+        logger.info("Persistence pipeline stopped with {} tasks not persisted", getQueueDepth() + deferredConsumedMarks.size());
+    }
+
+    /**
+     * Queues a new message to be inserted into its consumer group's collection.
+     *
+     * @throws QueueOverloadedException if the pipeline is full and the overflow policy is {@link OverflowPolicy#SHED}.
+     */
+    public void persist(Message message) {
+        submit(List.of(PersistenceTask.insert(message)), true);
+    }
+
+    /**
+     * Queues a batch of new messages. The batch is admitted or rejected as a whole, except that a batch larger
+     * than the pipeline capacity is admitted in chunks of the capacity under the blocking and spilling policies.
+     *
+     * @throws QueueOverloadedException if the pipeline is full and the overflow policy is {@link OverflowPolicy#SHED}.
+     */
+    public void persistAll(List<Message> messages) {
+        submit(messages.stream().map(PersistenceTask::insert).toList(), true);
+    }
+
+    /**
+     * Queues hiding delivered messages from the database fallback until their visibility deadline.
+     * These tasks are never shed.
+     */
+    public void markInFlight(String consumerGroup, List<String> messageIds, long visibleAtMillis) {
+        submit(messageIds.stream().map(id -> PersistenceTask.markInFlight(consumerGroup, id, visibleAtMillis)).toList(), false);
+    }
+
+    /**
+     * Queues marking acknowledged messages as consumed. These tasks are never shed.
+     */
+    public void markConsumed(String consumerGroup, List<String> messageIds) {
+        submit(messageIds.stream().map(id -> PersistenceTask.markConsumed(consumerGroup, id)).toList(), false);
+    }
+
+    public int getQueueDepth() {
+        return capacity - capacityPermits.availablePermits();
+    }
+
+    public long getLagMillis() {
+        long now = System.currentTimeMillis();
+        return queues.stream()
+                .map(LinkedBlockingQueue::peek)
+                .filter(task -> task != null)
+                .mapToLong(task -> now - task.enqueuedAtMillis())
+                .max()
+                .orElse(0);
+    }
+
+    private void submit(List<PersistenceTask> tasks, boolean sheddable) {
+        if (tasks.size() > capacity) {
+            // Could never fit at once, so waiting for space would block forever
+            if (sheddable && overflowPolicy == OverflowPolicy.SHED) {
+                shedCounter.increment(tasks.size());
+                logger.warn("{} tasks exceed the persistence pipeline capacity of {}. Shedding them.", tasks.size(), capacity);
+                throw new QueueOverloadedException(QUEUE_OVERLOADED_ERROR_MESSAGE);
+            }
+            for (int i = 0; i < tasks.size(); i += capacity) {
+                submit(tasks.subList(i, Math.min(i + capacity, tasks.size())), sheddable);
+            }
+            return;
+        }
+        int permits = tasks.size();
+        if (overflowPolicy == OverflowPolicy.BLOCK || (overflowPolicy == OverflowPolicy.SHED && !sheddable)) {
+            capacityPermits.acquireUninterruptibly(permits);
+        } else if (!capacityPermits.tryAcquire(permits)) {
+            if (overflowPolicy == OverflowPolicy.SHED) {
+                shedCounter.increment(permits);
+                logger.warn("Persistence pipeline is full. Shedding {} tasks.", permits);
+                throw new QueueOverloadedException(QUEUE_OVERLOADED_ERROR_MESSAGE);
+            }
+            spill(tasks);
+            return;
+        }
+        enqueue(tasks);
+    }
+
+    private void enqueue(List<PersistenceTask> tasks) {
+        for (PersistenceTask task : tasks) {
+            queues.get(Math.floorMod(task.consumerGroup().hashCode(), queues.size())).add(task);
+        }
+    }
+
+    private void runWorker(LinkedBlockingQueue<PersistenceTask> queue) {
+        while (running || !queue.isEmpty()) {
+            retryFailedTasks();
+            PersistenceTask first;
+            try {
+                first = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (first == null) {
+                retryDeferredConsumedMarks();
+                replaySpilledTasks();
+                continue;
+            }
+            List<PersistenceTask> batch;
+            try {
+                batch = collectBatch(queue, first);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            int kept = 0;
+            try {
+                kept = flush(batch);
+            } finally {
+                capacityPermits.release(batch.size() - kept);
+            }
+        }
+    }
+
+    /**
+     * Collects a batch starting with {@code first}, waiting up to the linger window for more tasks
+     * to arrive unless the batch fills up earlier.
+     */
+    private List<PersistenceTask> collectBatch(LinkedBlockingQueue<PersistenceTask> queue, PersistenceTask first) throws InterruptedException {
+        List<PersistenceTask> batch = new ArrayList<>(batchSize);
+        batch.add(first);
+        queue.drainTo(batch, batchSize - 1);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        while (batch.size() < batchSize && running) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            PersistenceTask next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+            queue.drainTo(batch, batchSize - batch.size());
+        }
+        return batch;
+    }
+
+    /**
+     * Writes one drained batch. Inserts of a consumer group are applied before its delivery and consumption
+     * updates, so a message popped right after being pushed is never marked before it exists.
+     *
+     * @return The number of tasks kept for a retry because their write failed. They keep their share of the capacity.
+     */
+    int flush(List<PersistenceTask> batch) {
+        Map<String, List<PersistenceTask>> tasksByGroup = batch.stream()
+                .collect(Collectors.groupingBy(PersistenceTask::consumerGroup, LinkedHashMap::new, Collectors.toList()));
+        int kept = 0;
+        for (Map.Entry<String, List<PersistenceTask>> entry : tasksByGroup.entrySet()) {
+            String consumerGroup = entry.getKey();
+            List<PersistenceTask> tasks = entry.getValue();
+            try {
+                List<Message> inserts = tasks.stream()
+                        .filter(task -> task.type() == PersistenceTask.Type.INSERT)
+                        .map(PersistenceTask::message)
+                        .toList();
+                if (!inserts.isEmpty()) {
+                    insertMessages(consumerGroup, inserts);
+                }
+                List<PersistenceTask> inFlight = tasks.stream()
+                        .filter(task -> task.type() == PersistenceTask.Type.MARK_IN_FLIGHT)
+                        .toList();
+                if (!inFlight.isEmpty()) {
+                    // Deliveries coalesced within one batch share the latest of their deadlines
+                    long visibleAtMillis = inFlight.stream().mapToLong(PersistenceTask::visibleAtMillis).max().getAsLong();
+                    updateMessagesInMongo(inFlight.stream().map(PersistenceTask::messageId).toList(), consumerGroup,
+                            new Update().set(VISIBLE_AT, new Date(visibleAtMillis)));
+                }
+                List<PersistenceTask> consumed = tasks.stream()
+                        .filter(task -> task.type() == PersistenceTask.Type.MARK_CONSUMED)
+                        .toList();
+                int deferred = 0;
+                if (!consumed.isEmpty()) {
+                    deferred = markConsumedInMongo(consumerGroup, consumed);
+                }
+                flushedCounter.increment(tasks.size() - deferred);
+                consecutiveFailures.set(0);
+            } catch (Exception e) {
+                retryLater(consumerGroup, tasks, e);
+                kept += tasks.size();
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Keeps the tasks of a failed write for a retry, which is delayed longer the more writes failed in a row.
+     * Writes that already succeeded are repeated harmlessly: inserts skip existing messages and updates set the same values.
+     */
+    private void retryLater(String consumerGroup, List<PersistenceTask> tasks, Exception e) {
+        int failures = consecutiveFailures.incrementAndGet();
+        long delayMillis = Math.min(RETRY_MAX_DELAY_MILLIS, RETRY_MIN_DELAY_MILLIS << Math.min(failures - 1, 16));
+        retryFailedAtMillis = System.currentTimeMillis() + delayMillis;
+        failedTasks.addAll(tasks);
+        retriedCounter.increment(tasks.size());
+        logger.warn("Failed to persist {} tasks for Consumer Group: {}. Retrying them in {} ms: {}", tasks.size(), consumerGroup, delayMillis, e.getMessage());
+    }
+
+    /**
+     * Moves the tasks of failed writes back into the pipeline once their backoff has passed. They still hold their
+     * share of the capacity, so no room is needed. Tasks that kept failing for {@code claim.retention.minutes} are dropped.
+     */
+    private void retryFailedTasks() {
+        if (failedTasks.isEmpty() || System.currentTimeMillis() < retryFailedAtMillis) {
+            return;
+        }
+        long retainedAfterMillis = System.currentTimeMillis() - Duration.ofMinutes(claimRetentionMinutes).toMillis();
+        List<PersistenceTask> tasks = new ArrayList<>();
+        int dropped = 0;
+        PersistenceTask task;
+        while ((task = failedTasks.poll()) != null) {
+            if (task.enqueuedAtMillis() > retainedAfterMillis) {
+                tasks.add(task);
+            } else {
+                dropped++;
+            }
+        }
+        if (dropped > 0) {
+            capacityPermits.release(dropped);
+            failedCounter.increment(dropped);
+            logger.error("Failed to persist {} tasks within {} minutes. Dropping them.", dropped, claimRetentionMinutes);
+        }
+        if (!tasks.isEmpty()) {
+            enqueue(tasks);
+            logger.debug("Retrying {} tasks of failed writes", tasks.size());
+        }
+    }
+
+    /**
+     * Marks acknowledged messages consumed and forgets the acknowledgements of the ones the database now excludes
+     * by itself. Marks of messages that are not in the database yet are deferred, as forgetting their
+     * acknowledgement would let the message be handed out again once it is inserted.
+     *
+     * @return The number of marks deferred.
+     */
+    private int markConsumedInMongo(String consumerGroup, List<PersistenceTask> consumed) {
+        List<String> consumedIds = consumed.stream().map(PersistenceTask::messageId).toList();
+        UpdateResult result = updateMessagesInMongo(consumedIds, consumerGroup, new Update().set(CONSUMED, true));
+        List<String> markedIds = consumedIds;
+        if (result.getMatchedCount() < consumedIds.size()) {
+            // Only documents marked now are forgotten: one inserted after the update above is still unconsumed
+            Query markedQuery = new Query(Criteria.where(ID).in(consumedIds).and(CONSUMED).is(true));
+            markedQuery.fields().include(ID);
+            markedIds = mongoTemplate.find(markedQuery, Message.class, consumerGroup).stream().map(Message::getId).toList();
+        }
+        if (!markedIds.isEmpty()) {
+            cacheService.forgetAcknowledged(consumerGroup, markedIds);
+        }
+        if (markedIds.size() == consumedIds.size()) {
+            return 0;
+        }
+        Set<String> marked = Set.copyOf(markedIds);
+        long retainedAfterMillis = System.currentTimeMillis() - Duration.ofMinutes(claimRetentionMinutes).toMillis();
+        int deferred = 0;
+        for (PersistenceTask task : consumed) {
+            if (marked.contains(task.messageId())) {
+                continue;
+            }
+            if (task.enqueuedAtMillis() > retainedAfterMillis) {
+                deferredConsumedMarks.add(task);
+                deferred++;
+            } else {
+                failedCounter.increment();
+                logger.warn("Message {} of Consumer Group: {} was not found to be marked consumed within {} minutes. Dropping the mark.", task.messageId(), consumerGroup, claimRetentionMinutes);
+            }
+        }
+        return deferred;
+    }
+
+    /**
+     * Moves deferred consumption marks back into the pipeline while there is room for them.
+     */
+    private void retryDeferredConsumedMarks() {
+        List<PersistenceTask> tasks = new ArrayList<>();
+        PersistenceTask task;
+        while (tasks.size() < capacity && (task = deferredConsumedMarks.poll()) != null) {
+            tasks.add(task);
+        }
+        if (tasks.isEmpty()) {
+            return;
+        }
+        if (!capacityPermits.tryAcquire(tasks.size())) {
+            deferredConsumedMarks.addAll(tasks);
+            return;
+        }
+        enqueue(tasks);
+        logger.debug("Retrying {} deferred consumption marks", tasks.size());
+    }
+
+    /**
+     * Inserts the messages of one consumer group with a single unordered bulk write. Messages that already
+     * exist, for example because a spill file was replayed after a partial write, are skipped.
+     */
+    private void insertMessages(String consumerGroup, List<Message> messages) {
+        mongoIndexService.ensureIndexes(consumerGroup);
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Message.class, consumerGroup)
+                    .insert(messages)
+                    .execute();
+        } catch (BulkOperationException e) {
+            boolean onlyDuplicates = e.getErrors().stream().allMatch(error -> error.getCode() == DUPLICATE_KEY_ERROR_CODE);
+            if (!onlyDuplicates) {
+                throw e;
+            }
+            logger.debug("{} messages already present in DB for Consumer Group: {}", e.getErrors().size(), consumerGroup);
+        }
+        logger.debug("{} messages saved to DB for Consumer Group: {}", messages.size(), consumerGroup);
+    }
+
+    /**
+     * Applies an update to messages in MongoDB with a single write: {@code updateOne} for one
+     * message, otherwise {@code updateMany} with {@code _id $in}. The documents themselves are never read back.
+     *
+     * @param messageIds The IDs of the messages to update.
+     * @param consumerGroup The consumer group to which the messages belong.
+     * @param update The update to apply.
+     * @return The result of the write.
+     */
+    private UpdateResult updateMessagesInMongo(List<String> messageIds, String consumerGroup, Update update) {
+        UpdateResult result = messageIds.size() == 1
+                ? mongoTemplate.updateFirst(new Query(Criteria.where(ID).is(messageIds.get(0))), update, Message.class, consumerGroup)
+                : mongoTemplate.updateMulti(new Query(Criteria.where(ID).in(messageIds)), update, Message.class, consumerGroup);
+
+        if (result.getMatchedCount() == messageIds.size()) {
+            logger.debug("{} messages in Consumer Group: {} updated with: {}", messageIds.size(), consumerGroup, update.getUpdateObject());
+        } else {
+            logger.warn("Only {} of {} messages found in Consumer Group: {} for update.", result.getMatchedCount(), messageIds.size(), consumerGroup);
+        }
+        return result;
+    }
+
+    /**
+     * Writes tasks to a new spill file. The file is written under a temporary name and then renamed,
+     * so the replay never reads a partially written file.
+     */
+    private synchronized void spill(List<PersistenceTask> tasks) {
+        try {
+            Files.createDirectories(spillDirectory);
+            String fileName = String.format("spill-%013d-%s", System.currentTimeMillis(), UUID.randomUUID());
+            Path tempFile = spillDirectory.resolve(fileName + ".tmp");
+            List<String> lines = new ArrayList<>(tasks.size());
+            for (PersistenceTask task : tasks) {
+                lines.add(objectMapper.writeValueAsString(task));
+            }
+            Files.write(tempFile, lines);
+            Files.move(tempFile, spillDirectory.resolve(fileName + ".jsonl"), StandardCopyOption.ATOMIC_MOVE);
+            spilledCounter.increment(tasks.size());
+            logger.warn("Persistence pipeline is full. Spilled {} tasks to {}", tasks.size(), fileName);
+        } catch (IOException e) {
+            failedCounter.increment(tasks.size());
+            logger.error("Failed to spill {} tasks to {}", tasks.size(), spillDirectory, e);
+        }
+    }
+
+    /**
+     * Moves spilled tasks back into the pipeline, oldest file first, while there is room for them.
+     * Only one idle worker replays at a time.
+     */
+    private void replaySpilledTasks() {
+        if (overflowPolicy != OverflowPolicy.SPILL || !replaying.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (!Files.isDirectory(spillDirectory)) {
+                return;
+            }
+            List<Path> spillFiles;
+            try (Stream<Path> files = Files.list(spillDirectory)) {
+                spillFiles = files.filter(file -> file.getFileName().toString().endsWith(".jsonl")).sorted().toList();
+            }
+            for (Path spillFile : spillFiles) {
+                List<PersistenceTask> tasks = new ArrayList<>();
+                for (String line : Files.readAllLines(spillFile)) {
+                    tasks.add(objectMapper.readValue(line, PersistenceTask.class));
+                }
+                if (!capacityPermits.tryAcquire(tasks.size())) {
+                    return;
+                }
+                enqueue(tasks);
+                Files.delete(spillFile);
+                logger.info("Replayed {} spilled tasks from {}", tasks.size(), spillFile.getFileName());
+            }
+        } catch (IOException e) {
+            logger.error("Failed to replay spilled tasks from {}", spillDirectory, e);
+        } finally {
+            replaying.set(false);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.al.simplequeueservice.service;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.IndexOptions;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static com.al.simplequeueservice.util.SQSConstants.*;
+
+/**
+ * Service that makes sure every consumer group collection carries the indexes the queue relies on.
+ * Collections already verified are remembered in a registry, so the index check costs MongoDB
+ * round trips only once per collection instead of on every push.
+ */
+@Service
+public class MongoIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MongoIndexService.class);
+
+    @Autowired
+    private MongoClient mongoClient;
+
+    @Value("${spring.data.mongodb.database}")
+    private String mongoDB;
+
+    @Value("${persistence.duration.minutes}")
+    private long expireMinutes;
+
+    @Autowired
+    @Qualifier("taskExecutor")
+    private Executor taskExecutor;
+
+    private final Set<String> indexedCollections = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Ensures the indexes exist for the given consumer group's collection. Only the first call per
+     * collection reaches MongoDB; later calls are answered from the registry.
+     *
+     * @param consumerGroup The consumer group whose collection should be indexed.
+     */
+    public void ensureIndexes(String consumerGroup) {
+        if (indexedCollections.contains(consumerGroup)) {
+            return;
+        }
+        MongoCollection<Document> collection = mongoClient.getDatabase(mongoDB).getCollection(consumerGroup);
+        createTTLIndex(collection, consumerGroup);
+        createPendingIndex(collection, consumerGroup);
+        createPriorityIndex(collection, consumerGroup);
+        indexedCollections.add(consumerGroup);
+    }
+
+    /**
+     * Removes a consumer group from the registry, so its indexes are verified again on next use.
+     * Call this when the collection may have been dropped or its indexes changed outside the service.
+     *
+     * @param consumerGroup The consumer group to invalidate.
+     */
+    public void invalidate(String consumerGroup) {
+        indexedCollections.remove(consumerGroup);
+    }
+
+    /**
+     * Clears the registry and verifies the indexes of every consumer group collection that exists in the database.
+     *
+     * @return The consumer groups whose indexes were verified.
+     */
+    public List<String> refreshIndexes() {
+        indexedCollections.clear();
+        List<String> consumerGroups = mongoClient.getDatabase(mongoDB).listCollectionNames().into(new ArrayList<>());
+        consumerGroups.forEach(this::ensureIndexes);
+        logger.info("Indexes verified for {} consumer groups", consumerGroups.size());
+        return consumerGroups;
+    }
+
+    /**
+     * Pre-creates indexes for known consumer groups once the application is ready, off the startup thread.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        taskExecutor.execute(() -> {
+            try {
+                refreshIndexes();
+            } catch (Exception e) {
+                logger.warn("Could not pre-create indexes for known consumer groups: {}", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Ensures a TTL (Time-To-Live) index exists on the 'createdAt' field for the consumer group's collection.
+     * This index automatically deletes documents after a specified time.
+     *
+     * @param collection The consumer group's collection.
+     * @param consumerGroup The consumer group whose collection should carry the TTL index.
+     */
+    private void createTTLIndex(MongoCollection<Document> collection, String consumerGroup) {
+        boolean ttlExists = collection.listIndexes()
+                .into(new ArrayList<>())
+                .stream()
+                .anyMatch(index -> {
+                    Document key = (Document) index.get("key");
+                    return key != null && key.containsKey(CREATED_AT) && key.size() == 1;
+                });
+
+        if (!ttlExists) {
+            logger.info("TTL index does not exist on field: {} for collection: {}. Creating with {} minutes expiration.", CREATED_AT, consumerGroup, expireMinutes);
+            IndexOptions indexOptions = new IndexOptions().expireAfter(expireMinutes, TimeUnit.MINUTES);
+            collection.createIndex(new Document(CREATED_AT, 1), indexOptions);
+            logger.info("TTL index created on field: {} for collection: {}", CREATED_AT, consumerGroup);
+        } else {
+            logger.debug("TTL index already exists on field: {} for collection: {}", CREATED_AT, consumerGroup);
+        }
+    }
+
+    /**
+     * Ensures the compound index that serves views and the age of the oldest message: messages by consumption
+     * status in 'createdAt' order, with '_id' to break ties between pages. Creating an index that already exists
+     * with the same specification is a no-op in MongoDB.
+     *
+     * @param collection The consumer group's collection.
+     * @param consumerGroup The consumer group whose collection should carry the index.
+     */
+    private void createPendingIndex(MongoCollection<Document> collection, String consumerGroup) {
+        Document keys = new Document(CONSUMED, 1).append(CREATED_AT, 1).append(MONGO_ID, 1);
+        collection.createIndex(keys, new IndexOptions().name(PENDING_INDEX_NAME));
+        logger.debug("Index {} ensured for collection: {}", PENDING_INDEX_NAME, consumerGroup);
+    }
+
+    /**
+     * Ensures the compound index that serves the pop fallback and the cache refill: unconsumed messages, highest
+     * 'priority' first and in 'createdAt' order within a priority, so the next message is the head of the index.
+     * Ending with '_id' keeps the order of messages created in the same millisecond stable between reads.
+     * Messages written before priorities existed have no 'priority' field and would sort after every new message,
+     * so they are given the default priority 0 first.
+     *
+     * @param collection The consumer group's collection.
+     * @param consumerGroup The consumer group whose collection should carry the index.
+     */
+    private void createPriorityIndex(MongoCollection<Document> collection, String consumerGroup) {
+        long backfilled = collection.updateMany(new Document(PRIORITY, new Document("$exists", false)),
+                new Document("$set", new Document(PRIORITY, 0))).getModifiedCount();
+        if (backfilled > 0) {
+            logger.info("Set the default priority on {} messages without one in collection: {}", backfilled, consumerGroup);
+        }
+        Document keys = new Document(CONSUMED, 1).append(PRIORITY, -1).append(CREATED_AT, 1).append(MONGO_ID, 1);
+        collection.createIndex(keys, new IndexOptions().name(PRIORITY_INDEX_NAME));
+        logger.debug("Index {} ensured for collection: {}", PRIORITY_INDEX_NAME, consumerGroup);
+    }
+}
@@ -4,7 +4,7 @@ import com.al.simplequeueservice.model.Message;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
@@ -13,14 +13,23 @@ import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.Executor;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static com.al.simplequeueservice.util.SQSConstants.*;
 
 /**
  * Service for popping messages from the queue, prioritizing cache and then falling back to the database.
- * Messages popped from the cache are asynchronously marked as consumed in the database.
+ * Popped messages are not removed for good: they stay in flight, hidden from other consumers, until they are
+ * acknowledged or their visibility timeout expires and {@link VisibilityReaperService} returns them to the queue.
+ * Messages claimed in the database are also claimed in the Redis in-flight registry before they are returned,
+ * so a message is never handed out by both tiers. Contents stored compressed are restored before messages are returned.
  */
 @Service
 public class PopMessageService {
@@ -32,63 +41,198 @@ public class PopMessageService {
     private CacheService cacheService;
 
     @Autowired
-    @Qualifier("taskExecutor")
-    private Executor taskExecutor;
+    private MessagePersistenceService messagePersistenceService;
+
+    @Autowired
+    private CacheRefillService cacheRefillService;
+
+    @Autowired
+    private MessageCompressionService messageCompressionService;
+
+    @Autowired
+    private QueueStatsService queueStatsService;
+
+    @Value("${visibility.timeout.seconds}")
+    private long visibilityTimeoutSeconds;
 
     private static final Logger logger = LoggerFactory.getLogger(PopMessageService.class);
+    private static final int MAX_CLAIM_ATTEMPTS = 3;
+    // Served by the priority index: highest priority first, oldest first within a priority
+    static final Sort POP_SORT = Sort.by(Sort.Order.desc(PRIORITY), Sort.Order.asc(CREATED_AT));
 
     /**
-     * Pops the oldest available message for a given consumer group.
-     * It first tries to fetch the message from the cache. If not found, it fetches from the database.
-     * Messages fetched from cache are asynchronously marked as consumed in the database.
+     * Pops the oldest available message of the highest priority for a given consumer group.
+     * It first tries to fetch the message from the cache, refilling a cold cache from the database once.
+     * If still not found, it fetches from the database.
+     * The message stays in flight until it is acknowledged or its visibility timeout expires.
      *
      * @param consumerGroup The consumer group from which to pop the message.
      * @return An {@link Optional} containing the message if found, or empty if no message is available.
      */
     public Optional<Message> pop(String consumerGroup) {
         logger.debug("Attempting to pop oldest message from the queue for Consumer Group: {}", consumerGroup);
-        // Get from Cache
-        Message cachedMessage = cacheService.popMessage(consumerGroup);
+        long visibleAtMillis = visibleAtMillis();
+        // Get from Cache, refilling it from DB first if it has gone cold
+        Message cachedMessage = cacheService.popMessage(consumerGroup, visibleAtMillis);
+        if (cachedMessage == null && cacheRefillService.refill(consumerGroup) > 0) {
+            cachedMessage = cacheService.popMessage(consumerGroup, visibleAtMillis);
+        }
         if (cachedMessage != null) {
-            logger.debug("Message with ID {} found in cache for Consumer Group: {}. Asynchronously updating status in DB.", cachedMessage.getId(), consumerGroup);
-            taskExecutor.execute(() -> {
-                updateMessageInMongo(cachedMessage.getId(), consumerGroup);
-            });
-            return Optional.of(cachedMessage);
+            logger.debug("Message with ID {} found in cache for Consumer Group: {}. Asynchronously hiding it in DB.", cachedMessage.getId(), consumerGroup);
+            messagePersistenceService.markInFlight(consumerGroup, List.of(cachedMessage.getId()), visibleAtMillis);
+            queueStatsService.recordPopped(consumerGroup, 1, 0);
+            return Optional.of(messageCompressionService.decompress(cachedMessage));
         }
         // Get from DB if not in Cache
         logger.debug("Message not found in cache for Consumer Group: {}. Fetching from DB.", consumerGroup);
-        Query query = new Query(Criteria.where(CONSUMED).is(false))
-                .with(Sort.by(Sort.Direction.ASC, CREATED_AT));
-        Update update = new Update().set(CONSUMED, true);
-        FindAndModifyOptions options = new FindAndModifyOptions().returnNew(true);
-        Message message = mongoTemplate.findAndModify(query, update, options, Message.class, consumerGroup);
-
-        if (message != null) {
-            logger.info("Message with ID {} popped from DB for Consumer Group: {}", message.getId(), consumerGroup);
-        } else {
-            logger.debug("No unconsumed message found in DB for Consumer Group: {}", consumerGroup);
+        List<String> lostIds = new ArrayList<>(MAX_CLAIM_ATTEMPTS);
+        for (int attempt = 1; attempt <= MAX_CLAIM_ATTEMPTS; attempt++) {
+            Query query = new Query(Criteria.where(CONSUMED).is(false).orOperator(visibleCriteria()))
+                    .with(POP_SORT);
+            if (!lostIds.isEmpty()) {
+                query.addCriteria(Criteria.where(ID).nin(lostIds));
+            }
+            String claimId = UUID.randomUUID().toString();
+            Update update = new Update().set(VISIBLE_AT, new Date(visibleAtMillis)).set(CLAIM_ID, claimId);
+            FindAndModifyOptions options = new FindAndModifyOptions().returnNew(true);
+            Message message = mongoTemplate.findAndModify(query, update, options, Message.class, consumerGroup);
+            if (message == null) {
+                logger.debug("No unconsumed message found in DB for Consumer Group: {}", consumerGroup);
+                return Optional.empty();
+            }
+            if (!cacheService.claimInFlight(consumerGroup, List.of(message), visibleAtMillis).isEmpty()) {
+                logger.info("Message with ID {} popped from DB for Consumer Group: {}", message.getId(), consumerGroup);
+                queueStatsService.recordPopped(consumerGroup, 0, 1);
+                return Optional.of(messageCompressionService.decompress(message));
+            }
+            // Already in flight, acknowledged or enqueued in Redis, which decides its visibility; the next attempt skips it
+            logger.debug("Message with ID {} from DB was already claimed for Consumer Group: {}. Attempt {} of {}.", message.getId(), consumerGroup, attempt, MAX_CLAIM_ATTEMPTS);
+            releaseLostClaims(consumerGroup, claimId, List.of(message.getId()), visibleAtMillis);
+            lostIds.add(message.getId());
         }
-        return Optional.ofNullable(message);
+        return Optional.empty();
     }
 
     /**
-     * Asynchronously updates the 'consumed' status of a message in MongoDB.
+     * Pops up to {@code messageCount} available messages for a given consumer group in one call, highest priority
+     * first and oldest first within a priority.
+     * Messages are first taken from the cache with a single atomic pop, refilling a cold cache from the database once.
+     * If the cache cannot satisfy the whole request, the remainder is claimed from the database with a bounded
+     * multi-document claim.
+     * The messages stay in flight until they are acknowledged or their visibility timeout expires.
      *
-     * @param messageId The ID of the message to update.
-     * @param consumerGroup The consumer group to which the message belongs.
+     * @param consumerGroup The consumer group from which to pop the messages.
+     * @param messageCount The maximum number of messages to pop.
+     * @return A list of popped messages in {@link Message#POP_ORDER}, empty if no message is available.
      */
-    private void updateMessageInMongo(String messageId, String consumerGroup) {
-        Query query = new Query(Criteria.where(ID).is(messageId));
-        Update update = new Update().set(CONSUMED, true);
-        FindAndModifyOptions options = new FindAndModifyOptions().returnNew(false);
+    public List<Message> popBatch(String consumerGroup, int messageCount) {
+        logger.debug("Attempting to pop up to {} messages from the queue for Consumer Group: {}", messageCount, consumerGroup);
+        long visibleAtMillis = visibleAtMillis();
+        List<Message> poppedMessages = new ArrayList<>(cacheService.popMessages(consumerGroup, messageCount, visibleAtMillis));
+        if (poppedMessages.size() < messageCount && cacheRefillService.refill(consumerGroup) > 0) {
+            poppedMessages.addAll(cacheService.popMessages(consumerGroup, messageCount - poppedMessages.size(), visibleAtMillis));
+        }
+        List<String> cachedMessageIds = poppedMessages.stream().map(Message::getId).toList();
+        if (!cachedMessageIds.isEmpty()) {
+            logger.debug("{} messages found in cache for Consumer Group: {}. Asynchronously hiding them in DB.", cachedMessageIds.size(), consumerGroup);
+            messagePersistenceService.markInFlight(consumerGroup, cachedMessageIds, visibleAtMillis);
+        }
 
-        Message updatedMessage = mongoTemplate.findAndModify(query, update, options, Message.class, consumerGroup);
+        if (poppedMessages.size() < messageCount) {
+            logger.debug("Cache returned {} of {} requested messages for Consumer Group: {}. Claiming the rest from DB.", poppedMessages.size(), messageCount, consumerGroup);
+            String claimId = UUID.randomUUID().toString();
+            List<Message> claimedMessages = claimMessagesInMongo(consumerGroup, messageCount - poppedMessages.size(), cachedMessageIds, claimId, visibleAtMillis);
+            if (!claimedMessages.isEmpty()) {
+                List<Message> wonMessages = cacheService.claimInFlight(consumerGroup, claimedMessages, visibleAtMillis);
+                if (wonMessages.size() < claimedMessages.size()) {
+                    Set<String> wonIds = wonMessages.stream().map(Message::getId).collect(Collectors.toSet());
+                    releaseLostClaims(consumerGroup, claimId, claimedMessages.stream().map(Message::getId).filter(id -> !wonIds.contains(id)).toList(), visibleAtMillis);
+                }
+                poppedMessages.addAll(wonMessages);
+            }
+        }
 
-        if (updatedMessage != null) {
-            logger.debug("Message with ID: {} in Consumer Group: {} updated to consumed: {}", messageId, consumerGroup, true);
-        } else {
-            logger.warn("Message with ID: {} not found in Consumer Group: {} for update.", messageId, consumerGroup);
+        queueStatsService.recordPopped(consumerGroup, cachedMessageIds.size(), poppedMessages.size() - cachedMessageIds.size());
+        poppedMessages.sort(Message.POP_ORDER);
+        logger.info("{} messages popped for Consumer Group: {}", poppedMessages.size(), consumerGroup);
+        return messageCompressionService.decompressAll(poppedMessages);
+    }
+
+    /**
+     * Acknowledges delivered messages, so they are not returned to the queue when their visibility timeout expires.
+     * Acknowledged messages are asynchronously marked as consumed in the database.
+     *
+     * @param consumerGroup The consumer group the messages were popped from.
+     * @param messageIds The IDs of the messages to acknowledge.
+     * @return The IDs that were acknowledged. Messages that are no longer in flight, because they were already
+     *         acknowledged or their visibility timeout expired, are left out.
+     */
+    public List<String> acknowledge(String consumerGroup, List<String> messageIds) {
+        List<String> acknowledgedIds = cacheService.acknowledge(consumerGroup, messageIds);
+        if (!acknowledgedIds.isEmpty()) {
+            messagePersistenceService.markConsumed(consumerGroup, acknowledgedIds);
+            queueStatsService.recordAcknowledged(consumerGroup, acknowledgedIds.size());
         }
+        logger.info("{} of {} messages acknowledged for Consumer Group: {}", acknowledgedIds.size(), messageIds.size(), consumerGroup);
+        return acknowledgedIds;
+    }
+
+    private long visibleAtMillis() {
+        return System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(visibilityTimeoutSeconds);
+    }
+
+    /**
+     * Matches messages that were never delivered or whose visibility timeout has expired.
+     */
+    private Criteria[] visibleCriteria() {
+        return new Criteria[]{Criteria.where(VISIBLE_AT).exists(false), Criteria.where(VISIBLE_AT).lte(new Date())};
+    }
+
+    /**
+     * Claims up to {@code limit} visible messages in MongoDB, highest priority and oldest first, in a fixed number of round trips.
+     * Candidate IDs are selected first, then hidden until {@code visibleAtMillis} with a single conditional update
+     * that stamps a claim token, so messages taken concurrently by another popper are never returned twice.
+     *
+     * @param consumerGroup The consumer group to claim messages from.
+     * @param limit The maximum number of messages to claim.
+     * @param excludedIds IDs already handed out from the cache in this call.
+     * @param claimId The claim token stamped on the claimed messages.
+     * @param visibleAtMillis The visibility deadline of the claimed messages.
+     * @return The claimed messages.
+     */
+    private List<Message> claimMessagesInMongo(String consumerGroup, int limit, List<String> excludedIds, String claimId, long visibleAtMillis) {
+        Query candidateQuery = new Query(Criteria.where(CONSUMED).is(false).orOperator(visibleCriteria()))
+                .with(POP_SORT)
+                .limit(limit);
+        if (!excludedIds.isEmpty()) {
+            candidateQuery.addCriteria(Criteria.where(ID).nin(excludedIds));
+        }
+        candidateQuery.fields().include(ID);
+        List<String> candidateIds = mongoTemplate.find(candidateQuery, Message.class, consumerGroup).stream()
+                .map(Message::getId)
+                .toList();
+        if (candidateIds.isEmpty()) {
+            logger.debug("No unconsumed message found in DB for Consumer Group: {}", consumerGroup);
+            return List.of();
+        }
+
+        Query claimQuery = new Query(Criteria.where(ID).in(candidateIds).and(CONSUMED).is(false).orOperator(visibleCriteria()));
+        Update update = new Update().set(VISIBLE_AT, new Date(visibleAtMillis)).set(CLAIM_ID, claimId);
+        mongoTemplate.updateMulti(claimQuery, update, Message.class, consumerGroup);
+
+        List<Message> claimedMessages = mongoTemplate.find(new Query(Criteria.where(CLAIM_ID).is(claimId)), Message.class, consumerGroup);
+        logger.debug("{} messages claimed from DB for Consumer Group: {}", claimedMessages.size(), consumerGroup);
+        return claimedMessages;
+    }
+
+    /**
+     * Makes messages whose claim in Redis was lost visible in MongoDB again, instead of hiding them until the
+     * visibility deadline of this pop. The Redis registry that refused the claim keeps them from being handed out
+     * twice. Only messages still carrying {@code claimId} and its deadline are reset, so a later claim or in-flight
+     * mark is kept.
+     */
+    private void releaseLostClaims(String consumerGroup, String claimId, List<String> lostIds, long visibleAtMillis) {
+        mongoTemplate.updateMulti(new Query(Criteria.where(ID).in(lostIds).and(CLAIM_ID).is(claimId).and(VISIBLE_AT).is(new Date(visibleAtMillis))),
+                new Update().unset(VISIBLE_AT).unset(CLAIM_ID), Message.class, consumerGroup);
     }
 }
@@ -1,90 +1,74 @@
 package com.al.simplequeueservice.service;
 
 import com.al.simplequeueservice.model.Message;
-import com.mongodb.client.MongoClient;
-import com.mongodb.client.MongoCollection;
-import com.mongodb.client.model.IndexOptions;
-import org.bson.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.stereotype.Service;
 
-import java.util.concurrent.Executor;
-import java.util.concurrent.TimeUnit;
-
-import static com.al.simplequeueservice.util.SQSConstants.CREATED_AT;
+import java.util.List;
 
 /**
- * Service for pushing messages to the queue. Messages are added to a cache
- * and then asynchronously persisted to MongoDB with a TTL index.
+ * Service for pushing messages to the queue. Messages are queued for asynchronous persistence to MongoDB
+ * by the {@link MessagePersistenceService} pipeline and then added to a cache. Large contents are stored
+ * compressed by the {@link MessageCompressionService}.
  */
 @Service
 public class PushMessageService {
 
     private static final Logger logger = LoggerFactory.getLogger(PushMessageService.class);
     @Autowired
-    private MongoClient mongoClient;
-    @Value("${spring.data.mongodb.database}")
-    private String mongoDB;
-    @Value("${persistence.duration.minutes}")
-    private long expireMinutes;
-    @Autowired
-    private MongoTemplate mongoTemplate;
+    private MessagePersistenceService messagePersistenceService;
     @Autowired
     private CacheService cacheService;
     @Autowired
-    @Qualifier("taskExecutor")
-    private Executor taskExecutor;
+    private MessageCompressionService messageCompressionService;
+    @Autowired
+    private QueueStatsService queueStatsService;
 
     /**
-     * Pushes a message to the queue. The message is first added to a cache for immediate availability,
-     * and then saved to MongoDB asynchronously. A TTL index is ensured for the message's collection.
+     * Pushes a message to the queue. The message is first admitted to the persistence pipeline, which saves it
+     * to MongoDB asynchronously, and then added to a cache for immediate availability. Admitting it first means
+     * a message rejected by a full pipeline never reaches the cache. A delayed message is stored with its
+     * {@code visibleAt} time; {@link CacheService#addMessage} schedules it instead of queueing it, so neither tier
+     * hands it out before it is due.
      *
      * @param message The {@link Message} object to be pushed.
-     * @return The {@link Message} that was pushed.
+     * @return The {@link Message} that was pushed, with its original content.
      */
     public Message push(Message message) {
         logger.debug("Attempting to push message with content: {} to Consumer Group: {}", message.getContent(), message.getConsumerGroup());
+        Message storedMessage = messageCompressionService.compress(message);
+        // Save the Message to DB Asynchronously
+        messagePersistenceService.persist(storedMessage);
+        logger.debug("Message with ID {} queued for persistence for Consumer Group: {}", message.getId(), message.getConsumerGroup());
+
         // Save the Message to Cache
-        cacheService.addMessage(message);
+        cacheService.addMessage(storedMessage);
         logger.debug("Message with ID {} added to cache for Consumer Group: {}", message.getId(), message.getConsumerGroup());
-
-        // Save the Message to DB Asynchronously
-        taskExecutor.execute(() -> {
-            createTTLIndex(message);
-            mongoTemplate.save(message, message.getConsumerGroup());
-            logger.info("Message with ID {} asynchronously saved to DB for Consumer Group: {}", message.getId(), message.getConsumerGroup());
-        });
+        queueStatsService.recordPushed(message.getConsumerGroup(), 1);
         return message;
     }
 
     /**
-     * Ensures a TTL (Time-To-Live) index exists on the 'createdAt' field for the message's collection.
-     * This index automatically deletes documents after a specified time.
+     * Pushes a batch of messages for a single consumer group. The batch is admitted to the persistence pipeline
+     * as a whole, which writes it to MongoDB with bulk inserts, and then added to the cache in one round trip.
      *
-     * @param message The {@link Message} for which to ensure the TTL index.
+     * @param consumerGroup The consumer group all messages belong to.
+     * @param messages The {@link Message} objects to be pushed, in the order they should be consumed.
+     * @return The list of {@link Message} objects that were pushed, with their original contents.
      */
-    private void createTTLIndex(Message message) {
-        MongoCollection<Document> collection = mongoClient.getDatabase(mongoDB).getCollection(message.getConsumerGroup());
-        boolean ttlExists = collection.listIndexes()
-                .into(new java.util.ArrayList<>())
-                .stream()
-                .anyMatch(index -> {
-                    Document key = (Document) index.get("key");
-                    return key != null && key.containsKey(CREATED_AT);
-                });
+    public List<Message> pushBatch(String consumerGroup, List<Message> messages) {
+        logger.debug("Attempting to push batch of {} messages to Consumer Group: {}", messages.size(), consumerGroup);
+        List<Message> storedMessages = messageCompressionService.compressAll(messages);
+        // Save the Messages to DB Asynchronously
+        messagePersistenceService.persistAll(storedMessages);
+        logger.debug("Batch of {} messages queued for persistence for Consumer Group: {}", messages.size(), consumerGroup);
 
-        if (!ttlExists) {
-            logger.info("TTL index does not exist on field: {} for collection: {}. Creating with {} minutes expiration.", CREATED_AT, message.getConsumerGroup(), expireMinutes);
-            IndexOptions indexOptions = new IndexOptions().expireAfter(expireMinutes, TimeUnit.MINUTES);
-            collection.createIndex(new Document(CREATED_AT, 1), indexOptions);
-            logger.info("TTL index created on field: {} for collection: {}", CREATED_AT, message.getConsumerGroup());
-        } else {
-            logger.debug("TTL index already exists on field: {} for collection: {}", CREATED_AT, message.getConsumerGroup());
-        }
+        // Save the Messages to Cache
+        cacheService.addMessages(consumerGroup, storedMessages);
+        logger.debug("Batch of {} messages added to cache for Consumer Group: {}", messages.size(), consumerGroup);
+        queueStatsService.recordPushed(consumerGroup, messages.size());
+        return messages;
     }
 }
@@ -0,0 +1,328 @@
+package com.al.simplequeueservice.service;
+
+import com.al.simplequeueservice.model.Message;
+import com.al.simplequeueservice.model.QueueStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.al.simplequeueservice.util.SQSConstants.*;
+
+/**
+ * Statistics of each consumer group, served without scanning the queue. Pushes, pops and acknowledgements
+ * are counted in memory and added to Redis counters in one pipelined batch every {@code stats.flush.interval.ms},
+ * so the hot paths only pay for an in-memory increment and the counters add up across instances. The same batch
+ * feeds per-minute counters, from which the rates are read. The depth of the Redis list and the number of
+ * messages in flight are read with {@code LLEN} and {@code ZCARD}, and the age of the oldest message with one
+ * seek on the pending index.
+ * <p>
+ * Each group's share of a flush is a numbered batch applied by one script, so a batch retried after a flush that
+ * failed once it reached Redis is not counted twice. Messages removed by the MongoDB TTL before they were
+ * acknowledged are never counted as consumed, so every {@code stats.reconcile.interval.ms} one instance compares
+ * the counters of each group with its unconsumed messages in MongoDB and stores the difference, which the
+ * pending count leaves out.
+ */
+@Service
+public class QueueStatsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueueStatsService.class);
+
+    private static final Counter[] COUNTERS = Counter.values();
+    // Long enough for the previous minute to still be readable during the current one
+    private static final long MINUTE_COUNTERS_TTL_SECONDS = TimeUnit.MINUTES.toSeconds(3);
+    // Long enough to recognise a retried batch, after which the numbers of stopped instances are dropped
+    private static final long BATCH_NUMBER_TTL_SECONDS = TimeUnit.DAYS.toSeconds(1);
+    private static final RedisScript<Long> FLUSH_SCRIPT = RedisScript.of(new ClassPathResource("scripts/flush_stats.lua"), Long.class);
+    // Pushed messages neither acknowledged nor unconsumed in MongoDB at the last reconciliation
+    static final String DRIFT_FIELD = "drift";
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    @Qualifier("taskExecutor")
+    private Executor taskExecutor;
+
+    @Value("${stats.reconcile.interval.ms}")
+    private long reconcileIntervalMillis;
+
+    private final Map<String, LongAdder[]> unflushedCounts = new ConcurrentHashMap<>();
+    // Batches sent to Redis without a confirmation, retried as they are until one arrives
+    private final Map<String, Batch> unconfirmedBatches = new ConcurrentHashMap<>();
+    private final AtomicLong batchNumbers = new AtomicLong();
+    private final String instanceId = UUID.randomUUID().toString();
+
+    /**
+     * The counters kept per consumer group, stored as hash fields named after {@link #field}.
+     */
+    enum Counter {
+        PUSHED("pushed"),
+        POPPED("popped"),
+        ACKNOWLEDGED("acknowledged"),
+        CACHE_HITS("cacheHits"),
+        CACHE_MISSES("cacheMisses");
+
+        final String field;
+
+        Counter(String field) {
+            this.field = field;
+        }
+    }
+
+    /**
+     * Counts of one consumer group flushed together, numbered per instance in flush order.
+     */
+    private record Batch(long number, long minute, long[] counts) {
+    }
+
+    public void recordPushed(String consumerGroup, int count) {
+        add(consumerGroup, Counter.PUSHED, count);
+    }
+
+    /**
+     * Records popped messages by the tier that served them.
+     */
+    public void recordPopped(String consumerGroup, int fromCache, int fromDatabase) {
+        add(consumerGroup, Counter.POPPED, fromCache + fromDatabase);
+        add(consumerGroup, Counter.CACHE_HITS, fromCache);
+        add(consumerGroup, Counter.CACHE_MISSES, fromDatabase);
+    }
+
+    public void recordAcknowledged(String consumerGroup, int count) {
+        add(consumerGroup, Counter.ACKNOWLEDGED, count);
+    }
+
+    /**
+     * Adds the counts recorded since the last flush to the Redis counters. If the flush fails, the batch of each
+     * group is sent again as it is with the next flush, and counts recorded in the meantime wait for the one after,
+     * so a batch that already reached Redis is recognised and skipped.
+     */
+    @Scheduled(fixedDelayString = "${stats.flush.interval.ms}")
+    public void flush() {
+        Map<String, Batch> batches = new HashMap<>(unconfirmedBatches);
+        long minute = currentMinute();
+        unflushedCounts.forEach((consumerGroup, counts) -> {
+            if (batches.containsKey(consumerGroup)) {
+                return;
+            }
+            long[] delta = new long[COUNTERS.length];
+            boolean changed = false;
+            for (int i = 0; i < COUNTERS.length; i++) {
+                delta[i] = counts[i].sumThenReset();
+                changed |= delta[i] != 0;
+            }
+            if (changed) {
+                batches.put(consumerGroup, new Batch(batchNumbers.incrementAndGet(), minute, delta));
+            }
+        });
+        if (batches.isEmpty()) {
+            return;
+        }
+        unconfirmedBatches.putAll(batches);
+        byte[] script = bytes(FLUSH_SCRIPT.getScriptAsString());
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                batches.forEach((consumerGroup, batch) ->
+                        connection.scriptingCommands().eval(script, ReturnType.INTEGER, 3, flushKeysAndArgs(consumerGroup, batch)));
+                return null;
+            });
+            batches.keySet().forEach(unconfirmedBatches::remove);
+        } catch (Exception e) {
+            logger.warn("Failed to flush queue statistics of {} consumer groups, retrying them with the next flush: {}", batches.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Builds the keys and arguments of the flush script for one batch: the totals, the counters of the batch's
+     * minute and the last batch number of this instance, then the batch number, the TTLs and the non-zero counts.
+     */
+    private byte[][] flushKeysAndArgs(String consumerGroup, Batch batch) {
+        List<byte[]> keysAndArgs = new ArrayList<>(6 + COUNTERS.length * 2);
+        keysAndArgs.add(bytes(STATS_PREFIX + consumerGroup));
+        keysAndArgs.add(bytes(minuteKey(consumerGroup, batch.minute())));
+        keysAndArgs.add(bytes(STATS_PREFIX + consumerGroup + ":batch:" + instanceId));
+        keysAndArgs.add(bytes(Long.toString(batch.number())));
+        keysAndArgs.add(bytes(Long.toString(MINUTE_COUNTERS_TTL_SECONDS)));
+        keysAndArgs.add(bytes(Long.toString(BATCH_NUMBER_TTL_SECONDS)));
+        for (int i = 0; i < COUNTERS.length; i++) {
+            if (batch.counts()[i] != 0) {
+                keysAndArgs.add(bytes(COUNTERS[i].field));
+                keysAndArgs.add(bytes(Long.toString(batch.counts()[i])));
+            }
+        }
+        return keysAndArgs.toArray(new byte[0][]);
+    }
+
+    /**
+     * Reconciles the pending count of every consumer group with MongoDB, see {@link #reconcile(String)}. The counts
+     * run on the task executor, so they do not hold up the scheduler shared with the flush and the reaper.
+     */
+    @Scheduled(fixedDelayString = "${stats.reconcile.interval.ms}", initialDelayString = "${stats.reconcile.interval.ms}")
+    public void reconcile() {
+        taskExecutor.execute(() -> {
+            try {
+                for (String consumerGroup : mongoTemplate.getCollectionNames()) {
+                    reconcile(consumerGroup);
+                }
+            } catch (Exception e) {
+                logger.warn("Failed to reconcile queue statistics: {}", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Stores how many pushed messages are neither acknowledged nor unconsumed in MongoDB, mostly messages the TTL
+     * removed before they were acknowledged. Counting the unconsumed messages reads the range of the pending index,
+     * so only one instance reconciles a group per interval. Writes still queued for MongoDB make the result off by
+     * their number until the next reconciliation.
+     *
+     * @return {@code true} if this instance reconciled the group.
+     */
+    @SuppressWarnings("unchecked")
+    boolean reconcile(String consumerGroup) {
+        if (!Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(STATS_PREFIX + consumerGroup + ":reconcile", true,
+                Duration.ofMillis(reconcileIntervalMillis)))) {
+            return false;
+        }
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.hashCommands().hGetAll(bytes(STATS_PREFIX + consumerGroup));
+            return null;
+        }, RedisSerializer.string());
+        Map<String, String> totals = results.get(0) == null ? Map.of() : (Map<String, String>) results.get(0);
+        long unconsumed = mongoTemplate.count(new Query(Criteria.where(CONSUMED).is(false)), consumerGroup);
+        long drift = total(totals, consumerGroup, Counter.PUSHED) - total(totals, consumerGroup, Counter.ACKNOWLEDGED) - unconsumed;
+        redisTemplate.execute((RedisCallback<Boolean>) connection ->
+                connection.hashCommands().hSet(bytes(STATS_PREFIX + consumerGroup), bytes(DRIFT_FIELD), bytes(Long.toString(drift))));
+        logger.debug("Queue statistics of Consumer Group: {} reconciled, {} pushed messages no longer pending in MongoDB", consumerGroup, drift);
+        return true;
+    }
+
+    /**
+     * Returns the statistics of a consumer group: one pipelined round trip to Redis and one indexed lookup in MongoDB.
+     * Counts recorded by this instance and not yet flushed are included.
+     *
+     * @param consumerGroup The consumer group to report on.
+     * @return The statistics of the consumer group.
+     */
+    @SuppressWarnings("unchecked")
+    public QueueStats stats(String consumerGroup) {
+        long previousMinute = currentMinute() - 1;
+        List<String> messageListKeys = CacheService.messageListKeys(consumerGroup);
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.hashCommands().hGetAll(bytes(STATS_PREFIX + consumerGroup));
+            connection.hashCommands().hGetAll(bytes(minuteKey(consumerGroup, previousMinute)));
+            connection.zSetCommands().zCard(bytes(IN_FLIGHT_PREFIX + consumerGroup));
+            messageListKeys.forEach(key -> connection.listCommands().lLen(bytes(key)));
+            return null;
+        }, RedisSerializer.string());
+        Map<String, String> totals = results.get(0) == null ? Map.of() : (Map<String, String>) results.get(0);
+        Map<String, String> lastMinute = results.get(1) == null ? Map.of() : (Map<String, String>) results.get(1);
+        long inFlight = toLong(results.get(2));
+        // One list per priority
+        long cached = results.subList(3, results.size()).stream().mapToLong(QueueStatsService::toLong).sum();
+
+        long pushed = total(totals, consumerGroup, Counter.PUSHED);
+        long popped = total(totals, consumerGroup, Counter.POPPED);
+        long consumed = total(totals, consumerGroup, Counter.ACKNOWLEDGED);
+        long cacheHits = total(totals, consumerGroup, Counter.CACHE_HITS);
+        long cacheMisses = total(totals, consumerGroup, Counter.CACHE_MISSES);
+        long drift = toLong(totals.get(DRIFT_FIELD));
+        // Never below what is known to be waiting in Redis, e.g. while the counters of older messages are missing
+        long pending = Math.max(cached, pushed - consumed - drift - inFlight);
+        double cacheHitRatio = cacheHits + cacheMisses == 0 ? 0 : (double) cacheHits / (cacheHits + cacheMisses);
+
+        return new QueueStats(consumerGroup, pending, cached, inFlight, consumed, pushed, popped, oldestMessageAgeSeconds(consumerGroup),
+                perSecond(lastMinute, Counter.PUSHED), perSecond(lastMinute, Counter.POPPED), perSecond(lastMinute, Counter.ACKNOWLEDGED), cacheHitRatio);
+    }
+
+    /**
+     * Reads the oldest message not yet acknowledged from the head of the pending index, so only one entry is examined.
+     */
+    private long oldestMessageAgeSeconds(String consumerGroup) {
+        Query query = new Query(Criteria.where(CONSUMED).is(false)).with(Sort.by(Sort.Direction.ASC, CREATED_AT));
+        query.fields().include(CREATED_AT);
+        Message oldest = mongoTemplate.findOne(query, Message.class, consumerGroup);
+        if (oldest == null || oldest.getCreatedAt() == null) {
+            return 0;
+        }
+        return Math.max(0, TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - oldest.getCreatedAt().getTime()));
+    }
+
+    private void add(String consumerGroup, Counter counter, long count) {
+        if (count == 0) {
+            return;
+        }
+        unflushedCounts.computeIfAbsent(consumerGroup, group -> newCounts())[counter.ordinal()].add(count);
+    }
+
+    /**
+     * Adds the counts of this instance not yet confirmed by Redis to a total read from Redis.
+     */
+    private long total(Map<String, String> totals, String consumerGroup, Counter counter) {
+        LongAdder[] counts = unflushedCounts.get(consumerGroup);
+        Batch batch = unconfirmedBatches.get(consumerGroup);
+        return toLong(totals.get(counter.field)) + (counts == null ? 0 : counts[counter.ordinal()].sum())
+                + (batch == null ? 0 : batch.counts()[counter.ordinal()]);
+    }
+
+    private static double perSecond(Map<String, String> minuteCounts, Counter counter) {
+        return toLong(minuteCounts.get(counter.field)) / (double) Duration.ofMinutes(1).toSeconds();
+    }
+
+    static String minuteKey(String consumerGroup, long minute) {
+        return STATS_PREFIX + consumerGroup + ":" + minute;
+    }
+
+    private static long currentMinute() {
+        return TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis());
+    }
+
+    private static LongAdder[] newCounts() {
+        LongAdder[] counts = new LongAdder[COUNTERS.length];
+        for (int i = 0; i < COUNTERS.length; i++) {
+            counts[i] = new LongAdder();
+        }
+        return counts;
+    }
+
+    private static long toLong(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        return value instanceof Number number ? number.longValue() : Long.parseLong(value.toString());
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,160 @@
+package com.al.simplequeueservice.service;
+
+import com.al.simplequeueservice.model.Message;
+import com.al.simplequeueservice.util.SQSConstants;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisElementReader;
+import org.springframework.data.redis.serializer.RedisElementWriter;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.util.ByteUtils;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Non-blocking Redis access for the reactive API. It uses the same keys and Lua scripts as {@link CacheService},
+ * so messages pushed or popped through either stack are handled the same way by the visibility reaper,
+ * acknowledgements and the cache refill. The in-process buffer of {@link CacheService} is not used.
+ */
+@Service
+@Profile(SQSConstants.REACTIVE_PROFILE)
+public class ReactiveCacheService {
+
+    private final ReactiveRedisTemplate<String, Object> reactiveRedisTemplate;
+
+    @Value("${cache.ttl.minutes}")
+    private long redisCacheTtlMinutes;
+
+    @Value("${cache.max.list.length:0}")
+    private long maxListLength;
+
+    @Value("${claim.retention.minutes}")
+    private long claimRetentionMinutes;
+
+    public ReactiveCacheService(ReactiveRedisTemplate<String, Object> reactiveRedisTemplate) {
+        this.reactiveRedisTemplate = reactiveRedisTemplate;
+    }
+
+    /**
+     * Pushes a message onto the list of its priority, maintains the list TTL and notifies waiting consumers in one
+     * round trip. A message beyond {@code cache.max.list.length} in its list is left to the database.
+     * A delayed message is scheduled instead, until {@link DelayedDeliveryService} moves it to its list.
+     */
+    public Mono<Void> addMessage(Message message) {
+        if (message.getVisibleAt() != null) {
+            String consumerGroup = message.getConsumerGroup();
+            return reactiveRedisTemplate.execute(CacheService.SCHEDULE_SCRIPT,
+                            List.of(SQSConstants.SCHEDULED_PREFIX + consumerGroup, SQSConstants.SCHEDULED_MESSAGES_PREFIX + consumerGroup,
+                                    SQSConstants.SCHEDULED_GROUPS_KEY),
+                            CacheService.scheduleArgs(consumerGroup, List.of(message)))
+                    .then();
+        }
+        RedisElementWriter<Object> valueWriter = reactiveRedisTemplate.getSerializationContext().getValueSerializationPair().getWriter();
+        List<byte[]> args = CacheService.pushArgs(message.getConsumerGroup(), List.of(message), Duration.ofMinutes(redisCacheTtlMinutes).toSeconds(),
+                maxListLength, System.currentTimeMillis(), value -> ByteUtils.getBytes(valueWriter.write(value)));
+        List<String> keys = List.of(CacheService.messageListKey(message.getConsumerGroup(), message.getPriority()),
+                SQSConstants.ENQUEUED_PREFIX + message.getConsumerGroup());
+        return reactiveRedisTemplate.execute(CacheService.PUSH_SCRIPT, keys, args,
+                        RedisElementWriter.from(RedisSerializer.byteArray()), RedisElementReader.from(new GenericToStringSerializer<>(Long.class)))
+                .then();
+    }
+
+    /**
+     * Pops the oldest message of the highest priority and moves it in flight until {@code visibleAtMillis} in one atomic step.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Mono<Message> popMessage(String consumerGroup, long visibleAtMillis) {
+        Flux<Object> popped = (Flux) reactiveRedisTemplate.execute(CacheService.POP_IN_FLIGHT_SCRIPT,
+                CacheService.withMessageListKeys(consumerGroup, SQSConstants.IN_FLIGHT_PREFIX + consumerGroup,
+                        SQSConstants.IN_FLIGHT_MESSAGES_PREFIX + consumerGroup, SQSConstants.IN_FLIGHT_GROUPS_KEY,
+                        SQSConstants.ACKNOWLEDGED_PREFIX + consumerGroup, SQSConstants.DB_CLAIMS_PREFIX + consumerGroup),
+                List.of(1, visibleAtMillis, consumerGroup));
+        return flatten(popped).ofType(Message.class).next();
+    }
+
+    /**
+     * Claims messages handed out from the database and records them in flight until {@code visibleAtMillis}.
+     *
+     * @return The messages whose claim succeeded.
+     * @see CacheService#claimInFlight(String, List, long)
+     */
+    public Mono<List<Message>> claimInFlight(String consumerGroup, List<Message> messages, long visibleAtMillis) {
+        List<Object> args = new ArrayList<>(messages.size() + 3);
+        args.add(visibleAtMillis);
+        args.add(consumerGroup);
+        args.add(claimExpiryMillis());
+        args.addAll(messages);
+        return executeForIds(CacheService.CLAIM_FROM_DB_SCRIPT,
+                List.of(SQSConstants.IN_FLIGHT_PREFIX + consumerGroup, SQSConstants.IN_FLIGHT_MESSAGES_PREFIX + consumerGroup,
+                        SQSConstants.IN_FLIGHT_GROUPS_KEY, SQSConstants.ACKNOWLEDGED_PREFIX + consumerGroup,
+                        SQSConstants.DB_CLAIMS_PREFIX + consumerGroup),
+                args)
+                .map(claimedIds -> {
+                    Set<String> claimed = Set.copyOf(claimedIds);
+                    return messages.stream().filter(message -> claimed.contains(message.getId())).toList();
+                });
+    }
+
+    /**
+     * Removes acknowledged messages from flight.
+     *
+     * @return The IDs that were still in flight.
+     * @see CacheService#acknowledge(String, List)
+     */
+    public Mono<List<String>> acknowledge(String consumerGroup, List<String> messageIds) {
+        List<Object> args = new ArrayList<>(messageIds.size() + 1);
+        args.add(claimExpiryMillis());
+        args.addAll(messageIds);
+        return executeForIds(CacheService.ACK_IN_FLIGHT_SCRIPT,
+                List.of(SQSConstants.IN_FLIGHT_PREFIX + consumerGroup, SQSConstants.IN_FLIGHT_MESSAGES_PREFIX + consumerGroup,
+                        SQSConstants.ACKNOWLEDGED_PREFIX + consumerGroup),
+                args);
+    }
+
+    /**
+     * Returns up to {@code count} of the oldest messages waiting in the Redis lists of a consumer group, oldest first.
+     *
+     * @see CacheService#viewMessages(String, int)
+     */
+    public Mono<List<Message>> viewMessages(String consumerGroup, int count) {
+        // Each list is newest first, so its oldest entries are at the tail
+        return Flux.fromIterable(CacheService.messageListKeys(consumerGroup))
+                .flatMap(key -> reactiveRedisTemplate.opsForList().range(key, -count, -1))
+                .ofType(Message.class)
+                .sort(Comparator.comparing(Message::getCreatedAt))
+                .take(count)
+                .collectList();
+    }
+
+    /**
+     * Runs a script that returns message IDs, passing messages in the Redis value format and reading the IDs as strings.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Mono<List<String>> executeForIds(RedisScript<List> script, List<String> keys, List<Object> args) {
+        Flux<Object> ids = reactiveRedisTemplate.execute(script, keys, args,
+                reactiveRedisTemplate.getSerializationContext().getValueSerializationPair().getWriter(),
+                (RedisElementReader) RedisElementReader.from(RedisSerializer.string()));
+        return flatten(ids).map(String::valueOf).collectList();
+    }
+
+    /**
+     * Script replies holding several values may be emitted as one list or value by value, depending on the driver.
+     */
+    private static Flux<Object> flatten(Flux<Object> reply) {
+        return reply.flatMapIterable(value -> value instanceof List<?> values ? values : List.of(value));
+    }
+
+    private long claimExpiryMillis() {
+        return System.currentTimeMillis() + Duration.ofMinutes(claimRetentionMinutes).toMillis();
+    }
+}
@@ -0,0 +1,154 @@
+package com.al.simplequeueservice.service;
+
+import com.al.simplequeueservice.model.Message;
+import com.al.simplequeueservice.util.SQSConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static com.al.simplequeueservice.util.SQSConstants.*;
+
+/**
+ * Non-blocking counterpart of {@link PopMessageService} for the reactive API. Messages are popped from the cache
+ * and, if it is empty, claimed in MongoDB with {@link ReactiveMongoTemplate}, with the same in-flight registry,
+ * visibility timeout and acknowledgement rules as the blocking service.
+ */
+@Service
+@Profile(SQSConstants.REACTIVE_PROFILE)
+public class ReactivePopMessageService {
+
+    @Autowired
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Autowired
+    private ReactiveCacheService reactiveCacheService;
+
+    @Autowired
+    private MessagePersistenceService messagePersistenceService;
+
+    @Autowired
+    private CacheRefillService cacheRefillService;
+
+    @Autowired
+    private MessageCompressionService messageCompressionService;
+
+    @Autowired
+    private QueueStatsService queueStatsService;
+
+    @Value("${visibility.timeout.seconds}")
+    private long visibilityTimeoutSeconds;
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactivePopMessageService.class);
+    private static final int MAX_CLAIM_ATTEMPTS = 3;
+
+    /**
+     * Pops the oldest available message of the highest priority for a given consumer group.
+     * It first tries the cache, refilling a cold cache from the database once, and then claims the message in the database.
+     * The refill and the persistence pipeline run off the event loop, as they block.
+     *
+     * @param consumerGroup The consumer group from which to pop the message.
+     * @return A {@link Mono} emitting the message, or empty if no message is available.
+     */
+    public Mono<Message> pop(String consumerGroup) {
+        long visibleAtMillis = visibleAtMillis();
+        return reactiveCacheService.popMessage(consumerGroup, visibleAtMillis)
+                .switchIfEmpty(Mono.defer(() -> refill(consumerGroup)
+                        .filter(refilled -> refilled > 0)
+                        .flatMap(refilled -> reactiveCacheService.popMessage(consumerGroup, visibleAtMillis))))
+                .flatMap(message -> offload(() -> messagePersistenceService.markInFlight(consumerGroup, List.of(message.getId()), visibleAtMillis))
+                        .doOnSuccess(ignored -> queueStatsService.recordPopped(consumerGroup, 1, 0))
+                        .thenReturn(message))
+                .switchIfEmpty(Mono.defer(() -> claimInMongo(consumerGroup, visibleAtMillis, 1, List.of())))
+                .map(messageCompressionService::decompress);
+    }
+
+    /**
+     * Acknowledges delivered messages, so they are not returned to the queue when their visibility timeout expires.
+     *
+     * @param consumerGroup The consumer group the messages were popped from.
+     * @param messageIds The IDs of the messages to acknowledge.
+     * @return A {@link Mono} emitting the IDs that were acknowledged.
+     */
+    public Mono<List<String>> acknowledge(String consumerGroup, List<String> messageIds) {
+        return reactiveCacheService.acknowledge(consumerGroup, messageIds)
+                .flatMap(acknowledgedIds -> acknowledgedIds.isEmpty()
+                        ? Mono.just(acknowledgedIds)
+                        : offload(() -> messagePersistenceService.markConsumed(consumerGroup, acknowledgedIds))
+                                .doOnSuccess(ignored -> queueStatsService.recordAcknowledged(consumerGroup, acknowledgedIds.size()))
+                                .thenReturn(acknowledgedIds))
+                .doOnNext(acknowledgedIds -> logger.info("{} of {} messages acknowledged for Consumer Group: {}", acknowledgedIds.size(), messageIds.size(), consumerGroup));
+    }
+
+    /**
+     * Claims the next visible message in {@link PopMessageService#POP_SORT} order in MongoDB and then in the Redis in-flight registry. If another popper
+     * already took it from the cache, it is made visible in MongoDB again and the next one is tried, up to
+     * {@link #MAX_CLAIM_ATTEMPTS} times.
+     *
+     * @param lostIds IDs whose claim was lost in earlier attempts, skipped by this one.
+     */
+    private Mono<Message> claimInMongo(String consumerGroup, long visibleAtMillis, int attempt, List<String> lostIds) {
+        if (attempt > MAX_CLAIM_ATTEMPTS) {
+            return Mono.empty();
+        }
+        Query query = new Query(Criteria.where(CONSUMED).is(false)
+                .orOperator(Criteria.where(VISIBLE_AT).exists(false), Criteria.where(VISIBLE_AT).lte(new Date())))
+                .with(PopMessageService.POP_SORT);
+        if (!lostIds.isEmpty()) {
+            query.addCriteria(Criteria.where(ID).nin(lostIds));
+        }
+        String claimId = UUID.randomUUID().toString();
+        Update update = new Update().set(VISIBLE_AT, new Date(visibleAtMillis)).set(CLAIM_ID, claimId);
+        FindAndModifyOptions options = new FindAndModifyOptions().returnNew(true);
+        return reactiveMongoTemplate.findAndModify(query, update, options, Message.class, consumerGroup)
+                .flatMap(message -> reactiveCacheService.claimInFlight(consumerGroup, List.of(message), visibleAtMillis)
+                        .flatMap(claimed -> {
+                            if (!claimed.isEmpty()) {
+                                logger.info("Message with ID {} popped from DB for Consumer Group: {}", message.getId(), consumerGroup);
+                                queueStatsService.recordPopped(consumerGroup, 0, 1);
+                                return Mono.just(message);
+                            }
+                            logger.debug("Message with ID {} from DB was already claimed for Consumer Group: {}. Attempt {} of {}.", message.getId(), consumerGroup, attempt, MAX_CLAIM_ATTEMPTS);
+                            List<String> skippedIds = new ArrayList<>(lostIds);
+                            skippedIds.add(message.getId());
+                            return releaseLostClaim(consumerGroup, claimId, message.getId(), visibleAtMillis)
+                                    .then(claimInMongo(consumerGroup, visibleAtMillis, attempt + 1, skippedIds));
+                        }));
+    }
+
+    /**
+     * Makes a message whose claim in Redis was lost visible in MongoDB again, unless a later claim or in-flight mark
+     * replaced {@code claimId} or its deadline, the same way as {@link PopMessageService} does.
+     */
+    private Mono<Void> releaseLostClaim(String consumerGroup, String claimId, String messageId, long visibleAtMillis) {
+        return reactiveMongoTemplate.updateFirst(new Query(Criteria.where(ID).is(messageId).and(CLAIM_ID).is(claimId).and(VISIBLE_AT).is(new Date(visibleAtMillis))),
+                new Update().unset(VISIBLE_AT).unset(CLAIM_ID), Message.class, consumerGroup).then();
+    }
+
+    private Mono<Long> refill(String consumerGroup) {
+        return Mono.fromCallable(() -> cacheRefillService.refill(consumerGroup)).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Mono<Void> offload(Runnable task) {
+        return Mono.fromRunnable(task).subscribeOn(Schedulers.boundedElastic()).then();
+    }
+
+    private long visibleAtMillis() {
+        return System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(visibilityTimeoutSeconds);
+    }
+}
@@ -0,0 +1,51 @@
+package com.al.simplequeueservice.service;
+
+import com.al.simplequeueservice.model.Message;
+import com.al.simplequeueservice.util.SQSConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Non-blocking counterpart of {@link PushMessageService} for the reactive API. Messages are admitted to the
+ * {@link MessagePersistenceService} pipeline and then added to the cache with {@link ReactiveCacheService}.
+ */
+@Service
+@Profile(SQSConstants.REACTIVE_PROFILE)
+public class ReactivePushMessageService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactivePushMessageService.class);
+    @Autowired
+    private MessagePersistenceService messagePersistenceService;
+    @Autowired
+    private ReactiveCacheService reactiveCacheService;
+    @Autowired
+    private MessageCompressionService messageCompressionService;
+    @Autowired
+    private QueueStatsService queueStatsService;
+
+    /**
+     * Pushes a message to the queue. The message is first admitted to the persistence pipeline and then added to
+     * the cache, so a message rejected by a full pipeline never reaches the cache. Admission runs off the event
+     * loop, because a full pipeline with the {@code BLOCK} overflow policy waits for space.
+     *
+     * @param message The {@link Message} object to be pushed.
+     * @return The {@link Message} that was pushed, with its original content.
+     */
+    public Mono<Message> push(Message message) {
+        logger.debug("Attempting to push message with ID {} to Consumer Group: {}", message.getId(), message.getConsumerGroup());
+        Message storedMessage = messageCompressionService.compress(message);
+        return Mono.fromRunnable(() -> messagePersistenceService.persist(storedMessage))
+                .subscribeOn(Schedulers.boundedElastic())
+                .then(Mono.defer(() -> reactiveCacheService.addMessage(storedMessage)))
+                .doOnSuccess(ignored -> {
+                    logger.debug("Message with ID {} added to cache for Consumer Group: {}", message.getId(), message.getConsumerGroup());
+                    queueStatsService.recordPushed(message.getConsumerGroup(), 1);
+                })
+                .thenReturn(message);
+    }
+}
@@ -0,0 +1,60 @@
+package com.al.simplequeueservice.service;
+
+import com.al.simplequeueservice.model.Message;
+import com.al.simplequeueservice.model.MessagePage;
+import com.al.simplequeueservice.model.PageCursor;
+import com.al.simplequeueservice.util.SQSConstants;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Non-blocking counterpart of {@link ViewMessageService} for the reactive API, reading the cache with
+ * {@link ReactiveCacheService} and MongoDB with {@link ReactiveMongoTemplate}.
+ */
+@Service
+@Profile(SQSConstants.REACTIVE_PROFILE)
+public class ReactiveViewMessageService {
+
+    @Autowired
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Autowired
+    private ReactiveCacheService reactiveCacheService;
+
+    @Autowired
+    private MessageCompressionService messageCompressionService;
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveViewMessageService.class);
+
+    /**
+     * Retrieves a page of messages for a given consumer group, with the same filtering and paging as {@link ViewMessageService#view}.
+     *
+     * @param consumerGroup The consumer group for which to retrieve messages.
+     * @param messageCount The maximum number of messages to return.
+     * @param consumed An optional string ("yes" or "no") to filter messages by their consumed status.
+     * @param pageToken An optional continuation token from a previous page; without it the first page is returned.
+     * @return A {@link Mono} emitting the messages of the page, sorted and unique, with the token of the next page.
+     * @throws IllegalArgumentException If the page token is invalid.
+     */
+    public Mono<MessagePage> view(String consumerGroup, int messageCount, String consumed, String pageToken) {
+        logger.debug("Received request to view messages for Consumer Group: {}, message count: {}, consumed status: {}, page token: {}", consumerGroup, messageCount, StringUtils.isEmpty(consumed) ? "N/A" : consumed, StringUtils.isEmpty(pageToken) ? "N/A" : pageToken);
+        PageCursor cursor = StringUtils.isEmpty(pageToken) ? null : PageCursor.decode(pageToken);
+        Mono<List<Message>> cachedMessages = "no".equalsIgnoreCase(consumed) && cursor == null
+                ? reactiveCacheService.viewMessages(consumerGroup, messageCount + 1)
+                : Mono.just(List.of());
+        Mono<List<Message>> mongoMessages = reactiveMongoTemplate.find(ViewMessageService.pageQuery(consumed, cursor, messageCount + 1), Message.class, consumerGroup)
+                .collectList();
+        return Mono.zip(cachedMessages, mongoMessages)
+                .map(sources -> ViewMessageService.toPage(sources.getT1(), sources.getT2(), cursor, messageCount))
+                .map(page -> new MessagePage(messageCompressionService.decompressAll(page.messages()), page.nextPageToken()))
+                .doOnNext(page -> logger.info("Returning a page of {} unique messages for Consumer Group: {}, more pages: {}", page.messages().size(), consumerGroup, page.nextPageToken() != null));
+    }
+}
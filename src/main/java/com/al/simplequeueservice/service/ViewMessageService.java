@@ -1,26 +1,31 @@
 package com.al.simplequeueservice.service;
 
 import com.al.simplequeueservice.model.Message;
+import com.al.simplequeueservice.model.MessagePage;
+import com.al.simplequeueservice.model.PageCursor;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.stream.Stream;
 
 import static com.al.simplequeueservice.util.SQSConstants.*;
 
 /**
- * Service for viewing messages in the queue for a specific consumer group.
- * It retrieves messages from both cache and MongoDB, combines them, and applies filtering and sorting.
+ * Service for viewing messages in the queue for a specific consumer group, one page at a time.
+ * Pages are ordered by (createdAt, id) and resume from a continuation token, so each page reads only
+ * the messages it returns from MongoDB, however large the backlog is. The oldest cached messages are merged into
+ * the first page only.
+ * Contents stored compressed are restored before messages are returned.
  */
 @Service
 public class ViewMessageService {
@@ -31,65 +36,80 @@ public class ViewMessageService {
     @Autowired
     private CacheService cacheService;
 
+    @Autowired
+    private MessageCompressionService messageCompressionService;
+
     private static final Logger logger = LoggerFactory.getLogger(ViewMessageService.class);
 
     /**
-     * Retrieves a list of messages for a given consumer group, with options to limit the count and filter by consumption status.
-     * Messages are first retrieved from the cache and then from MongoDB, excluding duplicates.
+     * Retrieves a page of messages for a given consumer group, with options to limit the count and filter by consumption status.
+     * For the first page of unconsumed messages the oldest entries of the cache are merged with MongoDB, excluding
+     * duplicates. Later pages are read from MongoDB alone: the cache only ever offers its oldest entries, which the
+     * first page already covered, and the persistence pipeline stores cached messages in MongoDB shortly after their push.
      *
      * @param consumerGroup The consumer group for which to retrieve messages.
      * @param messageCount The maximum number of messages to return.
      * @param consumed An optional string ("yes" or "no") to filter messages by their consumed status.
-     * @return A sorted list of unique messages.
+     * @param pageToken An optional continuation token from a previous page; without it the first page is returned.
+     * @return The messages of the page, sorted and unique, with the token of the next page.
+     * @throws IllegalArgumentException If the page token is invalid.
      */
-    public List<Message> view(String consumerGroup, int messageCount, String consumed) {
-        logger.debug("Received request to view messages for Consumer Group: {}, message count: {}, consumed status: {}", consumerGroup, messageCount, StringUtils.isEmpty(consumed) ? "N/A" : consumed);
-
-        List<Message> combinedMessages = new ArrayList<>();
-
-        Query query = new Query();
-        // Removed: query.addCriteria(Criteria.where("consumerGroup").is(consumerGroup)); // Redundant as collection name is consumerGroup
+    public MessagePage view(String consumerGroup, int messageCount, String consumed, String pageToken) {
+        logger.debug("Received request to view messages for Consumer Group: {}, message count: {}, consumed status: {}, page token: {}", consumerGroup, messageCount, StringUtils.isEmpty(consumed) ? "N/A" : consumed, StringUtils.isEmpty(pageToken) ? "N/A" : pageToken);
+        PageCursor cursor = StringUtils.isEmpty(pageToken) ? null : PageCursor.decode(pageToken);
 
-        if (consumed != null) {
-            if (consumed.equalsIgnoreCase("yes")) {
-                query.addCriteria(Criteria.where(CONSUMED).is(true));
-                logger.debug("Filtering messages to include only consumed messages.");
-            } else if (consumed.equalsIgnoreCase("no")) {
-                // Get from Cache
-                List<Message> cachedMessages = cacheService.viewMessages(consumerGroup).stream().limit(messageCount).toList();
-                combinedMessages.addAll(cachedMessages);
-                logger.debug("Retrieved {} messages from cache for Consumer Group: {}", cachedMessages.size(), consumerGroup);
-
-                Set<String> cachedMessageIds = cachedMessages.stream()
-                        .map(Message::getId)
-                        .collect(Collectors.toSet());
-                // Exclude messages already found in cache
-                if (!cachedMessageIds.isEmpty()) {
-                    if(cachedMessageIds.size() < messageCount){
-                        query.addCriteria(Criteria.where(ID).nin(cachedMessageIds));
-                        logger.debug("Excluding {} cached messages from MongoDB query.", cachedMessageIds.size());
-                    }else {
-                        logger.debug("All requested messages found in cache. Skipping MongoDB query.");
-                        // Sort by createdAt to maintain consistent order
-                        combinedMessages.sort(Comparator.comparing(Message::getCreatedAt));
-                        logger.debug("Returning a combined list of {} unique messages for Consumer Group: {}", combinedMessages.size(), consumerGroup);
-                        return combinedMessages;
-                    }
-                }
-                query.addCriteria(Criteria.where(CONSUMED).is(false));
-                logger.debug("Filtering messages to include only unconsumed messages (after checking cache).");
-            }
+        // One extra message tells whether another page follows
+        List<Message> cachedMessages = List.of();
+        if ("no".equalsIgnoreCase(consumed) && cursor == null) {
+            cachedMessages = cacheService.viewMessages(consumerGroup, messageCount + 1);
+            logger.debug("Retrieved {} messages from cache for Consumer Group: {}", cachedMessages.size(), consumerGroup);
         }
 
-        query.limit(messageCount - combinedMessages.size());
-        List<Message> mongoMessages = mongoTemplate.find(query, Message.class, consumerGroup);
-        combinedMessages.addAll(mongoMessages);
+        List<Message> mongoMessages = mongoTemplate.find(pageQuery(consumed, cursor, messageCount + 1), Message.class, consumerGroup);
         logger.debug("Retrieved {} messages from MongoDB for Consumer Group: {}.", mongoMessages.size(), consumerGroup);
 
-        // Sort by createdAt to maintain consistent order
-        combinedMessages.sort(Comparator.comparing(Message::getCreatedAt));
+        MessagePage page = toPage(cachedMessages, mongoMessages, cursor, messageCount);
+        logger.info("Returning a page of {} unique messages for Consumer Group: {}, more pages: {}", page.messages().size(), consumerGroup, page.nextPageToken() != null);
+        return new MessagePage(messageCompressionService.decompressAll(page.messages()), page.nextPageToken());
+    }
 
-        logger.info("Returning a combined list of {} unique messages for Consumer Group: {}", combinedMessages.size(), consumerGroup);
-        return combinedMessages;
+    /**
+     * Builds the MongoDB query for a page: the consumed filter, the position after the cursor and the page order.
+     * The cursor is expressed as {@code createdAt >= c} with the tie on the ID checked separately, so the index
+     * range starts right at the cursor instead of scanning the messages of previous pages.
+     */
+    static Query pageQuery(String consumed, PageCursor cursor, int limit) {
+        Query query = new Query();
+        if ("yes".equalsIgnoreCase(consumed)) {
+            query.addCriteria(Criteria.where(CONSUMED).is(true));
+        } else if ("no".equalsIgnoreCase(consumed)) {
+            query.addCriteria(Criteria.where(CONSUMED).is(false));
+        } else {
+            // Matching both values lets MongoDB walk the pending index once per value and merge the runs in sort order
+            query.addCriteria(Criteria.where(CONSUMED).in(false, true));
+        }
+        if (cursor != null) {
+            query.addCriteria(new Criteria().andOperator(
+                    Criteria.where(CREATED_AT).gte(cursor.createdAt()),
+                    new Criteria().orOperator(Criteria.where(CREATED_AT).gt(cursor.createdAt()), Criteria.where(ID).gt(cursor.id()))));
+        }
+        return query.with(Sort.by(CREATED_AT, ID)).limit(limit);
+    }
+
+    /**
+     * Merges the cached and stored candidates of a page. Messages in the cache are usually stored in MongoDB too;
+     * the cached copy is kept.
+     */
+    static MessagePage toPage(List<Message> cachedMessages, List<Message> mongoMessages, PageCursor cursor, int messageCount) {
+        Map<String, Message> uniqueMessages = new LinkedHashMap<>();
+        Stream.concat(cachedMessages.stream(), mongoMessages.stream())
+                .filter(message -> cursor == null || cursor.precedes(message))
+                .forEach(message -> uniqueMessages.putIfAbsent(message.getId(), message));
+        List<Message> sortedMessages = uniqueMessages.values().stream().sorted(PageCursor.PAGE_ORDER).toList();
+        if (sortedMessages.size() <= messageCount) {
+            return new MessagePage(sortedMessages, null);
+        }
+        List<Message> pageMessages = sortedMessages.subList(0, messageCount);
+        return new MessagePage(pageMessages, PageCursor.of(pageMessages.getLast()).encode());
     }
 }
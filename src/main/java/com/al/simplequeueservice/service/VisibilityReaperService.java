@@ -0,0 +1,55 @@
+package com.al.simplequeueservice.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Returns in-flight messages whose visibility timeout expired without an acknowledgement to the front of their queue.
+ * Each run reads only the expired range of each consumer group's in-flight sorted set, in bounded batches,
+ * so its cost depends on the number of expired messages and not on the number in flight.
+ */
+@Service
+public class VisibilityReaperService {
+
+    private static final Logger logger = LoggerFactory.getLogger(VisibilityReaperService.class);
+
+    @Autowired
+    private CacheService cacheService;
+
+    @Value("${visibility.reaper.batch.size}")
+    private int batchSize;
+
+    @Scheduled(fixedDelayString = "${visibility.reaper.interval.ms}")
+    public void requeueExpiredMessages() {
+        try {
+            long now = System.currentTimeMillis();
+            for (String consumerGroup : cacheService.getInFlightConsumerGroups()) {
+                requeueExpiredMessages(consumerGroup, now);
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to re-queue expired in-flight messages: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Re-queues the messages of one consumer group whose visibility deadline is at or before {@code now}.
+     *
+     * @return The number of messages re-queued.
+     */
+    long requeueExpiredMessages(String consumerGroup, long now) {
+        long total = 0;
+        long requeued;
+        do {
+            requeued = cacheService.requeueExpired(consumerGroup, now, batchSize);
+            total += requeued;
+        } while (requeued == batchSize);
+        if (total > 0) {
+            logger.info("{} messages with expired visibility timeout re-queued for Consumer Group: {}", total, consumerGroup);
+        }
+        return total;
+    }
+}
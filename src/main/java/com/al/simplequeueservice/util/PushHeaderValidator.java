@@ -0,0 +1,46 @@
+package com.al.simplequeueservice.util;
+
+import com.al.simplequeueservice.exception.ErrorResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+/**
+ * Checks the headers shared by the push endpoints of both controllers, so every endpoint rejects an out of range
+ * value with the same {@code 400 Bad Request} body before a message is built or its body is read.
+ */
+@Component
+public class PushHeaderValidator {
+
+    private static final Logger logger = LoggerFactory.getLogger(PushHeaderValidator.class);
+
+    @Value("${push.max.delay.seconds}")
+    private int maxDelaySeconds;
+
+    /**
+     * Validates the {@code priority} and {@code delaySeconds} headers of a push.
+     *
+     * @param priority The requested priority.
+     * @param delaySeconds The requested delay in seconds.
+     * @param url The endpoint URL, relative to {@link SQSConstants#QUEUE_BASE_URL}, reported as the path of the error.
+     * @return The error to respond with, or empty if both headers are in range.
+     */
+    public Optional<ErrorResponse> validate(int priority, int delaySeconds, String url) {
+        if (priority < 0 || priority > SQSConstants.MAX_PRIORITY) {
+            logger.warn("Invalid priority requested: {}. Allowed range: 0 to {}", priority, SQSConstants.MAX_PRIORITY);
+            return Optional.of(badRequest(String.format(SQSConstants.PRIORITY_VALIDATION_ERROR_MESSAGE, SQSConstants.MAX_PRIORITY), url));
+        }
+        if (delaySeconds < 0 || delaySeconds > maxDelaySeconds) {
+            logger.warn("Invalid delay seconds requested: {}. Allowed range: 0 to {}", delaySeconds, maxDelaySeconds);
+            return Optional.of(badRequest(String.format(SQSConstants.DELAY_SECONDS_VALIDATION_ERROR_MESSAGE, maxDelaySeconds), url));
+        }
+        return Optional.empty();
+    }
+
+    private ErrorResponse badRequest(String message, String url) {
+        return new ErrorResponse(400, "Bad Request", message, SQSConstants.QUEUE_BASE_URL + url);
+    }
+}
@@ -0,0 +1,78 @@
+package com.al.simplequeueservice.util;
+
+import com.al.simplequeueservice.exception.PayloadTooLargeException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads streamed request bodies as UTF-8 text through a small pool of reusable buffers, so a push copies
+ * its body once, from the socket into the buffer, before it becomes the message content. Bodies larger
+ * than a pooled buffer grow a private one that is not kept.
+ */
+@Component
+public class RawPayloadReader {
+
+    private static final int MAX_POOLED_BUFFERS = 64;
+
+    @Value("${push.raw.max.bytes}")
+    private int maxBytes;
+
+    @Value("${push.raw.buffer.bytes}")
+    private int bufferBytes;
+
+    private final Queue<byte[]> pool = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    /**
+     * Reads the whole stream as UTF-8 text.
+     *
+     * @throws PayloadTooLargeException if the stream is longer than {@code push.raw.max.bytes}.
+     */
+    public String readUtf8(InputStream inputStream) throws IOException {
+        byte[] pooledBuffer = pool.poll();
+        if (pooledBuffer != null) {
+            pooled.decrementAndGet();
+        } else {
+            pooledBuffer = new byte[bufferBytes];
+        }
+        byte[] buffer = pooledBuffer;
+        try {
+            int length = 0;
+            while (true) {
+                if (length == buffer.length) {
+                    if (length >= maxBytes) {
+                        // One byte more than allowed proves the body is too large
+                        if (inputStream.read() < 0) {
+                            break;
+                        }
+                        throw new PayloadTooLargeException(String.format(SQSConstants.PAYLOAD_SIZE_VALIDATION_ERROR_MESSAGE, maxBytes));
+                    }
+                    buffer = Arrays.copyOf(buffer, (int) Math.min(maxBytes, buffer.length * 2L));
+                }
+                int read = inputStream.read(buffer, length, buffer.length - length);
+                if (read < 0) {
+                    break;
+                }
+                length += read;
+            }
+            if (length > maxBytes) {
+                throw new PayloadTooLargeException(String.format(SQSConstants.PAYLOAD_SIZE_VALIDATION_ERROR_MESSAGE, maxBytes));
+            }
+            return new String(buffer, 0, length, StandardCharsets.UTF_8);
+        } finally {
+            if (pooled.incrementAndGet() <= MAX_POOLED_BUFFERS) {
+                pool.offer(pooledBuffer);
+            } else {
+                pooled.decrementAndGet();
+            }
+        }
+    }
+}
@@ -5,20 +5,65 @@ public class SQSConstants {
     public static final String ID = "id";
     public static final String CONSUMED = "consumed";
     public static final String CREATED_AT = "createdAt";
+    public static final String PRIORITY = "priority";
+    public static final String CLAIM_ID = "claimId";
+    public static final String VISIBLE_AT = "visibleAt";
+    public static final String MONGO_ID = "_id";
+    public static final String PENDING_INDEX_NAME = "consumed_1_createdAt_1__id_1";
+    public static final String PRIORITY_INDEX_NAME = "consumed_1_priority_-1_createdAt_1__id_1";
+    public static final int MAX_PRIORITY = 9;
     public static final int CORE_POOL_SIZE = 5;
     public static final int MAX_POOL_SIZE = 10;
     public static final int QUEUE_CAPACITY = 25;
     public static final String THREAD_NAME_PREFIX = "DBDataUpdater-";
+    public static final String LONG_POLL_THREAD_NAME_PREFIX = "LongPoll-";
+    public static final String PERSISTENCE_THREAD_NAME_PREFIX = "DBPersister-";
+    public static final String QUEUE_OVERLOADED_ERROR_MESSAGE = "Persistence queue is full. Retry later.";
     public static final String QUEUE_BASE_URL = "/queue";
     public static final String PUSH_URL = "/push";
+    public static final String PUSH_BATCH_URL = "/push/batch";
+    public static final String PUSH_RAW_URL = "/push/raw";
     public static final String POP_URL = "/pop";
+    public static final String POP_BATCH_URL = "/pop/batch";
+    public static final String POP_RAW_URL = "/pop/raw";
     public static final String VIEW_URL = "/view";
+    public static final String INDEXES_URL = "/indexes";
+    public static final String STATS_URL = "/stats";
+    public static final String ACK_URL = "/ack";
     public static final String USER_ROLE = "USER";
     public static final String ADMIN_ROLE = "ADMIN";
     public static final String HAS_ADMIN_ROLE = "hasRole(\'ADMIN\')";
     public static final String CONSUMER_GROUP_HEADER = "consumerGroup";
     public static final String MESSAGE_COUNT_HEADER = "messageCount";
+    public static final String WAIT_SECONDS_HEADER = "waitSeconds";
+    public static final String MESSAGE_ID_HEADER = "messageId";
+    public static final String CREATED_AT_HEADER = "createdAt";
+    public static final String PRIORITY_HEADER = "priority";
+    public static final String DELAY_SECONDS_HEADER = "delaySeconds";
+    public static final String PAGE_TOKEN_HEADER = "pageToken";
+    public static final String NEXT_PAGE_TOKEN_HEADER = "nextPageToken";
     public static final String MESSAGE_COUNT_VALIDATION_ERROR_MESSAGE = "Message Count should be 1 to %s.";
+    public static final String BATCH_SIZE_VALIDATION_ERROR_MESSAGE = "Batch Size should be 1 to %s.";
+    public static final String ACK_SIZE_VALIDATION_ERROR_MESSAGE = "Number of Message IDs should be 1 to %s.";
+    public static final String WAIT_SECONDS_VALIDATION_ERROR_MESSAGE = "Wait Seconds should be 0 to %s.";
+    public static final String PAGE_TOKEN_VALIDATION_ERROR_MESSAGE = "Page Token is invalid.";
+    public static final String PRIORITY_VALIDATION_ERROR_MESSAGE = "Priority should be 0 to %s.";
+    public static final String DELAY_SECONDS_VALIDATION_ERROR_MESSAGE = "Delay Seconds should be 0 to %s.";
+    public static final String PAYLOAD_SIZE_VALIDATION_ERROR_MESSAGE = "Message Content should be at most %s bytes.";
     public static final String CACHE_PREFIX = "consumerGroupMessages:";
+    public static final String PRIORITY_CACHE_PREFIX = "consumerGroupPriorityMessages:";
+    public static final String IN_FLIGHT_PREFIX = "consumerGroupInFlight:";
+    public static final String IN_FLIGHT_MESSAGES_PREFIX = "consumerGroupInFlightMessages:";
+    public static final String IN_FLIGHT_GROUPS_KEY = "consumerGroupsInFlight";
+    public static final String ACKNOWLEDGED_PREFIX = "consumerGroupAcknowledged:";
+    public static final String DB_CLAIMS_PREFIX = "consumerGroupDbClaims:";
+    public static final String ENQUEUED_PREFIX = "consumerGroupEnqueued:";
+    public static final String SCHEDULED_PREFIX = "consumerGroupScheduled:";
+    public static final String SCHEDULED_MESSAGES_PREFIX = "consumerGroupScheduledMessages:";
+    public static final String SCHEDULED_GROUPS_KEY = "consumerGroupsScheduled";
+    public static final String STATS_PREFIX = "consumerGroupStats:";
+    public static final String REFILL_LOCK_PREFIX = "consumerGroupRefillLock:";
+    public static final String NOTIFICATION_CHANNEL = "consumerGroupNotifications";
+    public static final String REACTIVE_PROFILE = "reactive";
 
 }
@@ -0,0 +1,15 @@
+-- Removes acknowledged messages from flight and returns the IDs that were still in flight.
+-- Acknowledged IDs are kept until the database has marked them consumed, so the database fallback
+-- cannot hand them out again in the meantime.
+-- KEYS[1] in-flight deadlines (sorted set), KEYS[2] in-flight messages (hash), KEYS[3] acknowledged messages (sorted set).
+-- ARGV[1] expiry of the acknowledged IDs in epoch millis, ARGV[2..n] message IDs.
+local acknowledged = {}
+for i = 2, #ARGV do
+    local id = cjson.decode(ARGV[i])
+    if redis.call('ZREM', KEYS[1], id) == 1 then
+        redis.call('HDEL', KEYS[2], id)
+        redis.call('ZADD', KEYS[3], ARGV[1], id)
+        table.insert(acknowledged, id)
+    end
+end
+return acknowledged
@@ -0,0 +1,21 @@
+-- Claims messages handed out by the database fallback, so a message is never delivered by both tiers.
+-- A claim is lost if the message is already in flight, acknowledged but not yet marked consumed in the
+-- database, or was already claimed by the database fallback.
+-- KEYS[1] in-flight deadlines (sorted set), KEYS[2] in-flight messages (hash),
+-- KEYS[3] consumer groups with messages in flight (set), KEYS[4] acknowledged messages (sorted set),
+-- KEYS[5] messages claimed by the database fallback (sorted set).
+-- ARGV[1] visibility deadline in epoch millis, ARGV[2] consumer group, ARGV[3] claim expiry in epoch millis,
+-- ARGV[4..n] messages.
+-- Returns the IDs of the messages whose claim succeeded.
+local claimed = {}
+for i = 4, #ARGV do
+    local id = message_id(ARGV[i])
+    if not redis.call('ZSCORE', KEYS[4], id) and redis.call('ZADD', KEYS[1], 'NX', ARGV[1], id) == 1 then
+        redis.call('HSET', KEYS[2], id, ARGV[i])
+        -- Remembered so a copy of the message still waiting in the list is never delivered again
+        redis.call('ZADD', KEYS[5], ARGV[3], id)
+        table.insert(claimed, id)
+    end
+end
+redis.call('SADD', KEYS[3], ARGV[2])
+return claimed
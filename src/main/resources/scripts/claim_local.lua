@@ -0,0 +1,21 @@
+-- Moves messages popped from the in-process buffer in flight, the same way a pop from the list does.
+-- A message is dropped instead of delivered if it is already in flight, acknowledged but not yet marked
+-- consumed in the database, claimed by the database fallback, or already enqueued in Redis by a refill.
+-- KEYS[1] in-flight deadlines (sorted set), KEYS[2] in-flight messages (hash),
+-- KEYS[3] consumer groups with messages in flight (set), KEYS[4] acknowledged messages (sorted set),
+-- KEYS[5] messages claimed by the database fallback (sorted set), KEYS[6] enqueued messages (sorted set).
+-- ARGV[1] visibility deadline in epoch millis, ARGV[2] consumer group, ARGV[3..n] messages.
+-- Returns the IDs of the messages moved in flight.
+local claimed = {}
+for i = 3, #ARGV do
+    local id = message_id(ARGV[i])
+    if not redis.call('ZSCORE', KEYS[4], id) and not redis.call('ZSCORE', KEYS[5], id) and not redis.call('ZSCORE', KEYS[6], id)
+            and redis.call('ZADD', KEYS[1], 'NX', ARGV[1], id) == 1 then
+        redis.call('HSET', KEYS[2], id, ARGV[i])
+        table.insert(claimed, id)
+    end
+end
+if #claimed > 0 then
+    redis.call('SADD', KEYS[3], ARGV[2])
+end
+return claimed
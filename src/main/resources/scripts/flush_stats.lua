@@ -0,0 +1,18 @@
+-- Adds one batch of counts of a consumer group to its totals and to the counters of the batch's minute, once.
+-- Each instance numbers its batches, and a batch retried after a flush that failed once it reached Redis is
+-- recognised by its number and skipped, so the counts are not added twice.
+-- KEYS[1] totals (hash), KEYS[2] minute counters (hash), KEYS[3] number of the last batch of this instance (string).
+-- ARGV[1] batch number, ARGV[2] TTL of the minute counters in seconds, ARGV[3] TTL of the batch number in seconds,
+-- ARGV[4..n] pairs of counter field and count.
+local batch = tonumber(ARGV[1])
+local applied = tonumber(redis.call('GET', KEYS[3]) or '0')
+if batch <= applied then
+    return 0
+end
+for i = 4, #ARGV, 2 do
+    redis.call('HINCRBY', KEYS[1], ARGV[i], ARGV[i + 1])
+    redis.call('HINCRBY', KEYS[2], ARGV[i], ARGV[i + 1])
+end
+redis.call('EXPIRE', KEYS[2], ARGV[2])
+redis.call('SET', KEYS[3], batch, 'EX', ARGV[3])
+return 1
@@ -0,0 +1,15 @@
+-- Shortens the retention of acknowledged IDs once the database has marked them consumed. They are kept for a
+-- grace period instead of being dropped, as a database read that started before the mark may still be on its
+-- way to claim the message.
+-- KEYS[1] acknowledged messages (sorted set). ARGV[1] end of the grace period in epoch millis, ARGV[2..n] message IDs.
+local graceEnd = tonumber(ARGV[1])
+local shortened = 0
+for i = 2, #ARGV do
+    local id = cjson.decode(ARGV[i])
+    local expiry = redis.call('ZSCORE', KEYS[1], id)
+    if expiry and tonumber(expiry) > graceEnd then
+        redis.call('ZADD', KEYS[1], 'XX', graceEnd, id)
+        shortened = shortened + 1
+    end
+end
+return shortened
@@ -0,0 +1,43 @@
+-- Prepended to the scripts that read message payloads. Reads the ID and priority of a payload written by either
+-- Redis codec: JSON, or the binary codec, whose first byte is its format version (see BinaryMessageCodec).
+local function message_fields(payload)
+    if string.byte(payload, 1) ~= 1 then
+        local message = cjson.decode(payload)
+        return message['id'], tonumber(message['priority']) or 0
+    end
+    local flags = string.byte(payload, 2)
+    local id, position
+    -- Flag 0x01: the ID is a UUID stored as 16 bytes, otherwise a UTF-8 string with a 2-byte length
+    if flags % 2 == 1 then
+        local hex = string.gsub(string.sub(payload, 3, 18), '.', function(c)
+            return string.format('%02x', string.byte(c))
+        end)
+        id = string.sub(hex, 1, 8) .. '-' .. string.sub(hex, 9, 12) .. '-' .. string.sub(hex, 13, 16) .. '-'
+                .. string.sub(hex, 17, 20) .. '-' .. string.sub(hex, 21, 32)
+        position = 19
+    else
+        local length = string.byte(payload, 3) * 256 + string.byte(payload, 4)
+        id = string.sub(payload, 5, 4 + length)
+        position = 5 + length
+    end
+    -- Flag 0x04: an 8-byte creation time follows the ID, flag 0x08: then a 1-byte priority
+    if math.floor(flags / 4) % 2 == 1 then
+        position = position + 8
+    end
+    if math.floor(flags / 8) % 2 == 1 then
+        return id, string.byte(payload, position)
+    end
+    return id, 0
+end
+
+local function message_id(payload)
+    return (message_fields(payload))
+end
+
+-- Message lists are passed as the last keys of a script, highest priority first, from first_list on.
+-- Returns the list of a payload's priority, clamped to the lists passed.
+local function message_list(payload, first_list)
+    local _, priority = message_fields(payload)
+    local lowest = #KEYS - first_list
+    return KEYS[first_list + lowest - math.max(0, math.min(lowest, priority))]
+end
@@ -0,0 +1,28 @@
+-- Pops up to ARGV[1] of the oldest messages of the highest priorities of a consumer group and moves them in
+-- flight in one step. Each priority has its own list, so only the lists of the priorities popped are touched.
+-- Copies of messages that are already in flight, acknowledged but not yet marked consumed in the database,
+-- or claimed by the database fallback are discarded instead of being delivered twice.
+-- KEYS[1] in-flight deadlines (sorted set), KEYS[2] in-flight messages (hash),
+-- KEYS[3] consumer groups with messages in flight (set), KEYS[4] acknowledged messages (sorted set),
+-- KEYS[5] messages claimed by the database fallback (sorted set), KEYS[6..n] message lists, highest priority first.
+-- ARGV[1] count, ARGV[2] visibility deadline in epoch millis, ARGV[3] consumer group.
+local count = tonumber(ARGV[1])
+local popped = {}
+for list = 6, #KEYS do
+    while #popped < count do
+        local payload = redis.call('RPOP', KEYS[list])
+        if not payload then
+            break
+        end
+        local id = message_id(payload)
+        if not redis.call('ZSCORE', KEYS[4], id) and not redis.call('ZSCORE', KEYS[5], id)
+                and redis.call('ZADD', KEYS[1], 'NX', ARGV[2], id) == 1 then
+            redis.call('HSET', KEYS[2], id, payload)
+            table.insert(popped, payload)
+        end
+    end
+end
+if #popped > 0 then
+    redis.call('SADD', KEYS[3], ARGV[3])
+end
+return popped
@@ -0,0 +1,36 @@
+-- Moves up to ARGV[2] scheduled messages whose delivery time has passed to the back of the list of their priority,
+-- behind the messages already waiting there. Only the due range of the sorted set is read, so the cost does not
+-- grow with the number of messages scheduled.
+-- Once due, a message is also visible to the database fallback and the cache refill. Messages the fallback
+-- already handed out or a refill already enqueued are only dropped from the schedule, so pushing them would
+-- not deliver them twice.
+-- KEYS[1] delivery times (sorted set), KEYS[2] scheduled messages (hash),
+-- KEYS[3] consumer groups with scheduled messages (set), KEYS[4] in-flight deadlines (sorted set),
+-- KEYS[5] acknowledged messages (sorted set), KEYS[6] messages claimed by the database fallback (sorted set),
+-- KEYS[7] enqueued messages (sorted set of expiry times), KEYS[8..n] message lists, highest priority first.
+-- ARGV[1] now in epoch millis, ARGV[2] limit, ARGV[3] message list TTL in seconds, ARGV[4] consumer group.
+local due = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2])
+local expiry = tonumber(ARGV[1]) + tonumber(ARGV[3]) * 1000
+local lists = {}
+-- Earliest delivery time first, so it ends up closest to the pop end of its list
+for _, id in ipairs(due) do
+    local payload = redis.call('HGET', KEYS[2], id)
+    redis.call('ZREM', KEYS[1], id)
+    redis.call('HDEL', KEYS[2], id)
+    if payload and not redis.call('ZSCORE', KEYS[4], id) and not redis.call('ZSCORE', KEYS[5], id)
+            and not redis.call('ZSCORE', KEYS[6], id) and redis.call('ZADD', KEYS[7], 'NX', expiry, id) == 1 then
+        local list = message_list(payload, 8)
+        redis.call('LPUSH', list, payload)
+        lists[list] = true
+    end
+end
+for list in pairs(lists) do
+    redis.call('EXPIRE', list, ARGV[3])
+end
+if next(lists) then
+    redis.call('EXPIRE', KEYS[7], ARGV[3])
+end
+if redis.call('ZCARD', KEYS[1]) == 0 then
+    redis.call('SREM', KEYS[3], ARGV[4])
+end
+return #due
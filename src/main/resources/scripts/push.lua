@@ -0,0 +1,40 @@
+-- Pushes new messages onto a message list, keeps its TTL and notifies waiting consumers in one round trip.
+-- The TTL is only extended once less than half of it is left, instead of being reset on every push.
+-- With a max length, messages that do not fit are not pushed. They stay in the database, where the
+-- database fallback and the cache refill find them.
+-- Each pushed message is recorded as enqueued for the lifetime of the list. A message a refill already
+-- queued, because this push reached Redis late, is not pushed a second time.
+-- KEYS[1] message list, KEYS[2] enqueued messages (sorted set of expiry times).
+-- ARGV[1] message list TTL in seconds, ARGV[2] max list length (0 for no limit), ARGV[3] notification channel,
+-- ARGV[4] notification, ARGV[5] now in epoch millis, ARGV[6..n] message ID and message pairs, oldest first.
+local ttl = tonumber(ARGV[1])
+local room = #ARGV
+if tonumber(ARGV[2]) > 0 then
+    room = tonumber(ARGV[2]) - redis.call('LLEN', KEYS[1])
+end
+local expiry = tonumber(ARGV[5]) + ttl * 1000
+redis.call('ZREMRANGEBYSCORE', KEYS[2], '-inf', ARGV[5])
+local messages = {}
+for i = 6, #ARGV, 2 do
+    if #messages >= room then
+        break
+    end
+    if redis.call('ZADD', KEYS[2], 'NX', expiry, ARGV[i]) == 1 then
+        table.insert(messages, ARGV[i + 1])
+    end
+end
+if #messages == 0 then
+    return 0
+end
+-- unpack is limited by the Lua stack, so very large batches are pushed in chunks
+for i = 1, #messages, 1000 do
+    redis.call('LPUSH', KEYS[1], unpack(messages, i, math.min(i + 999, #messages)))
+end
+if redis.call('TTL', KEYS[1]) < ttl / 2 then
+    redis.call('EXPIRE', KEYS[1], ttl)
+end
+if redis.call('TTL', KEYS[2]) < ttl / 2 then
+    redis.call('EXPIRE', KEYS[2], ttl)
+end
+redis.call('PUBLISH', ARGV[3], ARGV[4])
+return #messages
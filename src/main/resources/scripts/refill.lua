@@ -0,0 +1,40 @@
+-- Pushes a page of messages reserved in the database onto the cold message lists of their priorities.
+-- Messages that were handed out in the meantime are skipped, so a refill never creates a second live copy.
+-- Messages already enqueued are skipped as well: a push, a refill or the mover may have put them in a list,
+-- and that copy may already be popped, acknowledged and forgotten. Messages that reach Redis later through
+-- a late push or the mover are then not pushed again, as the refill records them as enqueued.
+-- With ARGV[2] set to 1 the messages go to the pop end of their lists instead, ahead of the messages waiting
+-- there, for messages older than those, such as the ones handed back by the in-process buffer.
+-- KEYS[1] in-flight deadlines (sorted set), KEYS[2] acknowledged messages (sorted set),
+-- KEYS[3] messages claimed by the database fallback (sorted set), KEYS[4] enqueued messages (sorted set of
+-- expiry times), KEYS[5..n] message lists, highest priority first.
+-- ARGV[1] message list TTL in seconds, ARGV[2] 1 to push to the pop end, ARGV[3] now in epoch millis,
+-- ARGV[4..n] messages, oldest first.
+-- Returns the IDs of the messages pushed.
+local front = ARGV[2] == '1'
+local first, last, step, command = 4, #ARGV, 1, 'LPUSH'
+if front then
+    -- Newest first, so the oldest message ends up at the pop end
+    first, last, step, command = #ARGV, 4, -1, 'RPUSH'
+end
+local expiry = tonumber(ARGV[3]) + tonumber(ARGV[1]) * 1000
+redis.call('ZREMRANGEBYSCORE', KEYS[4], '-inf', ARGV[3])
+local pushed = {}
+local lists = {}
+for i = first, last, step do
+    local id = message_id(ARGV[i])
+    if not redis.call('ZSCORE', KEYS[1], id) and not redis.call('ZSCORE', KEYS[2], id)
+            and not redis.call('ZSCORE', KEYS[3], id) and redis.call('ZADD', KEYS[4], 'NX', expiry, id) == 1 then
+        local list = message_list(ARGV[i], 5)
+        redis.call(command, list, ARGV[i])
+        lists[list] = true
+        table.insert(pushed, id)
+    end
+end
+for list in pairs(lists) do
+    redis.call('EXPIRE', list, ARGV[1])
+end
+if #pushed > 0 then
+    redis.call('EXPIRE', KEYS[4], ARGV[1])
+end
+return pushed
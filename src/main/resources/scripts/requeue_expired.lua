@@ -0,0 +1,34 @@
+-- Moves up to ARGV[2] messages whose visibility deadline has passed back to the front of the list of their priority.
+-- Only the expired range of the sorted set is read, so the cost does not grow with the number in flight.
+-- Messages claimed by the database fallback are only dropped from flight: they become visible in the
+-- database again, and a copy may still be waiting in the list, so pushing them would deliver them twice.
+-- KEYS[1] in-flight deadlines (sorted set), KEYS[2] in-flight messages (hash),
+-- KEYS[3] consumer groups with messages in flight (set), KEYS[4] acknowledged messages (sorted set),
+-- KEYS[5] messages claimed by the database fallback (sorted set), KEYS[6..n] message lists, highest priority first.
+-- ARGV[1] now in epoch millis, ARGV[2] limit, ARGV[3] message list TTL in seconds, ARGV[4] consumer group.
+local expired = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2])
+local requeued = 0
+local lists = {}
+-- Newest deadline first, so the message that expired first ends up at the pop end of its list
+for i = #expired, 1, -1 do
+    local id = expired[i]
+    local payload = redis.call('HGET', KEYS[2], id)
+    redis.call('ZREM', KEYS[1], id)
+    redis.call('HDEL', KEYS[2], id)
+    if payload and not redis.call('ZSCORE', KEYS[5], id) then
+        local list = message_list(payload, 6)
+        redis.call('RPUSH', list, payload)
+        lists[list] = true
+        requeued = requeued + 1
+    end
+end
+for list in pairs(lists) do
+    redis.call('EXPIRE', list, ARGV[3])
+end
+-- Expired claim records are pruned with the same bounded range reads
+redis.call('ZREMRANGEBYSCORE', KEYS[4], '-inf', ARGV[1])
+redis.call('ZREMRANGEBYSCORE', KEYS[5], '-inf', ARGV[1])
+if redis.call('ZCARD', KEYS[1]) == 0 and redis.call('ZCARD', KEYS[4]) == 0 and redis.call('ZCARD', KEYS[5]) == 0 then
+    redis.call('SREM', KEYS[3], ARGV[4])
+end
+return #expired
@@ -0,0 +1,12 @@
+-- Holds delayed messages until they are due: their IDs in a sorted set scored by delivery time, their payloads
+-- in a hash. The mover only reads the due range of the sorted set, however many messages are scheduled.
+-- KEYS[1] delivery times (sorted set), KEYS[2] scheduled messages (hash),
+-- KEYS[3] consumer groups with scheduled messages (set).
+-- ARGV[1] consumer group, ARGV[2..n] pairs of delivery time in epoch millis and message.
+for i = 2, #ARGV, 2 do
+    local id = message_id(ARGV[i + 1])
+    redis.call('ZADD', KEYS[1], ARGV[i], id)
+    redis.call('HSET', KEYS[2], id, ARGV[i + 1])
+end
+redis.call('SADD', KEYS[3], ARGV[1])
+return math.floor((#ARGV - 1) / 2)
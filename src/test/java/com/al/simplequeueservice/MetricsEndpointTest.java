@@ -0,0 +1,65 @@
+package com.al.simplequeueservice;
+
+import com.al.simplequeueservice.service.PopMessageService;
+import com.al.simplequeueservice.util.SQSConstants;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Scrapes the Prometheus endpoint after a pop and checks that request latencies are published as histograms
+ * tagged with the consumer group, next to the saturation gauges of the background executor. Metric export is off in
+ * Spring Boot tests by default, so it is switched back on here.
+ */
+@AutoConfigureObservability
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class MetricsEndpointTest {
+
+    private static final String CREDENTIALS = "Basic " + Base64.getEncoder().encodeToString("user:password".getBytes(StandardCharsets.UTF_8));
+
+    @MockBean
+    private PopMessageService popMessageService;
+
+    @LocalServerPort
+    private int port;
+
+    @Test
+    void prometheusScrapeIncludesHotPathMetrics() throws Exception {
+        when(popMessageService.pop(anyString())).thenReturn(Optional.empty());
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest pop = HttpRequest.newBuilder(URI.create("http://localhost:" + port + SQSConstants.QUEUE_BASE_URL + SQSConstants.POP_URL))
+                .header(SQSConstants.CONSUMER_GROUP_HEADER, "metrics-test")
+                .header("Authorization", CREDENTIALS)
+                .GET()
+                .build();
+        assertEquals(404, client.send(pop, HttpResponse.BodyHandlers.discarding()).statusCode());
+
+        HttpRequest scrape = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/actuator/prometheus"))
+                .header("Authorization", CREDENTIALS)
+                .GET()
+                .build();
+        HttpResponse<String> response = client.send(scrape, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode());
+        String body = response.body();
+        assertTrue(body.lines().anyMatch(line -> line.startsWith("http_server_requests_seconds_bucket{")
+                && line.contains("consumerGroup=\"metrics-test\"") && line.contains("uri=\"" + SQSConstants.QUEUE_BASE_URL + SQSConstants.POP_URL + "\"")),
+                "No consumer group tagged request histogram in the scrape");
+        assertTrue(body.contains("executor_queued_tasks{") && body.contains("name=\"taskExecutor\""), "No executor gauges in the scrape");
+    }
+}
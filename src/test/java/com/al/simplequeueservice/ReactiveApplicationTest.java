@@ -0,0 +1,69 @@
+package com.al.simplequeueservice;
+
+import com.al.simplequeueservice.controller.MessageController;
+import com.al.simplequeueservice.controller.ReactiveMessageController;
+import com.al.simplequeueservice.service.ReactivePopMessageService;
+import com.al.simplequeueservice.util.SQSConstants;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.web.embedded.netty.NettyWebServer;
+import org.springframework.boot.web.reactive.context.ReactiveWebServerApplicationContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles(SQSConstants.REACTIVE_PROFILE)
+class ReactiveApplicationTest {
+
+    @Autowired
+    private ReactiveWebServerApplicationContext applicationContext;
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private ReactivePopMessageService reactivePopMessageService;
+
+    @Test
+    void contextLoads_withReactiveControllerOnNetty() {
+        assertInstanceOf(NettyWebServer.class, applicationContext.getWebServer());
+        assertTrue(applicationContext.getBeansOfType(MessageController.class).isEmpty());
+        assertTrue(applicationContext.getBeanNamesForType(ReactiveMessageController.class).length == 1);
+    }
+
+    @Test
+    void pop_requiresAuthentication() {
+        webTestClient.get().uri(SQSConstants.QUEUE_BASE_URL + SQSConstants.POP_URL)
+                .header(SQSConstants.CONSUMER_GROUP_HEADER, "test-group")
+                .exchange()
+                .expectStatus().isUnauthorized();
+    }
+
+    @Test
+    void pop_emptyQueue_returnsNotFound() {
+        when(reactivePopMessageService.pop("test-group")).thenReturn(Mono.empty());
+
+        webTestClient.get().uri(SQSConstants.QUEUE_BASE_URL + SQSConstants.POP_URL)
+                .header(SQSConstants.CONSUMER_GROUP_HEADER, "test-group")
+                .headers(headers -> headers.setBasicAuth("user", "password"))
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void view_forbiddenForUserRole() {
+        webTestClient.get().uri(SQSConstants.QUEUE_BASE_URL + SQSConstants.VIEW_URL)
+                .header(SQSConstants.CONSUMER_GROUP_HEADER, "test-group")
+                .header(SQSConstants.MESSAGE_COUNT_HEADER, "1")
+                .headers(headers -> headers.setBasicAuth("user", "password"))
+                .exchange()
+                .expectStatus().isForbidden();
+    }
+}
@@ -0,0 +1,122 @@
+package com.al.simplequeueservice;
+
+import com.al.simplequeueservice.service.PopMessageService;
+import com.al.simplequeueservice.util.SQSConstants;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.NestedTestConfiguration;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Load test of the servlet container's request concurrency. Pops are served by a backend that blocks for a fixed
+ * latency, and more requests are sent at once than the container has request threads. With platform threads the
+ * requests handled at once are capped by {@code server.tomcat.threads.max}; in virtual-thread mode they are not.
+ */
+class VirtualThreadScalingLoadTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadScalingLoadTest.class);
+    private static final int THREAD_POOL_CEILING = 20;
+    private static final int CONCURRENT_REQUESTS = 100;
+    private static final long BACKEND_LATENCY_MILLIS = 500;
+    private static final String CREDENTIALS = "Basic " + Base64.getEncoder().encodeToString("user:password".getBytes(StandardCharsets.UTF_8));
+
+    @Nested
+    @NestedTestConfiguration(NestedTestConfiguration.EnclosingConfiguration.OVERRIDE)
+    @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+            properties = {"spring.threads.virtual.enabled=false", "server.tomcat.threads.max=" + THREAD_POOL_CEILING})
+    class PlatformThreads {
+
+        @MockBean
+        private PopMessageService popMessageService;
+
+        @LocalServerPort
+        private int port;
+
+        @Test
+        void concurrencyIsCappedByThreadPool() throws Exception {
+            int peak = runLoad(popMessageService, port, "platform threads");
+            assertTrue(peak <= THREAD_POOL_CEILING, "Peak concurrency " + peak + " exceeded the thread pool");
+        }
+    }
+
+    @Nested
+    @NestedTestConfiguration(NestedTestConfiguration.EnclosingConfiguration.OVERRIDE)
+    @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+            properties = {"spring.threads.virtual.enabled=true", "server.tomcat.threads.max=" + THREAD_POOL_CEILING})
+    class VirtualThreads {
+
+        @MockBean
+        private PopMessageService popMessageService;
+
+        @LocalServerPort
+        private int port;
+
+        @Test
+        void concurrencyScalesPastThreadPool() throws Exception {
+            int peak = runLoad(popMessageService, port, "virtual threads");
+            assertTrue(peak > THREAD_POOL_CEILING, "Peak concurrency " + peak + " did not exceed the thread pool");
+        }
+    }
+
+    /**
+     * Sends {@link #CONCURRENT_REQUESTS} pops at once and returns the highest number handled at the same time.
+     */
+    private static int runLoad(PopMessageService popMessageService, int port, String mode) throws Exception {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        when(popMessageService.pop(anyString())).thenAnswer(invocation -> {
+            peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(BACKEND_LATENCY_MILLIS);
+                return Optional.empty();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + SQSConstants.QUEUE_BASE_URL + SQSConstants.POP_URL))
+                .header(SQSConstants.CONSUMER_GROUP_HEADER, "load-test")
+                .header("Authorization", CREDENTIALS)
+                .GET()
+                .build();
+
+        // Warm up the connector and the credential cache, so the measured requests only wait on the backend
+        assertEquals(404, client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode());
+        peak.set(0);
+
+        long start = System.nanoTime();
+        List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>();
+        for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding()));
+        }
+        for (CompletableFuture<HttpResponse<Void>> response : responses) {
+            assertEquals(404, response.get().statusCode());
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        logger.info("{}: {} requests with {} ms backend latency in {} ms, peak concurrency {}, {} requests/s",
+                mode, CONCURRENT_REQUESTS, BACKEND_LATENCY_MILLIS, elapsedMillis, peak.get(), CONCURRENT_REQUESTS * 1000L / Math.max(1, elapsedMillis));
+        return peak.get();
+    }
+}
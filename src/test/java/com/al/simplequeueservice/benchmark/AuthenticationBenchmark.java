@@ -0,0 +1,65 @@
+package com.al.simplequeueservice.benchmark;
+
+import com.al.simplequeueservice.config.CachingAuthenticationProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Authentications per second of an HTTP Basic request with the default BCrypt encoder, with and without
+ * the {@link CachingAuthenticationProvider} in front of it. Every request to {@code /queue/push} pays
+ * one of these before the controller runs.
+ * Run with {@code mvn -Pbenchmark verify -Djmh.args=AuthenticationBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@Threads(4)
+public class AuthenticationBenchmark {
+
+    private AuthenticationProvider bcrypt;
+    private AuthenticationProvider cached;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+        DaoAuthenticationProvider daoAuthenticationProvider = new DaoAuthenticationProvider();
+        daoAuthenticationProvider.setUserDetailsService(new InMemoryUserDetailsManager(
+                User.builder().username("user").password(passwordEncoder.encode("password")).roles("USER").build()));
+        daoAuthenticationProvider.setPasswordEncoder(passwordEncoder);
+        bcrypt = daoAuthenticationProvider;
+        cached = new CachingAuthenticationProvider(daoAuthenticationProvider, Duration.ofMinutes(1), 10_000);
+    }
+
+    @Benchmark
+    public Authentication bcryptEveryRequest() {
+        return bcrypt.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("user", "password"));
+    }
+
+    @Benchmark
+    public Authentication cachedCredentials() {
+        return cached.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("user", "password"));
+    }
+}
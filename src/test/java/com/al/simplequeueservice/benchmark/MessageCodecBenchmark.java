@@ -0,0 +1,71 @@
+package com.al.simplequeueservice.benchmark;
+
+import com.al.simplequeueservice.config.MessageRedisSerializer;
+import com.al.simplequeueservice.model.Message;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the Redis value codecs selectable with {@code cache.message.codec}: encode and decode time per
+ * message, and the payload bytes Redis stores per million messages, printed once per trial.
+ * List entries add Redis' own per-element overhead on top, the same for both codecs.
+ * Run with {@code mvn -Pbenchmark verify -Djmh.args=MessageCodecBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageCodecBenchmark {
+
+    @Param({"JSON", "BINARY"})
+    private String codec;
+
+    @Param({"64", "1024"})
+    private int contentLength;
+
+    private RedisSerializer<Object> serializer;
+    private Message message;
+    private byte[] encoded;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        RedisSerializer<Object> json = new GenericJackson2JsonRedisSerializer();
+        serializer = "BINARY".equals(codec) ? new MessageRedisSerializer(json) : json;
+        message = new Message(UUID.randomUUID().toString(), "benchmark-group", "x".repeat(contentLength));
+        encoded = serializer.serialize(message);
+    }
+
+    @TearDown(Level.Trial)
+    public void reportSize() {
+        System.out.printf("%n%s codec, %d character content: %d bytes per message, %.1f MB per million messages%n",
+                codec, contentLength, encoded.length, encoded.length * 1_000_000 / (1024.0 * 1024.0));
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return serializer.serialize(message);
+    }
+
+    @Benchmark
+    public Object decode() {
+        return serializer.deserialize(encoded);
+    }
+}
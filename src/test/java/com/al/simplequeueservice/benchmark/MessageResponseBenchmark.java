@@ -0,0 +1,58 @@
+package com.al.simplequeueservice.benchmark;
+
+import com.al.simplequeueservice.model.Message;
+import com.al.simplequeueservice.model.MessageResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to build the response of a pop, and of a view page of {@value #PAGE_SIZE} messages. Each response converts
+ * the {@code Date} of its message to a {@code LocalDateTime} in the system time zone.
+ * Run with {@code mvn -Pbenchmark verify -Djmh.args=MessageResponseBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageResponseBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+
+    private Message message;
+    private List<Message> page;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        message = new Message(UUID.randomUUID().toString(), "benchmark-group", "x".repeat(64));
+        page = new ArrayList<>(PAGE_SIZE);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            page.add(new Message(UUID.randomUUID().toString(), "benchmark-group", "x".repeat(64)));
+        }
+    }
+
+    @Benchmark
+    public MessageResponse single() {
+        return new MessageResponse(message);
+    }
+
+    @Benchmark
+    public List<MessageResponse> page() {
+        return page.stream().map(MessageResponse::new).toList();
+    }
+}
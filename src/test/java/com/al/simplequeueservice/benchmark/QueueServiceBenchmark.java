@@ -0,0 +1,135 @@
+package com.al.simplequeueservice.benchmark;
+
+import com.al.simplequeueservice.config.MessageRedisSerializer;
+import com.al.simplequeueservice.model.Message;
+import com.al.simplequeueservice.service.CacheRefillService;
+import com.al.simplequeueservice.service.CacheService;
+import com.al.simplequeueservice.service.MessageCompressionService;
+import com.al.simplequeueservice.service.MessagePersistenceService;
+import com.al.simplequeueservice.service.PopMessageService;
+import com.al.simplequeueservice.service.PushMessageService;
+import com.al.simplequeueservice.service.QueueStatsService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Time a push and a cache-hit pop spend in the application, with Redis and MongoDB taken out of the picture.
+ * The real {@link CacheService} runs against an in-process {@link RedisTemplate} that answers the Lua script calls
+ * itself, so message encoding and decoding are measured with the codec selected by {@code cache.message.codec}.
+ * The persistence pipeline is replaced by a no-op, so no MongoDB write is measured.
+ * Run with {@code mvn -Pbenchmark verify -Djmh.args=QueueServiceBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueueServiceBenchmark {
+
+    private static final String CONSUMER_GROUP = "benchmark-group";
+
+    @Param({"JSON", "BINARY"})
+    private String codec;
+
+    @Param({"64", "8192"})
+    private int contentLength;
+
+    private PushMessageService pushMessageService;
+    private PopMessageService popMessageService;
+    private Message message;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Without the Spring Boot logging setup Logback logs everything; keep log output out of the measurement
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(ch.qos.logback.classic.Level.WARN);
+        RedisSerializer<Object> json = new GenericJackson2JsonRedisSerializer();
+        RedisSerializer<Object> serializer = "BINARY".equals(codec) ? new MessageRedisSerializer(json) : json;
+        message = new Message(UUID.randomUUID().toString(), CONSUMER_GROUP, "x".repeat(contentLength));
+
+        MessageCompressionService messageCompressionService = new MessageCompressionService();
+        ReflectionTestUtils.setField(messageCompressionService, "enabled", true);
+        ReflectionTestUtils.setField(messageCompressionService, "minLength", 4096);
+        CacheService cacheService = new CacheService(new InProcessRedisTemplate(serializer, serializer.serialize(messageCompressionService.compress(message))),
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cacheService, "redisCacheTtlMinutes", 60L);
+        // Stub-only fakes do not record invocations, so they keep no state across iterations
+        MessagePersistenceService messagePersistenceService = mock(MessagePersistenceService.class, withSettings().stubOnly());
+        QueueStatsService queueStatsService = new QueueStatsService();
+
+        pushMessageService = new PushMessageService();
+        ReflectionTestUtils.setField(pushMessageService, "messagePersistenceService", messagePersistenceService);
+        ReflectionTestUtils.setField(pushMessageService, "cacheService", cacheService);
+        ReflectionTestUtils.setField(pushMessageService, "messageCompressionService", messageCompressionService);
+        ReflectionTestUtils.setField(pushMessageService, "queueStatsService", queueStatsService);
+
+        popMessageService = new PopMessageService();
+        ReflectionTestUtils.setField(popMessageService, "cacheService", cacheService);
+        ReflectionTestUtils.setField(popMessageService, "messagePersistenceService", messagePersistenceService);
+        ReflectionTestUtils.setField(popMessageService, "cacheRefillService", mock(CacheRefillService.class, withSettings().stubOnly()));
+        ReflectionTestUtils.setField(popMessageService, "messageCompressionService", messageCompressionService);
+        ReflectionTestUtils.setField(popMessageService, "queueStatsService", queueStatsService);
+        ReflectionTestUtils.setField(popMessageService, "visibilityTimeoutSeconds", 30L);
+    }
+
+    @Benchmark
+    public Message push() {
+        return pushMessageService.push(message);
+    }
+
+    @Benchmark
+    public Optional<Message> pop() {
+        return popMessageService.pop(CONSUMER_GROUP);
+    }
+
+    /**
+     * Stands in for Redis: pushes are dropped, and every pop returns the same message, decoded from the bytes
+     * Redis would hold for it.
+     */
+    private static final class InProcessRedisTemplate extends RedisTemplate<String, Object> {
+
+        private final byte[] storedMessage;
+
+        InProcessRedisTemplate(RedisSerializer<Object> valueSerializer, byte[] storedMessage) {
+            this.storedMessage = storedMessage;
+            setValueSerializer(valueSerializer);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+            return (T) List.of(getValueSerializer().deserialize(storedMessage));
+        }
+
+        @Override
+        public <T> T execute(RedisScript<T> script, RedisSerializer<?> argsSerializer, RedisSerializer<T> resultSerializer, List<String> keys, Object... args) {
+            return null;
+        }
+    }
+}
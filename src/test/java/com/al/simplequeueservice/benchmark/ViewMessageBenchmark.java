@@ -0,0 +1,98 @@
+package com.al.simplequeueservice.benchmark;
+
+import com.al.simplequeueservice.model.Message;
+import com.al.simplequeueservice.model.MessagePage;
+import com.al.simplequeueservice.service.CacheService;
+import com.al.simplequeueservice.service.MessageCompressionService;
+import com.al.simplequeueservice.service.ViewMessageService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Time {@link ViewMessageService} spends on a page of unconsumed messages besides the Redis and MongoDB reads:
+ * building the query, merging the cached and stored candidates, dropping duplicates, sorting and encoding the next
+ * page token. Both stores return a page worth of candidates, half of them the same messages, as they do while the
+ * cache holds messages that are also stored in MongoDB.
+ * Run with {@code mvn -Pbenchmark verify -Djmh.args=ViewMessageBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ViewMessageBenchmark {
+
+    private static final String CONSUMER_GROUP = "benchmark-group";
+
+    @Param({"10", "100"})
+    private int pageSize;
+
+    private ViewMessageService viewMessageService;
+    private String pageToken;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Without the Spring Boot logging setup Logback logs everything; keep log output out of the measurement
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(ch.qos.logback.classic.Level.WARN);
+        List<Message> messages = new ArrayList<>();
+        long createdAt = System.currentTimeMillis();
+        for (int i = 0; i < pageSize * 3 / 2 + 1; i++) {
+            messages.add(new Message(UUID.randomUUID().toString(), "x".repeat(64), CONSUMER_GROUP, new Date(createdAt + i), false));
+        }
+        // The cache holds the newest candidates and MongoDB the oldest, overlapping by half a page
+        List<Message> cachedMessages = List.copyOf(messages.subList(messages.size() - pageSize - 1, messages.size()));
+        List<Message> mongoMessages = List.copyOf(messages.subList(0, pageSize + 1));
+
+        // Stub-only fakes do not record invocations, so they keep no state across iterations
+        CacheService cacheService = mock(CacheService.class, withSettings().stubOnly());
+        when(cacheService.viewMessages(anyString(), anyInt())).thenReturn(cachedMessages);
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class, withSettings().stubOnly());
+        when(mongoTemplate.find(any(Query.class), eq(Message.class), anyString())).thenReturn(mongoMessages);
+
+        viewMessageService = new ViewMessageService();
+        ReflectionTestUtils.setField(viewMessageService, "cacheService", cacheService);
+        ReflectionTestUtils.setField(viewMessageService, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(viewMessageService, "messageCompressionService", new MessageCompressionService());
+        pageToken = viewMessageService.view(CONSUMER_GROUP, pageSize, "no", null).nextPageToken();
+    }
+
+    @Benchmark
+    public MessagePage firstPage() {
+        return viewMessageService.view(CONSUMER_GROUP, pageSize, "no", null);
+    }
+
+    @Benchmark
+    public MessagePage nextPage() {
+        return viewMessageService.view(CONSUMER_GROUP, pageSize, "no", pageToken);
+    }
+}
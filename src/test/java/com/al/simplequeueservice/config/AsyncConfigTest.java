@@ -2,10 +2,15 @@ package com.al.simplequeueservice.config;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class AsyncConfigTest {
 
@@ -18,11 +23,35 @@ class AsyncConfigTest {
 
     @Test
     void taskExecutorBean() {
-        ThreadPoolTaskExecutor executor = asyncConfig.taskExecutor();
+        ThreadPoolTaskExecutor executor = (ThreadPoolTaskExecutor) asyncConfig.taskExecutor();
         assertNotNull(executor);
         assertEquals(5, executor.getCorePoolSize());
         assertEquals(10, executor.getMaxPoolSize());
         assertEquals(25, executor.getQueueCapacity());
         assertEquals("DBDataUpdater-", executor.getThreadNamePrefix());
     }
+
+    @Test
+    void taskExecutorBean_virtualThreadMode() throws Exception {
+        ReflectionTestUtils.setField(asyncConfig, "virtualThreads", true);
+
+        SimpleAsyncTaskExecutor executor = (SimpleAsyncTaskExecutor) asyncConfig.taskExecutor();
+        assertEquals("DBDataUpdater-", executor.getThreadNamePrefix());
+        assertEquals(10, executor.getConcurrencyLimit());
+
+        CompletableFuture<Boolean> virtual = new CompletableFuture<>();
+        executor.execute(() -> virtual.complete(Thread.currentThread().isVirtual()));
+        assertTrue(virtual.get());
+    }
+
+    @Test
+    void longPollExecutorBean() throws Exception {
+        SimpleAsyncTaskExecutor executor = asyncConfig.longPollExecutor();
+        assertNotNull(executor);
+        assertEquals("LongPoll-", executor.getThreadNamePrefix());
+
+        CompletableFuture<Boolean> virtual = new CompletableFuture<>();
+        executor.execute(() -> virtual.complete(Thread.currentThread().isVirtual()));
+        assertTrue(virtual.get());
+    }
 }
@@ -0,0 +1,47 @@
+package com.al.simplequeueservice.config;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.connection.ConnectionPoolSettings;
+import io.lettuce.core.ClientOptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BackendConcurrencyConfigTest {
+
+    private BackendConcurrencyConfig backendConcurrencyConfig;
+
+    @BeforeEach
+    void setUp() {
+        backendConcurrencyConfig = new BackendConcurrencyConfig();
+        ReflectionTestUtils.setField(backendConcurrencyConfig, "mongoMaxConnections", 50);
+        ReflectionTestUtils.setField(backendConcurrencyConfig, "mongoMaxWaitMillis", 1500L);
+        ReflectionTestUtils.setField(backendConcurrencyConfig, "redisMaxPendingCommands", 2000);
+    }
+
+    @Test
+    void mongoConnectionPoolCustomizer_boundsPoolAndWaitTime() {
+        MongoClientSettings.Builder builder = MongoClientSettings.builder();
+        backendConcurrencyConfig.mongoConnectionPoolCustomizer().customize(builder);
+
+        ConnectionPoolSettings pool = builder.build().getConnectionPoolSettings();
+        assertEquals(50, pool.getMaxSize());
+        assertEquals(1500, pool.getMaxWaitTime(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void redisRequestQueueCustomizer_boundsPendingCommands() {
+        LettuceClientConfiguration.LettuceClientConfigurationBuilder builder = LettuceClientConfiguration.builder();
+        backendConcurrencyConfig.redisRequestQueueCustomizer().customize(builder);
+
+        ClientOptions clientOptions = builder.build().getClientOptions().orElseThrow();
+        assertEquals(2000, clientOptions.getRequestQueueSize());
+        assertTrue(clientOptions.getTimeoutOptions().isTimeoutCommands());
+    }
+}
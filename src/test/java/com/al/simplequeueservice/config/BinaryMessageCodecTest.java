@@ -0,0 +1,98 @@
+package com.al.simplequeueservice.config;
+
+import com.al.simplequeueservice.model.Message;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryMessageCodecTest {
+
+    private final MessageRedisSerializer serializer = new MessageRedisSerializer(new GenericJackson2JsonRedisSerializer());
+
+    @Test
+    void roundTrip_uuidId() {
+        Message message = new Message(UUID.randomUUID().toString(), "content ünïcödé", "group", new Date(1_700_000_000_123L), true);
+
+        byte[] encoded = BinaryMessageCodec.encode(message);
+        Message decoded = BinaryMessageCodec.decode(encoded);
+
+        assertEquals(BinaryMessageCodec.VERSION_1, encoded[0]);
+        assertEquals(2 + 16 + 8 + 2 + 5 + 4 + "content ünïcödé".getBytes(StandardCharsets.UTF_8).length, encoded.length);
+        assertMessageEquals(message, decoded);
+    }
+
+    @Test
+    void roundTrip_otherIdAndNullFields() {
+        // Upper-case UUIDs would not print back the same, so they are kept as strings
+        Message message = new Message("6F9619FF-8B86-D011-B42D-00C04FC964FF", null, "group", null, false);
+
+        Message decoded = BinaryMessageCodec.decode(BinaryMessageCodec.encode(message));
+
+        assertMessageEquals(message, decoded);
+    }
+
+    @Test
+    void roundTrip_priority() {
+        Message message = new Message(UUID.randomUUID().toString(), "content", "group", new Date(1_700_000_000_123L), false, 7);
+
+        byte[] encoded = BinaryMessageCodec.encode(message);
+        Message decoded = BinaryMessageCodec.decode(encoded);
+
+        // The priority takes one byte and only when it is not the default
+        assertEquals(BinaryMessageCodec.encode(new Message(message.getId(), "content", "group", message.getCreatedAt(), false)).length + 1, encoded.length);
+        assertMessageEquals(message, decoded);
+    }
+
+    @Test
+    void encode_muchSmallerThanJson() {
+        Message message = new Message(UUID.randomUUID().toString(), "group", "hello");
+
+        byte[] binary = BinaryMessageCodec.encode(message);
+        byte[] json = new GenericJackson2JsonRedisSerializer().serialize(message);
+
+        assertTrue(binary.length * 3 < json.length, binary.length + " vs " + json.length);
+    }
+
+    @Test
+    void decode_rejectsTruncatedPayload() {
+        byte[] encoded = BinaryMessageCodec.encode(new Message(UUID.randomUUID().toString(), "group", "hello"));
+
+        assertThrows(IllegalArgumentException.class, () -> BinaryMessageCodec.decode(Arrays.copyOf(encoded, encoded.length - 1)));
+        assertThrows(SerializationException.class, () -> serializer.deserialize(Arrays.copyOf(encoded, 10)));
+    }
+
+    @Test
+    void serializer_writesMessagesBinaryAndEverythingElseWithFallback() {
+        Message message = new Message(UUID.randomUUID().toString(), "group", "hello");
+
+        assertTrue(BinaryMessageCodec.isEncoded(serializer.serialize(message)));
+        assertEquals("\"group\"", new String(serializer.serialize("group"), StandardCharsets.UTF_8));
+        assertEquals("group", serializer.deserialize(serializer.serialize("group")));
+        assertEquals(42L, ((Number) serializer.deserialize(serializer.serialize(42L))).longValue());
+    }
+
+    @Test
+    void serializer_readsMessagesWrittenAsJson() {
+        Message message = new Message(UUID.randomUUID().toString(), "group", "hello");
+        byte[] json = new GenericJackson2JsonRedisSerializer().serialize(message);
+
+        assertMessageEquals(message, (Message) serializer.deserialize(json));
+        assertMessageEquals(message, (Message) serializer.deserialize(serializer.serialize(message)));
+    }
+
+    private static void assertMessageEquals(Message expected, Message actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getContent(), actual.getContent());
+        assertEquals(expected.getConsumerGroup(), actual.getConsumerGroup());
+        assertEquals(expected.getCreatedAt(), actual.getCreatedAt());
+        assertEquals(expected.isConsumed(), actual.isConsumed());
+        assertEquals(expected.getPriority(), actual.getPriority());
+    }
+}
@@ -0,0 +1,104 @@
+package com.al.simplequeueservice.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class CachingAuthenticationProviderTest {
+
+    @Mock
+    private AuthenticationProvider delegate;
+
+    private CachingAuthenticationProvider provider;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        provider = new CachingAuthenticationProvider(delegate, Duration.ofMinutes(1), 2);
+        when(delegate.authenticate(any(Authentication.class))).thenAnswer(invocation -> {
+            Authentication request = invocation.getArgument(0);
+            if (!"password".equals(request.getCredentials())) {
+                throw new BadCredentialsException("Bad credentials");
+            }
+            return UsernamePasswordAuthenticationToken.authenticated(request.getName(), null, List.of(new SimpleGrantedAuthority("ROLE_USER")));
+        });
+    }
+
+    @Test
+    void authenticate_repeatedCredentialsCheckedOnce() {
+        Authentication first = provider.authenticate(request("user", "password"));
+        Authentication second = provider.authenticate(request("user", "password"));
+
+        assertTrue(second.isAuthenticated());
+        assertEquals(first.getPrincipal(), second.getPrincipal());
+        assertEquals(first.getAuthorities(), second.getAuthorities());
+        assertNotSame(first, second);
+        verify(delegate, times(1)).authenticate(any(Authentication.class));
+    }
+
+    @Test
+    void authenticate_failuresAreNeverCached() {
+        assertThrows(BadCredentialsException.class, () -> provider.authenticate(request("user", "wrong")));
+        assertThrows(BadCredentialsException.class, () -> provider.authenticate(request("user", "wrong")));
+
+        verify(delegate, times(2)).authenticate(any(Authentication.class));
+        assertEquals(0, provider.size());
+    }
+
+    @Test
+    void authenticate_otherPasswordIsCheckedAgain() {
+        provider.authenticate(request("user", "password"));
+
+        assertThrows(BadCredentialsException.class, () -> provider.authenticate(request("user", "password2")));
+        verify(delegate, times(2)).authenticate(any(Authentication.class));
+    }
+
+    @Test
+    void authenticate_expiredEntryIsCheckedAgain() {
+        provider = new CachingAuthenticationProvider(delegate, Duration.ofNanos(1), 2);
+
+        provider.authenticate(request("user", "password"));
+        provider.authenticate(request("user", "password"));
+
+        verify(delegate, times(2)).authenticate(any(Authentication.class));
+    }
+
+    @Test
+    void authenticate_cacheSizeIsBounded() {
+        provider.authenticate(request("user1", "password"));
+        provider.authenticate(request("user2", "password"));
+        provider.authenticate(request("user3", "password"));
+
+        assertEquals(2, provider.size());
+        // Not cached, so checked again
+        provider.authenticate(request("user3", "password"));
+        verify(delegate, times(4)).authenticate(any(Authentication.class));
+    }
+
+    @Test
+    void authenticate_disabledWithZeroTtl() {
+        provider = new CachingAuthenticationProvider(delegate, Duration.ZERO, 2);
+
+        provider.authenticate(request("user", "password"));
+        provider.authenticate(request("user", "password"));
+
+        verify(delegate, times(2)).authenticate(any(Authentication.class));
+    }
+
+    private static Authentication request(String username, String password) {
+        return UsernamePasswordAuthenticationToken.unauthenticated(username, password);
+    }
+}
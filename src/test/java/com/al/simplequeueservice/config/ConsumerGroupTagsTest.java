@@ -0,0 +1,34 @@
+package com.al.simplequeueservice.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ConsumerGroupTagsTest {
+
+    private ConsumerGroupTags consumerGroupTags;
+
+    @BeforeEach
+    void setUp() {
+        consumerGroupTags = new ConsumerGroupTags();
+        ReflectionTestUtils.setField(consumerGroupTags, "maxTags", 2);
+    }
+
+    @Test
+    void valueOf_keepsGroupsUpToLimit() {
+        assertEquals("group1", consumerGroupTags.valueOf("group1"));
+        assertEquals("group2", consumerGroupTags.valueOf("group2"));
+        assertEquals(ConsumerGroupTags.OTHER, consumerGroupTags.valueOf("group3"));
+        // Groups seen before the limit was reached keep their tag value
+        assertEquals("group1", consumerGroupTags.valueOf("group1"));
+    }
+
+    @Test
+    void valueOf_missingGroup() {
+        assertEquals(ConsumerGroupTags.NONE, consumerGroupTags.valueOf(null));
+        assertEquals(ConsumerGroupTags.NONE, consumerGroupTags.valueOf(" "));
+        assertEquals("group1", consumerGroupTags.valueOf("group1"));
+    }
+}
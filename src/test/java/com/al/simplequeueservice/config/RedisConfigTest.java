@@ -49,4 +49,14 @@ class RedisConfigTest {
         assertNotNull(redisTemplate.getHashValueSerializer());
         assertTrue(redisTemplate.getHashValueSerializer() instanceof GenericJackson2JsonRedisSerializer);
     }
+
+    @Test
+    void redisTemplateBean_binaryCodec() {
+        ReflectionTestUtils.setField(redisConfig, "messageCodec", RedisConfig.MessageCodec.BINARY);
+
+        RedisTemplate<String, Object> redisTemplate = redisConfig.redisTemplate(redisConnectionFactory);
+
+        assertTrue(redisTemplate.getValueSerializer() instanceof MessageRedisSerializer);
+        assertTrue(redisTemplate.getHashValueSerializer() instanceof MessageRedisSerializer);
+    }
 }
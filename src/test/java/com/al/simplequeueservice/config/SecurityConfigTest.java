@@ -2,6 +2,10 @@ package com.al.simplequeueservice.config;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -21,6 +25,8 @@ class SecurityConfigTest {
         ReflectionTestUtils.setField(securityConfig, "userPassword", "userpass");
         ReflectionTestUtils.setField(securityConfig, "adminUsername", "testadmin");
         ReflectionTestUtils.setField(securityConfig, "adminPassword", "adminpass");
+        ReflectionTestUtils.setField(securityConfig, "authCacheTtlSeconds", 60L);
+        ReflectionTestUtils.setField(securityConfig, "authCacheMaxEntries", 100);
         passwordEncoder = securityConfig.passwordEncoder();
     }
 
@@ -51,4 +57,18 @@ class SecurityConfigTest {
         assertTrue(admin.getAuthorities().stream().anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN")));
         assertTrue(admin.getAuthorities().stream().anyMatch(a -> a.getAuthority().equals("ROLE_USER")));
     }
+
+    @Test
+    void authenticationProviderBean() {
+        AuthenticationProvider authenticationProvider = securityConfig.authenticationProvider(securityConfig.userDetailsService(passwordEncoder), passwordEncoder);
+        assertTrue(authenticationProvider instanceof CachingAuthenticationProvider);
+
+        Authentication authentication = authenticationProvider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("testadmin", "adminpass"));
+        assertTrue(authentication.isAuthenticated());
+        assertTrue(authentication.getAuthorities().stream().anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN")));
+        // Served from the cache the second time
+        assertTrue(authenticationProvider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("testadmin", "adminpass")).isAuthenticated());
+        assertThrows(BadCredentialsException.class,
+                () -> authenticationProvider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("testadmin", "wrong")));
+    }
 }
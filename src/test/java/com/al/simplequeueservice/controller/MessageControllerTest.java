@@ -2,9 +2,16 @@ package com.al.simplequeueservice.controller;
 
 import com.al.simplequeueservice.config.SecurityConfig;
 import com.al.simplequeueservice.model.Message;
+import com.al.simplequeueservice.model.MessagePage;
+import com.al.simplequeueservice.model.QueueStats;
+import com.al.simplequeueservice.service.LongPollService;
+import com.al.simplequeueservice.service.MongoIndexService;
 import com.al.simplequeueservice.service.PopMessageService;
 import com.al.simplequeueservice.service.PushMessageService;
+import com.al.simplequeueservice.service.QueueStatsService;
 import com.al.simplequeueservice.service.ViewMessageService;
+import com.al.simplequeueservice.util.PushHeaderValidator;
+import com.al.simplequeueservice.util.RawPayloadReader;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
@@ -13,21 +20,34 @@ import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(MessageController.class)
-@Import(SecurityConfig.class)
+@Import({SecurityConfig.class, RawPayloadReader.class, PushHeaderValidator.class})
 public class MessageControllerTest {
 
     @Autowired
@@ -42,6 +62,15 @@ public class MessageControllerTest {
     @MockBean
     private ViewMessageService viewMessageService;
 
+    @MockBean
+    private LongPollService longPollService;
+
+    @MockBean
+    private MongoIndexService mongoIndexService;
+
+    @MockBean
+    private QueueStatsService queueStatsService;
+
     @Test
     @WithMockUser(username = "user", password = "password", roles = "USER")
     public void testPush() throws Exception {
@@ -57,6 +86,24 @@ public class MessageControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    public void testPushWithBasicAuthentication() throws Exception {
+        when(pushMessageService.push(any(Message.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post("/queue/push")
+                    .header("consumerGroup", "testGroup")
+                    .content("content")
+                    .with(httpBasic("user", "password")))
+                    .andExpect(status().isOk());
+        }
+        mockMvc.perform(post("/queue/push")
+                .header("consumerGroup", "testGroup")
+                .content("content")
+                .with(httpBasic("user", "wrong")))
+                .andExpect(status().isUnauthorized());
+    }
+
     @Test
     @WithMockUser(username = "admin", password = "adminpassword", roles = {"ADMIN", "USER"})
     public void testPushAsAdmin() throws Exception {
@@ -72,6 +119,123 @@ public class MessageControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    @WithMockUser(username = "user", password = "password", roles = "USER")
+    public void testPushWithPriority() throws Exception {
+        when(pushMessageService.push(any(Message.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        mockMvc.perform(post("/queue/push")
+                .header("consumerGroup", "testGroup")
+                .header("priority", "7")
+                .content("urgent")
+                .with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.priority").value(7));
+
+        verify(pushMessageService).push(org.mockito.ArgumentMatchers.argThat(message -> message.getPriority() == 7));
+    }
+
+    @Test
+    @WithMockUser(username = "user", password = "password", roles = "USER")
+    public void testPushWithInvalidPriority() throws Exception {
+        mockMvc.perform(post("/queue/push")
+                .header("consumerGroup", "testGroup")
+                .header("priority", "10")
+                .content("content")
+                .with(csrf()))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Priority should be 0 to 9."))
+                .andExpect(jsonPath("$.path").value("/queue/push"));
+        mockMvc.perform(post("/queue/push/raw")
+                .header("consumerGroup", "testGroup")
+                .header("priority", "10")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .content("content".getBytes(java.nio.charset.StandardCharsets.UTF_8))
+                .with(csrf()))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Priority should be 0 to 9."))
+                .andExpect(jsonPath("$.path").value("/queue/push/raw"));
+        mockMvc.perform(post("/queue/push/batch")
+                .header("consumerGroup", "testGroup")
+                .header("priority", "-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[\"first\"]")
+                .with(csrf()))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Priority should be 0 to 9."));
+
+        verify(pushMessageService, never()).push(any(Message.class));
+        verify(pushMessageService, never()).pushBatch(anyString(), anyList());
+    }
+
+    @Test
+    @WithMockUser(username = "user", password = "password", roles = "USER")
+    public void testPushWithDelay() throws Exception {
+        when(pushMessageService.push(any(Message.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        mockMvc.perform(post("/queue/push")
+                .header("consumerGroup", "testGroup")
+                .header("delaySeconds", "60")
+                .content("retry")
+                .with(csrf()))
+                .andExpect(status().isOk());
+
+        verify(pushMessageService).push(org.mockito.ArgumentMatchers.argThat(message ->
+                message.getVisibleAt().getTime() - message.getCreatedAt().getTime() == 60_000));
+    }
+
+    @Test
+    @WithMockUser(username = "user", password = "password", roles = "USER")
+    public void testPushWithInvalidDelay() throws Exception {
+        mockMvc.perform(post("/queue/push")
+                .header("consumerGroup", "testGroup")
+                .header("delaySeconds", "901")
+                .content("content")
+                .with(csrf()))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Delay Seconds should be 0 to 900."));
+        mockMvc.perform(post("/queue/push/batch")
+                .header("consumerGroup", "testGroup")
+                .header("delaySeconds", "-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[\"first\"]")
+                .with(csrf()))
+                .andExpect(status().isBadRequest());
+
+        verify(pushMessageService, never()).push(any(Message.class));
+        verify(pushMessageService, never()).pushBatch(anyString(), anyList());
+    }
+
+    @Test
+    @WithMockUser(username = "user", password = "password", roles = "USER")
+    public void testPushBatch() throws Exception {
+        List<Message> messages = List.of(new Message("id1", "testGroup", "first"), new Message("id2", "testGroup", "second"));
+        when(pushMessageService.pushBatch(eq("testGroup"), anyList())).thenReturn(messages);
+
+        mockMvc.perform(post("/queue/push/batch")
+                .header("consumerGroup", "testGroup")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[\"first\",\"second\"]")
+                .with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].content").value("first"))
+                .andExpect(jsonPath("$[1].content").value("second"));
+    }
+
+    @Test
+    @WithMockUser(username = "user", password = "password", roles = "USER")
+    public void testPushBatchEmpty() throws Exception {
+        mockMvc.perform(post("/queue/push/batch")
+                .header("consumerGroup", "testGroup")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]")
+                .with(csrf()))
+                .andExpect(status().isBadRequest());
+
+        verify(pushMessageService, never()).pushBatch(anyString(), anyList());
+    }
+
     @Test
     @WithMockUser(username = "user", password = "password", roles = "USER")
     public void testPop() throws Exception {
@@ -82,6 +246,63 @@ public class MessageControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    @WithMockUser(username = "user", password = "password", roles = "USER")
+    public void testPushRaw() throws Exception {
+        String content = "{\"key\":\"välue\"}".repeat(10_000);
+        when(pushMessageService.push(any(Message.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        mockMvc.perform(post("/queue/push/raw")
+                .header("consumerGroup", "testGroup")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .content(content.getBytes(java.nio.charset.StandardCharsets.UTF_8))
+                .with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").exists())
+                .andExpect(jsonPath("$.createdAt").exists())
+                .andExpect(jsonPath("$.content").doesNotExist());
+
+        verify(pushMessageService).push(org.mockito.ArgumentMatchers.argThat(message ->
+                message.getContent().equals(content) && message.getConsumerGroup().equals("testGroup")));
+    }
+
+    @Test
+    @WithMockUser(username = "user", password = "password", roles = "USER")
+    public void testPushRaw_PayloadTooLarge() throws Exception {
+        mockMvc.perform(post("/queue/push/raw")
+                .header("consumerGroup", "testGroup")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .content(new byte[1024 * 1024 + 1])
+                .with(csrf()))
+                .andExpect(status().isPayloadTooLarge());
+
+        verify(pushMessageService, never()).push(any(Message.class));
+    }
+
+    @Test
+    @WithMockUser(username = "user", password = "password", roles = "USER")
+    public void testPopRaw() throws Exception {
+        Message message = new Message("someId", "testGroup", "Test mëssage");
+        when(popMessageService.pop("testGroup")).thenReturn(Optional.of(message));
+
+        mockMvc.perform(get("/queue/pop/raw")
+                .header("consumerGroup", "testGroup"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("messageId", "someId"))
+                .andExpect(header().string("createdAt", message.getCreatedAt().toInstant().toString()))
+                .andExpect(content().bytes("Test mëssage".getBytes(java.nio.charset.StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    @WithMockUser(username = "user", password = "password", roles = "USER")
+    public void testPopRaw_Empty() throws Exception {
+        when(popMessageService.pop("testGroup")).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/queue/pop/raw")
+                .header("consumerGroup", "testGroup"))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     @WithMockUser(username = "admin", password = "adminpassword", roles = {"ADMIN", "USER"})
     public void testPopAsAdmin() throws Exception {
@@ -92,10 +313,115 @@ public class MessageControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    @WithMockUser(username = "user", password = "password", roles = "USER")
+    public void testPopWithWait() throws Exception {
+        when(longPollService.popOrWait("testGroup", 10)).thenReturn(CompletableFuture.completedFuture(Optional.of(new Message("someId", "testGroup", "Test message"))));
+
+        MvcResult result = mockMvc.perform(get("/queue/pop")
+                .header("consumerGroup", "testGroup")
+                .header("waitSeconds", "10"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value("someId"));
+        verify(popMessageService, never()).pop(anyString());
+    }
+
+    @Test
+    @WithMockUser(username = "user", password = "password", roles = "USER")
+    public void testPopWithWaitTimesOut() throws Exception {
+        when(longPollService.popOrWait("testGroup", 1)).thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+
+        MvcResult result = mockMvc.perform(get("/queue/pop")
+                .header("consumerGroup", "testGroup")
+                .header("waitSeconds", "1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @WithMockUser(username = "user", password = "password", roles = "USER")
+    public void testPopWithWaitInvalidWaitSeconds() throws Exception {
+        MvcResult result = mockMvc.perform(get("/queue/pop")
+                .header("consumerGroup", "testGroup")
+                .header("waitSeconds", "3600"))
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isBadRequest());
+        verify(longPollService, never()).popOrWait(anyString(), anyInt());
+    }
+
+    @Test
+    @WithMockUser(username = "user", password = "password", roles = "USER")
+    public void testPopBatch() throws Exception {
+        when(popMessageService.popBatch("testGroup", 2)).thenReturn(List.of(new Message("id1", "testGroup", "first"), new Message("id2", "testGroup", "second")));
+
+        mockMvc.perform(get("/queue/pop/batch")
+                .header("consumerGroup", "testGroup")
+                .header("messageCount", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2));
+    }
+
+    @Test
+    @WithMockUser(username = "user", password = "password", roles = "USER")
+    public void testPopBatchEmptyQueue() throws Exception {
+        when(popMessageService.popBatch("testGroup", 2)).thenReturn(List.of());
+
+        mockMvc.perform(get("/queue/pop/batch")
+                .header("consumerGroup", "testGroup")
+                .header("messageCount", "2"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @WithMockUser(username = "user", password = "password", roles = "USER")
+    public void testPopBatchInvalidCount() throws Exception {
+        mockMvc.perform(get("/queue/pop/batch")
+                .header("consumerGroup", "testGroup")
+                .header("messageCount", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser(username = "user", password = "password", roles = "USER")
+    public void testAcknowledge() throws Exception {
+        when(popMessageService.acknowledge("testGroup", List.of("id1", "id2"))).thenReturn(List.of("id1"));
+
+        mockMvc.perform(post("/queue/ack")
+                .header("consumerGroup", "testGroup")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[\"id1\",\"id2\"]")
+                .with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0]").value("id1"));
+    }
+
+    @Test
+    @WithMockUser(username = "user", password = "password", roles = "USER")
+    public void testAcknowledgeEmpty() throws Exception {
+        mockMvc.perform(post("/queue/ack")
+                .header("consumerGroup", "testGroup")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]")
+                .with(csrf()))
+                .andExpect(status().isBadRequest());
+
+        verify(popMessageService, never()).acknowledge(anyString(), anyList());
+    }
+
     @Test
     @WithMockUser(username = "user", password = "password", roles = "USER")
     public void testViewForbiddenForUser() throws Exception {
-        when(viewMessageService.view(anyString(), anyInt(), anyString())).thenReturn(Arrays.asList(new Message("someId", "testGroup", "Test message")));
+        when(viewMessageService.view(anyString(), anyInt(), any(), any())).thenReturn(new MessagePage(List.of(new Message("someId", "testGroup", "Test message")), null));
 
         mockMvc.perform(get("/queue/view")
                 .header("consumerGroup", "testGroup")
@@ -106,7 +432,7 @@ public class MessageControllerTest {
     @Test
     @WithMockUser(username = "admin", password = "adminpassword", roles = {"ADMIN", "USER"})
     public void testViewAsAdminWithoutProcessedHeader() throws Exception {
-        when(viewMessageService.view(anyString(), anyInt(), anyString())).thenReturn(Arrays.asList(new Message("someId", "testGroup", "Test message")));
+        when(viewMessageService.view(anyString(), anyInt(), any(), any())).thenReturn(new MessagePage(List.of(new Message("someId", "testGroup", "Test message")), null));
 
         mockMvc.perform(get("/queue/view")
                 .header("consumerGroup", "testGroup")
@@ -117,7 +443,7 @@ public class MessageControllerTest {
     @Test
     @WithMockUser(username = "admin", password = "adminpassword", roles = {"ADMIN", "USER"})
     public void testViewAsAdminWithProcessedYes() throws Exception {
-        when(viewMessageService.view(anyString(), anyInt(), anyString())).thenReturn(Arrays.asList(new Message("someId", "testGroup", "Test message")));
+        when(viewMessageService.view(anyString(), anyInt(), any(), any())).thenReturn(new MessagePage(List.of(new Message("someId", "testGroup", "Test message")), null));
 
         mockMvc.perform(get("/queue/view")
                 .header("consumerGroup", "testGroup")
@@ -129,7 +455,7 @@ public class MessageControllerTest {
     @Test
     @WithMockUser(username = "admin", password = "adminpassword", roles = {"ADMIN", "USER"})
     public void testViewAsAdminWithProcessedNo() throws Exception {
-        when(viewMessageService.view(anyString(), anyInt(), anyString())).thenReturn(Arrays.asList(new Message("someId", "testGroup", "Test message")));
+        when(viewMessageService.view(anyString(), anyInt(), any(), any())).thenReturn(new MessagePage(List.of(new Message("someId", "testGroup", "Test message")), null));
 
         mockMvc.perform(get("/queue/view")
                 .header("consumerGroup", "testGroup")
@@ -137,4 +463,52 @@ public class MessageControllerTest {
                 .header("messageCount", "10"))
                 .andExpect(status().isOk());
     }
+
+    @Test
+    @WithMockUser(username = "admin", password = "adminpassword", roles = {"ADMIN", "USER"})
+    public void testViewAsAdminWithPageToken() throws Exception {
+        when(viewMessageService.view("testGroup", 10, "no", "token1")).thenReturn(new MessagePage(List.of(new Message("someId", "testGroup", "Test message")), "token2"));
+
+        mockMvc.perform(get("/queue/view")
+                .header("consumerGroup", "testGroup")
+                .header("consumed", "no")
+                .header("messageCount", "10")
+                .header("pageToken", "token1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("nextPageToken", "token2"))
+                .andExpect(jsonPath("$[0].id").value("someId"));
+    }
+
+    @Test
+    @WithMockUser(username = "user", password = "password", roles = "USER")
+    public void testStats() throws Exception {
+        when(queueStatsService.stats("testGroup")).thenReturn(new QueueStats("testGroup", 12, 10, 3, 5, 20, 8, 42, 1.5, 0.5, 0.25, 0.75));
+
+        mockMvc.perform(get("/queue/stats")
+                .header("consumerGroup", "testGroup"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.pending").value(12))
+                .andExpect(jsonPath("$.inFlight").value(3))
+                .andExpect(jsonPath("$.oldestMessageAgeSeconds").value(42))
+                .andExpect(jsonPath("$.cacheHitRatio").value(0.75));
+    }
+
+    @Test
+    @WithMockUser(username = "admin", password = "adminpassword", roles = {"ADMIN", "USER"})
+    public void testRefreshIndexesAsAdmin() throws Exception {
+        when(mongoIndexService.refreshIndexes()).thenReturn(List.of("testGroup"));
+
+        mockMvc.perform(post("/queue/indexes")
+                .with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0]").value("testGroup"));
+    }
+
+    @Test
+    @WithMockUser(username = "user", password = "password", roles = "USER")
+    public void testRefreshIndexesForbiddenForUser() throws Exception {
+        mockMvc.perform(post("/queue/indexes")
+                .with(csrf()))
+                .andExpect(status().isForbidden());
+    }
 }
@@ -54,4 +54,30 @@ class GlobalExceptionHandlerTest {
         assertEquals("Test illegal argument message", responseEntity.getBody().getMessage());
         assertEquals("/test-uri", responseEntity.getBody().getPath());
     }
+
+    @Test
+    void handleQueueOverloadedException() {
+        QueueOverloadedException exception = new QueueOverloadedException("Test overloaded message");
+        ResponseEntity<ErrorResponse> responseEntity = globalExceptionHandler.handleQueueOverloadedException(exception, request);
+
+        assertNotNull(responseEntity);
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, responseEntity.getStatusCode());
+        assertNotNull(responseEntity.getBody());
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), responseEntity.getBody().getStatus());
+        assertEquals("Test overloaded message", responseEntity.getBody().getMessage());
+        assertEquals("/test-uri", responseEntity.getBody().getPath());
+    }
+
+    @Test
+    void handlePayloadTooLargeException() {
+        PayloadTooLargeException exception = new PayloadTooLargeException("Test too large message");
+        ResponseEntity<ErrorResponse> responseEntity = globalExceptionHandler.handlePayloadTooLargeException(exception, request);
+
+        assertNotNull(responseEntity);
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, responseEntity.getStatusCode());
+        assertNotNull(responseEntity.getBody());
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE.value(), responseEntity.getBody().getStatus());
+        assertEquals("Test too large message", responseEntity.getBody().getMessage());
+        assertEquals("/test-uri", responseEntity.getBody().getPath());
+    }
 }
@@ -0,0 +1,77 @@
+package com.al.simplequeueservice.loadtest;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tracks every message pushed, popped and acknowledged during a run, to count messages delivered more than once
+ * (duplicates) and messages pushed but never delivered (lost). A message popped again because its acknowledgement
+ * failed and its visibility timeout expired is a duplicate the queue allows; one popped again after it was
+ * acknowledged is not.
+ */
+class DeliveryLedger {
+
+    private final Set<String> pushed = ConcurrentHashMap.newKeySet();
+    private final Set<String> undelivered = ConcurrentHashMap.newKeySet();
+    private final Map<String, AtomicInteger> pops = new ConcurrentHashMap<>();
+    private final Set<String> acknowledged = ConcurrentHashMap.newKeySet();
+    private final LongAdder duplicatesAfterAcknowledgement = new LongAdder();
+
+    void pushed(String messageId) {
+        pushed.add(messageId);
+        undelivered.add(messageId);
+        // The message may have been popped before its push response arrived
+        if (pops.containsKey(messageId)) {
+            undelivered.remove(messageId);
+        }
+    }
+
+    void popped(String messageId) {
+        if (acknowledged.contains(messageId)) {
+            duplicatesAfterAcknowledgement.increment();
+        }
+        pops.computeIfAbsent(messageId, id -> new AtomicInteger()).incrementAndGet();
+        // After recording the pop, so a concurrent pushed() either sees it or has already added the ID
+        undelivered.remove(messageId);
+    }
+
+    void acknowledged(String messageId) {
+        acknowledged.add(messageId);
+    }
+
+    /**
+     * Messages pushed and not popped yet.
+     */
+    int undelivered() {
+        return undelivered.size();
+    }
+
+    /**
+     * Returns the counts once the run has finished and the queues have been drained.
+     */
+    Summary summary() {
+        long lost = undelivered.size();
+        long delivered = pops.keySet().stream().filter(pushed::contains).count();
+        long duplicates = pops.values().stream().mapToLong(count -> count.get() - 1).sum();
+        return new Summary(pushed.size(), delivered, acknowledged.size(), lost, duplicates, duplicatesAfterAcknowledgement.sum(),
+                pops.size() - delivered);
+    }
+
+    /**
+     * @param pushed                         Messages whose push succeeded.
+     * @param delivered                      Distinct pushed messages popped at least once.
+     * @param acknowledged                   Distinct messages whose acknowledgement succeeded.
+     * @param lost                           Messages pushed but never popped.
+     * @param duplicates                     Pops of messages popped before, whether acknowledged or not.
+     * @param duplicatesAfterAcknowledgement Pops of messages already acknowledged, which the queue must never hand out.
+     * @param unknown                        Distinct messages popped whose push response never arrived, for example
+     *                                       because it timed out after the message was queued, or left over from
+     *                                       earlier runs against the same target.
+     */
+    record Summary(long pushed, long delivered, long acknowledged, long lost, long duplicates, long duplicatesAfterAcknowledgement,
+                   long unknown) {
+    }
+}
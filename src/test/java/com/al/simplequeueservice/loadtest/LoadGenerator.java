@@ -0,0 +1,250 @@
+package com.al.simplequeueservice.loadtest;
+
+import com.al.simplequeueservice.loadtest.LoadTestOptions.Credentials;
+import com.al.simplequeueservice.loadtest.LoadTestOptions.Operation;
+import com.al.simplequeueservice.util.SQSConstants;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a mix of push, pop and view requests at a fixed rate against one instance. Operations are started on
+ * schedule whether or not earlier ones have completed (an open workload), each on its own virtual thread, so the
+ * offered load does not drop when the server slows down. Every successful pop is acknowledged. The measured load
+ * only starts once the warmup requests have completed, so a slow warmup cannot hold the {@code maxInFlight} slots
+ * through the measured window. After the load, the queues are drained so messages that were never delivered can be counted.
+ */
+class LoadGenerator {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadGenerator.class);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final long DRAIN_RETRY_MILLIS = 200;
+
+    private final URI baseUri;
+    private final LoadTestOptions options;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final String userAuthorization;
+    private final String adminAuthorization;
+    private final List<String> consumerGroups = new ArrayList<>();
+    private final Operation[] weightedOperations;
+    private final String content;
+
+    LoadGenerator(URI baseUri, LoadTestOptions options) {
+        this.baseUri = baseUri;
+        this.options = options;
+        this.userAuthorization = authorization(options.user());
+        this.adminAuthorization = authorization(options.admin());
+        String run = UUID.randomUUID().toString().substring(0, 8);
+        for (int i = 0; i < options.consumerGroups(); i++) {
+            consumerGroups.add("load-test-" + run + "-" + i);
+        }
+        List<Operation> operations = new ArrayList<>();
+        options.mix().forEach((operation, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                operations.add(operation);
+            }
+        });
+        this.weightedOperations = operations.toArray(Operation[]::new);
+        this.content = "x".repeat(options.contentLength());
+    }
+
+    /**
+     * Applies the warmup and the measured load, drains the queues and returns the report.
+     */
+    LoadReport run() throws InterruptedException {
+        LoadReport report = new LoadReport();
+        Semaphore inFlight = new Semaphore(options.maxInFlight());
+        logger.info("Offering {} operations/s to {} for {} s of warmup and {} s of measurement", options.rate(), baseUri,
+                options.warmup().toSeconds(), options.duration().toSeconds());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            offer(executor, inFlight, options.warmup(), false, report);
+            // Every request ends within its timeout, so this wait is bounded
+            long quiesceStart = System.nanoTime();
+            inFlight.acquire(options.maxInFlight());
+            inFlight.release(options.maxInFlight());
+            logger.info("Warmup requests completed after {} ms, starting the measured load",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - quiesceStart));
+            report.measured(offer(executor, inFlight, options.duration(), true, report));
+        }
+        drain(report);
+        return report;
+    }
+
+    /**
+     * Starts operations at the configured rate for {@code length}, skipping the ones due while {@code maxInFlight}
+     * requests are outstanding.
+     *
+     * @return How long offering the load took, which is longer than {@code length} if the generator fell behind.
+     */
+    private Duration offer(ExecutorService executor, Semaphore inFlight, Duration length, boolean measured, LoadReport report) {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / options.rate();
+        long start = System.nanoTime();
+        long end = start + length.toNanos();
+        for (long due = start; due < end; due += intervalNanos) {
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Operation operation = weightedOperations[random.nextInt(weightedOperations.length)];
+            String consumerGroup = consumerGroups.get(random.nextInt(consumerGroups.size()));
+            if (!inFlight.tryAcquire()) {
+                if (measured) {
+                    report.notSent(operation);
+                }
+                continue;
+            }
+            long dueNanos = due;
+            executor.execute(() -> {
+                try {
+                    execute(operation, consumerGroup, dueNanos, measured, report);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        }
+        return Duration.ofNanos(Math.max(end, System.nanoTime()) - start);
+    }
+
+    private void execute(Operation operation, String consumerGroup, long dueNanos, boolean measured, LoadReport report) {
+        LoadReport measuredReport = measured ? report : null;
+        switch (operation) {
+            case PUSH -> push(consumerGroup, dueNanos, measuredReport, report.ledger());
+            case POP -> pop(consumerGroup, dueNanos, measuredReport, report.ledger());
+            case VIEW -> view(consumerGroup, dueNanos, measuredReport);
+            default -> throw new IllegalStateException("Not part of the mix: " + operation);
+        }
+    }
+
+    private void push(String consumerGroup, long dueNanos, LoadReport report, DeliveryLedger ledger) {
+        HttpRequest request = request(SQSConstants.PUSH_URL, consumerGroup, userAuthorization)
+                .header("Content-Type", "text/plain")
+                .POST(HttpRequest.BodyPublishers.ofString(content))
+                .build();
+        JsonNode message = send(Operation.PUSH, request, dueNanos, report);
+        if (message != null) {
+            ledger.pushed(message.get("id").asText());
+        }
+    }
+
+    /**
+     * Pops a message and acknowledges it.
+     *
+     * @return Whether a message was popped.
+     */
+    private boolean pop(String consumerGroup, long dueNanos, LoadReport report, DeliveryLedger ledger) {
+        HttpRequest request = request(SQSConstants.POP_URL, consumerGroup, userAuthorization).GET().build();
+        JsonNode message = send(Operation.POP, request, dueNanos, report);
+        if (message == null) {
+            return false;
+        }
+        String messageId = message.get("id").asText();
+        ledger.popped(messageId);
+        HttpRequest acknowledge = request(SQSConstants.ACK_URL, consumerGroup, userAuthorization)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("[\"" + messageId + "\"]"))
+                .build();
+        if (send(Operation.ACK, acknowledge, System.nanoTime(), report) != null) {
+            ledger.acknowledged(messageId);
+        }
+        return true;
+    }
+
+    private void view(String consumerGroup, long dueNanos, LoadReport report) {
+        HttpRequest request = request(SQSConstants.VIEW_URL, consumerGroup, adminAuthorization)
+                .header(SQSConstants.MESSAGE_COUNT_HEADER, String.valueOf(options.viewCount()))
+                .GET()
+                .build();
+        send(Operation.VIEW, request, dueNanos, report);
+    }
+
+    /**
+     * Sends a request and records its outcome when it is measured.
+     *
+     * @return The response body, or {@code null} if the request failed or found no message.
+     */
+    private JsonNode send(Operation operation, HttpRequest request, long dueNanos, LoadReport report) {
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() == 404 && operation == Operation.POP) {
+                if (report != null) {
+                    report.completed(operation, dueNanos);
+                    report.empty(operation);
+                }
+                return null;
+            }
+            if (response.statusCode() / 100 != 2) {
+                logger.debug("{} failed with status {}: {}", operation, response.statusCode(), response.body());
+                if (report != null) {
+                    report.failed(operation);
+                }
+                return null;
+            }
+            if (report != null) {
+                report.completed(operation, dueNanos);
+            }
+            return response.body().isEmpty() ? objectMapper.createObjectNode() : objectMapper.readTree(response.body());
+        } catch (IOException e) {
+            logger.debug("{} failed: {}", operation, e.toString());
+            if (report != null) {
+                report.failed(operation);
+            }
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Pops and acknowledges until every message pushed during the run has been delivered, or the drain time is up.
+     * Messages whose pop timed out on the client stay in flight until their visibility timeout expires, so the drain
+     * should be longer than {@code visibility.timeout.seconds} for them to count as delivered.
+     */
+    private void drain(LoadReport report) throws InterruptedException {
+        DeliveryLedger ledger = report.ledger();
+        long deadline = System.nanoTime() + options.drain().toNanos();
+        while (ledger.undelivered() > 0 && System.nanoTime() < deadline) {
+            boolean popped = false;
+            for (String consumerGroup : consumerGroups) {
+                popped |= pop(consumerGroup, System.nanoTime(), null, ledger);
+            }
+            if (!popped) {
+                // Messages may still be on their way into the database or waiting for their visibility timeout
+                Thread.sleep(DRAIN_RETRY_MILLIS);
+            }
+        }
+        logger.info("Drained the queues, {} messages not delivered", ledger.undelivered());
+    }
+
+    private HttpRequest.Builder request(String path, String consumerGroup, String authorization) {
+        return HttpRequest.newBuilder(baseUri.resolve(SQSConstants.QUEUE_BASE_URL + path))
+                .timeout(REQUEST_TIMEOUT)
+                .header(SQSConstants.CONSUMER_GROUP_HEADER, consumerGroup)
+                .header("Authorization", authorization);
+    }
+
+    private static String authorization(Credentials credentials) {
+        return "Basic " + Base64.getEncoder().encodeToString((credentials.username() + ":" + credentials.password()).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,152 @@
+package com.al.simplequeueservice.loadtest;
+
+import com.al.simplequeueservice.loadtest.LoadTestOptions.Operation;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Outcome of the measured part of a run: per operation the latency distribution, errors, empty pops and operations
+ * that were due but not sent because {@code maxInFlight} requests were outstanding. Latencies are measured from the
+ * moment an operation was due, not from when it was sent, so a slow server is not hidden by the load generator
+ * falling behind.
+ */
+class LoadReport {
+
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final Map<Operation, OperationStats> operations = new EnumMap<>(Operation.class);
+    private final DeliveryLedger ledger = new DeliveryLedger();
+    private volatile Duration measured = Duration.ZERO;
+
+    LoadReport() {
+        for (Operation operation : Operation.values()) {
+            operations.put(operation, new OperationStats());
+        }
+    }
+
+    DeliveryLedger ledger() {
+        return ledger;
+    }
+
+    void completed(Operation operation, long dueNanos) {
+        Histogram latencies = operations.get(operation).latencies;
+        latencies.recordValue(Math.min(MAX_LATENCY_MICROS, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - dueNanos)));
+    }
+
+    void empty(Operation operation) {
+        operations.get(operation).empty.increment();
+    }
+
+    void failed(Operation operation) {
+        operations.get(operation).errors.increment();
+    }
+
+    void notSent(Operation operation) {
+        operations.get(operation).notSent.increment();
+    }
+
+    void measured(Duration measured) {
+        this.measured = measured;
+    }
+
+    /**
+     * Whether the run shows the queue losing or duplicating messages.
+     */
+    boolean deliveryViolated() {
+        DeliveryLedger.Summary delivery = ledger.summary();
+        return delivery.lost() > 0 || delivery.duplicatesAfterAcknowledgement() > 0;
+    }
+
+    /**
+     * Whether no operation completed in the measured window, so the latencies and throughput say nothing.
+     */
+    boolean measuredNothing() {
+        return operations.values().stream().allMatch(stats -> stats.latencies.getTotalCount() == 0);
+    }
+
+    Map<String, Object> toMap() {
+        double seconds = Math.max(1, measured.toMillis()) / 1000.0;
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("measuredSeconds", seconds);
+        Map<String, Object> operationReports = new LinkedHashMap<>();
+        operations.forEach((operation, stats) -> {
+            Histogram latencies = stats.latencies;
+            long attempts = latencies.getTotalCount() + stats.errors.sum();
+            if (attempts == 0 && stats.notSent.sum() == 0) {
+                return;
+            }
+            Map<String, Object> operationReport = new LinkedHashMap<>();
+            operationReport.put("completed", latencies.getTotalCount());
+            operationReport.put("throughputPerSecond", latencies.getTotalCount() / seconds);
+            operationReport.put("errors", stats.errors.sum());
+            operationReport.put("errorRate", attempts == 0 ? 0.0 : (double) stats.errors.sum() / attempts);
+            operationReport.put("empty", stats.empty.sum());
+            operationReport.put("notSent", stats.notSent.sum());
+            Map<String, Double> percentiles = new LinkedHashMap<>();
+            for (double percentile : new double[]{50, 90, 99, 99.9}) {
+                percentiles.put("p" + (percentile % 1 == 0 ? String.valueOf((int) percentile) : String.valueOf(percentile)), millis(latencies.getValueAtPercentile(percentile)));
+            }
+            percentiles.put("max", millis(latencies.getMaxValue()));
+            operationReport.put("latencyMillis", percentiles);
+            operationReports.put(operation.name().toLowerCase(), operationReport);
+        });
+        report.put("operations", operationReports);
+        report.put("delivery", ledger.summary());
+        return report;
+    }
+
+    void print(PrintStream out) {
+        Map<String, Object> report = toMap();
+        out.printf("%nMeasured %.1f s%n", (double) report.get("measuredSeconds"));
+        out.printf("%-6s %10s %10s %8s %8s %8s %9s %9s %9s %9s %9s%n",
+                "op", "completed", "ops/s", "errors", "empty", "notSent", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        @SuppressWarnings("unchecked")
+        Map<String, Map<String, Object>> operationReports = (Map<String, Map<String, Object>>) report.get("operations");
+        operationReports.forEach((operation, operationReport) -> {
+            @SuppressWarnings("unchecked")
+            Map<String, Double> latencies = (Map<String, Double>) operationReport.get("latencyMillis");
+            out.printf("%-6s %10d %10.1f %8d %8d %8d %9.2f %9.2f %9.2f %9.2f %9.2f%n", operation,
+                    operationReport.get("completed"), operationReport.get("throughputPerSecond"), operationReport.get("errors"),
+                    operationReport.get("empty"), operationReport.get("notSent"),
+                    latencies.get("p50"), latencies.get("p90"), latencies.get("p99"), latencies.get("p99.9"), latencies.get("max"));
+        });
+        DeliveryLedger.Summary delivery = ledger.summary();
+        out.printf("Delivery: %d pushed, %d delivered, %d acknowledged, %d lost, %d duplicates (%d after acknowledgement), %d unknown%n",
+                delivery.pushed(), delivery.delivered(), delivery.acknowledged(), delivery.lost(), delivery.duplicates(),
+                delivery.duplicatesAfterAcknowledgement(), delivery.unknown());
+        if (measuredNothing()) {
+            out.println("No operation completed in the measured window. Lower the rate or raise maxInFlight.");
+        }
+    }
+
+    void write(Path file) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file.toFile(), toMap());
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    private static final class OperationStats {
+        private final Histogram latencies = new ConcurrentHistogram(MAX_LATENCY_MICROS, 3);
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder empty = new LongAdder();
+        private final LongAdder notSent = new LongAdder();
+    }
+}
@@ -0,0 +1,56 @@
+package com.al.simplequeueservice.loadtest;
+
+import com.al.simplequeueservice.SimpleQueueServiceApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Runs a load test and prints its report. Without a {@code target}, the application is booted in this JVM against
+ * in-process Redis and MongoDB stand-ins; with one, a running instance and its real backends are loaded instead,
+ * which is what sizing a production node needs. Exits with status 1 if a message was lost or delivered again
+ * after it was acknowledged, and with status 2 if no operation completed in the measured window.
+ * Run with {@code mvn -Pload-test verify -Dload.test.args="rate=500 duration=60"}; see {@link LoadTestOptions}.
+ */
+public final class LoadTest {
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        LoadReport report = run(options);
+        report.print(System.out);
+        Path reportFile = Path.of(options.report());
+        report.write(reportFile);
+        System.out.println("Report written to " + reportFile.toAbsolutePath());
+        System.exit(report.deliveryViolated() ? 1 : report.measuredNothing() ? 2 : 0);
+    }
+
+    static LoadReport run(LoadTestOptions options) throws Exception {
+        if (options.target() != null) {
+            return new LoadGenerator(options.target(), options).run();
+        }
+        try (StandIns standIns = StandIns.start();
+             ConfigurableApplicationContext application = boot(standIns, options)) {
+            int port = ((WebServerApplicationContext) application).getWebServer().getPort();
+            return new LoadGenerator(URI.create("http://localhost:" + port), options).run();
+        }
+    }
+
+    private static ConfigurableApplicationContext boot(StandIns standIns, LoadTestOptions options) {
+        Map<String, Object> properties = new HashMap<>(standIns.applicationProperties());
+        properties.put("server.port", 0);
+        properties.put("logging.level.root", "WARN");
+        properties.put("logging.level.com.al.simplequeueservice.loadtest", "INFO");
+        properties.putAll(options.applicationProperties());
+        // Passed as command line arguments, which take precedence over application.properties
+        return new SpringApplicationBuilder(SimpleQueueServiceApplication.class)
+                .run(properties.entrySet().stream().map(property -> "--" + property.getKey() + "=" + property.getValue()).toArray(String[]::new));
+    }
+}
@@ -0,0 +1,107 @@
+package com.al.simplequeueservice.loadtest;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Settings of a load test run, parsed from {@code key=value} arguments. Keys containing a dot are not load test
+ * settings but application properties, passed to the application booted against the stand-ins, so configurations
+ * can be compared (for example {@code cache.local.enabled=true}).
+ *
+ * @param target                Base URL of a running instance to load, or {@code null} to boot one against in-process stand-ins.
+ * @param rate                  Operations started per second, whether or not earlier ones have completed.
+ * @param warmup                Load applied before measuring starts.
+ * @param duration              Measured load after the warmup.
+ * @param drain                 How long popping may take to deliver the remaining messages after the load, before they count as lost.
+ * @param mix                   Relative weight of each operation.
+ * @param consumerGroups        Number of consumer groups the load is spread over.
+ * @param contentLength         Characters per pushed message.
+ * @param maxInFlight           Requests allowed to be outstanding at once; operations due beyond it are counted as not sent.
+ * @param viewCount             Messages requested per view.
+ * @param user                  User role credentials, used for push, pop and acknowledge.
+ * @param admin                 Admin role credentials, used for view.
+ * @param report                File the JSON report is written to.
+ * @param applicationProperties Properties of the application booted against the stand-ins.
+ */
+record LoadTestOptions(URI target, int rate, Duration warmup, Duration duration, Duration drain, Map<Operation, Integer> mix,
+                       int consumerGroups, int contentLength, int maxInFlight, int viewCount, Credentials user, Credentials admin,
+                       String report, Map<String, Object> applicationProperties) {
+
+    /**
+     * Operations the load is made of. Acknowledgements follow every successful pop and are not part of the mix.
+     */
+    enum Operation {
+        PUSH, POP, ACK, VIEW
+    }
+
+    record Credentials(String username, String password) {
+    }
+
+    static LoadTestOptions parse(String... args) {
+        Map<String, String> settings = new HashMap<>();
+        Map<String, Object> applicationProperties = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected key=value but got: " + arg);
+            }
+            String key = arg.substring(0, separator);
+            String value = arg.substring(separator + 1);
+            if (key.contains(".")) {
+                applicationProperties.put(key, value);
+            } else {
+                settings.put(key, value);
+            }
+        }
+        String target = take(settings, "target", null);
+        LoadTestOptions options = new LoadTestOptions(
+                target == null ? null : URI.create(target),
+                Integer.parseInt(take(settings, "rate", "200")),
+                Duration.ofSeconds(Long.parseLong(take(settings, "warmup", "5"))),
+                Duration.ofSeconds(Long.parseLong(take(settings, "duration", "30"))),
+                Duration.ofSeconds(Long.parseLong(take(settings, "drain", "60"))),
+                parseMix(take(settings, "mix", "push:50,pop:45,view:5")),
+                Integer.parseInt(take(settings, "groups", "4")),
+                Integer.parseInt(take(settings, "content", "256")),
+                Integer.parseInt(take(settings, "maxInFlight", "1000")),
+                Integer.parseInt(take(settings, "viewCount", "10")),
+                new Credentials(take(settings, "user", "user"), take(settings, "password", "password")),
+                new Credentials(take(settings, "admin", "admin"), take(settings, "adminPassword", "adminpassword")),
+                take(settings, "report", "target/load-test-report.json"),
+                Map.copyOf(applicationProperties));
+        if (!settings.isEmpty()) {
+            throw new IllegalArgumentException("Unknown settings: " + settings.keySet());
+        }
+        if (options.rate() <= 0 || options.consumerGroups() <= 0 || options.maxInFlight() <= 0) {
+            throw new IllegalArgumentException("rate, groups and maxInFlight must be positive");
+        }
+        return options;
+    }
+
+    private static String take(Map<String, String> settings, String key, String defaultValue) {
+        String value = settings.remove(key);
+        return value == null ? defaultValue : value;
+    }
+
+    /**
+     * Parses weights such as {@code push:50,pop:45,view:5}.
+     */
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.split(":");
+            Operation operation = Operation.valueOf(parts[0].trim().toUpperCase());
+            if (operation == Operation.ACK) {
+                throw new IllegalArgumentException("Acknowledgements follow pops and cannot be part of the mix");
+            }
+            weights.put(operation, Integer.parseInt(parts[1].trim()));
+        }
+        if (weights.values().stream().mapToInt(Integer::intValue).sum() <= 0) {
+            throw new IllegalArgumentException("The mix needs at least one operation with a positive weight: " + mix);
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,73 @@
+package com.al.simplequeueservice.loadtest;
+
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.Map;
+
+/**
+ * Local Redis and MongoDB servers started by the load test itself, so no external services are needed. Redis is a
+ * real {@code redis-server} binary run by embedded-redis, so the Lua scripts run as in production. MongoDB is
+ * mongo-java-server's in-memory backend, which speaks the wire protocol but ignores secondary indexes, so database
+ * fallbacks scan their collection and are slower than against a real server. Integration tests use them as well.
+ */
+public final class StandIns implements AutoCloseable {
+
+    private final RedisServer redisServer;
+    private final int redisPort;
+    private final MongoServer mongoServer;
+    private final InetSocketAddress mongoAddress;
+
+    private StandIns(RedisServer redisServer, int redisPort, MongoServer mongoServer, InetSocketAddress mongoAddress) {
+        this.redisServer = redisServer;
+        this.redisPort = redisPort;
+        this.mongoServer = mongoServer;
+        this.mongoAddress = mongoAddress;
+    }
+
+    public static StandIns start() throws IOException {
+        int redisPort = freePort();
+        RedisServer redisServer = new RedisServer(redisPort);
+        redisServer.start();
+        MongoServer mongoServer = new MongoServer(new MemoryBackend());
+        return new StandIns(redisServer, redisPort, mongoServer, mongoServer.bind());
+    }
+
+    /**
+     * Application properties pointing the Redis and MongoDB clients at the stand-ins.
+     */
+    Map<String, Object> applicationProperties() {
+        return Map.of(
+                "spring.data.redis.host", "localhost",
+                "spring.data.redis.port", redisPort,
+                "spring.data.mongodb.uri", mongoUri(),
+                "spring.data.mongodb.database", "load-test");
+    }
+
+    public int redisPort() {
+        return redisPort;
+    }
+
+    public String mongoUri() {
+        return "mongodb://" + mongoAddress.getHostString() + ":" + mongoAddress.getPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mongoServer.shutdownNow();
+        redisServer.stop();
+    }
+
+    private static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new UncheckedIOException("No free port for the Redis stand-in", e);
+        }
+    }
+}
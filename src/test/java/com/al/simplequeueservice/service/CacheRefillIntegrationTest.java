@@ -0,0 +1,223 @@
+package com.al.simplequeueservice.service;
+
+import com.al.simplequeueservice.config.RedisConfig;
+import com.al.simplequeueservice.loadtest.StandIns;
+import com.al.simplequeueservice.model.Message;
+import com.al.simplequeueservice.util.SQSConstants;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs the cache refill against a real Redis and an in-memory MongoDB, racing it with the regular push of the
+ * same message. Whichever of the two reaches Redis first, the message must be handed out exactly once, also
+ * after it was acknowledged, marked consumed and forgotten. The same holds for a database fallback whose read
+ * predates the consumed mark, and a fallback that loses its claim leaves the message visible in MongoDB. A message
+ * written before priorities existed is not overtaken by newer ones once its collection is indexed.
+ */
+class CacheRefillIntegrationTest {
+
+    private static StandIns standIns;
+
+    private LettuceConnectionFactory connectionFactory;
+    private MongoClient mongoClient;
+    private MongoTemplate mongoTemplate;
+    private CacheService cacheService;
+    private CacheRefillService cacheRefillService;
+    private String consumerGroup;
+
+    @BeforeAll
+    static void startStandIns() throws IOException {
+        standIns = StandIns.start();
+    }
+
+    @AfterAll
+    static void stopStandIns() throws IOException {
+        standIns.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", standIns.redisPort()));
+        connectionFactory.afterPropertiesSet();
+        RedisTemplate<String, Object> redisTemplate = new RedisConfig().redisTemplate(connectionFactory);
+        redisTemplate.afterPropertiesSet();
+        mongoClient = MongoClients.create(standIns.mongoUri());
+        mongoTemplate = new MongoTemplate(mongoClient, "refill-it");
+        consumerGroup = "refill-it-" + UUID.randomUUID();
+
+        cacheService = new CacheService(redisTemplate, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cacheService, "redisCacheTtlMinutes", 5L);
+        ReflectionTestUtils.setField(cacheService, "claimRetentionMinutes", 30L);
+        ReflectionTestUtils.setField(cacheService, "acknowledgedGraceSeconds", 60L);
+
+        cacheRefillService = new CacheRefillService();
+        ReflectionTestUtils.setField(cacheRefillService, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(cacheRefillService, "cacheService", cacheService);
+        ReflectionTestUtils.setField(cacheRefillService, "pageSize", 100);
+        ReflectionTestUtils.setField(cacheRefillService, "cooldownMillis", 0L);
+        ReflectionTestUtils.setField(cacheRefillService, "lockSeconds", 10L);
+        ReflectionTestUtils.setField(cacheRefillService, "redisCacheTtlMinutes", 5L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        connectionFactory.destroy();
+        mongoClient.close();
+    }
+
+    @Test
+    void latePushAfterRefill_deliversMessageOnce() {
+        Message message = persisted();
+
+        assertEquals(1, cacheRefillService.refill(consumerGroup));
+        // The push of the message reaches Redis only after the refill queued it
+        cacheService.addMessage(message);
+
+        assertEquals(List.of(message.getId()), popAllAndConsume());
+    }
+
+    @Test
+    void refillAfterPush_deliversMessageOnceAndReleasesItsReservation() {
+        Message message = persisted();
+        cacheService.addMessage(message);
+
+        assertEquals(0, cacheRefillService.refill(consumerGroup));
+        // Skipped by the refill, so visible to the database fallback again instead of hidden for the list lifetime
+        assertNull(mongoTemplate.findById(message.getId(), Message.class, consumerGroup).getVisibleAt());
+
+        assertEquals(List.of(message.getId()), popAllAndConsume());
+    }
+
+    @Test
+    void lateScheduleAfterRefill_deliversMessageOnce() {
+        Message message = persisted();
+
+        assertEquals(1, cacheRefillService.refill(consumerGroup));
+        // A delayed message already due when its schedule entry reaches Redis
+        cacheService.addMessage(new Message(message.getId(), message.getContent(), consumerGroup, message.getCreatedAt(),
+                false, message.getPriority(), message.getCreatedAt()));
+        cacheService.promoteScheduled(consumerGroup, System.currentTimeMillis(), 100);
+
+        assertEquals(List.of(message.getId()), popAllAndConsume());
+    }
+
+    @Test
+    void databaseReadBeforeConsumedMark_losesItsClaim() {
+        Message message = persisted();
+        cacheService.addMessage(message);
+        long visibleAtMillis = System.currentTimeMillis() + Duration.ofMinutes(5).toMillis();
+        assertEquals(message.getId(), cacheService.popMessage(consumerGroup, visibleAtMillis).getId());
+
+        // The database fallback reads the message before it is acknowledged, marked consumed and forgotten
+        Message readByFallback = mongoTemplate.findById(message.getId(), Message.class, consumerGroup);
+        assertEquals(List.of(message.getId()), cacheService.acknowledge(consumerGroup, List.of(message.getId())));
+        mongoTemplate.updateFirst(new Query(Criteria.where(SQSConstants.ID).is(message.getId())),
+                new Update().set(SQSConstants.CONSUMED, true), Message.class, consumerGroup);
+        cacheService.forgetAcknowledged(consumerGroup, List.of(message.getId()));
+
+        assertTrue(cacheService.claimInFlight(consumerGroup, List.of(readByFallback), visibleAtMillis).isEmpty());
+    }
+
+    @Test
+    void databaseFallbackLosingItsClaim_releasesTheMessageAndClaimsTheNext() {
+        Message inFlight = persisted();
+        cacheService.addMessage(inFlight);
+        assertEquals(inFlight.getId(), cacheService.popMessage(consumerGroup, System.currentTimeMillis() + Duration.ofMinutes(5).toMillis()).getId());
+        // Newer, so the fallback reaches it only after losing its claim on the message in flight
+        Message next = new Message(UUID.randomUUID().toString(), "content", consumerGroup, new Date(System.currentTimeMillis() - 1000), false);
+        mongoTemplate.insert(next, consumerGroup);
+
+        PopMessageService popMessageService = new PopMessageService();
+        CacheRefillService coldRefill = mock(CacheRefillService.class);
+        ReflectionTestUtils.setField(popMessageService, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(popMessageService, "cacheService", cacheService);
+        ReflectionTestUtils.setField(popMessageService, "cacheRefillService", coldRefill);
+        ReflectionTestUtils.setField(popMessageService, "messagePersistenceService", mock(MessagePersistenceService.class));
+        ReflectionTestUtils.setField(popMessageService, "queueStatsService", mock(QueueStatsService.class));
+        ReflectionTestUtils.setField(popMessageService, "messageCompressionService", new MessageCompressionService());
+        ReflectionTestUtils.setField(popMessageService, "visibilityTimeoutSeconds", 300L);
+
+        assertEquals(next.getId(), popMessageService.pop(consumerGroup).orElseThrow().getId());
+        // Redis decides when the message in flight comes back, so the database does not hide it for this pop's timeout
+        assertNull(mongoTemplate.findById(inFlight.getId(), Message.class, consumerGroup).getVisibleAt());
+        assertNotNull(mongoTemplate.findById(next.getId(), Message.class, consumerGroup).getVisibleAt());
+    }
+
+    @Test
+    void messageWrittenBeforePriorities_isRefilledBeforeNewerMessages() {
+        // Written before messages carried a priority, so the document has no priority field
+        String legacyId = UUID.randomUUID().toString();
+        mongoTemplate.getCollection(consumerGroup).insertOne(new Document(SQSConstants.MONGO_ID, legacyId)
+                .append("content", "content").append("consumerGroup", consumerGroup)
+                .append(SQSConstants.CREATED_AT, new Date(System.currentTimeMillis() - 10_000)).append(SQSConstants.CONSUMED, false));
+        Message newer = persisted();
+        MongoIndexService mongoIndexService = new MongoIndexService();
+        ReflectionTestUtils.setField(mongoIndexService, "mongoClient", mongoClient);
+        ReflectionTestUtils.setField(mongoIndexService, "mongoDB", "refill-it");
+        ReflectionTestUtils.setField(mongoIndexService, "expireMinutes", 30L);
+
+        mongoIndexService.ensureIndexes(consumerGroup);
+
+        assertEquals(0, mongoTemplate.getCollection(consumerGroup).find(new Document(SQSConstants.MONGO_ID, legacyId)).first().get(SQSConstants.PRIORITY));
+        assertEquals(2, cacheRefillService.refill(consumerGroup));
+        assertEquals(List.of(legacyId, newer.getId()), popAllAndConsume());
+    }
+
+    /**
+     * Stores a message in MongoDB only, old enough for the refill to pick it up.
+     */
+    private Message persisted() {
+        Message message = new Message(UUID.randomUUID().toString(), "content", consumerGroup, new Date(System.currentTimeMillis() - 5000), false);
+        mongoTemplate.insert(message, consumerGroup);
+        return message;
+    }
+
+    /**
+     * Pops until the cache is empty, acknowledging each message and marking it consumed and forgotten before the
+     * next pop, the way the persistence pipeline does.
+     *
+     * @return The IDs of the messages popped, in pop order.
+     */
+    private List<String> popAllAndConsume() {
+        List<String> popped = new ArrayList<>();
+        long visibleAtMillis = System.currentTimeMillis() + Duration.ofMinutes(5).toMillis();
+        Message message;
+        while ((message = cacheService.popMessage(consumerGroup, visibleAtMillis)) != null) {
+            popped.add(message.getId());
+            assertEquals(List.of(message.getId()), cacheService.acknowledge(consumerGroup, List.of(message.getId())));
+            mongoTemplate.updateFirst(new Query(Criteria.where(SQSConstants.ID).is(message.getId())),
+                    new Update().set(SQSConstants.CONSUMED, true), Message.class, consumerGroup);
+            cacheService.forgetAcknowledged(consumerGroup, List.of(message.getId()));
+        }
+        assertTrue(cacheService.viewMessages(consumerGroup, 10).isEmpty());
+        return popped;
+    }
+}
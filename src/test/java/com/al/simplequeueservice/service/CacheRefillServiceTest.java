@@ -0,0 +1,162 @@
+package com.al.simplequeueservice.service;
+
+import com.al.simplequeueservice.model.Message;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class CacheRefillServiceTest {
+
+    private static final String CONSUMER_GROUP = "testGroup";
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private CacheService cacheService;
+
+    @InjectMocks
+    private CacheRefillService cacheRefillService;
+
+    private Message older;
+    private Message newer;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(cacheRefillService, "pageSize", 500);
+        ReflectionTestUtils.setField(cacheRefillService, "cooldownMillis", 60_000L);
+        ReflectionTestUtils.setField(cacheRefillService, "lockSeconds", 10L);
+        ReflectionTestUtils.setField(cacheRefillService, "redisCacheTtlMinutes", 5L);
+        older = new Message("id1", "older", CONSUMER_GROUP, new Date(1000), false);
+        newer = new Message("id2", "newer", CONSUMER_GROUP, new Date(2000), false);
+        when(cacheService.tryLockRefill(eq(CONSUMER_GROUP), any(Duration.class))).thenReturn(true);
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(Message.class), eq(CONSUMER_GROUP)))
+                .thenReturn(UpdateResult.acknowledged(2, 2L, null));
+    }
+
+    private void givenPageInDb() {
+        when(mongoTemplate.find(any(Query.class), eq(Message.class), eq(CONSUMER_GROUP)))
+                .thenReturn(List.of(new Message("id1", null, null, null, false), new Message("id2", null, null, null, false)))
+                .thenReturn(List.of(newer, older));
+    }
+
+    @Test
+    void refill_reservesPageAndPushesItOldestFirst() {
+        givenPageInDb();
+        when(cacheService.refill(CONSUMER_GROUP, List.of(older, newer))).thenReturn(List.of("id1", "id2"));
+
+        long refilled = cacheRefillService.refill(CONSUMER_GROUP);
+
+        assertEquals(2, refilled);
+        // Reserved messages are hidden in the database for the lifetime of the list
+        ArgumentCaptor<Update> updateCaptor = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateMulti(any(Query.class), updateCaptor.capture(), eq(Message.class), eq(CONSUMER_GROUP));
+        assertTrue(updateCaptor.getValue().modifies("visibleAt"));
+        assertFalse(updateCaptor.getValue().modifies("consumed"));
+        verify(cacheService).unlockRefill(CONSUMER_GROUP);
+    }
+
+    @Test
+    void refill_releasesReservedMessagesItSkipped() {
+        givenPageInDb();
+        // id2 was already enqueued, for example by its own push reaching Redis late
+        when(cacheService.refill(CONSUMER_GROUP, List.of(older, newer))).thenReturn(List.of("id1"));
+
+        assertEquals(1, cacheRefillService.refill(CONSUMER_GROUP));
+
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> updateCaptor = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(2)).updateMulti(queryCaptor.capture(), updateCaptor.capture(), eq(Message.class), eq(CONSUMER_GROUP));
+        assertEquals(List.of("id2"), queryCaptor.getValue().getQueryObject().get("id", Document.class).get("$in"));
+        assertTrue(updateCaptor.getValue().getUpdateObject().get("$unset", Document.class).containsKey("visibleAt"));
+    }
+
+    @Test
+    void refill_emptyDbStartsCooldown() {
+        when(mongoTemplate.find(any(Query.class), eq(Message.class), eq(CONSUMER_GROUP))).thenReturn(List.of());
+
+        assertEquals(0, cacheRefillService.refill(CONSUMER_GROUP));
+        assertEquals(0, cacheRefillService.refill(CONSUMER_GROUP));
+
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(Message.class), eq(CONSUMER_GROUP));
+        verify(cacheService, never()).refill(anyString(), anyList());
+    }
+
+    @Test
+    void refill_skippedWhileAnotherInstanceHoldsTheLock() {
+        when(cacheService.tryLockRefill(eq(CONSUMER_GROUP), any(Duration.class))).thenReturn(false);
+
+        assertEquals(0, cacheRefillService.refill(CONSUMER_GROUP));
+
+        verify(mongoTemplate, never()).find(any(Query.class), eq(Message.class), anyString());
+        verify(cacheService, never()).unlockRefill(anyString());
+    }
+
+    @Test
+    void refill_failureDoesNotFailThePop() {
+        when(mongoTemplate.find(any(Query.class), eq(Message.class), eq(CONSUMER_GROUP))).thenThrow(new RuntimeException("Mongo down"));
+
+        assertEquals(0, cacheRefillService.refill(CONSUMER_GROUP));
+
+        verify(cacheService).unlockRefill(CONSUMER_GROUP);
+    }
+
+    @Test
+    void refill_concurrentMissesShareOneRefill() throws Exception {
+        int callers = 8;
+        CountDownLatch refillStarted = new CountDownLatch(1);
+        CountDownLatch releaseRefill = new CountDownLatch(1);
+        givenPageInDb();
+        when(cacheService.refill(CONSUMER_GROUP, List.of(older, newer))).thenAnswer(invocation -> {
+            refillStarted.countDown();
+            releaseRefill.await();
+            return List.of("id1", "id2");
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            Future<Long> first = executor.submit(() -> cacheRefillService.refill(CONSUMER_GROUP));
+            assertTrue(refillStarted.await(2, TimeUnit.SECONDS));
+            List<Future<Long>> others = new java.util.ArrayList<>();
+            for (int i = 1; i < callers; i++) {
+                others.add(executor.submit(() -> cacheRefillService.refill(CONSUMER_GROUP)));
+            }
+            Thread.sleep(100);
+            releaseRefill.countDown();
+
+            assertEquals(2, first.get(2, TimeUnit.SECONDS));
+            for (Future<Long> other : others) {
+                assertEquals(2, other.get(2, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(cacheService, times(1)).tryLockRefill(eq(CONSUMER_GROUP), any(Duration.class));
+        verify(mongoTemplate, times(1)).updateMulti(any(Query.class), any(Update.class), eq(Message.class), eq(CONSUMER_GROUP));
+    }
+}
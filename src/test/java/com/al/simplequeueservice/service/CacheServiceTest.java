@@ -2,23 +2,40 @@ package com.al.simplequeueservice.service;
 
 import com.al.simplequeueservice.model.Message;
 import com.al.simplequeueservice.util.SQSConstants;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.data.redis.core.ListOperations;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.nullable;
 import static org.mockito.Mockito.*;
 
 class CacheServiceTest {
@@ -29,18 +46,46 @@ class CacheServiceTest {
     @Mock
     private ListOperations<String, Object> listOperations;
 
-    @InjectMocks
+    @Mock
+    private SetOperations<String, Object> setOperations;
+
+    @Mock
+    private ValueOperations<String, Object> valueOperations;
+
     private CacheService cacheService;
 
     private static final String CONSUMER_GROUP = "testGroup";
     private static final String CACHE_KEY = SQSConstants.CACHE_PREFIX + CONSUMER_GROUP;
+    private static final String IN_FLIGHT_KEY = SQSConstants.IN_FLIGHT_PREFIX + CONSUMER_GROUP;
+    private static final String IN_FLIGHT_MESSAGES_KEY = SQSConstants.IN_FLIGHT_MESSAGES_PREFIX + CONSUMER_GROUP;
+    private static final String ACKNOWLEDGED_KEY = SQSConstants.ACKNOWLEDGED_PREFIX + CONSUMER_GROUP;
+    private static final String DB_CLAIMS_KEY = SQSConstants.DB_CLAIMS_PREFIX + CONSUMER_GROUP;
+    private static final String ENQUEUED_KEY = SQSConstants.ENQUEUED_PREFIX + CONSUMER_GROUP;
+    private static final List<String> POP_KEYS = CacheService.withMessageListKeys(CONSUMER_GROUP,
+            IN_FLIGHT_KEY, IN_FLIGHT_MESSAGES_KEY, SQSConstants.IN_FLIGHT_GROUPS_KEY, ACKNOWLEDGED_KEY, DB_CLAIMS_KEY);
+    private static final List<String> REQUEUE_KEYS = POP_KEYS;
+    private static final String SCHEDULED_KEY = SQSConstants.SCHEDULED_PREFIX + CONSUMER_GROUP;
+    private static final String SCHEDULED_MESSAGES_KEY = SQSConstants.SCHEDULED_MESSAGES_PREFIX + CONSUMER_GROUP;
+    private static final List<String> REFILL_KEYS = CacheService.withMessageListKeys(CONSUMER_GROUP, IN_FLIGHT_KEY, ACKNOWLEDGED_KEY, DB_CLAIMS_KEY,
+            ENQUEUED_KEY);
+    private static final List<String> SCHEDULE_KEYS = List.of(SCHEDULED_KEY, SCHEDULED_MESSAGES_KEY, SQSConstants.SCHEDULED_GROUPS_KEY);
+    private static final List<String> PROMOTE_KEYS = CacheService.withMessageListKeys(CONSUMER_GROUP, SCHEDULED_KEY, SCHEDULED_MESSAGES_KEY,
+            SQSConstants.SCHEDULED_GROUPS_KEY, IN_FLIGHT_KEY, ACKNOWLEDGED_KEY, DB_CLAIMS_KEY, ENQUEUED_KEY);
+    private final GenericJackson2JsonRedisSerializer valueSerializer = new GenericJackson2JsonRedisSerializer();
+    private SimpleMeterRegistry meterRegistry;
     private Message message;
 
     @BeforeEach
+    @SuppressWarnings({"unchecked", "rawtypes"})
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        cacheService = new CacheService(redisTemplate, meterRegistry);
         ReflectionTestUtils.setField(cacheService, "redisCacheTtlMinutes", 60L);
+        ReflectionTestUtils.setField(cacheService, "claimRetentionMinutes", 30L);
+        ReflectionTestUtils.setField(cacheService, "acknowledgedGraceSeconds", 60L);
         when(redisTemplate.opsForList()).thenReturn(listOperations);
+        when(redisTemplate.getValueSerializer()).thenReturn((RedisSerializer) valueSerializer);
         message = new Message("id1", CONSUMER_GROUP, "content1");
     }
 
@@ -48,66 +93,448 @@ class CacheServiceTest {
     void addMessage() {
         cacheService.addMessage(message);
 
-        verify(listOperations, times(1)).leftPush(eq(CACHE_KEY), eq(message));
-        verify(redisTemplate, times(1)).expire(eq(CACHE_KEY), any(Duration.class));
+        List<byte[]> args = verifyPushed();
+        assertEquals(7, args.size());
+        assertEquals("3600", new String(args.get(0), StandardCharsets.UTF_8));
+        assertEquals("0", new String(args.get(1), StandardCharsets.UTF_8));
+        assertEquals(SQSConstants.NOTIFICATION_CHANNEL, new String(args.get(2), StandardCharsets.UTF_8));
+        // The notification is written like convertAndSend would write it
+        assertArrayEquals(valueSerializer.serialize(CONSUMER_GROUP), args.get(3));
+        // The ID precedes each message, so the script records it as enqueued without decoding the payload
+        assertEquals("id1", new String(args.get(5), StandardCharsets.UTF_8));
+        assertEquals(message, valueSerializer.deserialize(args.get(6)));
+        verify(listOperations, never()).leftPush(anyString(), any());
+        verify(redisTemplate, never()).expire(anyString(), any(Duration.class));
+        verify(redisTemplate, never()).convertAndSend(anyString(), any());
+    }
+
+    @Test
+    void redisOperationsAreTimed() {
+        cacheService.addMessage(message);
+        cacheService.viewMessages(CONSUMER_GROUP, 5);
+
+        assertEquals(1, meterRegistry.get(CacheService.REDIS_TIMER).tag("operation", "push").timer().count());
+        assertEquals(1, meterRegistry.get(CacheService.REDIS_TIMER).tag("operation", "view").timer().count());
+    }
+
+    @Test
+    void bookkeepingRedisOperationsAreTimed() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+
+        cacheService.forgetAcknowledged(CONSUMER_GROUP, List.of("id1"));
+        cacheService.tryLockRefill(CONSUMER_GROUP, Duration.ofSeconds(10));
+        cacheService.unlockRefill(CONSUMER_GROUP);
+        cacheService.getInFlightConsumerGroups();
+        cacheService.getScheduledConsumerGroups();
+
+        for (String operation : List.of("forgetAcknowledged", "lockRefill", "unlockRefill")) {
+            assertEquals(1, meterRegistry.get(CacheService.REDIS_TIMER).tag("operation", operation).timer().count(), operation);
+        }
+        assertEquals(2, meterRegistry.get(CacheService.REDIS_TIMER).tag("operation", "members").timer().count());
+    }
+
+    @Test
+    void addMessages() {
+        Message message2 = new Message("id2", CONSUMER_GROUP, "content2");
+        ReflectionTestUtils.setField(cacheService, "maxListLength", 1000L);
+
+        cacheService.addMessages(CONSUMER_GROUP, Arrays.asList(message, message2));
+
+        List<byte[]> args = verifyPushed();
+        assertEquals("1000", new String(args.get(1), StandardCharsets.UTF_8));
+        assertEquals(List.of(message, message2), pushedMessages(args.toArray()));
+        verify(listOperations, never()).leftPush(anyString(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void addMessages_pushesEachPriorityToItsOwnList() {
+        Message urgent = new Message("id2", CONSUMER_GROUP, "content2", 7);
+        Message message3 = new Message("id3", CONSUMER_GROUP, "content3");
+
+        cacheService.addMessages(CONSUMER_GROUP, Arrays.asList(message, urgent, message3));
+
+        ArgumentCaptor<List<String>> keysCaptor = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<Object[]> argsCaptor = ArgumentCaptor.forClass(Object[].class);
+        verify(redisTemplate, times(2)).execute(eq(CacheService.PUSH_SCRIPT), any(RedisSerializer.class), any(RedisSerializer.class),
+                keysCaptor.capture(), argsCaptor.capture());
+        assertEquals(List.of(List.of(CACHE_KEY, ENQUEUED_KEY), List.of(SQSConstants.PRIORITY_CACHE_PREFIX + "7:" + CONSUMER_GROUP, ENQUEUED_KEY)),
+                keysCaptor.getAllValues());
+        assertEquals(List.of(message, message3), pushedMessages(argsCaptor.getAllValues().get(0)));
+        assertEquals(List.of(urgent), pushedMessages(argsCaptor.getAllValues().get(1)));
+    }
+
+    private List<Object> pushedMessages(Object[] args) {
+        // Message IDs and messages alternate after the first five arguments
+        return IntStream.range(5, args.length).filter(i -> i % 2 == 0).mapToObj(i -> valueSerializer.deserialize((byte[]) args[i])).toList();
+    }
+
+    @Test
+    void messageListKeys_highestPriorityFirstWithDefaultPriorityOnTheLegacyKey() {
+        List<String> keys = CacheService.messageListKeys(CONSUMER_GROUP);
+
+        assertEquals(SQSConstants.MAX_PRIORITY + 1, keys.size());
+        assertEquals(SQSConstants.PRIORITY_CACHE_PREFIX + SQSConstants.MAX_PRIORITY + ":" + CONSUMER_GROUP, keys.get(0));
+        assertEquals(CACHE_KEY, keys.get(keys.size() - 1));
+        assertEquals(CACHE_KEY, CacheService.messageListKey(CONSUMER_GROUP, 0));
+    }
+
+    /**
+     * Verifies that exactly one push script call was made for the consumer group's list and returns its arguments.
+     */
+    @SuppressWarnings("unchecked")
+    private List<byte[]> verifyPushed() {
+        ArgumentCaptor<Object[]> argsCaptor = ArgumentCaptor.forClass(Object[].class);
+        verify(redisTemplate, times(1)).execute(eq(CacheService.PUSH_SCRIPT), any(RedisSerializer.class), any(RedisSerializer.class),
+                eq(List.of(CACHE_KEY, ENQUEUED_KEY)), argsCaptor.capture());
+        return Arrays.stream(argsCaptor.getValue()).map(arg -> (byte[]) arg).toList();
     }
 
     @Test
     void popMessage() {
-        when(listOperations.rightPop(eq(CACHE_KEY))).thenReturn(message);
+        when(redisTemplate.execute(any(RedisScript.class), eq(POP_KEYS), eq(1), eq(1000L), eq(CONSUMER_GROUP))).thenReturn(List.of(message));
 
-        Message result = cacheService.popMessage(CONSUMER_GROUP);
+        Message result = cacheService.popMessage(CONSUMER_GROUP, 1000L);
 
         assertNotNull(result);
         assertEquals(message.getId(), result.getId());
         assertEquals(message.getContent(), result.getContent());
-        verify(listOperations, times(1)).rightPop(eq(CACHE_KEY));
+        verify(listOperations, never()).rightPop(anyString());
     }
 
     @Test
     void popMessage_noMessage() {
-        when(listOperations.rightPop(eq(CACHE_KEY))).thenReturn(null);
+        when(redisTemplate.execute(any(RedisScript.class), eq(POP_KEYS), eq(1), eq(1000L), eq(CONSUMER_GROUP))).thenReturn(List.of());
 
-        Message result = cacheService.popMessage(CONSUMER_GROUP);
+        Message result = cacheService.popMessage(CONSUMER_GROUP, 1000L);
 
         assertNull(result);
-        verify(listOperations, times(1)).rightPop(eq(CACHE_KEY));
     }
 
     @Test
-    void viewMessages() {
+    void popMessages() {
         Message message2 = new Message("id2", CONSUMER_GROUP, "content2");
-        List<Object> cachedObjects = Arrays.asList(message, message2);
-        when(listOperations.range(eq(CACHE_KEY), eq(0L), eq(-1L))).thenReturn(cachedObjects);
+        when(redisTemplate.execute(any(RedisScript.class), eq(POP_KEYS), eq(2), eq(1000L), eq(CONSUMER_GROUP))).thenReturn(Arrays.asList(message, message2));
 
-        List<Message> result = cacheService.viewMessages(CONSUMER_GROUP);
+        List<Message> result = cacheService.popMessages(CONSUMER_GROUP, 2, 1000L);
 
-        assertNotNull(result);
         assertEquals(2, result.size());
         assertEquals(message.getId(), result.get(0).getId());
         assertEquals(message2.getId(), result.get(1).getId());
-        verify(listOperations, times(1)).range(eq(CACHE_KEY), eq(0L), eq(-1L));
     }
 
     @Test
+    void popMessages_emptyCache() {
+        when(redisTemplate.execute(any(RedisScript.class), eq(POP_KEYS), eq(5), eq(1000L), eq(CONSUMER_GROUP))).thenReturn(null);
+
+        List<Message> result = cacheService.popMessages(CONSUMER_GROUP, 5, 1000L);
+
+        assertNotNull(result);
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    void claimInFlight_returnsOnlyMessagesWhoseClaimSucceeded() {
+        Message message2 = new Message("id2", CONSUMER_GROUP, "content2");
+        when(redisTemplate.execute(any(RedisScript.class), nullable(RedisSerializer.class), any(RedisSerializer.class),
+                eq(List.of(IN_FLIGHT_KEY, IN_FLIGHT_MESSAGES_KEY, SQSConstants.IN_FLIGHT_GROUPS_KEY, ACKNOWLEDGED_KEY, DB_CLAIMS_KEY)),
+                eq(1000L), eq(CONSUMER_GROUP), anyLong(), eq(message), eq(message2)))
+                .thenReturn(List.of("id2"));
+
+        List<Message> result = cacheService.claimInFlight(CONSUMER_GROUP, List.of(message, message2), 1000L);
+
+        assertEquals(List.of(message2), result);
+    }
+
+    @Test
+    void claimInFlight_allClaimsLost() {
+        when(redisTemplate.execute(any(RedisScript.class), nullable(RedisSerializer.class), any(RedisSerializer.class),
+                anyList(), eq(1000L), eq(CONSUMER_GROUP), anyLong(), eq(message)))
+                .thenReturn(List.of());
+
+        assertTrue(cacheService.claimInFlight(CONSUMER_GROUP, List.of(message), 1000L).isEmpty());
+    }
+
+    @Test
+    void acknowledge() {
+        long before = System.currentTimeMillis();
+        when(redisTemplate.execute(any(RedisScript.class), nullable(RedisSerializer.class), any(RedisSerializer.class),
+                eq(List.of(IN_FLIGHT_KEY, IN_FLIGHT_MESSAGES_KEY, ACKNOWLEDGED_KEY)), anyLong(), eq("id1"), eq("id2")))
+                .thenReturn(List.of("id1"));
+
+        List<String> result = cacheService.acknowledge(CONSUMER_GROUP, List.of("id1", "id2"));
+
+        assertEquals(List.of("id1"), result);
+        // Acknowledged IDs are remembered for the claim retention period at most
+        ArgumentCaptor<Long> expiryCaptor = ArgumentCaptor.forClass(Long.class);
+        verify(redisTemplate).execute(any(RedisScript.class), nullable(RedisSerializer.class), any(RedisSerializer.class),
+                anyList(), expiryCaptor.capture(), eq("id1"), eq("id2"));
+        assertTrue(expiryCaptor.getValue() >= before + Duration.ofMinutes(30).toMillis());
+    }
+
+    @Test
+    void forgetAcknowledged() {
+        long before = System.currentTimeMillis();
+
+        cacheService.forgetAcknowledged(CONSUMER_GROUP, List.of("id1", "id2"));
+
+        // Kept for the grace period rather than dropped right away
+        ArgumentCaptor<Long> graceEndCaptor = ArgumentCaptor.forClass(Long.class);
+        verify(redisTemplate, times(1)).execute(any(RedisScript.class), eq(List.of(ACKNOWLEDGED_KEY)), graceEndCaptor.capture(), eq("id1"), eq("id2"));
+        assertTrue(graceEndCaptor.getValue() >= before + Duration.ofSeconds(60).toMillis());
+    }
+
+    @Test
+    void requeueExpired_notifiesWaitingConsumers() {
+        when(redisTemplate.execute(any(RedisScript.class), eq(REQUEUE_KEYS), eq(2000L), eq(100), eq(3600L), eq(CONSUMER_GROUP))).thenReturn(3L);
+
+        long result = cacheService.requeueExpired(CONSUMER_GROUP, 2000L, 100);
+
+        assertEquals(3, result);
+        verify(redisTemplate, times(1)).convertAndSend(eq(SQSConstants.NOTIFICATION_CHANNEL), eq(CONSUMER_GROUP));
+    }
+
+    @Test
+    void addMessage_delayedMessageIsScheduled() {
+        Message delayed = message.delayedBy(Duration.ofSeconds(30));
+
+        cacheService.addMessage(delayed);
+
+        verify(redisTemplate, times(1)).execute(eq(CacheService.SCHEDULE_SCRIPT), eq(SCHEDULE_KEYS),
+                eq(CONSUMER_GROUP), eq(message.getCreatedAt().getTime() + 30_000), eq(delayed));
+        verify(redisTemplate, never()).execute(eq(CacheService.PUSH_SCRIPT), any(RedisSerializer.class), any(RedisSerializer.class), anyList(), any(Object[].class));
+    }
+
+    @Test
+    void addMessages_schedulesOnlyDelayedMessages() {
+        Message delayed = new Message("id2", CONSUMER_GROUP, "content2").delayedBy(Duration.ofSeconds(5));
+
+        cacheService.addMessages(CONSUMER_GROUP, List.of(message, delayed));
+
+        verify(redisTemplate, times(1)).execute(eq(CacheService.SCHEDULE_SCRIPT), eq(SCHEDULE_KEYS),
+                eq(CONSUMER_GROUP), eq(delayed.getVisibleAt().getTime()), eq(delayed));
+        assertEquals(List.of(message), pushedMessages(verifyPushed().toArray()));
+    }
+
+    @Test
+    void localBuffer_delayedMessageIsNotBuffered() {
+        enableLocalBuffer();
+        when(redisTemplate.execute(any(RedisScript.class), eq(POP_KEYS), eq(1), eq(1000L), eq(CONSUMER_GROUP))).thenReturn(List.of());
+        cacheService.popMessage(CONSUMER_GROUP, 1000L);
+
+        cacheService.addMessage(message.delayedBy(Duration.ofSeconds(30)));
+
+        assertTrue(cacheService.viewMessages(CONSUMER_GROUP, 5).isEmpty());
+        verify(redisTemplate, times(1)).execute(eq(CacheService.SCHEDULE_SCRIPT), eq(SCHEDULE_KEYS), any(Object[].class));
+    }
+
+    @Test
+    void promoteScheduled_notifiesWaitingConsumers() {
+        when(redisTemplate.execute(any(RedisScript.class), eq(PROMOTE_KEYS), eq(2000L), eq(100), eq(3600L), eq(CONSUMER_GROUP))).thenReturn(2L);
+
+        long result = cacheService.promoteScheduled(CONSUMER_GROUP, 2000L, 100);
+
+        assertEquals(2, result);
+        verify(redisTemplate, times(1)).convertAndSend(eq(SQSConstants.NOTIFICATION_CHANNEL), eq(CONSUMER_GROUP));
+    }
+
+    @Test
+    void promoteScheduled_nothingDue() {
+        when(redisTemplate.execute(any(RedisScript.class), eq(PROMOTE_KEYS), eq(2000L), eq(100), eq(3600L), eq(CONSUMER_GROUP))).thenReturn(0L);
+
+        assertEquals(0, cacheService.promoteScheduled(CONSUMER_GROUP, 2000L, 100));
+        verify(redisTemplate, never()).convertAndSend(anyString(), any());
+    }
+
+    @Test
+    void requeueExpired_nothingExpired() {
+        when(redisTemplate.execute(any(RedisScript.class), eq(REQUEUE_KEYS), eq(2000L), eq(100), eq(3600L), eq(CONSUMER_GROUP))).thenReturn(0L);
+
+        long result = cacheService.requeueExpired(CONSUMER_GROUP, 2000L, 100);
+
+        assertEquals(0, result);
+        verify(redisTemplate, never()).convertAndSend(anyString(), any());
+    }
+
+    @Test
+    void refill_pushesOldestFirstAndNotifies() {
+        Message message2 = new Message("id2", CONSUMER_GROUP, "content2");
+        when(redisTemplate.execute(any(RedisScript.class), nullable(RedisSerializer.class), any(RedisSerializer.class),
+                eq(REFILL_KEYS), eq(3600L), eq(0), anyLong(), eq(message), eq(message2))).thenReturn(List.of("id1", "id2"));
+
+        List<String> result = cacheService.refill(CONSUMER_GROUP, List.of(message, message2));
+
+        assertEquals(List.of("id1", "id2"), result);
+        verify(redisTemplate, times(1)).convertAndSend(eq(SQSConstants.NOTIFICATION_CHANNEL), eq(CONSUMER_GROUP));
+    }
+
+    @Test
+    void tryLockRefill() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(SQSConstants.REFILL_LOCK_PREFIX + CONSUMER_GROUP, true, Duration.ofSeconds(10))).thenReturn(true, false);
+
+        assertTrue(cacheService.tryLockRefill(CONSUMER_GROUP, Duration.ofSeconds(10)));
+        assertFalse(cacheService.tryLockRefill(CONSUMER_GROUP, Duration.ofSeconds(10)));
+    }
+
+    @Test
+    void localBuffer_servesDrainedGroupWithoutTouchingTheList() {
+        enableLocalBuffer();
+        // The first empty pop shows the Redis list is drained
+        when(redisTemplate.execute(any(RedisScript.class), eq(POP_KEYS), eq(1), eq(1000L), eq(CONSUMER_GROUP))).thenReturn(List.of());
+        assertNull(cacheService.popMessage(CONSUMER_GROUP, 1000L));
+        List<String> localArrivals = new java.util.ArrayList<>();
+        cacheService.onLocalArrival(localArrivals::add);
+
+        cacheService.addMessage(message);
+        when(redisTemplate.execute(any(RedisScript.class), nullable(RedisSerializer.class), any(RedisSerializer.class),
+                eq(List.of(IN_FLIGHT_KEY, IN_FLIGHT_MESSAGES_KEY, SQSConstants.IN_FLIGHT_GROUPS_KEY, ACKNOWLEDGED_KEY, DB_CLAIMS_KEY, ENQUEUED_KEY)),
+                eq(1000L), eq(CONSUMER_GROUP), eq(message)))
+                .thenReturn(List.of("id1"));
+        Message result = cacheService.popMessage(CONSUMER_GROUP, 1000L);
+
+        assertEquals(message, result);
+        assertEquals(List.of(CONSUMER_GROUP), localArrivals);
+        verify(redisTemplate, never()).execute(eq(CacheService.PUSH_SCRIPT), any(RedisSerializer.class), any(RedisSerializer.class), anyList(), any(Object[].class));
+        verify(redisTemplate, times(1)).execute(any(RedisScript.class), eq(POP_KEYS), eq(1), eq(1000L), eq(CONSUMER_GROUP));
+    }
+
+    @Test
+    void localBuffer_backloggedGroupPushesToRedis() {
+        enableLocalBuffer();
+
+        cacheService.addMessage(message);
+
+        // The list may still hold older messages, so new ones must queue behind them
+        verifyPushed();
+    }
+
+    @Test
+    void localBuffer_pushLandingDuringShortPop_keepsGroupBacklogged() {
+        enableLocalBuffer();
+        Message concurrentMessage = new Message("id2", CONSUMER_GROUP, "content2");
+        // Another thread pushes to Redis after the pop script found the list empty, but before the pop returns
+        when(redisTemplate.execute(any(RedisScript.class), eq(POP_KEYS), eq(1), eq(1000L), eq(CONSUMER_GROUP))).thenAnswer(invocation -> {
+            cacheService.addMessage(concurrentMessage);
+            return List.of();
+        });
+        assertNull(cacheService.popMessage(CONSUMER_GROUP, 1000L));
+
+        cacheService.addMessage(message);
+
+        // The concurrent message waits in Redis, so the next one must queue behind it instead of being popped first
+        verify(redisTemplate, times(2)).execute(eq(CacheService.PUSH_SCRIPT), any(RedisSerializer.class), any(RedisSerializer.class), anyList(), any(Object[].class));
+        assertTrue(cacheService.viewMessages(CONSUMER_GROUP, 5).isEmpty());
+    }
+
+    @Test
+    void localBuffer_handedOverToRedisOnShutdown() {
+        enableLocalBuffer();
+        when(redisTemplate.execute(any(RedisScript.class), eq(POP_KEYS), eq(1), eq(1000L), eq(CONSUMER_GROUP))).thenReturn(List.of());
+        cacheService.popMessage(CONSUMER_GROUP, 1000L);
+        cacheService.addMessage(message);
+
+        cacheService.handOffLocalBuffer();
+
+        // Buffered messages are older than any in Redis, so they go to the pop end of their list
+        verify(redisTemplate, times(1)).execute(any(RedisScript.class), nullable(RedisSerializer.class), any(RedisSerializer.class),
+                eq(REFILL_KEYS), eq(3600L), eq(1), anyLong(), eq(message));
+    }
+
+    @Test
+    void localBuffer_handedBackWhenGroupBacklogged() {
+        enableLocalBuffer();
+        when(redisTemplate.execute(any(RedisScript.class), eq(POP_KEYS), eq(1), eq(1000L), eq(CONSUMER_GROUP))).thenReturn(List.of());
+        cacheService.popMessage(CONSUMER_GROUP, 1000L);
+        cacheService.addMessage(message);
+        when(redisTemplate.execute(any(RedisScript.class), eq(REQUEUE_KEYS), eq(2000L), eq(100), eq(3600L), eq(CONSUMER_GROUP))).thenReturn(1L);
+
+        cacheService.requeueExpired(CONSUMER_GROUP, 2000L, 100);
+
+        // A requeued message may outrank the buffered one, so the buffer is emptied into the priority lists
+        verify(redisTemplate, times(1)).execute(any(RedisScript.class), nullable(RedisSerializer.class), any(RedisSerializer.class),
+                eq(REFILL_KEYS), eq(3600L), eq(1), anyLong(), eq(message));
+        assertTrue(cacheService.viewMessages(CONSUMER_GROUP, 5).isEmpty());
+    }
+
+    private void enableLocalBuffer() {
+        ReflectionTestUtils.setField(cacheService, "localBufferEnabled", true);
+        ReflectionTestUtils.setField(cacheService, "localBufferMaxMessages", 10);
+        cacheService.initLocalBuffer();
+    }
+
+    @Test
+    void getInFlightConsumerGroups() {
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+        when(setOperations.members(SQSConstants.IN_FLIGHT_GROUPS_KEY)).thenReturn(Set.of(CONSUMER_GROUP));
+
+        assertEquals(Set.of(CONSUMER_GROUP), cacheService.getInFlightConsumerGroups());
+    }
+
+    @Test
+    void getScheduledConsumerGroups() {
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+        when(setOperations.members(SQSConstants.SCHEDULED_GROUPS_KEY)).thenReturn(Set.of(CONSUMER_GROUP));
+
+        assertEquals(Set.of(CONSUMER_GROUP), cacheService.getScheduledConsumerGroups());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void viewMessages_readsOldestEntriesOnly() {
+        Message message2 = new Message("id2", "content2", CONSUMER_GROUP, new Date(message.getCreatedAt().getTime() + 1), false);
+        Message urgent = new Message("id3", "content3", CONSUMER_GROUP, new Date(message.getCreatedAt().getTime() + 2), false, 5);
+        // Each list is newest first, so a range ends with its oldest message
+        when(redisTemplate.executePipelined(any(SessionCallback.class))).thenReturn(pipelinedRanges(
+                SQSConstants.PRIORITY_CACHE_PREFIX + "5:" + CONSUMER_GROUP, List.of(urgent),
+                CACHE_KEY, Arrays.asList(message2, message)));
+
+        List<Message> result = cacheService.viewMessages(CONSUMER_GROUP, 2);
+
+        // Views list the oldest waiting messages whatever their priority
+        assertEquals(List.of(message, message2), result);
+        ArgumentCaptor<SessionCallback<Object>> callback = ArgumentCaptor.forClass(SessionCallback.class);
+        verify(redisTemplate).executePipelined(callback.capture());
+        RedisOperations<String, Object> operations = mock(RedisOperations.class);
+        when(operations.opsForList()).thenReturn(listOperations);
+        callback.getValue().execute(operations);
+        for (String key : CacheService.messageListKeys(CONSUMER_GROUP)) {
+            verify(listOperations).range(key, -2L, -1L);
+        }
+        verify(listOperations, never()).range(anyString(), eq(0L), eq(-1L));
+    }
+
+    /**
+     * Replies of the view pipeline, one range per priority list, empty except for the given keys and ranges.
+     */
+    private static List<Object> pipelinedRanges(Object... keysAndRanges) {
+        Map<Object, Object> ranges = new HashMap<>();
+        for (int i = 0; i < keysAndRanges.length; i += 2) {
+            ranges.put(keysAndRanges[i], keysAndRanges[i + 1]);
+        }
+        return CacheService.messageListKeys(CONSUMER_GROUP).stream().map(key -> ranges.getOrDefault(key, List.of())).toList();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
     void viewMessages_emptyCache() {
-        when(listOperations.range(eq(CACHE_KEY), eq(0L), eq(-1L))).thenReturn(Collections.emptyList());
+        when(redisTemplate.executePipelined(any(SessionCallback.class))).thenReturn(pipelinedRanges());
 
-        List<Message> result = cacheService.viewMessages(CONSUMER_GROUP);
+        List<Message> result = cacheService.viewMessages(CONSUMER_GROUP, 5);
 
         assertNotNull(result);
         assertTrue(result.isEmpty());
-        verify(listOperations, times(1)).range(eq(CACHE_KEY), eq(0L), eq(-1L));
     }
 
     @Test
+    @SuppressWarnings("unchecked")
     void viewMessages_nullCache() {
-        when(listOperations.range(eq(CACHE_KEY), eq(0L), eq(-1L))).thenReturn(null);
+        when(redisTemplate.executePipelined(any(SessionCallback.class))).thenReturn(null);
 
-        List<Message> result = cacheService.viewMessages(CONSUMER_GROUP);
+        List<Message> result = cacheService.viewMessages(CONSUMER_GROUP, 5);
 
         assertNotNull(result);
         assertTrue(result.isEmpty());
-        verify(listOperations, times(1)).range(eq(CACHE_KEY), eq(0L), eq(-1L));
     }
 }
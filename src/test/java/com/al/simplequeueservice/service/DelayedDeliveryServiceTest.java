@@ -0,0 +1,60 @@
+package com.al.simplequeueservice.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class DelayedDeliveryServiceTest {
+
+    @Mock
+    private CacheService cacheService;
+
+    @InjectMocks
+    private DelayedDeliveryService delayedDeliveryService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(delayedDeliveryService, "batchSize", 100);
+    }
+
+    @Test
+    void promoteDueMessages_drainsInBatches() {
+        when(cacheService.promoteScheduled("testGroup", 5000L, 100)).thenReturn(100L, 100L, 7L);
+
+        long promoted = delayedDeliveryService.promoteDueMessages("testGroup", 5000L);
+
+        assertEquals(207, promoted);
+        verify(cacheService, times(3)).promoteScheduled("testGroup", 5000L, 100);
+    }
+
+    @Test
+    void promoteDueMessages_everyGroupWithScheduledMessages() {
+        when(cacheService.getScheduledConsumerGroups()).thenReturn(Set.of("group1", "group2"));
+
+        delayedDeliveryService.promoteDueMessages();
+
+        verify(cacheService, times(1)).promoteScheduled(eq("group1"), anyLong(), eq(100));
+        verify(cacheService, times(1)).promoteScheduled(eq("group2"), anyLong(), eq(100));
+    }
+
+    @Test
+    void promoteDueMessages_redisUnavailable() {
+        when(cacheService.getScheduledConsumerGroups()).thenThrow(new RuntimeException("Connection refused"));
+
+        delayedDeliveryService.promoteDueMessages();
+
+        verify(cacheService, never()).promoteScheduled(anyString(), anyLong(), anyInt());
+    }
+}
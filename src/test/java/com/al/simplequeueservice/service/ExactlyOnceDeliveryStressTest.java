@@ -0,0 +1,245 @@
+package com.al.simplequeueservice.service;
+
+import com.al.simplequeueservice.config.RedisConfig;
+import com.al.simplequeueservice.loadtest.StandIns;
+import com.al.simplequeueservice.model.Message;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Hammers one consumer group with many concurrent poppers while messages arrive through both tiers:
+ * pushed normally, pushed while poppers are running, present only in MongoDB as after a cache eviction,
+ * and written to MongoDB well before their late push reaches Redis. The poppers refill the cache, fall back
+ * to the database and race the late pushes concurrently. Every message must be handed out exactly once.
+ * Runs against the embedded Redis and in-memory MongoDB stand-ins of the load test.
+ */
+class ExactlyOnceDeliveryStressTest {
+
+    private static final int POPPERS = 16;
+    private static final int PUSHED_BEFORE = 1500;
+    private static final int PUSHED_DURING = 500;
+    private static final int DB_ONLY = 500;
+    private static final int LATE_PUSHES = 300;
+
+    private static StandIns standIns;
+
+    @TempDir
+    private Path spillDirectory;
+
+    private LettuceConnectionFactory connectionFactory;
+    private RedisTemplate<String, Object> redisTemplate;
+    private MongoClient mongoClient;
+    private MongoTemplate mongoTemplate;
+    private CacheService cacheService;
+    private final SimpleMeterRegistry cacheMeterRegistry = new SimpleMeterRegistry();
+    private MessagePersistenceService messagePersistenceService;
+    private PushMessageService pushMessageService;
+    private PopMessageService popMessageService;
+    private String consumerGroup;
+
+    @BeforeAll
+    static void startStandIns() throws IOException {
+        standIns = StandIns.start();
+    }
+
+    @AfterAll
+    static void stopStandIns() throws IOException {
+        standIns.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", standIns.redisPort()),
+                LettuceClientConfiguration.builder().commandTimeout(Duration.ofSeconds(5)).build());
+        connectionFactory.afterPropertiesSet();
+        mongoClient = MongoClients.create(standIns.mongoUri());
+
+        RedisConfig redisConfig = new RedisConfig();
+        redisTemplate = redisConfig.redisTemplate(connectionFactory);
+        redisTemplate.afterPropertiesSet();
+        mongoTemplate = new MongoTemplate(mongoClient, "simple-queue-it");
+        consumerGroup = "stress-test-" + UUID.randomUUID();
+
+        cacheService = new CacheService(redisTemplate, cacheMeterRegistry);
+        ReflectionTestUtils.setField(cacheService, "redisCacheTtlMinutes", 5L);
+        ReflectionTestUtils.setField(cacheService, "claimRetentionMinutes", 30L);
+        ReflectionTestUtils.setField(cacheService, "acknowledgedGraceSeconds", 60L);
+
+        MongoIndexService mongoIndexService = new MongoIndexService();
+        ReflectionTestUtils.setField(mongoIndexService, "mongoClient", mongoClient);
+        ReflectionTestUtils.setField(mongoIndexService, "mongoDB", "simple-queue-it");
+        ReflectionTestUtils.setField(mongoIndexService, "expireMinutes", 30L);
+
+        messagePersistenceService = new MessagePersistenceService();
+        ReflectionTestUtils.setField(messagePersistenceService, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(messagePersistenceService, "mongoIndexService", mongoIndexService);
+        ReflectionTestUtils.setField(messagePersistenceService, "cacheService", cacheService);
+        ReflectionTestUtils.setField(messagePersistenceService, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(messagePersistenceService, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(messagePersistenceService, "capacity", 100_000);
+        ReflectionTestUtils.setField(messagePersistenceService, "batchSize", 100);
+        ReflectionTestUtils.setField(messagePersistenceService, "lingerMillis", 2L);
+        ReflectionTestUtils.setField(messagePersistenceService, "workers", 2);
+        ReflectionTestUtils.setField(messagePersistenceService, "overflowPolicy", MessagePersistenceService.OverflowPolicy.BLOCK);
+        ReflectionTestUtils.setField(messagePersistenceService, "spillDirectory", spillDirectory);
+        ReflectionTestUtils.setField(messagePersistenceService, "claimRetentionMinutes", 30L);
+        messagePersistenceService.start();
+
+        MessageCompressionService messageCompressionService = new MessageCompressionService();
+
+        QueueStatsService queueStatsService = new QueueStatsService();
+        ReflectionTestUtils.setField(queueStatsService, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(queueStatsService, "mongoTemplate", mongoTemplate);
+
+        pushMessageService = new PushMessageService();
+        ReflectionTestUtils.setField(pushMessageService, "messagePersistenceService", messagePersistenceService);
+        ReflectionTestUtils.setField(pushMessageService, "cacheService", cacheService);
+        ReflectionTestUtils.setField(pushMessageService, "messageCompressionService", messageCompressionService);
+        ReflectionTestUtils.setField(pushMessageService, "queueStatsService", queueStatsService);
+
+        CacheRefillService cacheRefillService = new CacheRefillService();
+        ReflectionTestUtils.setField(cacheRefillService, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(cacheRefillService, "cacheService", cacheService);
+        ReflectionTestUtils.setField(cacheRefillService, "pageSize", 100);
+        ReflectionTestUtils.setField(cacheRefillService, "cooldownMillis", 50L);
+        ReflectionTestUtils.setField(cacheRefillService, "lockSeconds", 10L);
+        ReflectionTestUtils.setField(cacheRefillService, "redisCacheTtlMinutes", 5L);
+
+        popMessageService = new PopMessageService();
+        ReflectionTestUtils.setField(popMessageService, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(popMessageService, "cacheService", cacheService);
+        ReflectionTestUtils.setField(popMessageService, "messagePersistenceService", messagePersistenceService);
+        ReflectionTestUtils.setField(popMessageService, "cacheRefillService", cacheRefillService);
+        ReflectionTestUtils.setField(popMessageService, "messageCompressionService", messageCompressionService);
+        ReflectionTestUtils.setField(popMessageService, "queueStatsService", queueStatsService);
+        // Long enough that nothing is redelivered during the test
+        ReflectionTestUtils.setField(popMessageService, "visibilityTimeoutSeconds", 300L);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        messagePersistenceService.stop();
+        connectionFactory.destroy();
+        mongoClient.close();
+    }
+
+    @Test
+    void concurrentPoppersReceiveEveryMessageExactlyOnce() throws Exception {
+        for (int i = 0; i < PUSHED_BEFORE; i++) {
+            pushMessageService.push(new Message(UUID.randomUUID().toString(), consumerGroup, "before" + i));
+        }
+        // Messages whose cache entries were evicted are only reachable through the database fallback
+        List<Message> dbOnly = new ArrayList<>();
+        for (int i = 0; i < DB_ONLY; i++) {
+            dbOnly.add(new Message(UUID.randomUUID().toString(), consumerGroup, "dbOnly" + i));
+        }
+        mongoTemplate.insert(dbOnly, consumerGroup);
+        // Messages persisted long enough ago for the refill to reserve them, whose push reaches Redis only later
+        List<Message> latePushes = new ArrayList<>();
+        for (int i = 0; i < LATE_PUSHES; i++) {
+            latePushes.add(new Message(UUID.randomUUID().toString(), "late" + i, consumerGroup, new Date(System.currentTimeMillis() - 5000), false));
+        }
+        mongoTemplate.insert(latePushes, consumerGroup);
+
+        Map<String, AtomicInteger> deliveries = new ConcurrentHashMap<>();
+        AtomicBoolean pushing = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(POPPERS + 2);
+        List<Future<?>> poppers = new ArrayList<>();
+        Future<?> pusher = executor.submit(() -> {
+            start.await();
+            for (int i = 0; i < PUSHED_DURING; i++) {
+                pushMessageService.push(new Message(UUID.randomUUID().toString(), consumerGroup, "during" + i));
+            }
+            pushing.set(false);
+            return null;
+        });
+        Future<?> latePusher = executor.submit(() -> {
+            start.await();
+            for (Message message : latePushes) {
+                cacheService.addMessage(message);
+                Thread.sleep(1);
+            }
+            return null;
+        });
+        for (int p = 0; p < POPPERS; p++) {
+            poppers.add(executor.submit(() -> {
+                start.await();
+                int emptyPolls = 0;
+                while (pushing.get() || !latePusher.isDone() || messagePersistenceService.getQueueDepth() > 0 || emptyPolls < 20) {
+                    List<Message> popped = ThreadLocalRandom.current().nextBoolean()
+                            ? popMessageService.pop(consumerGroup).map(List::of).orElse(List.of())
+                            : popMessageService.popBatch(consumerGroup, ThreadLocalRandom.current().nextInt(1, 11));
+                    if (popped.isEmpty()) {
+                        emptyPolls++;
+                        Thread.sleep(5);
+                        continue;
+                    }
+                    emptyPolls = 0;
+                    popped.forEach(message -> deliveries.computeIfAbsent(message.getId(), id -> new AtomicInteger()).incrementAndGet());
+                    // Acknowledge about half right away, exercising the window before the database marks them consumed
+                    List<String> toAcknowledge = popped.stream().map(Message::getId).filter(id -> id.hashCode() % 2 == 0).toList();
+                    if (!toAcknowledge.isEmpty()) {
+                        popMessageService.acknowledge(consumerGroup, toAcknowledge);
+                    }
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        pusher.get(2, TimeUnit.MINUTES);
+        latePusher.get(2, TimeUnit.MINUTES);
+        for (Future<?> popper : poppers) {
+            popper.get(2, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        List<String> duplicates = deliveries.entrySet().stream()
+                .filter(entry -> entry.getValue().get() > 1)
+                .map(Map.Entry::getKey)
+                .toList();
+        assertTrue(duplicates.isEmpty(), "Delivered more than once: " + duplicates);
+        assertEquals(PUSHED_BEFORE + PUSHED_DURING + DB_ONLY + LATE_PUSHES, deliveries.size());
+        Optional<Message> leftOver = popMessageService.pop(consumerGroup);
+        assertTrue(leftOver.isEmpty(), "Not delivered: " + leftOver);
+        // The database-only and late-pushed messages were raced by cache refills, not only by the database fallback
+        assertTrue(cacheMeterRegistry.get(CacheService.REDIS_TIMER).tag("operation", "refill").timer().count() > 0);
+    }
+}
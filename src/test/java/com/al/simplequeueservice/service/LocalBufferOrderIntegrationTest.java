@@ -0,0 +1,117 @@
+package com.al.simplequeueservice.service;
+
+import com.al.simplequeueservice.config.RedisConfig;
+import com.al.simplequeueservice.loadtest.StandIns;
+import com.al.simplequeueservice.model.Message;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pushes and pops the messages of one consumer group concurrently against a real Redis with the in-process buffer
+ * enabled, so the group keeps switching between the buffer and its Redis list. Each producer's messages must be
+ * popped in the order it pushed them.
+ */
+class LocalBufferOrderIntegrationTest {
+
+    private static final int PRODUCERS = 3;
+    private static final int MESSAGES_PER_PRODUCER = 1000;
+
+    private static StandIns standIns;
+
+    private LettuceConnectionFactory connectionFactory;
+    private CacheService cacheService;
+    private String consumerGroup;
+
+    @BeforeAll
+    static void startStandIns() throws IOException {
+        standIns = StandIns.start();
+    }
+
+    @AfterAll
+    static void stopStandIns() throws IOException {
+        standIns.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", standIns.redisPort()));
+        connectionFactory.afterPropertiesSet();
+        RedisTemplate<String, Object> redisTemplate = new RedisConfig().redisTemplate(connectionFactory);
+        redisTemplate.afterPropertiesSet();
+        consumerGroup = "local-buffer-it-" + UUID.randomUUID();
+
+        cacheService = new CacheService(redisTemplate, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cacheService, "redisCacheTtlMinutes", 5L);
+        ReflectionTestUtils.setField(cacheService, "claimRetentionMinutes", 30L);
+        ReflectionTestUtils.setField(cacheService, "acknowledgedGraceSeconds", 60L);
+        ReflectionTestUtils.setField(cacheService, "localBufferEnabled", true);
+        // Small enough for pushes to overflow to Redis while the consumer falls behind
+        ReflectionTestUtils.setField(cacheService, "localBufferMaxMessages", 20);
+        cacheService.initLocalBuffer();
+    }
+
+    @AfterEach
+    void tearDown() {
+        connectionFactory.destroy();
+    }
+
+    @Test
+    void concurrentPushesAndPops_keepEachProducersOrder() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(PRODUCERS);
+        List<Future<?>> producers = new ArrayList<>();
+        for (int producer = 0; producer < PRODUCERS; producer++) {
+            String prefix = producer + ":";
+            producers.add(executor.submit(() -> {
+                for (int sequence = 0; sequence < MESSAGES_PER_PRODUCER; sequence++) {
+                    cacheService.addMessage(new Message(prefix + sequence, consumerGroup, "content"));
+                }
+            }));
+        }
+
+        Map<String, Integer> lastSequenceByProducer = new HashMap<>();
+        long visibleAtMillis = System.currentTimeMillis() + Duration.ofMinutes(5).toMillis();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        int popped = 0;
+        while (popped < PRODUCERS * MESSAGES_PER_PRODUCER && System.nanoTime() < deadline) {
+            Message message = cacheService.popMessage(consumerGroup, visibleAtMillis);
+            if (message == null) {
+                continue;
+            }
+            popped++;
+            String[] idParts = message.getId().split(":");
+            int sequence = Integer.parseInt(idParts[1]);
+            Integer previous = lastSequenceByProducer.put(idParts[0], sequence);
+            assertTrue(previous == null || previous < sequence,
+                    "Message " + message.getId() + " of producer " + idParts[0] + " popped after its sequence " + previous);
+        }
+        for (Future<?> producer : producers) {
+            producer.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(PRODUCERS * MESSAGES_PER_PRODUCER, popped);
+    }
+}
@@ -0,0 +1,115 @@
+package com.al.simplequeueservice.service;
+
+import com.al.simplequeueservice.model.Message;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalMessageBufferTest {
+
+    private static final String CONSUMER_GROUP = "testGroup";
+
+    private LocalMessageBuffer buffer;
+    private Message message1;
+    private Message message2;
+    private Message message3;
+
+    @BeforeEach
+    void setUp() {
+        buffer = new LocalMessageBuffer(2);
+        message1 = new Message("id1", CONSUMER_GROUP, "content1");
+        message2 = new Message("id2", CONSUMER_GROUP, "content2");
+        message3 = new Message("id3", CONSUMER_GROUP, "content3");
+    }
+
+    @Test
+    void offer_rejectedUntilGroupIsDrained() {
+        assertFalse(buffer.offer(CONSUMER_GROUP, List.of(message1)));
+
+        buffer.markDrained(CONSUMER_GROUP, 0);
+
+        assertTrue(buffer.offer(CONSUMER_GROUP, List.of(message1)));
+        assertEquals(1, buffer.size());
+    }
+
+    @Test
+    void offer_rejectedWhenGroupIsBacklogged() {
+        buffer.markDrained(CONSUMER_GROUP, 0);
+        buffer.markBacklogged(CONSUMER_GROUP);
+
+        assertFalse(buffer.offer(CONSUMER_GROUP, List.of(message1)));
+    }
+
+    @Test
+    void markDrained_ignoredWhileWriteToRedisInProgress() {
+        long writeSequence = buffer.writeSequence(CONSUMER_GROUP);
+        buffer.beginWrite(CONSUMER_GROUP);
+
+        assertFalse(buffer.markDrained(CONSUMER_GROUP, writeSequence));
+        assertFalse(buffer.offer(CONSUMER_GROUP, List.of(message1)));
+    }
+
+    @Test
+    void markDrained_ignoredAfterWriteToRedisEndedSincePopStarted() {
+        long writeSequence = buffer.writeSequence(CONSUMER_GROUP);
+        // A push lands in Redis after the pop came back short
+        buffer.beginWrite(CONSUMER_GROUP);
+        buffer.endWrite(CONSUMER_GROUP);
+
+        assertFalse(buffer.markDrained(CONSUMER_GROUP, writeSequence));
+        assertFalse(buffer.offer(CONSUMER_GROUP, List.of(message1)));
+        assertTrue(buffer.markDrained(CONSUMER_GROUP, buffer.writeSequence(CONSUMER_GROUP)));
+        assertTrue(buffer.offer(CONSUMER_GROUP, List.of(message1)));
+    }
+
+    @Test
+    void offer_allOrNothingWithinBudget() {
+        buffer.markDrained(CONSUMER_GROUP, 0);
+
+        assertFalse(buffer.offer(CONSUMER_GROUP, List.of(message1, message2, message3)));
+        assertEquals(0, buffer.size());
+        assertTrue(buffer.offer(CONSUMER_GROUP, List.of(message1, message2)));
+        assertFalse(buffer.offer("otherGroup", List.of(message3)));
+    }
+
+    @Test
+    void poll_highestPriorityFirst() {
+        buffer = new LocalMessageBuffer(3);
+        Message urgent = new Message("id4", CONSUMER_GROUP, "content4", 5);
+        buffer.markDrained(CONSUMER_GROUP, 0);
+        buffer.offer(CONSUMER_GROUP, List.of(message1, urgent, message2));
+
+        assertEquals(List.of(urgent, message1, message2), buffer.snapshot(CONSUMER_GROUP));
+        assertEquals(List.of(urgent, message1), buffer.poll(CONSUMER_GROUP, 2));
+        assertEquals(List.of(message2), buffer.poll(CONSUMER_GROUP, 2));
+    }
+
+    @Test
+    void poll_oldestFirstAndReleasesBudget() {
+        buffer.markDrained(CONSUMER_GROUP, 0);
+        buffer.offer(CONSUMER_GROUP, List.of(message1, message2));
+
+        assertEquals(List.of(message1), buffer.poll(CONSUMER_GROUP, 1));
+        assertEquals(List.of(message2), buffer.snapshot(CONSUMER_GROUP));
+        assertTrue(buffer.offer(CONSUMER_GROUP, List.of(message3)));
+        assertEquals(List.of(message2, message3), buffer.poll(CONSUMER_GROUP, 5));
+        assertTrue(buffer.poll(CONSUMER_GROUP, 5).isEmpty());
+        assertTrue(buffer.poll("unknownGroup", 5).isEmpty());
+    }
+
+    @Test
+    void drainAll_removesEverythingAndBacklogsGroups() {
+        buffer.markDrained(CONSUMER_GROUP, 0);
+        buffer.offer(CONSUMER_GROUP, List.of(message1, message2));
+
+        Map<String, List<Message>> drained = buffer.drainAll();
+
+        assertEquals(Map.of(CONSUMER_GROUP, List.of(message1, message2)), drained);
+        assertEquals(0, buffer.size());
+        assertFalse(buffer.offer(CONSUMER_GROUP, List.of(message3)));
+    }
+}
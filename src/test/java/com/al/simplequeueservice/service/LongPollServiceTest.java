@@ -0,0 +1,128 @@
+package com.al.simplequeueservice.service;
+
+import com.al.simplequeueservice.model.Message;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class LongPollServiceTest {
+
+    @Mock
+    private PopMessageService popMessageService;
+
+    @Mock
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Mock
+    private CacheService cacheService;
+
+    @InjectMocks
+    private LongPollService longPollService;
+
+    private String consumerGroup;
+    private Message message;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(longPollService, "longPollExecutor", (Executor) Runnable::run);
+        consumerGroup = "testGroup";
+        message = new Message("msg1", consumerGroup, "content");
+    }
+
+    @Test
+    void testPopOrWait_MessageAvailable() throws Exception {
+        when(popMessageService.pop(consumerGroup)).thenReturn(Optional.of(message));
+
+        CompletableFuture<Optional<Message>> result = longPollService.popOrWait(consumerGroup, 10);
+
+        assertTrue(result.isDone());
+        assertEquals(message, result.get().orElseThrow());
+        verify(listenerContainer, never()).addMessageListener(any(), any(ChannelTopic.class));
+    }
+
+    @Test
+    void testPopOrWait_NoWait() throws Exception {
+        when(popMessageService.pop(consumerGroup)).thenReturn(Optional.empty());
+
+        CompletableFuture<Optional<Message>> result = longPollService.popOrWait(consumerGroup, 0);
+
+        assertTrue(result.isDone());
+        assertTrue(result.get().isEmpty());
+        verify(popMessageService, times(1)).pop(consumerGroup);
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void testPopOrWait_WokenByArrivalNotification() throws Exception {
+        RedisSerializer serializer = new GenericJackson2JsonRedisSerializer();
+        when(redisTemplate.getValueSerializer()).thenReturn(serializer);
+        when(popMessageService.pop(consumerGroup))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(message));
+
+        CompletableFuture<Optional<Message>> result = longPollService.popOrWait(consumerGroup, 10);
+        assertFalse(result.isDone());
+
+        longPollService.onMessage(new DefaultMessage("consumerGroupNotifications".getBytes(StandardCharsets.UTF_8), serializer.serialize(consumerGroup)), null);
+
+        assertEquals(message, result.get(1, TimeUnit.SECONDS).orElseThrow());
+        verify(listenerContainer, times(1)).addMessageListener(eq(longPollService), any(ChannelTopic.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testPopOrWait_WokenByLocalArrival() throws Exception {
+        when(popMessageService.pop(consumerGroup))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(message));
+
+        CompletableFuture<Optional<Message>> result = longPollService.popOrWait(consumerGroup, 10);
+        assertFalse(result.isDone());
+
+        ArgumentCaptor<Consumer<String>> listenerCaptor = ArgumentCaptor.forClass(Consumer.class);
+        verify(cacheService, times(1)).onLocalArrival(listenerCaptor.capture());
+        listenerCaptor.getValue().accept(consumerGroup);
+
+        assertEquals(message, result.get(1, TimeUnit.SECONDS).orElseThrow());
+    }
+
+    @Test
+    void testPopOrWait_TimesOut() throws Exception {
+        when(popMessageService.pop(consumerGroup)).thenReturn(Optional.empty());
+
+        CompletableFuture<Optional<Message>> result = longPollService.popOrWait(consumerGroup, 1);
+
+        assertTrue(result.get(3, TimeUnit.SECONDS).isEmpty());
+        // A later arrival must not be handed to the expired waiter
+        longPollService.drain(consumerGroup);
+        verify(popMessageService, times(2)).pop(consumerGroup);
+    }
+}
@@ -0,0 +1,93 @@
+package com.al.simplequeueservice.service;
+
+import com.al.simplequeueservice.model.Message;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageCompressionServiceTest {
+
+    private static final String LARGE_JSON = "{\"name\":\"value\",\"items\":[1,2,3]}".repeat(300);
+
+    private MessageCompressionService messageCompressionService;
+
+    @BeforeEach
+    void setUp() {
+        messageCompressionService = new MessageCompressionService();
+        ReflectionTestUtils.setField(messageCompressionService, "enabled", true);
+        ReflectionTestUtils.setField(messageCompressionService, "minLength", 4096);
+    }
+
+    @Test
+    void compress_largeContentRoundTrips() {
+        Message message = new Message("id1", LARGE_JSON, "group", new Date(1000), false);
+
+        Message compressed = messageCompressionService.compress(message);
+        Message restored = messageCompressionService.decompress(compressed);
+
+        assertTrue(compressed.getContent().startsWith(MessageCompressionService.DEFLATE_TAG));
+        assertTrue(compressed.getContent().length() * 10 < LARGE_JSON.length());
+        assertEquals("id1", compressed.getId());
+        assertEquals(new Date(1000), compressed.getCreatedAt());
+        assertEquals(LARGE_JSON, restored.getContent());
+    }
+
+    @Test
+    void compress_smallContentUnchanged() {
+        Message message = new Message("id1", "group", "small");
+
+        assertSame(message, messageCompressionService.compress(message));
+    }
+
+    @Test
+    void compress_disabled() {
+        ReflectionTestUtils.setField(messageCompressionService, "enabled", false);
+        Message message = new Message("id1", "group", LARGE_JSON);
+
+        assertSame(message, messageCompressionService.compress(message));
+    }
+
+    @Test
+    void compress_incompressibleContentUnchanged() {
+        StringBuilder random = new StringBuilder();
+        java.util.Random generator = new java.util.Random(42);
+        while (random.length() < 5000) {
+            random.append((char) ('!' + generator.nextInt(90)));
+        }
+        Message message = new Message("id1", "group", random.toString());
+
+        assertSame(message, messageCompressionService.compress(message));
+    }
+
+    @Test
+    void compress_contentThatLooksCompressedIsAlwaysWrapped() {
+        ReflectionTestUtils.setField(messageCompressionService, "enabled", false);
+        String content = MessageCompressionService.DEFLATE_TAG + "not really compressed";
+        Message message = new Message("id1", "group", content);
+
+        Message stored = messageCompressionService.compress(message);
+
+        assertNotEquals(content, stored.getContent());
+        assertEquals(content, messageCompressionService.decompress(stored).getContent());
+    }
+
+    @Test
+    void decompress_plainContentUnchanged() {
+        Message message = new Message("id1", "group", "plain");
+
+        assertEquals(List.of(message), messageCompressionService.decompressAll(List.of(message)));
+        assertSame(message, messageCompressionService.decompress(message));
+    }
+
+    @Test
+    void decompress_corruptContent() {
+        Message message = new Message("id1", "group", MessageCompressionService.DEFLATE_TAG + "AAAA");
+
+        assertThrows(IllegalStateException.class, () -> messageCompressionService.decompress(message));
+    }
+}
@@ -0,0 +1,360 @@
+package com.al.simplequeueservice.service;
+
+import com.al.simplequeueservice.exception.QueueOverloadedException;
+import com.al.simplequeueservice.model.Message;
+import com.al.simplequeueservice.model.PersistenceTask;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.ListIndexesIterable;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class MessagePersistenceServiceTest {
+
+    private static final String CONSUMER_GROUP = "testGroup";
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private MongoIndexService mongoIndexService;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    @Mock
+    private CacheService cacheService;
+
+    @TempDir
+    private Path spillDirectory;
+
+    private SimpleMeterRegistry meterRegistry;
+    private MessagePersistenceService messagePersistenceService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        messagePersistenceService = new MessagePersistenceService();
+        ReflectionTestUtils.setField(messagePersistenceService, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(messagePersistenceService, "mongoIndexService", mongoIndexService);
+        ReflectionTestUtils.setField(messagePersistenceService, "cacheService", cacheService);
+        ReflectionTestUtils.setField(messagePersistenceService, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(messagePersistenceService, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(messagePersistenceService, "batchSize", 100);
+        ReflectionTestUtils.setField(messagePersistenceService, "lingerMillis", 0L);
+        ReflectionTestUtils.setField(messagePersistenceService, "workers", 1);
+        ReflectionTestUtils.setField(messagePersistenceService, "spillDirectory", spillDirectory);
+        ReflectionTestUtils.setField(messagePersistenceService, "claimRetentionMinutes", 30L);
+        when(mongoTemplate.bulkOps(eq(BulkOperations.BulkMode.UNORDERED), eq(Message.class), anyString())).thenReturn(bulkOperations);
+        when(bulkOperations.insert(anyList())).thenReturn(bulkOperations);
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Message.class), anyString())).thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(Message.class), anyString())).thenReturn(UpdateResult.acknowledged(3, 3L, null));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        messagePersistenceService.stop();
+    }
+
+    private void start(int capacity, MessagePersistenceService.OverflowPolicy overflowPolicy) {
+        ReflectionTestUtils.setField(messagePersistenceService, "capacity", capacity);
+        ReflectionTestUtils.setField(messagePersistenceService, "overflowPolicy", overflowPolicy);
+        messagePersistenceService.start();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_coalescesWritesAndChecksIndexesOncePerCollection() {
+        // Use a real index registry backed by a mocked MongoClient chain to count Mongo calls per push
+        MongoClient mongoClient = mock(MongoClient.class);
+        MongoDatabase mongoDatabase = mock(MongoDatabase.class);
+        MongoCollection<Document> collection = mock(MongoCollection.class);
+        ListIndexesIterable<Document> listIndexesIterable = mock(ListIndexesIterable.class);
+        when(mongoClient.getDatabase(anyString())).thenReturn(mongoDatabase);
+        when(mongoDatabase.getCollection(anyString())).thenReturn(collection);
+        when(collection.listIndexes()).thenReturn(listIndexesIterable);
+        when(collection.updateMany(any(Bson.class), any(Bson.class))).thenReturn(UpdateResult.acknowledged(0, 0L, null));
+        // The TTL index already exists
+        when(listIndexesIterable.into(any(Collection.class))).thenAnswer(invocation -> {
+            Collection<Document> indexes = invocation.getArgument(0);
+            indexes.add(new Document("name", "createdAt_1").append("key", new Document("createdAt", 1)));
+            return indexes;
+        });
+        MongoIndexService realIndexService = new MongoIndexService();
+        ReflectionTestUtils.setField(realIndexService, "mongoClient", mongoClient);
+        ReflectionTestUtils.setField(realIndexService, "mongoDB", "testDB");
+        ReflectionTestUtils.setField(realIndexService, "expireMinutes", 60L);
+        ReflectionTestUtils.setField(messagePersistenceService, "mongoIndexService", realIndexService);
+        start(100, MessagePersistenceService.OverflowPolicy.BLOCK);
+
+        List<Message> firstPushes = List.of(new Message("id1", CONSUMER_GROUP, "content1"), new Message("id2", CONSUMER_GROUP, "content2"));
+        messagePersistenceService.flush(List.of(
+                PersistenceTask.insert(firstPushes.get(0)),
+                PersistenceTask.insert(firstPushes.get(1)),
+                PersistenceTask.markConsumed(CONSUMER_GROUP, "id1")));
+        messagePersistenceService.flush(List.of(PersistenceTask.insert(new Message("id3", CONSUMER_GROUP, "content3"))));
+
+        // One bulk write per flushed batch, and index checks reach MongoDB only for the first batch:
+        // one listIndexes for the existing TTL index and one createIndex each for the pending and priority indexes
+        verify(bulkOperations, times(1)).insert(firstPushes);
+        verify(bulkOperations, times(2)).execute();
+        verify(collection, times(1)).listIndexes();
+        verify(collection, times(2)).createIndex(any(Document.class), any(IndexOptions.class));
+        verify(mongoTemplate, times(1)).updateFirst(any(Query.class), any(Update.class), eq(Message.class), eq(CONSUMER_GROUP));
+        verify(mongoTemplate, never()).findAndModify(any(Query.class), any(Update.class), any(), eq(Message.class), anyString());
+        assertEquals(4.0, meterRegistry.get("sqs.persistence.flushed").counter().count());
+    }
+
+    @Test
+    void flush_coalescesConsumedMarksIntoOneUpdateMany() {
+        start(100, MessagePersistenceService.OverflowPolicy.BLOCK);
+
+        messagePersistenceService.flush(List.of(
+                PersistenceTask.markConsumed(CONSUMER_GROUP, "id1"),
+                PersistenceTask.markConsumed(CONSUMER_GROUP, "id2"),
+                PersistenceTask.markConsumed(CONSUMER_GROUP, "id3"),
+                PersistenceTask.markConsumed("otherGroup", "id4")));
+
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(1)).updateMulti(queryCaptor.capture(), any(Update.class), eq(Message.class), eq(CONSUMER_GROUP));
+        assertEquals(List.of("id1", "id2", "id3"), queryCaptor.getValue().getQueryObject().get("id", Document.class).get("$in"));
+        verify(mongoTemplate, times(1)).updateFirst(any(Query.class), any(Update.class), eq(Message.class), eq("otherGroup"));
+        // Once the database excludes them, the acknowledgements no longer need to be remembered in Redis
+        verify(cacheService, times(1)).forgetAcknowledged(CONSUMER_GROUP, List.of("id1", "id2", "id3"));
+        verify(cacheService, times(1)).forgetAcknowledged("otherGroup", List.of("id4"));
+    }
+
+    @Test
+    void flush_forgetsOnlyAcknowledgementsOfMessagesMarkedConsumed() {
+        start(100, MessagePersistenceService.OverflowPolicy.BLOCK);
+        // id3 is not in the database yet, for example because its insert was spilled
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(Message.class), eq(CONSUMER_GROUP))).thenReturn(UpdateResult.acknowledged(2, 2L, null));
+        when(mongoTemplate.find(any(Query.class), eq(Message.class), eq(CONSUMER_GROUP)))
+                .thenReturn(List.of(new Message("id1", null, null, null, true), new Message("id2", null, null, null, true)));
+
+        messagePersistenceService.flush(List.of(
+                PersistenceTask.markConsumed(CONSUMER_GROUP, "id1"),
+                PersistenceTask.markConsumed(CONSUMER_GROUP, "id2"),
+                PersistenceTask.markConsumed(CONSUMER_GROUP, "id3")));
+
+        verify(cacheService, times(1)).forgetAcknowledged(CONSUMER_GROUP, List.of("id1", "id2"));
+        assertEquals(2.0, meterRegistry.get("sqs.persistence.flushed").counter().count());
+        // The deferred mark is retried by the idle worker and its acknowledgement forgotten once it matches
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, timeout(2000)).updateFirst(queryCaptor.capture(), any(Update.class), eq(Message.class), eq(CONSUMER_GROUP));
+        assertEquals("id3", queryCaptor.getValue().getQueryObject().get("id"));
+        verify(cacheService, timeout(2000)).forgetAcknowledged(CONSUMER_GROUP, List.of("id3"));
+    }
+
+    @Test
+    void persistAll_batchLargerThanCapacityIsAdmittedInChunks() {
+        start(2, MessagePersistenceService.OverflowPolicy.BLOCK);
+        List<Message> messages = List.of(new Message("id1", CONSUMER_GROUP, "content1"), new Message("id2", CONSUMER_GROUP, "content2"),
+                new Message("id3", CONSUMER_GROUP, "content3"), new Message("id4", CONSUMER_GROUP, "content4"),
+                new Message("id5", CONSUMER_GROUP, "content5"));
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> messagePersistenceService.persistAll(messages));
+
+        verify(bulkOperations, timeout(2000).atLeast(3)).execute();
+    }
+
+    @Test
+    void shedPolicy_rejectsBatchLargerThanCapacity() {
+        start(2, MessagePersistenceService.OverflowPolicy.SHED);
+
+        assertThrows(QueueOverloadedException.class, () -> messagePersistenceService.persistAll(List.of(new Message("id1", CONSUMER_GROUP, "content1"),
+                new Message("id2", CONSUMER_GROUP, "content2"), new Message("id3", CONSUMER_GROUP, "content3"))));
+        assertEquals(3.0, meterRegistry.get("sqs.persistence.shed").counter().count());
+        verify(bulkOperations, never()).execute();
+    }
+
+    @Test
+    void flush_hidesDeliveredMessagesBeforeMarkingThemConsumed() {
+        start(100, MessagePersistenceService.OverflowPolicy.BLOCK);
+
+        messagePersistenceService.flush(List.of(
+                PersistenceTask.markConsumed(CONSUMER_GROUP, "id1"),
+                PersistenceTask.markInFlight(CONSUMER_GROUP, "id2", 1000L),
+                PersistenceTask.markInFlight(CONSUMER_GROUP, "id3", 2000L)));
+
+        ArgumentCaptor<Update> updateCaptor = ArgumentCaptor.forClass(Update.class);
+        InOrder inOrder = inOrder(mongoTemplate);
+        inOrder.verify(mongoTemplate).updateMulti(any(Query.class), updateCaptor.capture(), eq(Message.class), eq(CONSUMER_GROUP));
+        inOrder.verify(mongoTemplate).updateFirst(any(Query.class), any(Update.class), eq(Message.class), eq(CONSUMER_GROUP));
+        // Both deliveries are hidden until the later deadline
+        assertEquals(new Date(2000L), updateCaptor.getValue().getUpdateObject().get("$set", Document.class).get("visibleAt"));
+    }
+
+    @Test
+    void markConsumed_lingersToCoalesceAcknowledgements() {
+        ReflectionTestUtils.setField(messagePersistenceService, "lingerMillis", 500L);
+        start(100, MessagePersistenceService.OverflowPolicy.BLOCK);
+
+        // Acknowledgements arriving within the linger window are written together
+        messagePersistenceService.markConsumed(CONSUMER_GROUP, List.of("id1"));
+        messagePersistenceService.markConsumed(CONSUMER_GROUP, List.of("id2", "id3"));
+
+        verify(mongoTemplate, timeout(2000).times(1)).updateMulti(any(Query.class), any(Update.class), eq(Message.class), eq(CONSUMER_GROUP));
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), any(Update.class), eq(Message.class), anyString());
+    }
+
+    @Test
+    void persist_writtenByWorker() {
+        start(100, MessagePersistenceService.OverflowPolicy.BLOCK);
+        Message message = new Message("id1", CONSUMER_GROUP, "content1");
+
+        messagePersistenceService.persist(message);
+
+        verify(bulkOperations, timeout(2000)).insert(List.of(message));
+        verify(bulkOperations, timeout(2000)).execute();
+    }
+
+    @Test
+    void persist_failedInsertIsRetriedWithTheNextFlush() {
+        when(bulkOperations.execute()).thenThrow(new RuntimeException("Mongo down")).thenReturn(null);
+        start(100, MessagePersistenceService.OverflowPolicy.BLOCK);
+        Message message = new Message("id1", CONSUMER_GROUP, "content1");
+
+        messagePersistenceService.persist(message);
+
+        verify(bulkOperations, timeout(3000).times(2)).insert(List.of(message));
+        awaitEmptyPipeline();
+        assertEquals(1.0, meterRegistry.get("sqs.persistence.retried").counter().count());
+        assertEquals(0.0, meterRegistry.get("sqs.persistence.failed").counter().count());
+        assertEquals(1.0, meterRegistry.get("sqs.persistence.flushed").counter().count());
+    }
+
+    @Test
+    void shedPolicy_failedMarkKeepsItsCapacityUntilRetried() {
+        CountDownLatch failed = new CountDownLatch(1);
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Message.class), eq(CONSUMER_GROUP))).thenAnswer(invocation -> {
+            failed.countDown();
+            throw new RuntimeException("Mongo down");
+        }).thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        start(1, MessagePersistenceService.OverflowPolicy.SHED);
+
+        messagePersistenceService.markConsumed(CONSUMER_GROUP, List.of("id1"));
+
+        assertTimeoutPreemptively(Duration.ofSeconds(2), () -> failed.await());
+        // Waiting for its retry, the mark still counts against the capacity
+        assertThrows(QueueOverloadedException.class, () -> messagePersistenceService.persist(new Message("id2", CONSUMER_GROUP, "content2")));
+        verify(cacheService, timeout(3000)).forgetAcknowledged(CONSUMER_GROUP, List.of("id1"));
+        awaitEmptyPipeline();
+    }
+
+    @Test
+    void persist_writtenByVirtualWorkerInVirtualThreadMode() {
+        ReflectionTestUtils.setField(messagePersistenceService, "virtualThreads", true);
+        start(100, MessagePersistenceService.OverflowPolicy.BLOCK);
+        Message message = new Message("id1", CONSUMER_GROUP, "content1");
+        AtomicBoolean virtualWorker = new AtomicBoolean();
+        when(bulkOperations.execute()).thenAnswer(invocation -> {
+            virtualWorker.set(Thread.currentThread().isVirtual());
+            return null;
+        });
+
+        messagePersistenceService.persist(message);
+
+        verify(bulkOperations, timeout(2000)).execute();
+        assertTrue(virtualWorker.get());
+    }
+
+    @Test
+    void shedPolicy_rejectsNewMessagesWhenFull() throws InterruptedException {
+        CountDownLatch writeStarted = new CountDownLatch(1);
+        CountDownLatch releaseWrite = new CountDownLatch(1);
+        when(bulkOperations.execute()).thenAnswer(invocation -> {
+            writeStarted.countDown();
+            releaseWrite.await();
+            return null;
+        });
+        start(2, MessagePersistenceService.OverflowPolicy.SHED);
+
+        messagePersistenceService.persist(new Message("id1", CONSUMER_GROUP, "content1"));
+        assertTrue(writeStarted.await(2, TimeUnit.SECONDS));
+        messagePersistenceService.persist(new Message("id2", CONSUMER_GROUP, "content2"));
+
+        assertEquals(2.0, meterRegistry.get("sqs.persistence.queue.depth").gauge().value());
+        assertThrows(QueueOverloadedException.class, () -> messagePersistenceService.persist(new Message("id3", CONSUMER_GROUP, "content3")));
+        assertThrows(QueueOverloadedException.class, () -> messagePersistenceService.persistAll(List.of(new Message("id4", CONSUMER_GROUP, "content4"))));
+        assertEquals(2.0, meterRegistry.get("sqs.persistence.shed").counter().count());
+
+        releaseWrite.countDown();
+        verify(bulkOperations, timeout(2000).times(2)).execute();
+    }
+
+    @Test
+    void spillPolicy_spillsWhenFullAndReplaysWhenDrained() throws Exception {
+        CountDownLatch writeStarted = new CountDownLatch(1);
+        CountDownLatch releaseWrite = new CountDownLatch(1);
+        when(bulkOperations.execute()).thenAnswer(invocation -> {
+            writeStarted.countDown();
+            releaseWrite.await();
+            return null;
+        });
+        start(1, MessagePersistenceService.OverflowPolicy.SPILL);
+        Message spilledMessage = new Message("id2", CONSUMER_GROUP, "content2");
+
+        messagePersistenceService.persist(new Message("id1", CONSUMER_GROUP, "content1"));
+        assertTrue(writeStarted.await(2, TimeUnit.SECONDS));
+        messagePersistenceService.persist(spilledMessage);
+
+        assertEquals(1, countSpillFiles());
+        assertEquals(1.0, meterRegistry.get("sqs.persistence.spilled").counter().count());
+
+        releaseWrite.countDown();
+        verify(bulkOperations, timeout(3000)).insert(List.of(spilledMessage));
+        assertEquals(0, countSpillFiles());
+    }
+
+    private void awaitEmptyPipeline() {
+        assertTimeoutPreemptively(Duration.ofSeconds(2), () -> {
+            while (messagePersistenceService.getQueueDepth() != 0) {
+                Thread.sleep(10);
+            }
+        });
+    }
+
+    private long countSpillFiles() throws Exception {
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            return files.count();
+        }
+    }
+}
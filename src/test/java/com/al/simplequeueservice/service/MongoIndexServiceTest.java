@@ -0,0 +1,118 @@
+package com.al.simplequeueservice.service;
+
+import com.mongodb.client.ListIndexesIterable;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.MongoIterable;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class MongoIndexServiceTest {
+
+    @Mock
+    private MongoClient mongoClient;
+
+    @Mock
+    private MongoDatabase mongoDatabase;
+
+    @Mock
+    private MongoCollection<Document> collection;
+
+    @Mock
+    private ListIndexesIterable<Document> listIndexesIterable;
+
+    @InjectMocks
+    private MongoIndexService mongoIndexService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(mongoIndexService, "mongoDB", "testDB");
+        ReflectionTestUtils.setField(mongoIndexService, "expireMinutes", 60L);
+        when(mongoClient.getDatabase("testDB")).thenReturn(mongoDatabase);
+        when(mongoDatabase.getCollection(anyString())).thenReturn(collection);
+        when(collection.listIndexes()).thenReturn(listIndexesIterable);
+        when(collection.updateMany(any(Bson.class), any(Bson.class))).thenReturn(UpdateResult.acknowledged(0, 0L, null));
+        // Only the default _id index exists
+        when(listIndexesIterable.into(any(Collection.class))).thenAnswer(invocation -> {
+            Collection<Document> indexes = invocation.getArgument(0);
+            indexes.add(new Document("name", "_id_").append("key", new Document("_id", 1)));
+            return indexes;
+        });
+    }
+
+    @Test
+    void ensureIndexes_createsTTLIndexOnce() {
+        mongoIndexService.ensureIndexes("testGroup");
+        mongoIndexService.ensureIndexes("testGroup");
+
+        verify(collection, times(1)).listIndexes();
+        verify(collection, times(1)).createIndex(eq(new Document("createdAt", 1)),
+                argThat((IndexOptions options) -> options.getExpireAfter(TimeUnit.MINUTES) == 60L));
+        verify(collection, times(1)).createIndex(eq(new Document("consumed", 1).append("createdAt", 1).append("_id", 1)),
+                argThat((IndexOptions options) -> "consumed_1_createdAt_1__id_1".equals(options.getName())));
+        verify(collection, times(1)).createIndex(eq(new Document("consumed", 1).append("priority", -1).append("createdAt", 1).append("_id", 1)),
+                argThat((IndexOptions options) -> "consumed_1_priority_-1_createdAt_1__id_1".equals(options.getName())));
+    }
+
+    @Test
+    void ensureIndexes_givesMessagesWithoutPriorityTheDefaultBeforeIndexingIt() {
+        mongoIndexService.ensureIndexes("testGroup");
+
+        InOrder inOrder = inOrder(collection);
+        inOrder.verify(collection).updateMany(new Document("priority", new Document("$exists", false)),
+                new Document("$set", new Document("priority", 0)));
+        inOrder.verify(collection).createIndex(eq(new Document("consumed", 1).append("priority", -1).append("createdAt", 1).append("_id", 1)),
+                any(IndexOptions.class));
+    }
+
+    @Test
+    void ensureIndexes_afterInvalidate() {
+        mongoIndexService.ensureIndexes("testGroup");
+        mongoIndexService.invalidate("testGroup");
+        mongoIndexService.ensureIndexes("testGroup");
+
+        verify(collection, times(2)).listIndexes();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void refreshIndexes_coversKnownGroups() {
+        MongoIterable<String> collectionNames = mock(MongoIterable.class);
+        when(mongoDatabase.listCollectionNames()).thenReturn(collectionNames);
+        when(collectionNames.into(any(Collection.class))).thenAnswer(invocation -> {
+            Collection<String> names = invocation.getArgument(0);
+            names.addAll(List.of("groupA", "groupB"));
+            return names;
+        });
+        mongoIndexService.ensureIndexes("groupA");
+
+        List<String> result = mongoIndexService.refreshIndexes();
+
+        assertEquals(List.of("groupA", "groupB"), result);
+        verify(mongoDatabase, times(2)).getCollection("groupA");
+        verify(mongoDatabase, times(1)).getCollection("groupB");
+    }
+}
@@ -1,11 +1,15 @@
 package com.al.simplequeueservice.service;
 
 import com.al.simplequeueservice.model.Message;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.FindAndModifyOptions;
@@ -13,15 +17,18 @@ import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.Date;
+import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.Executor;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
@@ -34,8 +41,17 @@ public class PopMessageServiceTest {
     @Mock
     private CacheService cacheService;
 
-    @Mock(name = "taskExecutor")
-    private Executor taskExecutor;
+    @Mock
+    private MessagePersistenceService messagePersistenceService;
+
+    @Mock
+    private CacheRefillService cacheRefillService;
+
+    @Mock
+    private QueueStatsService queueStatsService;
+
+    @Spy
+    private MessageCompressionService messageCompressionService = new MessageCompressionService();
 
     @InjectMocks
     private PopMessageService popMessageService;
@@ -45,47 +61,231 @@ public class PopMessageServiceTest {
 
     @BeforeEach
     void setUp() {
+        ReflectionTestUtils.setField(popMessageService, "visibilityTimeoutSeconds", 30L);
         consumerGroup = "testGroup";
         message = new Message("msg1", consumerGroup, "content", Date.from(LocalDateTime.now().atZone(ZoneId.systemDefault()).toInstant()), false);
     }
 
     @Test
     void testPop_MessageFoundInCache() {
-        when(cacheService.popMessage(consumerGroup)).thenReturn(message);
+        when(cacheService.popMessage(eq(consumerGroup), anyLong())).thenReturn(message);
 
+        long before = System.currentTimeMillis();
         Optional<Message> result = popMessageService.pop(consumerGroup);
 
         assertTrue(result.isPresent());
         assertEquals(message, result.get());
-        verify(cacheService, times(1)).popMessage(consumerGroup);
-        verify(taskExecutor, times(1)).execute(any(Runnable.class));
+        ArgumentCaptor<Long> visibleAtCaptor = ArgumentCaptor.forClass(Long.class);
+        verify(cacheService, times(1)).popMessage(eq(consumerGroup), visibleAtCaptor.capture());
+        assertTrue(visibleAtCaptor.getValue() >= before + 30_000);
+        // Delivered messages are hidden in the database, not marked consumed until acknowledged
+        verify(messagePersistenceService, times(1)).markInFlight(consumerGroup, List.of(message.getId()), visibleAtCaptor.getValue());
+        verify(messagePersistenceService, never()).markConsumed(anyString(), anyList());
         verify(mongoTemplate, never()).findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Message.class), anyString());
+        verify(queueStatsService, times(1)).recordPopped(consumerGroup, 1, 0);
+    }
+
+    @Test
+    void testPop_CompressedContentRestored() {
+        String content = "{\"field\":\"value\"}".repeat(500);
+        ReflectionTestUtils.setField(messageCompressionService, "enabled", true);
+        Message stored = messageCompressionService.compress(new Message("msg1", consumerGroup, content));
+        when(cacheService.popMessage(eq(consumerGroup), anyLong())).thenReturn(stored);
+
+        Optional<Message> result = popMessageService.pop(consumerGroup);
+
+        assertEquals(content, result.orElseThrow().getContent());
     }
 
     @Test
     void testPop_MessageNotFoundInCacheButFoundInDb() {
-        when(cacheService.popMessage(consumerGroup)).thenReturn(null);
+        when(cacheService.popMessage(eq(consumerGroup), anyLong())).thenReturn(null);
         when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Message.class), anyString())).thenReturn(message);
+        when(cacheService.claimInFlight(eq(consumerGroup), eq(List.of(message)), anyLong())).thenReturn(List.of(message));
 
         Optional<Message> result = popMessageService.pop(consumerGroup);
 
         assertTrue(result.isPresent());
         assertEquals(message, result.get());
-        verify(cacheService, times(1)).popMessage(consumerGroup);
-        verify(taskExecutor, never()).execute(any(Runnable.class));
-        verify(mongoTemplate, times(1)).findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Message.class), anyString());
+        verify(cacheService, times(1)).popMessage(eq(consumerGroup), anyLong());
+        verify(messagePersistenceService, never()).markInFlight(anyString(), anyList(), anyLong());
+        ArgumentCaptor<Update> updateCaptor = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(1)).findAndModify(any(Query.class), updateCaptor.capture(), any(FindAndModifyOptions.class), eq(Message.class), anyString());
+        assertTrue(updateCaptor.getValue().modifies("visibleAt"));
+        assertFalse(updateCaptor.getValue().modifies("consumed"));
+        verify(cacheService, times(1)).claimInFlight(eq(consumerGroup), eq(List.of(message)), anyLong());
+        verify(queueStatsService, times(1)).recordPopped(consumerGroup, 0, 1);
+    }
+
+    @Test
+    void testPop_ColdCacheRefilledFromDb() {
+        when(cacheService.popMessage(eq(consumerGroup), anyLong())).thenReturn(null).thenReturn(message);
+        when(cacheRefillService.refill(consumerGroup)).thenReturn(500L);
+
+        Optional<Message> result = popMessageService.pop(consumerGroup);
+
+        assertEquals(Optional.of(message), result);
+        verify(cacheService, times(2)).popMessage(eq(consumerGroup), anyLong());
+        verify(messagePersistenceService, times(1)).markInFlight(eq(consumerGroup), eq(List.of(message.getId())), anyLong());
+        verify(mongoTemplate, never()).findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Message.class), anyString());
+    }
+
+    @Test
+    void testPop_DbClaimLostToCachePopper() {
+        Message message2 = new Message("msg2", consumerGroup, "content2", new Date(message.getCreatedAt().getTime() + 1), false);
+        when(cacheService.popMessage(eq(consumerGroup), anyLong())).thenReturn(null);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Message.class), anyString()))
+                .thenReturn(message)
+                .thenReturn(message2);
+        // msg1 was already handed out from the cache, so its database claim is lost and the next message is tried
+        when(cacheService.claimInFlight(eq(consumerGroup), eq(List.of(message)), anyLong())).thenReturn(List.of());
+        when(cacheService.claimInFlight(eq(consumerGroup), eq(List.of(message2)), anyLong())).thenReturn(List.of(message2));
+
+        Optional<Message> result = popMessageService.pop(consumerGroup);
+
+        assertEquals(Optional.of(message2), result);
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(2)).findAndModify(queryCaptor.capture(), any(Update.class), any(FindAndModifyOptions.class), eq(Message.class), anyString());
+        // The retry skips the lost message, which is made visible in the database again instead of hidden until the timeout
+        assertFalse(queryCaptor.getAllValues().get(0).getQueryObject().containsKey("id"));
+        assertEquals(new Document("$nin", List.of("msg1")), queryCaptor.getAllValues().get(1).getQueryObject().get("id"));
+        ArgumentCaptor<Query> releaseQueryCaptor = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> releaseCaptor = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(1)).updateMulti(releaseQueryCaptor.capture(), releaseCaptor.capture(), eq(Message.class), eq(consumerGroup));
+        assertEquals(new Document("$in", List.of("msg1")), releaseQueryCaptor.getValue().getQueryObject().get("id"));
+        assertTrue(releaseQueryCaptor.getValue().getQueryObject().containsKey("claimId"));
+        assertEquals(new Document("visibleAt", 1).append("claimId", 1), releaseCaptor.getValue().getUpdateObject().get("$unset"));
+    }
+
+    @Test
+    void testPop_DbClaimLostOnEveryAttempt() {
+        when(cacheService.popMessage(eq(consumerGroup), anyLong())).thenReturn(null);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Message.class), anyString())).thenReturn(message);
+        when(cacheService.claimInFlight(eq(consumerGroup), anyList(), anyLong())).thenReturn(List.of());
+
+        Optional<Message> result = popMessageService.pop(consumerGroup);
+
+        assertFalse(result.isPresent());
+        verify(mongoTemplate, times(3)).findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Message.class), anyString());
+        verify(mongoTemplate, times(3)).updateMulti(any(Query.class), any(Update.class), eq(Message.class), eq(consumerGroup));
     }
 
     @Test
     void testPop_MessageNotFoundInCacheAndInDb() {
-        when(cacheService.popMessage(consumerGroup)).thenReturn(null);
+        when(cacheService.popMessage(eq(consumerGroup), anyLong())).thenReturn(null);
         when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Message.class), anyString())).thenReturn(null);
 
         Optional<Message> result = popMessageService.pop(consumerGroup);
 
         assertFalse(result.isPresent());
-        verify(cacheService, times(1)).popMessage(consumerGroup);
-        verify(taskExecutor, never()).execute(any(Runnable.class));
+        verify(cacheService, times(1)).popMessage(eq(consumerGroup), anyLong());
+        verify(cacheService, never()).claimInFlight(anyString(), anyList(), anyLong());
         verify(mongoTemplate, times(1)).findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Message.class), anyString());
     }
+
+    @Test
+    void testPopBatch_AllMessagesFoundInCache() {
+        Message message2 = new Message("msg2", consumerGroup, "content2", new Date(message.getCreatedAt().getTime() + 1), false);
+        when(cacheService.popMessages(eq(consumerGroup), eq(2), anyLong())).thenReturn(List.of(message, message2));
+
+        List<Message> result = popMessageService.popBatch(consumerGroup, 2);
+
+        assertEquals(List.of(message, message2), result);
+        verify(messagePersistenceService, times(1)).markInFlight(eq(consumerGroup), eq(List.of("msg1", "msg2")), anyLong());
+        verify(mongoTemplate, never()).find(any(Query.class), eq(Message.class), anyString());
+        verify(mongoTemplate, never()).updateMulti(any(Query.class), any(Update.class), eq(Message.class), anyString());
+    }
+
+    @Test
+    void testPopBatch_RemainderClaimedFromDb() {
+        Message dbMessage = new Message("msg0", consumerGroup, "older", new Date(message.getCreatedAt().getTime() - 1000), true);
+        when(cacheService.popMessages(eq(consumerGroup), eq(3), anyLong())).thenReturn(List.of(message));
+        when(mongoTemplate.find(any(Query.class), eq(Message.class), eq(consumerGroup)))
+                .thenReturn(List.of(new Message("msg0", consumerGroup, null, null, false)))
+                .thenReturn(List.of(dbMessage));
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(Message.class), eq(consumerGroup)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        when(cacheService.claimInFlight(eq(consumerGroup), eq(List.of(dbMessage)), anyLong())).thenReturn(List.of(dbMessage));
+
+        List<Message> result = popMessageService.popBatch(consumerGroup, 3);
+
+        assertEquals(List.of(dbMessage, message), result);
+        verify(messagePersistenceService, times(1)).markInFlight(eq(consumerGroup), eq(List.of("msg1")), anyLong());
+        verify(cacheService, times(1)).claimInFlight(eq(consumerGroup), eq(List.of(dbMessage)), anyLong());
+        verify(mongoTemplate, times(2)).find(any(Query.class), eq(Message.class), eq(consumerGroup));
+        verify(mongoTemplate, times(1)).updateMulti(any(Query.class), any(Update.class), eq(Message.class), eq(consumerGroup));
+        verify(queueStatsService, times(1)).recordPopped(consumerGroup, 1, 1);
+    }
+
+    @Test
+    void testPopBatch_LostDbClaimsReleased() {
+        Message dbMessage = new Message("msg0", consumerGroup, "older", new Date(message.getCreatedAt().getTime() - 1000), false);
+        Message lostMessage = new Message("msg2", consumerGroup, "content2", new Date(message.getCreatedAt().getTime() - 500), false);
+        when(cacheService.popMessages(eq(consumerGroup), eq(2), anyLong())).thenReturn(List.of());
+        when(mongoTemplate.find(any(Query.class), eq(Message.class), eq(consumerGroup)))
+                .thenReturn(List.of(new Message("msg0", consumerGroup, null, null, false), new Message("msg2", consumerGroup, null, null, false)))
+                .thenReturn(List.of(dbMessage, lostMessage));
+        when(cacheService.claimInFlight(eq(consumerGroup), eq(List.of(dbMessage, lostMessage)), anyLong())).thenReturn(List.of(dbMessage));
+
+        List<Message> result = popMessageService.popBatch(consumerGroup, 2);
+
+        assertEquals(List.of(dbMessage), result);
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> updateCaptor = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(2)).updateMulti(queryCaptor.capture(), updateCaptor.capture(), eq(Message.class), eq(consumerGroup));
+        // The claim and the release share the claim token, so only this call's claim on msg2 is undone
+        Object claimId = queryCaptor.getAllValues().get(1).getQueryObject().get("claimId");
+        assertEquals(((Document) updateCaptor.getAllValues().get(0).getUpdateObject().get("$set")).get("claimId"), claimId);
+        assertEquals(new Document("$in", List.of("msg2")), queryCaptor.getAllValues().get(1).getQueryObject().get("id"));
+        assertTrue(updateCaptor.getAllValues().get(1).modifies("visibleAt"));
+        verify(queueStatsService, times(1)).recordPopped(consumerGroup, 0, 1);
+    }
+
+    @Test
+    void testPopBatch_ColdCacheRefilledFromDb() {
+        Message message2 = new Message("msg2", consumerGroup, "content2", new Date(message.getCreatedAt().getTime() + 1), false);
+        when(cacheService.popMessages(eq(consumerGroup), eq(2), anyLong())).thenReturn(List.of(message));
+        when(cacheRefillService.refill(consumerGroup)).thenReturn(500L);
+        when(cacheService.popMessages(eq(consumerGroup), eq(1), anyLong())).thenReturn(List.of(message2));
+
+        List<Message> result = popMessageService.popBatch(consumerGroup, 2);
+
+        assertEquals(List.of(message, message2), result);
+        verify(messagePersistenceService, times(1)).markInFlight(eq(consumerGroup), eq(List.of("msg1", "msg2")), anyLong());
+        verify(mongoTemplate, never()).find(any(Query.class), eq(Message.class), anyString());
+    }
+
+    @Test
+    void testPopBatch_NoMessagesAvailable() {
+        when(cacheService.popMessages(eq(consumerGroup), eq(5), anyLong())).thenReturn(List.of());
+        when(mongoTemplate.find(any(Query.class), eq(Message.class), eq(consumerGroup))).thenReturn(List.of());
+
+        List<Message> result = popMessageService.popBatch(consumerGroup, 5);
+
+        assertTrue(result.isEmpty());
+        verify(messagePersistenceService, never()).markInFlight(anyString(), anyList(), anyLong());
+        verify(cacheService, never()).claimInFlight(anyString(), anyList(), anyLong());
+        verify(mongoTemplate, never()).updateMulti(any(Query.class), any(Update.class), eq(Message.class), anyString());
+    }
+
+    @Test
+    void testAcknowledge_MarksOnlyInFlightMessagesConsumed() {
+        when(cacheService.acknowledge(consumerGroup, List.of("msg1", "msg2"))).thenReturn(List.of("msg1"));
+
+        List<String> result = popMessageService.acknowledge(consumerGroup, List.of("msg1", "msg2"));
+
+        assertEquals(List.of("msg1"), result);
+        verify(messagePersistenceService, times(1)).markConsumed(consumerGroup, List.of("msg1"));
+        verify(queueStatsService, times(1)).recordAcknowledged(consumerGroup, 1);
+    }
+
+    @Test
+    void testAcknowledge_NothingInFlight() {
+        when(cacheService.acknowledge(consumerGroup, List.of("msg1"))).thenReturn(List.of());
+
+        List<String> result = popMessageService.acknowledge(consumerGroup, List.of("msg1"));
+
+        assertTrue(result.isEmpty());
+        verify(messagePersistenceService, never()).markConsumed(anyString(), anyList());
+    }
 }
@@ -0,0 +1,201 @@
+package com.al.simplequeueservice.service;
+
+import com.al.simplequeueservice.model.Message;
+import com.mongodb.client.ListIndexesIterable;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Checks that the MongoDB queries of the pop fallback, the batch pop and the cache refill have the shape the priority
+ * index created by {@link MongoIndexService} can serve without an in-memory sort: an equality on the leading index
+ * key, and a sort on the keys that follow it, in index order and direction.
+ * <p>
+ * The queries and the index definitions are captured from the services themselves, so a change to either that breaks
+ * the match fails here. The query plan a real MongoDB server picks is not verified.
+ */
+class PopQueryShapeTest {
+
+    private static final String CONSUMER_GROUP = "testGroup";
+
+    private MongoTemplate mongoTemplate;
+    private CacheService cacheService;
+    private CacheRefillService cacheRefillService;
+    private PopMessageService popMessageService;
+    private Map<String, Document> indexKeysByName;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        cacheService = mock(CacheService.class);
+        when(cacheService.tryLockRefill(eq(CONSUMER_GROUP), any(Duration.class))).thenReturn(true);
+
+        cacheRefillService = new CacheRefillService();
+        ReflectionTestUtils.setField(cacheRefillService, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(cacheRefillService, "cacheService", cacheService);
+        ReflectionTestUtils.setField(cacheRefillService, "pageSize", 500);
+        ReflectionTestUtils.setField(cacheRefillService, "cooldownMillis", 0L);
+        ReflectionTestUtils.setField(cacheRefillService, "lockSeconds", 10L);
+        ReflectionTestUtils.setField(cacheRefillService, "redisCacheTtlMinutes", 5L);
+
+        popMessageService = new PopMessageService();
+        ReflectionTestUtils.setField(popMessageService, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(popMessageService, "cacheService", cacheService);
+        ReflectionTestUtils.setField(popMessageService, "cacheRefillService", cacheRefillService);
+        ReflectionTestUtils.setField(popMessageService, "messagePersistenceService", mock(MessagePersistenceService.class));
+        ReflectionTestUtils.setField(popMessageService, "queueStatsService", mock(QueueStatsService.class));
+        ReflectionTestUtils.setField(popMessageService, "messageCompressionService", new MessageCompressionService());
+        ReflectionTestUtils.setField(popMessageService, "visibilityTimeoutSeconds", 30L);
+
+        indexKeysByName = createdIndexes();
+    }
+
+    @Test
+    void popFallback_sortIsServedByPriorityIndex() {
+        popMessageService.pop(CONSUMER_GROUP);
+
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, atLeastOnce()).findAndModify(queryCaptor.capture(), any(Update.class),
+                any(FindAndModifyOptions.class), eq(Message.class), eq(CONSUMER_GROUP));
+        assertServedByPriorityIndex(queryCaptor.getValue());
+    }
+
+    @Test
+    void batchPopCandidateSelection_sortIsServedByPriorityIndex() {
+        when(cacheService.popMessages(eq(CONSUMER_GROUP), anyInt(), anyLong())).thenReturn(List.of());
+
+        popMessageService.popBatch(CONSUMER_GROUP, 10);
+
+        Query candidateQuery = sortedFinds().get(sortedFinds().size() - 1);
+        assertServedByPriorityIndex(candidateQuery);
+        assertEquals(new Document("id", 1), candidateQuery.getFieldsObject());
+    }
+
+    @Test
+    void refillCandidateSelection_sortIsServedByPriorityIndex() {
+        cacheRefillService.refill(CONSUMER_GROUP);
+
+        List<Query> candidateQueries = sortedFinds();
+        assertEquals(1, candidateQueries.size());
+        assertServedByPriorityIndex(candidateQueries.get(0));
+        assertEquals(new Document("id", 1), candidateQueries.get(0).getFieldsObject());
+    }
+
+    @Test
+    void priorityIndex_leadsWithConsumedAndThenFollowsPopSort() {
+        Document priorityIndex = indexKeysByName.get("consumed_1_priority_-1_createdAt_1__id_1");
+
+        assertNotNull(priorityIndex, indexKeysByName.toString());
+        assertEquals(new Document("consumed", 1).append("priority", -1).append("createdAt", 1).append("_id", 1), priorityIndex);
+        assertEquals(new Query().with(PopMessageService.POP_SORT).getSortObject(),
+                new Document("priority", -1).append("createdAt", 1));
+    }
+
+    /**
+     * Asserts the conditions under which MongoDB reads the query's matches from the priority index already in sort
+     * order: every index key before the sort keys has an equality predicate, and the sort keys follow them in index
+     * order with the index directions, or all of them reversed.
+     */
+    private void assertServedByPriorityIndex(Query query) {
+        Document indexKeys = indexKeysByName.get("consumed_1_priority_-1_createdAt_1__id_1");
+        Document filter = query.getQueryObject();
+        Document sort = query.getSortObject();
+        List<String> indexFields = new ArrayList<>(indexKeys.keySet());
+        List<String> sortFields = new ArrayList<>(sort.keySet());
+
+        int equalityPrefix = 0;
+        while (equalityPrefix < indexFields.size() && isEquality(filter.get(indexFields.get(equalityPrefix)))) {
+            equalityPrefix++;
+        }
+        assertTrue(equalityPrefix > 0, "No equality on the leading index key in " + filter.toJson());
+        assertTrue(equalityPrefix + sortFields.size() <= indexFields.size(), "Sort " + sort.toJson() + " is longer than the index");
+        assertEquals(sortFields, indexFields.subList(equalityPrefix, equalityPrefix + sortFields.size()),
+                "Sort " + sort.toJson() + " does not follow the equality prefix of index " + indexKeys.toJson());
+
+        int direction = sort.getInteger(sortFields.get(0)) * indexKeys.getInteger(sortFields.get(0));
+        for (String field : sortFields) {
+            assertEquals(direction, sort.getInteger(field) * indexKeys.getInteger(field),
+                    "Sort " + sort.toJson() + " mixes directions relative to index " + indexKeys.toJson());
+        }
+    }
+
+    private static boolean isEquality(Object predicate) {
+        return predicate != null && !(predicate instanceof Document document && document.keySet().stream().anyMatch(key -> key.startsWith("$")));
+    }
+
+    /**
+     * The queries passed to {@code find} that carry a sort, which are the candidate selections; the reads by claim
+     * token are unsorted.
+     */
+    private List<Query> sortedFinds() {
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, atLeastOnce()).find(queryCaptor.capture(), eq(Message.class), eq(CONSUMER_GROUP));
+        return queryCaptor.getAllValues().stream().filter(query -> !query.getSortObject().isEmpty()).toList();
+    }
+
+    /**
+     * Runs {@link MongoIndexService#ensureIndexes} against a mocked collection and returns the keys of the named
+     * indexes it creates.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Document> createdIndexes() {
+        MongoClient mongoClient = mock(MongoClient.class);
+        MongoDatabase mongoDatabase = mock(MongoDatabase.class);
+        MongoCollection<Document> collection = mock(MongoCollection.class);
+        ListIndexesIterable<Document> listIndexesIterable = mock(ListIndexesIterable.class);
+        when(mongoClient.getDatabase("testDB")).thenReturn(mongoDatabase);
+        when(mongoDatabase.getCollection(anyString())).thenReturn(collection);
+        when(collection.listIndexes()).thenReturn(listIndexesIterable);
+        when(listIndexesIterable.into(any(Collection.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(collection.updateMany(any(Bson.class), any(Bson.class))).thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+        MongoIndexService mongoIndexService = new MongoIndexService();
+        ReflectionTestUtils.setField(mongoIndexService, "mongoClient", mongoClient);
+        ReflectionTestUtils.setField(mongoIndexService, "mongoDB", "testDB");
+        ReflectionTestUtils.setField(mongoIndexService, "expireMinutes", 30L);
+        mongoIndexService.ensureIndexes(CONSUMER_GROUP);
+
+        ArgumentCaptor<Document> keysCaptor = ArgumentCaptor.forClass(Document.class);
+        ArgumentCaptor<IndexOptions> optionsCaptor = ArgumentCaptor.forClass(IndexOptions.class);
+        verify(collection, atLeastOnce()).createIndex(keysCaptor.capture(), optionsCaptor.capture());
+        Map<String, Document> keysByName = new HashMap<>();
+        for (int i = 0; i < keysCaptor.getAllValues().size(); i++) {
+            String name = optionsCaptor.getAllValues().get(i).getName();
+            if (name != null) {
+                keysByName.put(name, keysCaptor.getAllValues().get(i));
+            }
+        }
+        assertEquals(Set.of("consumed_1_createdAt_1__id_1", "consumed_1_priority_-1_createdAt_1__id_1"), keysByName.keySet());
+        return keysByName;
+    }
+}
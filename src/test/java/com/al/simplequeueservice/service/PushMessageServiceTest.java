@@ -1,45 +1,46 @@
 package com.al.simplequeueservice.service;
 
+import com.al.simplequeueservice.exception.QueueOverloadedException;
 import com.al.simplequeueservice.model.Message;
-import com.mongodb.client.ListIndexesIterable;
-import com.mongodb.client.MongoClient;
-import com.mongodb.client.MongoCollection;
-import com.mongodb.client.MongoDatabase;
-import org.bson.Document;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-import org.springframework.data.mongodb.core.MongoTemplate;
+import org.mockito.Spy;
+
 import org.springframework.test.util.ReflectionTestUtils;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
-import java.util.ArrayList;
-import java.util.Collection;
+import java.time.Duration;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 class PushMessageServiceTest {
 
     @Mock
-    private MongoTemplate mongoTemplate;
-
-    @Mock
-    private MongoClient mongoClient;
+    private MessagePersistenceService messagePersistenceService;
 
     @Mock
     private CacheService cacheService;
 
     @Mock
-    private ThreadPoolTaskExecutor taskExecutor;
+    private QueueStatsService queueStatsService;
+
+    @Spy
+    private MessageCompressionService messageCompressionService = new MessageCompressionService();
 
     @InjectMocks
     private PushMessageService pushMessageService;
@@ -47,9 +48,6 @@ class PushMessageServiceTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        ReflectionTestUtils.setField(pushMessageService, "mongoDB", "testDB");
-        ReflectionTestUtils.setField(pushMessageService, "expireMinutes", 60L);
-        ReflectionTestUtils.setField(pushMessageService, "taskExecutor", taskExecutor);
     }
 
     @Test
@@ -58,41 +56,66 @@ class PushMessageServiceTest {
         String content = "testContent";
         Message messageToPush = new Message("testId", consumerGroup, content);
 
-        // Mock MongoClient chain for TTL index creation
-
-        MongoDatabase mockDB = mock(MongoDatabase.class);
-        MongoCollection<Document> mockCollection = mock(MongoCollection.class);
-        ListIndexesIterable<Document> mockIterable = mock(ListIndexesIterable.class);
-
-        when(mongoClient.getDatabase(anyString())).thenReturn(mockDB);
-        when(mockDB.getCollection(anyString())).thenReturn(mockCollection);
-        when(mockCollection.listIndexes()).thenReturn(mockIterable);
-
-        // Create an existing index to satisfy ttlExists check
-        List<Document> indexList = new ArrayList<>();
-        // The index document needs to reflect the actual structure returned by MongoDB,
-        // which includes a confluence 'key' field that is itself a document.
-        Document indexDoc = new Document()
-                .append("name", "createdAt_1") // Example index name
-                .append("key", new Document("createdAt", 1))
-                .append("expireAfterSeconds", 60L * 60L); // Set expireAfterSeconds to match the expected TTL
-        indexList.add(indexDoc);
-        // Use thenAnswer to fill the list passed to into()
-        when(mockIterable.into(any(Collection.class))).thenAnswer(invocation -> {
-            Collection<Document> coll = invocation.getArgument(0);
-            coll.addAll(indexList);
-            return coll;
-        });
-
-        when(mongoTemplate.save(any(Message.class), eq(consumerGroup))).thenReturn(messageToPush);
-        // Mock addMessage call in CacheService (void method)
-        org.mockito.Mockito.doNothing().when(cacheService).addMessage(any(Message.class));
-        // Mock the execute method of the taskExecutor
-        org.mockito.Mockito.doNothing().when(taskExecutor).execute(any(Runnable.class));
-
         Message result = pushMessageService.push(messageToPush);
+
         assertNotNull(result);
         assertEquals(content, result.getContent());
         assertEquals(consumerGroup, result.getConsumerGroup());
+        // The message is admitted to the persistence pipeline before it becomes visible in the cache
+        InOrder inOrder = inOrder(messagePersistenceService, cacheService);
+        inOrder.verify(messagePersistenceService, times(1)).persist(messageToPush);
+        inOrder.verify(cacheService, times(1)).addMessage(messageToPush);
+    }
+
+    @Test
+    void push_delayedMessageKeepsItsVisibleAt() {
+        Message messageToPush = new Message("testId", "testGroup", "testContent").delayedBy(Duration.ofSeconds(60));
+
+        pushMessageService.push(messageToPush);
+
+        // Stored with its delivery time, and handed to the cache, which schedules it instead of queueing it
+        verify(messagePersistenceService, times(1)).persist(argThat(message -> messageToPush.getVisibleAt().equals(message.getVisibleAt())));
+        verify(cacheService, times(1)).addMessage(argThat(message -> messageToPush.getVisibleAt().equals(message.getVisibleAt())));
+    }
+
+    @Test
+    void push_shedWhenPipelineFull() {
+        Message messageToPush = new Message("testId", "testGroup", "testContent");
+        doThrow(new QueueOverloadedException("full")).when(messagePersistenceService).persist(messageToPush);
+
+        assertThrows(QueueOverloadedException.class, () -> pushMessageService.push(messageToPush));
+
+        verify(cacheService, never()).addMessage(any(Message.class));
+    }
+
+    @Test
+    void pushBatch() {
+        String consumerGroup = "testGroup";
+        List<Message> messages = List.of(new Message("id1", consumerGroup, "content1"), new Message("id2", consumerGroup, "content2"));
+
+        List<Message> result = pushMessageService.pushBatch(consumerGroup, messages);
+
+        assertEquals(messages, result);
+        verify(messagePersistenceService, times(1)).persistAll(messages);
+        verify(cacheService, times(1)).addMessages(consumerGroup, messages);
+        verify(cacheService, never()).addMessage(any(Message.class));
+        verify(queueStatsService, times(1)).recordPushed(consumerGroup, messages.size());
+    }
+
+    @Test
+    void push_storesLargeContentCompressed() {
+        ReflectionTestUtils.setField(messageCompressionService, "enabled", true);
+        ReflectionTestUtils.setField(messageCompressionService, "minLength", 1024);
+        String content = "{\"field\":\"value\"}".repeat(500);
+        Message messageToPush = new Message("testId", "testGroup", content);
+
+        Message result = pushMessageService.push(messageToPush);
+
+        assertEquals(content, result.getContent());
+        ArgumentCaptor<Message> storedCaptor = ArgumentCaptor.forClass(Message.class);
+        verify(messagePersistenceService).persist(storedCaptor.capture());
+        verify(cacheService).addMessage(storedCaptor.getValue());
+        assertTrue(storedCaptor.getValue().getContent().startsWith(MessageCompressionService.DEFLATE_TAG));
+        assertTrue(storedCaptor.getValue().getContent().length() < content.length() / 10);
     }
 }
@@ -0,0 +1,153 @@
+package com.al.simplequeueservice.service;
+
+import com.al.simplequeueservice.config.RedisConfig;
+import com.al.simplequeueservice.loadtest.StandIns;
+import com.al.simplequeueservice.model.Message;
+import com.al.simplequeueservice.model.QueueStats;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the statistics flush and reconciliation against a real Redis and an in-memory MongoDB: a flush that failed
+ * after reaching Redis is retried without counting twice, and messages removed by the TTL before their
+ * acknowledgement stop counting as pending once the group is reconciled.
+ */
+class QueueStatsIntegrationTest {
+
+    private static StandIns standIns;
+
+    private LettuceConnectionFactory connectionFactory;
+    private MongoClient mongoClient;
+    private MongoTemplate mongoTemplate;
+    private FailingOnceRedisTemplate redisTemplate;
+    private QueueStatsService queueStatsService;
+    private String consumerGroup;
+
+    @BeforeAll
+    static void startStandIns() throws IOException {
+        standIns = StandIns.start();
+    }
+
+    @AfterAll
+    static void stopStandIns() throws IOException {
+        standIns.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", standIns.redisPort()));
+        connectionFactory.afterPropertiesSet();
+        redisTemplate = new FailingOnceRedisTemplate(new RedisConfig().redisTemplate(connectionFactory));
+        mongoClient = MongoClients.create(standIns.mongoUri());
+        mongoTemplate = new MongoTemplate(mongoClient, "stats-it");
+        consumerGroup = "stats-it-" + UUID.randomUUID();
+
+        queueStatsService = newQueueStatsService();
+    }
+
+    @AfterEach
+    void tearDown() {
+        connectionFactory.destroy();
+        mongoClient.close();
+    }
+
+    @Test
+    void flushFailingAfterReachingRedis_isNotCountedTwice() {
+        queueStatsService.recordPushed(consumerGroup, 5);
+        redisTemplate.failAfterNextPipeline();
+
+        queueStatsService.flush();
+        queueStatsService.recordPushed(consumerGroup, 2);
+        // Retries the first batch, which the script recognises, then flushes the counts recorded since
+        queueStatsService.flush();
+        queueStatsService.flush();
+
+        assertEquals(7, queueStatsService.stats(consumerGroup).pushed());
+        // Another instance sees only what reached Redis
+        assertEquals(7, newQueueStatsService().stats(consumerGroup).pushed());
+    }
+
+    @Test
+    void reconcile_leavesMessagesRemovedByTtlOutOfPending() {
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            messages.add(mongoTemplate.insert(new Message(UUID.randomUUID().toString(), "content", consumerGroup, new Date(), false), consumerGroup));
+        }
+        queueStatsService.recordPushed(consumerGroup, 3);
+        queueStatsService.flush();
+        // The TTL removes one message before it was acknowledged
+        mongoTemplate.remove(messages.get(0), consumerGroup);
+        assertEquals(3, queueStatsService.stats(consumerGroup).pending());
+
+        assertTrue(queueStatsService.reconcile(consumerGroup));
+        // Another instance finds the group reconciled for this interval
+        assertFalse(queueStatsService.reconcile(consumerGroup));
+
+        QueueStats stats = queueStatsService.stats(consumerGroup);
+        assertEquals(3, stats.pushed());
+        assertEquals(2, stats.pending());
+        queueStatsService.recordPushed(consumerGroup, 1);
+        assertEquals(3, queueStatsService.stats(consumerGroup).pending());
+    }
+
+    private QueueStatsService newQueueStatsService() {
+        QueueStatsService service = new QueueStatsService();
+        ReflectionTestUtils.setField(service, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(service, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(service, "reconcileIntervalMillis", 60_000L);
+        return service;
+    }
+
+    /**
+     * Runs pipelines on Redis, but can report one as failed after it was executed, like a connection lost before
+     * the replies arrived.
+     */
+    private static class FailingOnceRedisTemplate extends RedisTemplate<String, Object> {
+
+        private final AtomicBoolean failNext = new AtomicBoolean();
+
+        FailingOnceRedisTemplate(RedisTemplate<String, Object> configured) {
+            setConnectionFactory(configured.getConnectionFactory());
+            setKeySerializer(configured.getKeySerializer());
+            setValueSerializer(configured.getValueSerializer());
+            setHashKeySerializer(configured.getHashKeySerializer());
+            setHashValueSerializer(configured.getHashValueSerializer());
+            afterPropertiesSet();
+        }
+
+        void failAfterNextPipeline() {
+            failNext.set(true);
+        }
+
+        @Override
+        public List<Object> executePipelined(RedisCallback<?> action) {
+            List<Object> results = super.executePipelined(action);
+            if (failNext.getAndSet(false)) {
+                throw new IllegalStateException("Connection lost before the replies arrived");
+            }
+            return results;
+        }
+    }
+}
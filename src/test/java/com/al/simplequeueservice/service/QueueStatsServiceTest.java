@@ -0,0 +1,220 @@
+package com.al.simplequeueservice.service;
+
+import com.al.simplequeueservice.model.Message;
+import com.al.simplequeueservice.model.QueueStats;
+import com.al.simplequeueservice.util.SQSConstants;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisHashCommands;
+import org.springframework.data.redis.connection.RedisScriptingCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class QueueStatsServiceTest {
+
+    private static final String CONSUMER_GROUP = "testGroup";
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private RedisConnection connection;
+
+    @Mock
+    private RedisHashCommands hashCommands;
+
+    @Mock
+    private ValueOperations<String, Object> valueOperations;
+
+    @InjectMocks
+    private QueueStatsService queueStatsService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(connection.hashCommands()).thenReturn(hashCommands);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Runs the flush pipeline sent by the given call to {@code executePipelined}, which holds the batch of one
+     * consumer group, and returns the keys and arguments of its flush script call as strings.
+     */
+    @SuppressWarnings("unchecked")
+    private List<String> flushedBatch(int pipelineCall) {
+        ArgumentCaptor<RedisCallback<Object>> callbackCaptor = ArgumentCaptor.forClass(RedisCallback.class);
+        verify(redisTemplate, atLeast(pipelineCall + 1)).executePipelined(callbackCaptor.capture());
+        RedisScriptingCommands scriptingCommands = mock(RedisScriptingCommands.class);
+        when(connection.scriptingCommands()).thenReturn(scriptingCommands);
+        callbackCaptor.getAllValues().get(pipelineCall).doInRedis(connection);
+
+        ArgumentCaptor<byte[][]> keysAndArgsCaptor = ArgumentCaptor.forClass(byte[][].class);
+        verify(scriptingCommands).eval(any(byte[].class), eq(ReturnType.INTEGER), eq(3), keysAndArgsCaptor.capture());
+        return Arrays.stream(keysAndArgsCaptor.getValue()).map(arg -> new String(arg, StandardCharsets.UTF_8)).toList();
+    }
+
+    @Test
+    void flush_addsRecordedCountsAsOneNumberedBatch() {
+        queueStatsService.recordPushed(CONSUMER_GROUP, 3);
+        queueStatsService.recordPushed(CONSUMER_GROUP, 2);
+        queueStatsService.recordPopped(CONSUMER_GROUP, 4, 1);
+
+        queueStatsService.flush();
+
+        List<String> batch = flushedBatch(0);
+        assertEquals(SQSConstants.STATS_PREFIX + CONSUMER_GROUP, batch.get(0));
+        assertTrue(batch.get(1).startsWith(SQSConstants.STATS_PREFIX + CONSUMER_GROUP + ":"));
+        assertTrue(batch.get(2).startsWith(SQSConstants.STATS_PREFIX + CONSUMER_GROUP + ":batch:"));
+        assertEquals("1", batch.get(3));
+        // Zero counts are left out
+        assertEquals(List.of("pushed", "5", "popped", "5", "cacheHits", "4", "cacheMisses", "1"), batch.subList(6, batch.size()));
+
+        // Nothing new to flush
+        queueStatsService.flush();
+        verify(redisTemplate, times(1)).executePipelined(any(RedisCallback.class));
+    }
+
+    @Test
+    void flush_failed_retriesTheSameBatchBeforeNewCounts() {
+        queueStatsService.recordAcknowledged(CONSUMER_GROUP, 7);
+        when(redisTemplate.executePipelined(any(RedisCallback.class)))
+                .thenThrow(new RuntimeException("Redis down"))
+                .thenReturn(List.of());
+
+        queueStatsService.flush();
+        queueStatsService.recordAcknowledged(CONSUMER_GROUP, 2);
+        queueStatsService.flush();
+        queueStatsService.flush();
+
+        // The failed flush may have reached Redis, so it is sent again with its number for the script to recognise it
+        List<String> failed = flushedBatch(0);
+        List<String> retried = flushedBatch(1);
+        assertEquals(failed, retried);
+        assertEquals(List.of("1", "acknowledged", "7"), List.of(retried.get(3), retried.get(6), retried.get(7)));
+        List<String> next = flushedBatch(2);
+        assertEquals(List.of("2", "acknowledged", "2"), List.of(next.get(3), next.get(6), next.get(7)));
+    }
+
+    @Test
+    void reconcile_storesPushedMessagesNoLongerPendingInMongo() {
+        ReflectionTestUtils.setField(queueStatsService, "reconcileIntervalMillis", 300_000L);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(SQSConstants.STATS_PREFIX + CONSUMER_GROUP + ":reconcile", true, Duration.ofMinutes(5))).thenReturn(true);
+        when(redisTemplate.executePipelined(any(RedisCallback.class), any(RedisSerializer.class)))
+                .thenReturn(List.of(Map.of("pushed", "20", "acknowledged", "5")));
+        // 10 messages are still unconsumed, so 5 left MongoDB without an acknowledgement
+        when(mongoTemplate.count(any(Query.class), eq(CONSUMER_GROUP))).thenReturn(10L);
+
+        assertTrue(queueStatsService.reconcile(CONSUMER_GROUP));
+
+        ArgumentCaptor<RedisCallback<Object>> callbackCaptor = ArgumentCaptor.forClass(RedisCallback.class);
+        verify(redisTemplate).execute(callbackCaptor.capture());
+        callbackCaptor.getValue().doInRedis(connection);
+        verify(hashCommands).hSet(bytes(SQSConstants.STATS_PREFIX + CONSUMER_GROUP), bytes(QueueStatsService.DRIFT_FIELD), bytes("5"));
+    }
+
+    @Test
+    void reconcile_skippedWhileAnotherInstanceReconciles() {
+        ReflectionTestUtils.setField(queueStatsService, "reconcileIntervalMillis", 300_000L);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(anyString(), any(), any(Duration.class))).thenReturn(false);
+
+        assertFalse(queueStatsService.reconcile(CONSUMER_GROUP));
+
+        verify(mongoTemplate, never()).count(any(Query.class), anyString());
+    }
+
+    @Test
+    void stats_leavesOutReconciledDrift() {
+        when(redisTemplate.executePipelined(any(RedisCallback.class), any(RedisSerializer.class))).thenReturn(pipelineResults(
+                Map.of("pushed", "20", "acknowledged", "5", QueueStatsService.DRIFT_FIELD, "4"), Map.of(), 3L, 2L));
+
+        QueueStats stats = queueStatsService.stats(CONSUMER_GROUP);
+
+        assertEquals(8, stats.pending());
+    }
+
+    @Test
+    void stats_combinesCountersDepthAndOldestMessage() {
+        // Cached messages are counted across the lists of all priorities
+        when(redisTemplate.executePipelined(any(RedisCallback.class), any(RedisSerializer.class))).thenReturn(pipelineResults(
+                Map.of("pushed", "20", "popped", "8", "acknowledged", "5", "cacheHits", "6", "cacheMisses", "2"),
+                Map.of("pushed", "120", "popped", "60", "acknowledged", "30"),
+                3L,
+                4L, 0L, 6L));
+        Message oldest = new Message("id1", "content", CONSUMER_GROUP, new Date(System.currentTimeMillis() - 42_000), false);
+        when(mongoTemplate.findOne(any(Query.class), eq(Message.class), eq(CONSUMER_GROUP))).thenReturn(oldest);
+
+        QueueStats stats = queueStatsService.stats(CONSUMER_GROUP);
+
+        assertEquals(12, stats.pending());
+        assertEquals(10, stats.cached());
+        assertEquals(3, stats.inFlight());
+        assertEquals(5, stats.consumed());
+        assertEquals(20, stats.pushed());
+        assertEquals(8, stats.popped());
+        assertTrue(stats.oldestMessageAgeSeconds() >= 42 && stats.oldestMessageAgeSeconds() <= 43);
+        assertEquals(2.0, stats.pushRatePerSecond());
+        assertEquals(1.0, stats.popRatePerSecond());
+        assertEquals(0.5, stats.ackRatePerSecond());
+        assertEquals(0.75, stats.cacheHitRatio());
+    }
+
+    @Test
+    void stats_includesUnflushedCountsAndNeverReportsLessThanCached() {
+        queueStatsService.recordPushed(CONSUMER_GROUP, 4);
+        when(redisTemplate.executePipelined(any(RedisCallback.class), any(RedisSerializer.class))).thenReturn(pipelineResults(Map.of(), Map.of(), 0L, 6L));
+
+        QueueStats stats = queueStatsService.stats(CONSUMER_GROUP);
+
+        assertEquals(4, stats.pushed());
+        assertEquals(6, stats.pending());
+        assertEquals(0, stats.oldestMessageAgeSeconds());
+        assertEquals(0.0, stats.cacheHitRatio());
+    }
+
+    /**
+     * Replies of the stats pipeline: totals, last minute, in-flight count and one length per priority list.
+     */
+    private static List<Object> pipelineResults(Map<String, String> totals, Map<String, String> lastMinute, long inFlight, long... listLengths) {
+        List<Object> results = new ArrayList<>(List.of(totals, lastMinute, inFlight));
+        for (int priority = SQSConstants.MAX_PRIORITY; priority >= 0; priority--) {
+            int index = SQSConstants.MAX_PRIORITY - priority;
+            results.add(index < listLengths.length ? listLengths[index] : 0L);
+        }
+        return results;
+    }
+}
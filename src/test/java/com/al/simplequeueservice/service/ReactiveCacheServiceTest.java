@@ -0,0 +1,164 @@
+package com.al.simplequeueservice.service;
+
+import com.al.simplequeueservice.model.Message;
+import com.al.simplequeueservice.util.SQSConstants;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.redis.core.ReactiveListOperations;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisElementReader;
+import org.springframework.data.redis.serializer.RedisElementWriter;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReactiveCacheServiceTest {
+
+    private static final String CONSUMER_GROUP = "testGroup";
+
+    @Mock
+    private ReactiveRedisTemplate<String, Object> reactiveRedisTemplate;
+
+    @Mock
+    private ReactiveListOperations<String, Object> listOperations;
+
+    private ReactiveCacheService reactiveCacheService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(reactiveRedisTemplate.opsForList()).thenReturn(listOperations);
+        when(reactiveRedisTemplate.getSerializationContext()).thenReturn(RedisSerializationContext.<String, Object>newSerializationContext(new StringRedisSerializer()).value(new GenericJackson2JsonRedisSerializer()).build());
+        reactiveCacheService = new ReactiveCacheService(reactiveRedisTemplate);
+        ReflectionTestUtils.setField(reactiveCacheService, "redisCacheTtlMinutes", 5L);
+        ReflectionTestUtils.setField(reactiveCacheService, "claimRetentionMinutes", 30L);
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void addMessage_pushesWithOneScriptCall() {
+        Message message = new Message("id1", CONSUMER_GROUP, "content");
+        ArgumentCaptor<List> argsCaptor = ArgumentCaptor.forClass(List.class);
+        when(reactiveRedisTemplate.execute(eq(CacheService.PUSH_SCRIPT), eq(List.of(SQSConstants.CACHE_PREFIX + CONSUMER_GROUP,
+                        SQSConstants.ENQUEUED_PREFIX + CONSUMER_GROUP)), argsCaptor.capture(),
+                any(RedisElementWriter.class), any(RedisElementReader.class)))
+                .thenReturn((Flux) Flux.just(1L));
+
+        StepVerifier.create(reactiveCacheService.addMessage(message)).verifyComplete();
+
+        List<byte[]> args = argsCaptor.getValue();
+        assertEquals("300", new String(args.get(0), StandardCharsets.UTF_8));
+        assertEquals(SQSConstants.NOTIFICATION_CHANNEL, new String(args.get(2), StandardCharsets.UTF_8));
+        assertEquals("id1", new String(args.get(5), StandardCharsets.UTF_8));
+        assertEquals(7, args.size());
+        verify(listOperations, never()).leftPush(anyString(), any());
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void addMessage_pushesToTheListOfItsPriority() {
+        Message message = new Message("id1", CONSUMER_GROUP, "content", 4);
+        when(reactiveRedisTemplate.execute(eq(CacheService.PUSH_SCRIPT), eq(List.of(SQSConstants.PRIORITY_CACHE_PREFIX + "4:" + CONSUMER_GROUP,
+                        SQSConstants.ENQUEUED_PREFIX + CONSUMER_GROUP)), anyList(),
+                any(RedisElementWriter.class), any(RedisElementReader.class)))
+                .thenReturn((Flux) Flux.just(1L));
+
+        StepVerifier.create(reactiveCacheService.addMessage(message)).verifyComplete();
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void addMessage_schedulesDelayedMessage() {
+        Message message = new Message("id1", CONSUMER_GROUP, "content").delayedBy(Duration.ofSeconds(10));
+        when(reactiveRedisTemplate.execute(eq(CacheService.SCHEDULE_SCRIPT), eq(List.of(SQSConstants.SCHEDULED_PREFIX + CONSUMER_GROUP,
+                SQSConstants.SCHEDULED_MESSAGES_PREFIX + CONSUMER_GROUP, SQSConstants.SCHEDULED_GROUPS_KEY)),
+                eq(List.of(CONSUMER_GROUP, message.getVisibleAt().getTime(), message))))
+                .thenReturn((Flux) Flux.just(1L));
+
+        StepVerifier.create(reactiveCacheService.addMessage(message)).verifyComplete();
+
+        verify(reactiveRedisTemplate, never()).execute(eq(CacheService.PUSH_SCRIPT), anyList(), anyList(), any(RedisElementWriter.class), any(RedisElementReader.class));
+    }
+
+    @Test
+    void viewMessages_mergesPriorityListsOldestFirst() {
+        Message oldest = new Message("id1", "content1", CONSUMER_GROUP, new Date(1000L), false);
+        Message urgent = new Message("id2", "content2", CONSUMER_GROUP, new Date(2000L), false, 9);
+        Message newest = new Message("id3", "content3", CONSUMER_GROUP, new Date(3000L), false);
+        when(listOperations.range(anyString(), eq(-2L), eq(-1L))).thenReturn(Flux.empty());
+        when(listOperations.range(SQSConstants.PRIORITY_CACHE_PREFIX + "9:" + CONSUMER_GROUP, -2L, -1L)).thenReturn(Flux.just(urgent));
+        when(listOperations.range(SQSConstants.CACHE_PREFIX + CONSUMER_GROUP, -2L, -1L)).thenReturn(Flux.just(newest, oldest));
+
+        StepVerifier.create(reactiveCacheService.viewMessages(CONSUMER_GROUP, 2))
+                .expectNext(List.of(oldest, urgent))
+                .verifyComplete();
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void popMessage_readsMessageFromListReply() {
+        Message message = new Message("id1", CONSUMER_GROUP, "content");
+        when(reactiveRedisTemplate.execute(eq(CacheService.POP_IN_FLIGHT_SCRIPT), anyList(), anyList()))
+                .thenReturn((Flux) Flux.just(List.of(message)));
+
+        StepVerifier.create(reactiveCacheService.popMessage(CONSUMER_GROUP, 1000L))
+                .expectNext(message)
+                .verifyComplete();
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void popMessage_emptyReply_completesEmpty() {
+        when(reactiveRedisTemplate.execute(eq(CacheService.POP_IN_FLIGHT_SCRIPT), anyList(), anyList()))
+                .thenReturn((Flux) Flux.just(List.of()));
+
+        StepVerifier.create(reactiveCacheService.popMessage(CONSUMER_GROUP, 1000L))
+                .verifyComplete();
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void claimInFlight_returnsOnlyClaimedMessages() {
+        Message claimed = new Message("id1", CONSUMER_GROUP, "content1");
+        Message taken = new Message("id2", CONSUMER_GROUP, "content2");
+        // Replies may also arrive value by value
+        when(reactiveRedisTemplate.execute(eq(CacheService.CLAIM_FROM_DB_SCRIPT), anyList(), anyList(), any(RedisElementWriter.class), any(RedisElementReader.class)))
+                .thenReturn((Flux) Flux.just("id1"));
+
+        StepVerifier.create(reactiveCacheService.claimInFlight(CONSUMER_GROUP, List.of(claimed, taken), 1000L))
+                .expectNext(List.of(claimed))
+                .verifyComplete();
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void acknowledge_returnsIdsStillInFlight() {
+        when(reactiveRedisTemplate.execute(eq(CacheService.ACK_IN_FLIGHT_SCRIPT), anyList(), anyList(), any(RedisElementWriter.class), any(RedisElementReader.class)))
+                .thenReturn((Flux) Flux.just(List.of("id1")));
+
+        StepVerifier.create(reactiveCacheService.acknowledge(CONSUMER_GROUP, List.of("id1", "id2")))
+                .expectNext(List.of("id1"))
+                .verifyComplete();
+    }
+}
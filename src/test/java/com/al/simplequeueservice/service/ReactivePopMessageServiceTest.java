@@ -0,0 +1,163 @@
+package com.al.simplequeueservice.service;
+
+import com.al.simplequeueservice.model.Message;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReactivePopMessageServiceTest {
+
+    private static final String CONSUMER_GROUP = "testGroup";
+
+    @Mock
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Mock
+    private ReactiveCacheService reactiveCacheService;
+
+    @Mock
+    private MessagePersistenceService messagePersistenceService;
+
+    @Mock
+    private CacheRefillService cacheRefillService;
+
+    @Mock
+    private QueueStatsService queueStatsService;
+
+    @Spy
+    private MessageCompressionService messageCompressionService = new MessageCompressionService();
+
+    @InjectMocks
+    private ReactivePopMessageService reactivePopMessageService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(reactivePopMessageService, "visibilityTimeoutSeconds", 30L);
+    }
+
+    @Test
+    void pop_fromCache_hidesMessageInDb() {
+        Message cachedMessage = new Message("cachedId", CONSUMER_GROUP, "cachedContent");
+        when(reactiveCacheService.popMessage(eq(CONSUMER_GROUP), anyLong())).thenReturn(Mono.just(cachedMessage));
+
+        StepVerifier.create(reactivePopMessageService.pop(CONSUMER_GROUP))
+                .expectNext(cachedMessage)
+                .verifyComplete();
+
+        verify(messagePersistenceService).markInFlight(eq(CONSUMER_GROUP), eq(List.of("cachedId")), anyLong());
+        verify(cacheRefillService, never()).refill(anyString());
+        verify(reactiveMongoTemplate, never()).findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Message.class), anyString());
+    }
+
+    @Test
+    void pop_coldCache_refillsAndPopsAgain() {
+        Message refilledMessage = new Message("refilledId", CONSUMER_GROUP, "refilledContent");
+        when(reactiveCacheService.popMessage(eq(CONSUMER_GROUP), anyLong())).thenReturn(Mono.empty()).thenReturn(Mono.just(refilledMessage));
+        when(cacheRefillService.refill(CONSUMER_GROUP)).thenReturn(5L);
+
+        StepVerifier.create(reactivePopMessageService.pop(CONSUMER_GROUP))
+                .expectNext(refilledMessage)
+                .verifyComplete();
+
+        verify(reactiveCacheService, times(2)).popMessage(eq(CONSUMER_GROUP), anyLong());
+    }
+
+    @Test
+    void pop_cacheEmpty_claimsInDb() {
+        Message dbMessage = new Message("dbId", CONSUMER_GROUP, "dbContent");
+        when(reactiveCacheService.popMessage(eq(CONSUMER_GROUP), anyLong())).thenReturn(Mono.empty());
+        when(cacheRefillService.refill(CONSUMER_GROUP)).thenReturn(0L);
+        when(reactiveMongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Message.class), eq(CONSUMER_GROUP)))
+                .thenReturn(Mono.just(dbMessage));
+        when(reactiveCacheService.claimInFlight(eq(CONSUMER_GROUP), eq(List.of(dbMessage)), anyLong())).thenReturn(Mono.just(List.of(dbMessage)));
+
+        StepVerifier.create(reactivePopMessageService.pop(CONSUMER_GROUP))
+                .expectNext(dbMessage)
+                .verifyComplete();
+
+        verify(messagePersistenceService, never()).markInFlight(anyString(), anyList(), anyLong());
+    }
+
+    @Test
+    void pop_dbMessageAlreadyClaimed_retriesThenGivesUp() {
+        Message dbMessage = new Message("dbId", CONSUMER_GROUP, "dbContent");
+        when(reactiveCacheService.popMessage(eq(CONSUMER_GROUP), anyLong())).thenReturn(Mono.empty());
+        when(cacheRefillService.refill(CONSUMER_GROUP)).thenReturn(0L);
+        when(reactiveMongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Message.class), eq(CONSUMER_GROUP)))
+                .thenReturn(Mono.just(dbMessage));
+        when(reactiveCacheService.claimInFlight(eq(CONSUMER_GROUP), anyList(), anyLong())).thenReturn(Mono.just(List.of()));
+        when(reactiveMongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Message.class), eq(CONSUMER_GROUP)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+
+        StepVerifier.create(reactivePopMessageService.pop(CONSUMER_GROUP))
+                .verifyComplete();
+
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        verify(reactiveMongoTemplate, times(3)).findAndModify(queryCaptor.capture(), any(Update.class), any(FindAndModifyOptions.class), eq(Message.class), eq(CONSUMER_GROUP));
+        // Each lost claim is released in the database and skipped by the next attempt
+        assertEquals(new Document("$nin", List.of("dbId", "dbId")), queryCaptor.getAllValues().get(2).getQueryObject().get("id"));
+        ArgumentCaptor<Update> releaseCaptor = ArgumentCaptor.forClass(Update.class);
+        verify(reactiveMongoTemplate, times(3)).updateFirst(any(Query.class), releaseCaptor.capture(), eq(Message.class), eq(CONSUMER_GROUP));
+        assertEquals(new Document("visibleAt", 1).append("claimId", 1), releaseCaptor.getValue().getUpdateObject().get("$unset"));
+    }
+
+    @Test
+    void pop_emptyQueue_completesEmpty() {
+        when(reactiveCacheService.popMessage(eq(CONSUMER_GROUP), anyLong())).thenReturn(Mono.empty());
+        when(cacheRefillService.refill(CONSUMER_GROUP)).thenReturn(0L);
+        when(reactiveMongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Message.class), eq(CONSUMER_GROUP)))
+                .thenReturn(Mono.empty());
+
+        StepVerifier.create(reactivePopMessageService.pop(CONSUMER_GROUP))
+                .verifyComplete();
+    }
+
+    @Test
+    void acknowledge_marksAcknowledgedMessagesConsumed() {
+        when(reactiveCacheService.acknowledge(CONSUMER_GROUP, List.of("id1", "id2"))).thenReturn(Mono.just(List.of("id1")));
+
+        StepVerifier.create(reactivePopMessageService.acknowledge(CONSUMER_GROUP, List.of("id1", "id2")))
+                .expectNext(List.of("id1"))
+                .verifyComplete();
+
+        verify(messagePersistenceService).markConsumed(CONSUMER_GROUP, List.of("id1"));
+    }
+
+    @Test
+    void acknowledge_nothingInFlight_skipsDb() {
+        when(reactiveCacheService.acknowledge(CONSUMER_GROUP, List.of("id1"))).thenReturn(Mono.just(List.of()));
+
+        StepVerifier.create(reactivePopMessageService.acknowledge(CONSUMER_GROUP, List.of("id1")))
+                .expectNext(List.of())
+                .verifyComplete();
+
+        verify(messagePersistenceService, never()).markConsumed(anyString(), anyList());
+    }
+}
@@ -0,0 +1,69 @@
+package com.al.simplequeueservice.service;
+
+import com.al.simplequeueservice.exception.QueueOverloadedException;
+import com.al.simplequeueservice.model.Message;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReactivePushMessageServiceTest {
+
+    @Mock
+    private MessagePersistenceService messagePersistenceService;
+
+    @Mock
+    private ReactiveCacheService reactiveCacheService;
+
+    @Mock
+    private QueueStatsService queueStatsService;
+
+    @Spy
+    private MessageCompressionService messageCompressionService = new MessageCompressionService();
+
+    @InjectMocks
+    private ReactivePushMessageService reactivePushMessageService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    void push_persistsThenCaches() {
+        Message message = new Message("testId", "testGroup", "testContent");
+        when(reactiveCacheService.addMessage(message)).thenReturn(Mono.empty());
+
+        StepVerifier.create(reactivePushMessageService.push(message))
+                .expectNext(message)
+                .verifyComplete();
+
+        InOrder inOrder = inOrder(messagePersistenceService, reactiveCacheService);
+        inOrder.verify(messagePersistenceService).persist(message);
+        inOrder.verify(reactiveCacheService).addMessage(message);
+    }
+
+    @Test
+    void push_rejectedByFullPipeline_notCached() {
+        Message message = new Message("testId", "testGroup", "testContent");
+        doThrow(new QueueOverloadedException("full")).when(messagePersistenceService).persist(any(Message.class));
+
+        StepVerifier.create(reactivePushMessageService.push(message))
+                .expectError(QueueOverloadedException.class)
+                .verify();
+
+        verify(reactiveCacheService, never()).addMessage(any(Message.class));
+    }
+}
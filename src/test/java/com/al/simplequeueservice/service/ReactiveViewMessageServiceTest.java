@@ -0,0 +1,111 @@
+package com.al.simplequeueservice.service;
+
+import com.al.simplequeueservice.model.Message;
+import com.al.simplequeueservice.model.PageCursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReactiveViewMessageServiceTest {
+
+    private static final String CONSUMER_GROUP = "testGroup";
+
+    @Mock
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Mock
+    private ReactiveCacheService reactiveCacheService;
+
+    @Spy
+    private MessageCompressionService messageCompressionService = new MessageCompressionService();
+
+    @InjectMocks
+    private ReactiveViewMessageService reactiveViewMessageService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    private Message message(String id, long createdAt) {
+        return new Message(id, "content-" + id, CONSUMER_GROUP, new Date(createdAt), false);
+    }
+
+    @Test
+    void view_unconsumed_mergesCacheAndDbWithoutDuplicates() {
+        Message cached = message("cached", 2000);
+        Message stored = message("stored", 1000);
+        when(reactiveCacheService.viewMessages(CONSUMER_GROUP, 6)).thenReturn(Mono.just(List.of(cached)));
+        when(reactiveMongoTemplate.find(any(Query.class), eq(Message.class), eq(CONSUMER_GROUP))).thenReturn(Flux.just(stored, cached));
+
+        StepVerifier.create(reactiveViewMessageService.view(CONSUMER_GROUP, 5, "no", null))
+                .assertNext(page -> {
+                    assertEquals(List.of(stored, cached), page.messages());
+                    assertNull(page.nextPageToken());
+                })
+                .verifyComplete();
+
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        verify(reactiveMongoTemplate).find(queryCaptor.capture(), eq(Message.class), eq(CONSUMER_GROUP));
+        assertEquals(6, queryCaptor.getValue().getLimit());
+    }
+
+    @Test
+    void view_unconsumed_fullPage_returnsNextPageToken() {
+        when(reactiveCacheService.viewMessages(CONSUMER_GROUP, 3)).thenReturn(Mono.just(List.of(message("a", 1000), message("b", 2000), message("c", 3000))));
+        when(reactiveMongoTemplate.find(any(Query.class), eq(Message.class), eq(CONSUMER_GROUP))).thenReturn(Flux.empty());
+
+        StepVerifier.create(reactiveViewMessageService.view(CONSUMER_GROUP, 2, "no", null))
+                .assertNext(page -> {
+                    assertEquals(List.of("a", "b"), page.messages().stream().map(Message::getId).toList());
+                    assertEquals(new PageCursor(new Date(2000), "b"), PageCursor.decode(page.nextPageToken()));
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void view_unconsumed_laterPage_readsOnlyDb() {
+        Message stored = message("stored", 3000);
+        when(reactiveMongoTemplate.find(any(Query.class), eq(Message.class), eq(CONSUMER_GROUP))).thenReturn(Flux.just(stored));
+
+        StepVerifier.create(reactiveViewMessageService.view(CONSUMER_GROUP, 2, "no", new PageCursor(new Date(2000), "b").encode()))
+                .assertNext(page -> assertEquals(List.of(stored), page.messages()))
+                .verifyComplete();
+
+        verify(reactiveCacheService, never()).viewMessages(anyString(), anyInt());
+    }
+
+    @Test
+    void view_consumed_readsOnlyDb() {
+        Message consumed = message("consumed", 1000);
+        when(reactiveMongoTemplate.find(any(Query.class), eq(Message.class), eq(CONSUMER_GROUP))).thenReturn(Flux.just(consumed));
+
+        StepVerifier.create(reactiveViewMessageService.view(CONSUMER_GROUP, 3, "yes", null))
+                .assertNext(page -> assertEquals(List.of(consumed), page.messages()))
+                .verifyComplete();
+
+        verify(reactiveCacheService, never()).viewMessages(anyString(), anyInt());
+    }
+}
@@ -1,12 +1,17 @@
-
 package com.al.simplequeueservice.service;
 
 import com.al.simplequeueservice.model.Message;
+import com.al.simplequeueservice.model.MessagePage;
+import com.al.simplequeueservice.model.PageCursor;
+import com.al.simplequeueservice.util.SQSConstants;
+import org.bson.Document;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Query;
@@ -19,8 +24,11 @@ import java.util.Date;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
@@ -34,6 +42,9 @@ public class ViewMessageServiceTest {
     @Mock
     private CacheService cacheService;
 
+    @Spy
+    private MessageCompressionService messageCompressionService = new MessageCompressionService();
+
     @InjectMocks
     private ViewMessageService viewMessageService;
 
@@ -55,15 +66,13 @@ public class ViewMessageServiceTest {
     @Test
     void testView_noConsumedFilter() {
         // When consumed is null, only mongoTemplate is queried, not cacheService.
-        // So, we expect only messages from mongoTemplate.
-        // The original test expected 3, because it assumed cache would also be checked, which is not the case for null 'consumed'.
         when(mongoTemplate.find(any(Query.class), eq(Message.class), anyString())).thenReturn(Arrays.asList(message2, message3));
 
-        List<Message> result = viewMessageService.view(consumerGroup, messageCount, null);
+        MessagePage result = viewMessageService.view(consumerGroup, messageCount, null, null);
 
-        assertEquals(2, result.size()); // Corrected expected size
-        assertTrue(result.containsAll(Arrays.asList(message2, message3)));
-        verify(cacheService, never()).viewMessages(consumerGroup); // cacheService should not be called
+        assertEquals(List.of(message2, message3), result.messages());
+        assertNull(result.nextPageToken());
+        verify(cacheService, never()).viewMessages(anyString(), anyInt());
         verify(mongoTemplate, times(1)).find(any(Query.class), eq(Message.class), anyString());
     }
 
@@ -71,50 +80,87 @@ public class ViewMessageServiceTest {
     void testView_consumedYesFilter() {
         when(mongoTemplate.find(any(Query.class), eq(Message.class), anyString())).thenReturn(Arrays.asList(message2));
 
-        List<Message> result = viewMessageService.view(consumerGroup, messageCount, "yes");
+        MessagePage result = viewMessageService.view(consumerGroup, messageCount, "yes", null);
 
-        assertEquals(1, result.size());
-        assertTrue(result.contains(message2));
-        verify(cacheService, never()).viewMessages(consumerGroup);
+        assertEquals(1, result.messages().size());
+        assertTrue(result.messages().contains(message2));
+        verify(cacheService, never()).viewMessages(anyString(), anyInt());
         verify(mongoTemplate, times(1)).find(any(Query.class), eq(Message.class), anyString());
     }
 
     @Test
     void testView_consumedNoFilter_cacheAndDb() {
-        when(cacheService.viewMessages(consumerGroup)).thenReturn(Arrays.asList(message1));
-        when(mongoTemplate.find(any(Query.class), eq(Message.class), anyString())).thenReturn(Arrays.asList(message3));
+        when(cacheService.viewMessages(consumerGroup, messageCount + 1)).thenReturn(Arrays.asList(message1));
+        when(mongoTemplate.find(any(Query.class), eq(Message.class), anyString())).thenReturn(Arrays.asList(message1, message3));
 
-        List<Message> result = viewMessageService.view(consumerGroup, messageCount, "no");
+        MessagePage result = viewMessageService.view(consumerGroup, messageCount, "no", null);
 
-        assertEquals(2, result.size());
-        assertTrue(result.containsAll(Arrays.asList(message1, message3)));
-        verify(cacheService, times(1)).viewMessages(consumerGroup);
+        assertEquals(List.of(message1, message3), result.messages());
+        verify(cacheService, times(1)).viewMessages(consumerGroup, messageCount + 1);
         verify(mongoTemplate, times(1)).find(any(Query.class), eq(Message.class), anyString());
     }
 
     @Test
-    void testView_consumedNoFilter_onlyCache() {
+    void testView_consumedNoFilter_fullPageFromCache() {
         messageCount = 1;
-        when(cacheService.viewMessages(consumerGroup)).thenReturn(Arrays.asList(message1, message3));
+        when(cacheService.viewMessages(consumerGroup, 2)).thenReturn(Arrays.asList(message1, message3));
+        when(mongoTemplate.find(any(Query.class), eq(Message.class), anyString())).thenReturn(new ArrayList<>());
 
-        List<Message> result = viewMessageService.view(consumerGroup, messageCount, "no");
+        MessagePage result = viewMessageService.view(consumerGroup, messageCount, "no", null);
 
-        assertEquals(1, result.size());
-        assertTrue(result.contains(message1));
-        verify(cacheService, times(1)).viewMessages(consumerGroup);
-        verify(mongoTemplate, never()).find(any(Query.class), eq(Message.class), anyString());
+        assertEquals(List.of(message1), result.messages());
+        assertEquals(PageCursor.of(message1), PageCursor.decode(result.nextPageToken()));
     }
 
     @Test
     void testView_emptyResult() {
-        // When consumed is null, cacheService.viewMessages is not called.
-        // Only mongoTemplate is queried, and if it returns empty, then the result is empty.
         when(mongoTemplate.find(any(Query.class), eq(Message.class), anyString())).thenReturn(new ArrayList<>());
 
-        List<Message> result = viewMessageService.view(consumerGroup, messageCount, null);
+        MessagePage result = viewMessageService.view(consumerGroup, messageCount, null, null);
 
-        assertTrue(result.isEmpty());
-        verify(cacheService, never()).viewMessages(consumerGroup); // cacheService should not be called
+        assertTrue(result.messages().isEmpty());
+        assertNull(result.nextPageToken());
+        verify(cacheService, never()).viewMessages(anyString(), anyInt());
         verify(mongoTemplate, times(1)).find(any(Query.class), eq(Message.class), anyString());
     }
+
+    @Test
+    void testView_pageToken_resumesAfterCursor() {
+        when(mongoTemplate.find(any(Query.class), eq(Message.class), anyString())).thenReturn(Arrays.asList(message3));
+
+        MessagePage result = viewMessageService.view(consumerGroup, messageCount, "no", PageCursor.of(message1).encode());
+
+        assertEquals(List.of(message3), result.messages());
+        // The oldest cached messages were merged into the first page
+        verify(cacheService, never()).viewMessages(anyString(), anyInt());
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(queryCaptor.capture(), eq(Message.class), eq(consumerGroup));
+        Query query = queryCaptor.getValue();
+        assertEquals(messageCount + 1, query.getLimit());
+        assertEquals(new Document(SQSConstants.CREATED_AT, 1).append(SQSConstants.ID, 1), query.getSortObject());
+        assertTrue(query.getQueryObject().toJson().contains("\"$gte\""));
+    }
+
+    @Test
+    void testView_invalidPageToken() {
+        assertThrows(IllegalArgumentException.class, () -> viewMessageService.view(consumerGroup, messageCount, "no", "not a token"));
+        verifyNoInteractions(mongoTemplate, cacheService);
+    }
+
+    @Test
+    void pageQuery_noConsumedFilter_matchesBothConsumedValues() {
+        Query query = ViewMessageService.pageQuery(null, null, 5);
+
+        assertEquals(new Document(SQSConstants.CONSUMED, new Document("$in", List.of(false, true))), query.getQueryObject());
+    }
+
+    @Test
+    void pageCursor_roundTrip() {
+        PageCursor cursor = new PageCursor(new Date(1234), "a:b");
+
+        assertEquals(cursor, PageCursor.decode(cursor.encode()));
+        assertTrue(cursor.precedes(new Message("a:c", consumerGroup, "content", new Date(1234), false)));
+        assertTrue(cursor.precedes(new Message("a", consumerGroup, "content", new Date(1235), false)));
+        assertTrue(!cursor.precedes(new Message("z", consumerGroup, "content", new Date(1233), false)));
+    }
 }
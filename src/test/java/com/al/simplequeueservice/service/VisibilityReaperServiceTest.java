@@ -0,0 +1,60 @@
+package com.al.simplequeueservice.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class VisibilityReaperServiceTest {
+
+    @Mock
+    private CacheService cacheService;
+
+    @InjectMocks
+    private VisibilityReaperService visibilityReaperService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(visibilityReaperService, "batchSize", 100);
+    }
+
+    @Test
+    void requeueExpiredMessages_drainsInBatches() {
+        when(cacheService.requeueExpired("testGroup", 5000L, 100)).thenReturn(100L, 100L, 42L);
+
+        long requeued = visibilityReaperService.requeueExpiredMessages("testGroup", 5000L);
+
+        assertEquals(242, requeued);
+        verify(cacheService, times(3)).requeueExpired("testGroup", 5000L, 100);
+    }
+
+    @Test
+    void requeueExpiredMessages_everyGroupWithMessagesInFlight() {
+        when(cacheService.getInFlightConsumerGroups()).thenReturn(Set.of("group1", "group2"));
+
+        visibilityReaperService.requeueExpiredMessages();
+
+        verify(cacheService, times(1)).requeueExpired(eq("group1"), anyLong(), eq(100));
+        verify(cacheService, times(1)).requeueExpired(eq("group2"), anyLong(), eq(100));
+    }
+
+    @Test
+    void requeueExpiredMessages_redisUnavailable() {
+        when(cacheService.getInFlightConsumerGroups()).thenThrow(new RuntimeException("Connection refused"));
+
+        visibilityReaperService.requeueExpiredMessages();
+
+        verify(cacheService, never()).requeueExpired(anyString(), anyLong(), anyInt());
+    }
+}
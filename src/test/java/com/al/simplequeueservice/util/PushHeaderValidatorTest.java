@@ -0,0 +1,44 @@
+package com.al.simplequeueservice.util;
+
+import com.al.simplequeueservice.exception.ErrorResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PushHeaderValidatorTest {
+
+    private PushHeaderValidator pushHeaderValidator;
+
+    @BeforeEach
+    void setUp() {
+        pushHeaderValidator = new PushHeaderValidator();
+        ReflectionTestUtils.setField(pushHeaderValidator, "maxDelaySeconds", 900);
+    }
+
+    @Test
+    void validate_inRange() {
+        assertTrue(pushHeaderValidator.validate(0, 0, SQSConstants.PUSH_URL).isEmpty());
+        assertTrue(pushHeaderValidator.validate(SQSConstants.MAX_PRIORITY, 900, SQSConstants.PUSH_URL).isEmpty());
+    }
+
+    @Test
+    void validate_priorityOutOfRange() {
+        ErrorResponse error = pushHeaderValidator.validate(SQSConstants.MAX_PRIORITY + 1, 0, SQSConstants.PUSH_BATCH_URL).orElseThrow();
+
+        assertEquals(400, error.getStatus());
+        assertEquals("Priority should be 0 to 9.", error.getMessage());
+        assertEquals(SQSConstants.QUEUE_BASE_URL + SQSConstants.PUSH_BATCH_URL, error.getPath());
+        assertTrue(pushHeaderValidator.validate(-1, 0, SQSConstants.PUSH_URL).isPresent());
+    }
+
+    @Test
+    void validate_delayOutOfRange() {
+        ErrorResponse error = pushHeaderValidator.validate(0, 901, SQSConstants.PUSH_RAW_URL).orElseThrow();
+
+        assertEquals("Delay Seconds should be 0 to 900.", error.getMessage());
+        assertEquals(SQSConstants.QUEUE_BASE_URL + SQSConstants.PUSH_RAW_URL, error.getPath());
+        assertTrue(pushHeaderValidator.validate(0, -1, SQSConstants.PUSH_URL).isPresent());
+    }
+}
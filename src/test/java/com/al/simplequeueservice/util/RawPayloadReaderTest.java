@@ -0,0 +1,59 @@
+package com.al.simplequeueservice.util;
+
+import com.al.simplequeueservice.exception.PayloadTooLargeException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RawPayloadReaderTest {
+
+    private RawPayloadReader rawPayloadReader;
+
+    @BeforeEach
+    void setUp() {
+        rawPayloadReader = new RawPayloadReader();
+        ReflectionTestUtils.setField(rawPayloadReader, "maxBytes", 100);
+        ReflectionTestUtils.setField(rawPayloadReader, "bufferBytes", 16);
+    }
+
+    @Test
+    void readUtf8_smallerThanBuffer() throws IOException {
+        assertEquals("héllo", read("héllo"));
+    }
+
+    @Test
+    void readUtf8_growsBeyondBuffer() throws IOException {
+        String content = "0123456789".repeat(10);
+
+        assertEquals(content, read(content));
+        // The pooled buffer is reused and still works for small bodies
+        assertEquals("abc", read("abc"));
+    }
+
+    @Test
+    void readUtf8_emptyBody() throws IOException {
+        assertEquals("", read(""));
+    }
+
+    @Test
+    void readUtf8_tooLarge() {
+        assertThrows(PayloadTooLargeException.class, () -> read("x".repeat(101)));
+    }
+
+    @Test
+    void readUtf8_tooLargeWhenBufferExceedsMaximum() {
+        ReflectionTestUtils.setField(rawPayloadReader, "bufferBytes", 1024);
+
+        assertThrows(PayloadTooLargeException.class, () -> read("x".repeat(101)));
+    }
+
+    private String read(String content) throws IOException {
+        return rawPayloadReader.readUtf8(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+    }
+}